@@ -0,0 +1,112 @@
+package nz.co.gregs.properties;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import nz.co.gregs.properties.exceptions.DBPebkacException;
+
+/**
+ * Immutable table of the annotations declared on a java property, keyed by
+ * annotation type.
+ *
+ * <p>
+ * Built once per property so that repeated annotation queries are a map lookup
+ * with no further reflection. For bean-properties the getter and setter
+ * annotations are merged and checked for conflicts when the table is built,
+ * the conflicts being reported when the affected annotation type is queried.
+ *
+ * @author Gregory Graham
+ */
+final class AnnotationTable {
+
+	private final Map<Class<? extends Annotation>, Annotation> annotations;
+	private final Set<Class<? extends Annotation>> conflicts;
+	private final String qualifiedName;
+
+	private AnnotationTable(Map<Class<? extends Annotation>, Annotation> annotations, Set<Class<? extends Annotation>> conflicts, String qualifiedName) {
+		this.annotations = annotations;
+		this.conflicts = conflicts;
+		this.qualifiedName = qualifiedName;
+	}
+
+	/**
+	 * Creates the table for a field or other single annotated element.
+	 *
+	 * @param element the annotated element
+	 * @return the annotation table
+	 */
+	static AnnotationTable of(AnnotatedElement element) {
+		Map<Class<? extends Annotation>, Annotation> annotations = new HashMap<>();
+		addAll(annotations, element);
+		return new AnnotationTable(Collections.unmodifiableMap(annotations), Collections.emptySet(), null);
+	}
+
+	/**
+	 * Creates the table for a bean-property.
+	 *
+	 * <p>
+	 * Annotations present on only one of the getter and setter are used as is.
+	 * Annotations present on both must be identical, otherwise they are
+	 * recorded as conflicting.
+	 *
+	 * @param getter the getter, may be null
+	 * @param setter the setter, may be null
+	 * @param qualifiedName the name of the property, used in error messages
+	 * @return the annotation table
+	 */
+	static AnnotationTable of(Method getter, Method setter, String qualifiedName) {
+		Map<Class<? extends Annotation>, Annotation> annotations = new HashMap<>();
+		Set<Class<? extends Annotation>> conflicts = new HashSet<>();
+		if (setter != null) {
+			addAll(annotations, setter);
+		}
+		if (getter != null) {
+			for (Annotation getterAnnotation : getter.getAnnotations()) {
+				// the getter's annotation is preferred when both are present
+				Annotation setterAnnotation = annotations.put(getterAnnotation.annotationType(), getterAnnotation);
+				if (setterAnnotation != null && !JavaBeanProperty.annotationsEqual(getterAnnotation, setterAnnotation)) {
+					conflicts.add(getterAnnotation.annotationType());
+				}
+			}
+		}
+		return new AnnotationTable(Collections.unmodifiableMap(annotations),
+				conflicts.isEmpty() ? Collections.emptySet() : Collections.unmodifiableSet(conflicts),
+				qualifiedName);
+	}
+
+	private static void addAll(Map<Class<? extends Annotation>, Annotation> annotations, AnnotatedElement element) {
+		for (Annotation annotation : element.getAnnotations()) {
+			annotations.put(annotation.annotationType(), annotation);
+		}
+	}
+
+	/**
+	 * Indicates whether the annotation type is present.
+	 *
+	 * @param annotationClass the annotation type
+	 * @return true if present
+	 */
+	boolean isAnnotationPresent(Class<? extends Annotation> annotationClass) {
+		return annotations.containsKey(annotationClass);
+	}
+
+	/**
+	 * Gets the annotation of the annotation type.
+	 *
+	 * @param <A> the annotation type
+	 * @param annotationClass the annotation type
+	 * @return the annotation, or null if not present
+	 * @throws DBPebkacException if the annotation is duplicated and different
+	 */
+	<A extends Annotation> A getAnnotation(Class<A> annotationClass) {
+		if (!conflicts.isEmpty() && conflicts.contains(annotationClass)) {
+			throw new DBPebkacException("@" + annotationClass.getSimpleName() + " different on " + qualifiedName + " getter and setter ");
+		}
+		return annotationClass.cast(annotations.get(annotationClass));
+	}
+}
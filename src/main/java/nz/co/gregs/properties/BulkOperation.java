@@ -0,0 +1,171 @@
+package nz.co.gregs.properties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import nz.co.gregs.properties.exceptions.PropertyException;
+
+/**
+ * Processes many containers at once on an {@link ExecutorService}.
+ *
+ * <pre>
+ * try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+ *	List&lt;Order&gt; orders = BulkOperation.on(executor).hydrate(factory, Order.class, rows);
+ *	BulkOperation.on(executor).forEach(orders, order -&gt; validate(order));
+ * }
+ * </pre>
+ *
+ * <p>
+ * The work is split into tasks of {@link #inChunksOf(int) a number of items
+ * each}, one item by default, which suits a virtual-thread-per-task executor.
+ * Use larger chunks with a pool of platform threads. Each method waits for all
+ * its tasks to finish. If a task fails, the tasks that haven't started are
+ * cancelled and the failure is rethrown on the calling thread.
+ *
+ * <p>
+ * The library takes no monitors while processing, so tasks running on virtual
+ * threads don't pin their carrier threads. The class adaptor is built, or
+ * fetched from the factory, on the calling thread before any task is
+ * submitted.
+ *
+ * <p>
+ * Instances of this class are immutable and <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class BulkOperation {
+
+	private final ExecutorService executor;
+	private final int chunkSize;
+
+	private BulkOperation(ExecutorService executor, int chunkSize) {
+		this.executor = executor;
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Starts a bulk operation that runs its tasks on the executor.
+	 *
+	 * @param executor the executor to run the tasks
+	 * @return a bulk operation with one item per task
+	 */
+	public static BulkOperation on(ExecutorService executor) {
+		if (executor == null) {
+			throw new IllegalArgumentException("A bulk operation needs an executor");
+		}
+		return new BulkOperation(executor, 1);
+	}
+
+	/**
+	 * Creates a bulk operation that gives each task several items.
+	 *
+	 * @param chunkSize the number of items per task, at least 1
+	 * @return a new bulk operation on the same executor
+	 */
+	public BulkOperation inChunksOf(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunks must have at least one item: " + chunkSize);
+		}
+		return new BulkOperation(executor, chunkSize);
+	}
+
+	/**
+	 * Performs the action on every item.
+	 *
+	 * @param <T> the type of the items
+	 * @param items the items to process
+	 * @param action the action to perform on each item
+	 */
+	public <T> void forEach(Collection<? extends T> items, Consumer<? super T> action) {
+		map(items, item -> {
+			action.accept(item);
+			return null;
+		});
+	}
+
+	/**
+	 * Applies the function to every item.
+	 *
+	 * @param <S> the type of the items
+	 * @param <R> the type of the results
+	 * @param items the items to process
+	 * @param function the function to apply to each item
+	 * @return the results, in the order of the items
+	 */
+	@SuppressWarnings("unchecked")
+	public <S, R> List<R> map(Collection<? extends S> items, Function<? super S, ? extends R> function) {
+		Object[] inputs = items.toArray();
+		Object[] results = new Object[inputs.length];
+		List<Future<?>> tasks = new ArrayList<>(inputs.length / chunkSize + 1);
+		try {
+			for (int start = 0; start < inputs.length; start += chunkSize) {
+				int from = start;
+				int to = Math.min(inputs.length, start + chunkSize);
+				tasks.add(executor.submit(() -> {
+					for (int i = from; i < to; i++) {
+						results[i] = function.apply((S) inputs[i]);
+					}
+				}));
+			}
+			for (Future<?> task : tasks) {
+				task.get();
+			}
+		} catch (ExecutionException e) {
+			cancel(tasks);
+			Throwable cause = (e.getCause() == null) ? e : e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new PropertyException("Bulk operation failed: " + cause.getLocalizedMessage(), cause);
+		} catch (InterruptedException e) {
+			cancel(tasks);
+			Thread.currentThread().interrupt();
+			throw new PropertyException("Interrupted while waiting for a bulk operation", e);
+		} catch (RuntimeException e) {
+			// usually the executor rejecting a task
+			cancel(tasks);
+			throw e;
+		}
+		return (List<R>) Arrays.asList(results);
+	}
+
+	/**
+	 * Creates a container for each row of values.
+	 *
+	 * <p>
+	 * The values of each row are in the order of
+	 * {@link PropertyContainerClass#getPropertyDefinitions()}, as in a
+	 * {@link PropertySnapshot}. Values of properties that can't be both read
+	 * and written are ignored.
+	 *
+	 * <p>
+	 * Type-adapted properties are converted through a new internal
+	 * AdaptableType for each value rather than the syncer shared by the class,
+	 * so rows are hydrated safely on any number of threads.
+	 *
+	 * @param <T> the class of the containers
+	 * @param factory the factory providing the class adaptor
+	 * @param type the class of the containers, with a default constructor
+	 * @param rows the values of each container
+	 * @return the new containers, in the order of the rows
+	 * @throws IllegalArgumentException if a row has the wrong number of values
+	 */
+	public <T extends PropertyContainer> List<T> hydrate(PropertyContainerWrapperFactory factory, Class<T> type, Collection<Object[]> rows) {
+		RowHydrator<T> hydrator = new RowHydrator<>(factory.classWrapperFor(type), type);
+		return map(rows, hydrator::hydrate);
+	}
+
+	private static void cancel(List<Future<?>> tasks) {
+		for (Future<?> task : tasks) {
+			task.cancel(false);
+		}
+	}
+}
@@ -0,0 +1,106 @@
+package nz.co.gregs.properties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the property changes made by the current thread and reports them
+ * as one event per container when closed.
+ *
+ * <pre>
+ * try (ChangeBatch batch = ChangeBatch.begin()) {
+ *	customer.name.setValue("Alice");
+ *	customer.email.setValue("alice@example.com");
+ * } // listeners of customer receive one event listing name and email
+ * </pre>
+ *
+ * <p>
+ * Batches nest: beginning a batch while one is open joins the open batch,
+ * and the changes are reported when the outermost batch is closed. Events
+ * are delivered in the order the containers first changed, on the thread
+ * that closes the batch.
+ *
+ * <p>
+ * Instances of this class belong to the thread that began them and are not
+ * thread-safe.
+ *
+ * @author Gregory Graham
+ */
+public final class ChangeBatch implements AutoCloseable {
+
+	private static final ThreadLocal<ChangeBatch> CURRENT = new ThreadLocal<>();
+
+	private final Map<ContainerChangeSupport, List<PropertyDefinition>> changes = new LinkedHashMap<>();
+	private int depth = 1;
+
+	private ChangeBatch() {
+	}
+
+	/**
+	 * Begins a batch on the current thread, or joins the batch already open.
+	 *
+	 * @return the batch, to be closed when the changes are complete
+	 */
+	public static ChangeBatch begin() {
+		ChangeBatch batch = CURRENT.get();
+		if (batch == null) {
+			batch = new ChangeBatch();
+			CURRENT.set(batch);
+		} else {
+			batch.depth++;
+		}
+		return batch;
+	}
+
+	/**
+	 * Gets the batch open on the current thread.
+	 */
+	static ChangeBatch current() {
+		return CURRENT.get();
+	}
+
+	/**
+	 * Records a change to report when the batch is closed.
+	 */
+	void record(ContainerChangeSupport support, PropertyDefinition property) {
+		List<PropertyDefinition> properties = changes.computeIfAbsent(support, key -> new ArrayList<>(4));
+		if (!properties.contains(property)) {
+			properties.add(property);
+		}
+	}
+
+	/**
+	 * Ends this level of the batch, reporting the changes if it is the
+	 * outermost level.
+	 *
+	 * <p>
+	 * Every listener is called even if an earlier one throws; the first
+	 * exception thrown is rethrown afterwards.
+	 */
+	@Override
+	public void close() {
+		if (depth == 0) {
+			return;
+		}
+		if (--depth > 0) {
+			return;
+		}
+		CURRENT.remove();
+		RuntimeException failure = null;
+		for (Map.Entry<ContainerChangeSupport, List<PropertyDefinition>> entry : changes.entrySet()) {
+			try {
+				entry.getKey().fire(entry.getValue());
+			} catch (RuntimeException ex) {
+				if (failure == null) {
+					failure = ex;
+				}
+			}
+		}
+		changes.clear();
+		if (failure != null) {
+			throw failure;
+		}
+	}
+}
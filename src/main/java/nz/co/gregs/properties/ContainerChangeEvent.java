@@ -0,0 +1,57 @@
+package nz.co.gregs.properties;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The properties of a container that have changed.
+ *
+ * <p>
+ * Instances of this class are immutable and <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class ContainerChangeEvent {
+
+	private final PropertyContainer container;
+	private final List<PropertyDefinition> changedProperties;
+
+	ContainerChangeEvent(PropertyContainer container, List<PropertyDefinition> changedProperties) {
+		this.container = container;
+		this.changedProperties = Collections.unmodifiableList(changedProperties);
+	}
+
+	/**
+	 * Gets the container whose properties changed.
+	 *
+	 * @return the container
+	 */
+	public PropertyContainer getContainer() {
+		return container;
+	}
+
+	/**
+	 * Gets the properties that changed, each listed once in the order they
+	 * first changed.
+	 *
+	 * @return the changed properties
+	 */
+	public List<PropertyDefinition> getChangedProperties() {
+		return changedProperties;
+	}
+
+	/**
+	 * Tests whether the property is one of the properties that changed.
+	 *
+	 * @param property a property of the container's class
+	 * @return true if the property changed
+	 */
+	public boolean isChanged(PropertyDefinition property) {
+		return changedProperties.contains(property);
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "<" + container.getClass().getSimpleName() + changedProperties + ">";
+	}
+}
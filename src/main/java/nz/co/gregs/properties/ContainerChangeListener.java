@@ -0,0 +1,30 @@
+package nz.co.gregs.properties;
+
+/**
+ * Receives notice of changes to the properties of a container.
+ *
+ * <p>
+ * Register listeners with
+ * {@link PropertyContainerWrapper#addChangeListener(ContainerChangeListener)}
+ * for changes to any property, or with
+ * {@link Property#addChangeListener(ContainerChangeListener)} for changes to
+ * one property.
+ *
+ * @author Gregory Graham
+ * @see ChangeBatch
+ */
+@FunctionalInterface
+public interface ContainerChangeListener {
+
+	/**
+	 * Called after properties of the container have changed.
+	 *
+	 * <p>
+	 * Outside a {@link ChangeBatch} each change is reported as it happens;
+	 * inside one, all the changes to the container are reported together when
+	 * the batch is closed.
+	 *
+	 * @param event the container and the properties that changed
+	 */
+	void propertiesChanged(ContainerChangeEvent event);
+}
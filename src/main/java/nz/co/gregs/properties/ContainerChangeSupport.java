@@ -0,0 +1,177 @@
+package nz.co.gregs.properties;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import nz.co.gregs.properties.adapt.AdaptableType;
+import nz.co.gregs.properties.adapt.InternalAdaptableTypeProxy;
+
+/**
+ * The change listeners of one container.
+ *
+ * <p>
+ * A container only has a ContainerChangeSupport while it has listeners, so
+ * code that changes properties only has to check a field to know that there
+ * is nobody to notify. While it exists, the AdaptableType of each property
+ * that isn't type-adapted is bound to it, so changes made directly through
+ * the AdaptableType are reported too.
+ *
+ * @author Gregory Graham
+ */
+final class ContainerChangeSupport {
+
+	private static final ReentrantLock LOCK = new ReentrantLock();
+
+	private final PropertyContainer container;
+	private final PropertyContainerClass classWrapper;
+	private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+	private final Runnable[] notifiers;
+
+	private ContainerChangeSupport(PropertyContainer container, PropertyContainerClass classWrapper) {
+		this.container = container;
+		this.classWrapper = classWrapper;
+		List<PropertyDefinition> properties = classWrapper.getPropertyDefinitions();
+		notifiers = new Runnable[properties.size()];
+		for (int i = 0; i < notifiers.length; i++) {
+			PropertyDefinition property = properties.get(i);
+			notifiers[i] = () -> changed(property);
+		}
+	}
+
+	/**
+	 * Gets the change support of the target, or null if it has no listeners.
+	 */
+	static ContainerChangeSupport of(Object target) {
+		return target instanceof PropertyContainer ? ((PropertyContainer) target).changeSupport : null;
+	}
+
+	/**
+	 * Adds a listener to the container, creating its change support if
+	 * needed.
+	 */
+	static void addListener(PropertyContainerClass classWrapper, PropertyContainer container, ContainerChangeListener listener, PropertyDefinition property) {
+		LOCK.lock();
+		try {
+			ContainerChangeSupport support = container.changeSupport;
+			if (support == null) {
+				support = new ContainerChangeSupport(container, classWrapper);
+				support.bindAll(true);
+				container.changeSupport = support;
+			}
+			support.registrations.add(new Registration(listener, property));
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	/**
+	 * Removes a listener from the container, discarding its change support
+	 * when the last listener is removed.
+	 */
+	static boolean removeListener(PropertyContainer container, ContainerChangeListener listener, PropertyDefinition property) {
+		LOCK.lock();
+		try {
+			ContainerChangeSupport support = container.changeSupport;
+			if (support == null) {
+				return false;
+			}
+			boolean removed = false;
+			for (Registration registration : support.registrations) {
+				if (registration.listener == listener && registration.property == property) {
+					removed = support.registrations.remove(registration);
+					break;
+				}
+			}
+			if (support.registrations.isEmpty()) {
+				container.changeSupport = null;
+				support.bindAll(false);
+			}
+			return removed;
+		} finally {
+			LOCK.unlock();
+		}
+	}
+
+	private void bindAll(boolean bind) {
+		List<PropertyDefinition> properties = classWrapper.getPropertyDefinitions();
+		for (int i = 0; i < notifiers.length; i++) {
+			AdaptableType<?> adaptable = boundAdaptableType(properties.get(i));
+			if (adaptable != null) {
+				new InternalAdaptableTypeProxy(adaptable).setChangeNotifier(bind ? notifiers[i] : null);
+			}
+		}
+	}
+
+	/**
+	 * Gets the AdaptableType held in the container's field for the property,
+	 * or null if the property is type-adapted or the field is null.
+	 */
+	private AdaptableType<?> boundAdaptableType(PropertyDefinition property) {
+		if (property.isTypeAdapted() || !property.isReadable()) {
+			return null;
+		}
+		Object value = property.rawJavaValue(container);
+		return value instanceof AdaptableType ? (AdaptableType<?>) value : null;
+	}
+
+	/**
+	 * Writes a property through the PropertyDefinition, reporting one change
+	 * however the write reaches the field and moving the binding to the
+	 * property's new AdaptableType.
+	 */
+	void write(PropertyDefinition property, Runnable write) {
+		AdaptableType<?> previous = boundAdaptableType(property);
+		try (ChangeBatch batch = ChangeBatch.begin()) {
+			write.run();
+			AdaptableType<?> current = boundAdaptableType(property);
+			if (current != previous) {
+				if (previous != null) {
+					new InternalAdaptableTypeProxy(previous).setChangeNotifier(null);
+				}
+				if (current != null && container.changeSupport == this) {
+					new InternalAdaptableTypeProxy(current).setChangeNotifier(notifiers[classWrapper.getPropertyDefinitions().indexOf(property)]);
+				}
+			}
+			changed(property);
+		}
+	}
+
+	/**
+	 * Reports a change to the property, now or when the open batch closes.
+	 */
+	void changed(PropertyDefinition property) {
+		ChangeBatch batch = ChangeBatch.current();
+		if (batch != null) {
+			batch.record(this, property);
+		} else {
+			fire(Collections.singletonList(property));
+		}
+	}
+
+	/**
+	 * Calls the listeners interested in any of the properties.
+	 */
+	void fire(List<PropertyDefinition> properties) {
+		ContainerChangeEvent event = null;
+		for (Registration registration : registrations) {
+			if (registration.property == null || properties.contains(registration.property)) {
+				if (event == null) {
+					event = new ContainerChangeEvent(container, properties);
+				}
+				registration.listener.propertiesChanged(event);
+			}
+		}
+	}
+
+	private static final class Registration {
+
+		final ContainerChangeListener listener;
+		final PropertyDefinition property;
+
+		Registration(ContainerChangeListener listener, PropertyDefinition property) {
+			this.listener = listener;
+			this.property = property;
+		}
+	}
+}
@@ -0,0 +1,488 @@
+package nz.co.gregs.properties;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link Flow.Processor} that turns rows of literal values into
+ * containers.
+ *
+ * <pre>
+ * HydratingProcessor&lt;Order&gt; hydrator = HydratingProcessor.of(factory.classWrapperFor(Order.class), Order.class)
+ *		.parallelism(4)
+ *		.bufferSize(1024)
+ *		.onHydrationError((row, error) -&gt; rejects.add(row));
+ * rowPublisher.subscribe(hydrator);
+ * hydrator.subscribe(orderSubscriber);
+ * </pre>
+ *
+ * <p>
+ * The values of each row are in the order of
+ * {@link PropertyContainerClass#getPropertyDefinitions()}, as in a
+ * {@link PropertySnapshot}, and values of properties that can't be both read
+ * and written are ignored.
+ *
+ * <p>
+ * Rows are hydrated on the {@link #executor(java.util.concurrent.Executor)
+ * executor} by up to {@link #parallelism(int) parallelism} tasks at once.
+ * Containers are published in the order of their rows unless
+ * {@link #ordered(boolean) ordered} is turned off, in which case each is
+ * published as soon as it is ready. At most {@link #bufferSize(int) bufferSize}
+ * rows are requested from upstream that haven't yet been published
+ * downstream, so memory stays bounded however slow the subscriber is.
+ *
+ * <p>
+ * A row that can't be hydrated, because it has the wrong number of values or
+ * a type adaptor or constructor throws a runtime exception, fails the stream
+ * unless an {@link #onHydrationError(java.util.function.BiConsumer) error
+ * channel} is set. With one, the row and its exception are passed to the
+ * channel and the stream carries on. An {@link Error} always fails the
+ * stream. An error from upstream is passed on once the rows
+ * received before it have been published.
+ *
+ * <p>
+ * Configure the processor before subscribing it to a publisher; a processor
+ * accepts one publisher and one subscriber, and can't be reused.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i> once subscribed, as required
+ * by {@link Flow}. The upstream subscription is only ever requested from or
+ * cancelled by the thread draining, so its methods are called serially.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class HydratingProcessor<T extends PropertyContainer> implements Flow.Processor<Object[], T> {
+
+	private final RowHydrator<T> hydrator;
+	private Executor executor = ForkJoinPool.commonPool();
+	private int parallelism = 1;
+	private boolean ordered = true;
+	private int bufferSize = Flow.defaultBufferSize();
+	private BiConsumer<? super Object[], ? super RuntimeException> errorChannel;
+
+	private final AtomicBoolean started = new AtomicBoolean();
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+	private volatile Flow.Subscription upstream;
+	private volatile Flow.Subscriber<? super T> downstream;
+	private volatile boolean upstreamDone;
+	private volatile Throwable upstreamError;
+	private volatile Throwable failure;
+	private volatile boolean cancelled;
+
+	private final Queue<Row> pending = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger workers = new AtomicInteger();
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final Map<Long, Result<T>> orderedResults = new ConcurrentHashMap<>();
+	private final Queue<Result<T>> unorderedResults = new ConcurrentLinkedQueue<>();
+	private final AtomicLong requested = new AtomicLong();
+	private final AtomicInteger drainers = new AtomicInteger();
+
+	// only used by onNext, which the publisher calls serially
+	private long nextSequence;
+
+	// only used by the thread draining
+	private long nextToPublish;
+	private int consumedSinceRequest;
+	private boolean terminated;
+	private boolean upstreamRequested;
+	private boolean upstreamCancelled;
+
+	private HydratingProcessor(RowHydrator<T> hydrator) {
+		this.hydrator = hydrator;
+	}
+
+	/**
+	 * Creates a processor hydrating rows into instances of the class.
+	 *
+	 * @param <T> the class of the containers
+	 * @param classWrapper the class adaptor of the containers
+	 * @param type the class of the containers, with a default constructor
+	 * @return a processor using the common fork/join pool, one task at a time,
+	 * ordered output, and the default buffer size
+	 * @throws IllegalArgumentException if the type isn't the class of the
+	 * adaptor
+	 */
+	public static <T extends PropertyContainer> HydratingProcessor<T> of(PropertyContainerClass classWrapper, Class<T> type) {
+		return new HydratingProcessor<>(new RowHydrator<>(classWrapper, type));
+	}
+
+	/**
+	 * Sets the executor that hydrates the rows.
+	 *
+	 * @param executor the executor
+	 * @return this processor
+	 */
+	public HydratingProcessor<T> executor(Executor executor) {
+		checkNotStarted();
+		this.executor = Objects.requireNonNull(executor, "executor");
+		return this;
+	}
+
+	/**
+	 * Sets how many rows may be hydrated at once.
+	 *
+	 * @param parallelism the largest number of hydrating tasks, at least 1
+	 * @return this processor
+	 */
+	public HydratingProcessor<T> parallelism(int parallelism) {
+		checkNotStarted();
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("Parallelism must be at least 1: " + parallelism);
+		}
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	/**
+	 * Sets whether containers are published in the order of their rows.
+	 *
+	 * @param ordered true to keep the order of the rows, false to publish each
+	 * container as soon as it is hydrated
+	 * @return this processor
+	 */
+	public HydratingProcessor<T> ordered(boolean ordered) {
+		checkNotStarted();
+		this.ordered = ordered;
+		return this;
+	}
+
+	/**
+	 * Sets the largest number of rows requested from upstream but not yet
+	 * published.
+	 *
+	 * @param bufferSize the buffer size, at least 1
+	 * @return this processor
+	 */
+	public HydratingProcessor<T> bufferSize(int bufferSize) {
+		checkNotStarted();
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("The buffer size must be at least 1: " + bufferSize);
+		}
+		this.bufferSize = bufferSize;
+		return this;
+	}
+
+	/**
+	 * Sets the channel that receives the rows that can't be hydrated, instead
+	 * of failing the stream.
+	 *
+	 * <p>
+	 * The channel is called on the thread publishing downstream, in the
+	 * position the container would have been published. If the channel throws,
+	 * the stream fails with its exception.
+	 *
+	 * @param errorChannel receives each failed row and its exception
+	 * @return this processor
+	 */
+	public HydratingProcessor<T> onHydrationError(BiConsumer<? super Object[], ? super RuntimeException> errorChannel) {
+		checkNotStarted();
+		this.errorChannel = errorChannel;
+		return this;
+	}
+
+	private void checkNotStarted() {
+		if (started.get()) {
+			throw new IllegalStateException("The processor has already been subscribed");
+		}
+	}
+
+	@Override
+	public void onSubscribe(Flow.Subscription subscription) {
+		Objects.requireNonNull(subscription, "subscription");
+		if (upstream != null) {
+			subscription.cancel();
+			return;
+		}
+		started.set(true);
+		upstream = subscription;
+		// the first request is made by the drain loop, like every other call on the subscription
+		drain();
+	}
+
+	@Override
+	public void onNext(Object[] values) {
+		Objects.requireNonNull(values, "values");
+		inFlight.incrementAndGet();
+		pending.add(new Row(nextSequence++, values));
+		dispatch();
+	}
+
+	@Override
+	public void onError(Throwable throwable) {
+		upstreamError = Objects.requireNonNull(throwable, "throwable");
+		upstreamDone = true;
+		drain();
+	}
+
+	@Override
+	public void onComplete() {
+		upstreamDone = true;
+		drain();
+	}
+
+	@Override
+	public void subscribe(Flow.Subscriber<? super T> subscriber) {
+		Objects.requireNonNull(subscriber, "subscriber");
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				@Override
+				public void request(long n) {
+				}
+
+				@Override
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("A " + getClass().getSimpleName() + " only accepts one subscriber"));
+			return;
+		}
+		started.set(true);
+		subscriber.onSubscribe(new Downstream());
+		downstream = subscriber;
+		drain();
+	}
+
+	/**
+	 * Starts another hydrating task if there are rows waiting and fewer
+	 * tasks than allowed.
+	 */
+	private void dispatch() {
+		for (;;) {
+			int running = workers.get();
+			if (running >= parallelism || pending.isEmpty() || cancelled) {
+				return;
+			}
+			if (workers.compareAndSet(running, running + 1)) {
+				try {
+					executor.execute(this::work);
+				} catch (RejectedExecutionException e) {
+					workers.decrementAndGet();
+					fail(e);
+				}
+				return;
+			}
+		}
+	}
+
+	private void work() {
+		try {
+			Row row;
+			while (!cancelled && (row = pending.poll()) != null) {
+				Result<T> result;
+				try {
+					result = new Result<>(row, hydrator.hydrate(row.values), null);
+				} catch (RuntimeException e) {
+					result = new Result<>(row, null, e);
+				} catch (Throwable e) {
+					// not a problem with the row, so fail the stream rather than leave the row in flight forever
+					inFlight.decrementAndGet();
+					fail(e);
+					return;
+				}
+				if (ordered) {
+					orderedResults.put(row.sequence, result);
+				} else {
+					unorderedResults.add(result);
+				}
+				// (decremented after the result is stored, so completion never misses it)
+				inFlight.decrementAndGet();
+				drain();
+			}
+		} finally {
+			workers.decrementAndGet();
+		}
+		// a row may have arrived after the last poll but before this task stopped counting itself
+		dispatch();
+	}
+
+	private void fail(Throwable throwable) {
+		if (failure == null) {
+			failure = throwable;
+		}
+		drain();
+	}
+
+	/**
+	 * Publishes whatever can be published, from one thread at a time.
+	 */
+	private void drain() {
+		if (drainers.getAndIncrement() != 0) {
+			return;
+		}
+		int missed = 1;
+		for (;;) {
+			signalUpstream();
+			Flow.Subscriber<? super T> subscriber = downstream;
+			if (subscriber != null && !terminated) {
+				drainTo(subscriber);
+			}
+			signalUpstream();
+			if (terminated || cancelled) {
+				clear();
+			}
+			missed = drainers.addAndGet(-missed);
+			if (missed == 0) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Makes the first request of upstream, or cancels it once the stream has
+	 * failed or been cancelled, from the thread draining.
+	 */
+	private void signalUpstream() {
+		Flow.Subscription subscription = upstream;
+		if (subscription == null || upstreamCancelled) {
+			return;
+		}
+		if (cancelled || failure != null) {
+			upstreamCancelled = true;
+			if (!upstreamDone) {
+				subscription.cancel();
+			}
+		} else if (!upstreamRequested) {
+			upstreamRequested = true;
+			subscription.request(bufferSize);
+		}
+	}
+
+	private void drainTo(Flow.Subscriber<? super T> subscriber) {
+		if (cancelled) {
+			terminated = true;
+			return;
+		}
+		long demand = requested.get();
+		long published = 0;
+		for (;;) {
+			Throwable failed = failure;
+			if (failed != null) {
+				terminated = true;
+				subscriber.onError(failed);
+				return;
+			}
+			Result<T> next = ordered ? orderedResults.get(nextToPublish) : unorderedResults.peek();
+			if (next == null) {
+				break;
+			}
+			if (next.error == null && published == demand) {
+				break;
+			}
+			if (ordered) {
+				orderedResults.remove(nextToPublish++);
+			} else {
+				unorderedResults.poll();
+			}
+			if (next.error != null) {
+				if (errorChannel == null) {
+					fail(next.error);
+					continue;
+				}
+				try {
+					errorChannel.accept(next.row.values, next.error);
+				} catch (Throwable e) {
+					// a failing channel fails the stream, rather than the thread draining
+					fail(e);
+					continue;
+				}
+			} else {
+				subscriber.onNext(next.container);
+				published++;
+			}
+			consumed();
+			if (cancelled) {
+				terminated = true;
+				return;
+			}
+		}
+		if (published > 0 && demand != Long.MAX_VALUE) {
+			requested.addAndGet(-published);
+		}
+		if (upstreamDone && inFlight.get() == 0 && orderedResults.isEmpty() && unorderedResults.isEmpty()) {
+			terminated = true;
+			Throwable error = upstreamError;
+			if (error == null) {
+				subscriber.onComplete();
+			} else {
+				subscriber.onError(error);
+			}
+		}
+	}
+
+	/**
+	 * Replaces a row that has left the buffer, asking upstream in batches.
+	 */
+	private void consumed() {
+		consumedSinceRequest++;
+		if (consumedSinceRequest >= Math.max(1, bufferSize / 4) && !upstreamCancelled) {
+			upstream.request(consumedSinceRequest);
+			consumedSinceRequest = 0;
+		}
+	}
+
+	private void clear() {
+		pending.clear();
+		orderedResults.clear();
+		unorderedResults.clear();
+	}
+
+	private final class Downstream implements Flow.Subscription {
+
+		@Override
+		public void request(long n) {
+			if (n <= 0) {
+				fail(new IllegalArgumentException("Subscribers must request a positive number of containers: " + n));
+				return;
+			}
+			long current;
+			long next;
+			do {
+				current = requested.get();
+				next = current + n < 0 ? Long.MAX_VALUE : current + n;
+			} while (!requested.compareAndSet(current, next));
+			drain();
+		}
+
+		@Override
+		public void cancel() {
+			cancelled = true;
+			drain();
+		}
+	}
+
+	private static final class Row {
+
+		final long sequence;
+		final Object[] values;
+
+		Row(long sequence, Object[] values) {
+			this.sequence = sequence;
+			this.values = values;
+		}
+	}
+
+	private static final class Result<T> {
+
+		final Row row;
+		final T container;
+		final RuntimeException error;
+
+		Result(Row row, T container, RuntimeException error) {
+			this.row = row;
+			this.container = container;
+			this.error = error;
+		}
+	}
+}
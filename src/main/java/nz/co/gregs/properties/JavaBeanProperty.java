@@ -15,7 +15,6 @@
  */
 package nz.co.gregs.properties;
 
-import nz.co.gregs.properties.exceptions.DBPebkacException;
 import nz.co.gregs.properties.exceptions.PropertyException;
 import nz.co.gregs.properties.exceptions.DBThrownByEndUserCodeException;
 import java.beans.PropertyDescriptor;
@@ -36,6 +35,7 @@ public class JavaBeanProperty implements JavaProperty {
 	private Type genericType;
 	private final Method getter;
 	private final Method setter;
+	private volatile AnnotationTable annotationTable;
 
 	/**
 	 * Create a new JavaBeanProperty from the supplied descriptor.
@@ -57,6 +57,24 @@ public class JavaBeanProperty implements JavaProperty {
 		}
 	}
 
+	/**
+	 * Gets the getter method of the bean-property.
+	 *
+	 * @return the getter, or null if not readable
+	 */
+	Method getGetter() {
+		return getter;
+	}
+
+	/**
+	 * Gets the setter method of the bean-property.
+	 *
+	 * @return the setter, or null if not writable
+	 */
+	Method getSetter() {
+		return setter;
+	}
+
 	/**
 	 * String representation suitable for debugging and logging
 	 *
@@ -220,36 +238,38 @@ public class JavaBeanProperty implements JavaProperty {
 
 	@Override
 	public boolean isAnnotationPresent(Class<? extends Annotation> annotationClass) {
-		return (getter != null && getter.isAnnotationPresent(annotationClass)) || (setter != null && setter.isAnnotationPresent(annotationClass));
+		return getAnnotationTable().isAnnotationPresent(annotationClass);
 	}
 
 	@Override
 	public <A extends Annotation> A getAnnotation(Class<A> annotationClass) {
-		A getterAnnotation = null;
-		A setterAnnotation = null;
-		if (getter != null) {
-			getterAnnotation = getter.getAnnotation(annotationClass);
-		}
-		if (setter != null) {
-			setterAnnotation = setter.getAnnotation(annotationClass);
-		}
-		if (getterAnnotation != null && setterAnnotation != null) {
-			if (!annotationsEqual(getterAnnotation, setterAnnotation)) {
-				String name = annotationClass.getSimpleName();
-				throw new DBPebkacException("@" + name + " different on " + qualifiedName() + " getter and setter ");
-			}
-		}
-		if (getterAnnotation != null) {
-			return getterAnnotation;
-		} else if (setterAnnotation != null) {
-			return setterAnnotation;
+		return getAnnotationTable().getAnnotation(annotationClass);
+	}
+
+	/**
+	 * Gets the merged annotations of the getter and setter, building them on
+	 * first use.
+	 *
+	 * @return the annotation table for this property
+	 */
+	private AnnotationTable getAnnotationTable() {
+		AnnotationTable table = annotationTable;
+		if (table == null) {
+			// (note: the table is immutable, so it's harmless if two threads both build it)
+			table = AnnotationTable.of(getter, setter, qualifiedName());
+			annotationTable = table;
 		}
-		return null;
+		return table;
 	}
 
 	/**
 	 * Tests whether two annotations are semantically identical.
 	 *
+	 * <p>
+	 * Uses the {@link Annotation#equals(java.lang.Object)} contract, which
+	 * compares every member value including array contents, and avoids
+	 * reflectively reading the members of each annotation.
+	 *
 	 * @param <A> the annotation type
 	 * @param ann1 ann1
 	 * @param ann2 ann2
@@ -257,14 +277,16 @@ public class JavaBeanProperty implements JavaProperty {
 	 * FALSE.
 	 */
 	protected static <A extends Annotation> boolean annotationsEqual(A ann1, A ann2) {
-		List<Object> values1 = getAnnotationValues(ann1);
-		List<Object> values2 = getAnnotationValues(ann2);
-		return values1.equals(values2);
+		return ann1 == ann2 || ann1.equals(ann2);
 	}
 
 	/**
 	 * Gets the attribute values of the annotation.
 	 *
+	 * <p>
+	 * Note: array values are returned as is, so compare lists of values with
+	 * care.
+	 *
 	 * @param <A> the annotation type
 	 * @param annotation annotation
 	 * @return a list of the values associated with the annotation.
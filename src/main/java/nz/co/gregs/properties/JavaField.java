@@ -26,6 +26,7 @@ import nz.co.gregs.properties.exceptions.FailedToSetPropertyValueOnRowDefinition
  */
 public class JavaField implements JavaProperty {
 	private final Field field;
+	private volatile AnnotationTable annotationTable;
 
 	/**
 	 * Create a JavaField for the supplied field.
@@ -37,6 +38,15 @@ public class JavaField implements JavaProperty {
 		field.setAccessible(true);
 	}
 
+	/**
+	 * Gets the underlying java field.
+	 *
+	 * @return the field
+	 */
+	Field getField() {
+		return field;
+	}
+
 	@Override
 	public String toString() {
 		return "field " + qualifiedName();
@@ -156,12 +166,27 @@ public class JavaField implements JavaProperty {
 
 	@Override
 	public boolean isAnnotationPresent(Class<? extends Annotation> annotationClass) {
-		return field.isAnnotationPresent(annotationClass);
+		return getAnnotationTable().isAnnotationPresent(annotationClass);
 	}
 
 	@Override
 	public <A extends Annotation> A getAnnotation(Class<A> annotationClass) {
-		return field.getAnnotation(annotationClass);
+		return getAnnotationTable().getAnnotation(annotationClass);
+	}
+
+	/**
+	 * Gets the annotations of the field, building them on first use.
+	 *
+	 * @return the annotation table for this property
+	 */
+	private AnnotationTable getAnnotationTable() {
+		AnnotationTable table = annotationTable;
+		if (table == null) {
+			// (note: the table is immutable, so it's harmless if two threads both build it)
+			table = AnnotationTable.of(field);
+			annotationTable = table;
+		}
+		return table;
 	}
 	
 }
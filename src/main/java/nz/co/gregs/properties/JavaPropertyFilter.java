@@ -28,9 +28,12 @@ public interface JavaPropertyFilter {
   /**
    * Indicates whether the specified getter/setter pair are accepted by the filter.
    *
+   * <p>
+   * Either method may be null: a read-only bean property has no setter, and a write-only one no getter. The components of a record are checked
+   * here too, as their accessor method with a null setter, because a record component can't be set.
    *
-   * @param getter the getter method to check
-   * @param setter the setter method to check
+   * @param getter the getter method to check, or null if there is none
+   * @param setter the setter method to check, or null if there is none
    * @return true if the method pair is accepted
    */
   public boolean acceptBeanProperty(Method getter, Method setter);
@@ -8,6 +8,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
@@ -35,7 +36,11 @@ public class JavaPropertyFinder {
     /**
      * Beans are accessed using getter and setter methods
      */
-    BEAN_PROPERTY
+    BEAN_PROPERTY,
+    /**
+     * Record components are read using their accessor methods and can't be written
+     */
+    RECORD_COMPONENT
   };
 
   /**
@@ -129,15 +134,22 @@ public class JavaPropertyFinder {
       properties.addAll(getBeanProperties(clazz));
     }
 
+    // retrieve record components
+    if (propertyTypes.contains(PropertyType.RECORD_COMPONENT) && RecordClass.isRecord(clazz)) {
+      properties.addAll(getRecordComponents(clazz));
+    }
+
     return properties;
   }
 
   /**
-   * Gets the field-based properties.
+   * Gets the field-based properties, including those inherited from superclasses.
+   *
+   * <p>
+   * Fields declared on a subclass shadow fields of the same name declared on its superclasses.
    *
    * @return
    */
-  // TODO: this may not be able to handle inheritance of protected/default fields
   private List<JavaProperty> getFields(Class<?> clazz) {
     List<JavaProperty> properties = new ArrayList<>();
 
@@ -154,26 +166,20 @@ public class JavaPropertyFinder {
     }
 
     // get all non-public fields
-    // (getDeclaredFields() isn't inheritance aware,
-    //  so we're probably not going to be inherited protected/default fields this way)
-    if (fieldVisibility.ordinal() > Visibility.PUBLIC.ordinal()) {
-      for (Field field : clazz.getDeclaredFields()) {
-        field.setAccessible(true);
-        if (!observedFieldNames.contains(field.getName())) {
-          if (visibilityOf(field).ordinal() <= fieldVisibility.ordinal()) {
-            // skip standard java fields
-            if (field.getName().equals("serialVersionUID")) {
-              continue;
-            }
-
-            // add field if accepted
-            // (plus set accessible)
-            if (filter.acceptField(field)) {
-              // make accessible
-              // TODO: pretty sure there's exception types that need to be caught on this call
-              field.setAccessible(true);
-
-              properties.add(new JavaField(field));
+    // (getDeclaredFields() isn't inheritance aware, so walk up the superclasses
+    //  using the cached declarations of each class on the way)
+    // (the private final fields of records can't be written, so use their components instead)
+    if (fieldVisibility.ordinal() > Visibility.PUBLIC.ordinal() && !RecordClass.isRecord(clazz)) {
+      for (Class<?> current = clazz; current != null && !current.equals(Object.class); current = current.getSuperclass()) {
+        for (JavaField javaField : DECLARED_NON_PUBLIC_FIELDS.get(current)) {
+          Field field = javaField.getField();
+          if (observedFieldNames.add(field.getName())) {
+            if (visibilityOf(field).ordinal() <= fieldVisibility.ordinal()) {
+              // add field if accepted
+              // (already made accessible by the cache)
+              if (filter.acceptField(field)) {
+                properties.add(javaField);
+              }
             }
           }
         }
@@ -183,6 +189,32 @@ public class JavaPropertyFinder {
     return properties;
   }
 
+  /**
+   * The non-public fields declared on each class, ready to be used as properties.
+   *
+   * <p>
+   * Shared by all finders and all subclasses, so that a base class used by many property containers is only scanned once. Standard java fields and fields
+   * that can't be made accessible are excluded.
+   */
+  private static final ClassValue<List<JavaField>> DECLARED_NON_PUBLIC_FIELDS = new ClassValue<List<JavaField>>() {
+    @Override
+    protected List<JavaField> computeValue(Class<?> type) {
+      List<JavaField> fields = new ArrayList<>();
+      for (Field field : type.getDeclaredFields()) {
+        // skip standard java fields
+        if (visibilityOf(field) == Visibility.PUBLIC || field.getName().equals("serialVersionUID")) {
+          continue;
+        }
+        // make accessible
+        // (fields of classes in modules that aren't open to us are unusable anyway)
+        if (field.trySetAccessible()) {
+          fields.add(new JavaField(field));
+        }
+      }
+      return Collections.unmodifiableList(fields);
+    }
+  };
+
   /**
    * Gets the bean-property-based properties.
    *
@@ -221,6 +253,22 @@ public class JavaPropertyFinder {
     return properties;
   }
 
+  /**
+   * Gets the components of a record, in the order of its canonical constructor's parameters.
+   *
+   * @return
+   */
+  private List<JavaProperty> getRecordComponents(Class<?> clazz) {
+    List<JavaProperty> properties = new ArrayList<>();
+    for (Method accessor : RecordClass.accessorsOf(clazz)) {
+      // add component if accepted
+      if (filter.acceptBeanProperty(accessor, null)) {
+        properties.add(new JavaRecordComponent(accessor));
+      }
+    }
+    return properties;
+  }
+
   private static Visibility visibilityOf(Field field) {
     return visibilityOf(field.getModifiers());
   }
@@ -0,0 +1,155 @@
+package nz.co.gregs.properties;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import nz.co.gregs.properties.exceptions.DBThrownByEndUserCodeException;
+import nz.co.gregs.properties.exceptions.PropertyException;
+
+/**
+ * Implementation over the components of records.
+ *
+ * <p>
+ * Components are read through their accessor methods. They can't be written,
+ * as records are immutable: use {@link RecordClass#newInstance(java.lang.Object...)}
+ * to create a record from the values of all its components.
+ *
+ * @author Gregory Graham
+ */
+public class JavaRecordComponent implements JavaProperty {
+
+	private final Method accessor;
+	private volatile AnnotationTable annotationTable;
+
+	/**
+	 * Create a new JavaRecordComponent from the accessor of the component.
+	 *
+	 * @param accessor the accessor method of the record component
+	 */
+	JavaRecordComponent(Method accessor) {
+		this.accessor = accessor;
+		// accessors of public records in unexported packages are still unusable
+		accessor.trySetAccessible();
+	}
+
+	/**
+	 * Gets the accessor method of the record component.
+	 *
+	 * @return the accessor
+	 */
+	Method getAccessor() {
+		return accessor;
+	}
+
+	@Override
+	public String toString() {
+		return "record component " + qualifiedName();
+	}
+
+	@Override
+	public int hashCode() {
+		return accessor.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object second) {
+		if (this == second) {
+			return true;
+		}
+		if (!(second instanceof JavaRecordComponent)) {
+			return false;
+		}
+		return accessor.equals(((JavaRecordComponent) second).accessor);
+	}
+
+	@Override
+	public boolean isField() {
+		return false;
+	}
+
+	@Override
+	public String name() {
+		return accessor.getName();
+	}
+
+	@Override
+	public String shortQualifiedName() {
+		return accessor.getDeclaringClass().getSimpleName() + "." + name();
+	}
+
+	@Override
+	public String qualifiedName() {
+		return accessor.getDeclaringClass().getName() + "." + name();
+	}
+
+	@Override
+	public Class<?> type() {
+		return accessor.getReturnType();
+	}
+
+	@Override
+	public Type genericType() {
+		return accessor.getGenericReturnType();
+	}
+
+	@Override
+	public boolean isReadable() {
+		return true;
+	}
+
+	@Override
+	public boolean isWritable() {
+		return false;
+	}
+
+	@Override
+	public Object get(Object target) {
+		try {
+			return accessor.invoke(target);
+		} catch (IllegalArgumentException e) {
+			// usually thrown when 'target' isn't the record declaring the component,
+			// so this is probably a bug
+			String class1 = (target == null) ? "null" : target.getClass().getName();
+			throw new PropertyException("Internal error reading record component " + qualifiedName() + " on object of type " + class1 + ": " + e.getLocalizedMessage(), e);
+		} catch (IllegalAccessException e) {
+			// caused by a record in a module that isn't open to us
+			throw new PropertyException("Java security error reading record component " + qualifiedName() + ": " + e.getLocalizedMessage(), e);
+		} catch (InvocationTargetException e) {
+			// any checked or runtime exception thrown by an explicitly declared accessor
+			Throwable cause = (e.getCause() == null) ? e : e.getCause();
+			String msg = (cause.getLocalizedMessage() == null) ? "" : ": " + cause.getLocalizedMessage();
+			throw new DBThrownByEndUserCodeException("Accessor method threw " + cause.getClass().getSimpleName() + " reading record component " + qualifiedName() + msg, cause);
+		}
+	}
+
+	@Override
+	public void set(Object target, Object value) {
+		// caller should have checked the isWritable method first
+		throw new IllegalStateException("Internal error attempting to write to record component " + qualifiedName() + ": records are immutable");
+	}
+
+	@Override
+	public boolean isAnnotationPresent(Class<? extends Annotation> annotationClass) {
+		return getAnnotationTable().isAnnotationPresent(annotationClass);
+	}
+
+	@Override
+	public <A extends Annotation> A getAnnotation(Class<A> annotationClass) {
+		return getAnnotationTable().getAnnotation(annotationClass);
+	}
+
+	/**
+	 * Gets the annotations of the accessor, which include the annotations of
+	 * the record component that apply to methods.
+	 */
+	private AnnotationTable getAnnotationTable() {
+		AnnotationTable table = annotationTable;
+		if (table == null) {
+			// (note: the table is immutable, so it's harmless if two threads both build it)
+			table = AnnotationTable.of(accessor);
+			annotationTable = table;
+		}
+		return table;
+	}
+}
@@ -367,4 +367,28 @@ public class Property {
     public PropertyContainerWrapper getContainingInstanceWrapper() {
         return dbRowInstanceWrapper;
     }
+
+    /**
+     * Adds a listener for changes to this property of the containing instance.
+     *
+     * <p>
+     * The listener receives the same events as those added with
+     * {@link PropertyContainerWrapper#addChangeListener(nz.co.gregs.properties.ContainerChangeListener)},
+     * but only those that include this property.
+     *
+     * @param listener the listener to add
+     */
+    public void addChangeListener(ContainerChangeListener listener) {
+        ContainerChangeSupport.addListener(dbRowInstanceWrapper.getContainingClassWrapper(), dbRowInstanceWrapper.adapteeContainingInstance(), listener, propertyDefinition);
+    }
+
+    /**
+     * Removes a listener added with {@link #addChangeListener(nz.co.gregs.properties.ContainerChangeListener)}.
+     *
+     * @param listener the listener to remove
+     * @return true if the listener was removed
+     */
+    public boolean removeChangeListener(ContainerChangeListener listener) {
+        return ContainerChangeSupport.removeListener(dbRowInstanceWrapper.adapteeContainingInstance(), listener, propertyDefinition);
+    }
 }
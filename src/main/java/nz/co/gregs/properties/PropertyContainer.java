@@ -15,6 +15,7 @@ import java.util.List;
 public class PropertyContainer {
 	private transient PropertyContainerWrapper wrapper;
 	private final PropertyContainerWrapperFactory wrapperFactory;
+	transient ContainerChangeSupport changeSupport;
 
   /**
    * Standard Constructor.
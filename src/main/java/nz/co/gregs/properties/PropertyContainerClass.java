@@ -1,14 +1,15 @@
 package nz.co.gregs.properties;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import nz.co.gregs.properties.JavaPropertyFinder.PropertyType;
 import nz.co.gregs.properties.JavaPropertyFinder.Visibility;
 import nz.co.gregs.properties.adapt.PropertyTypeHandler;
+import nz.co.gregs.properties.query.PropertyComparator;
+import nz.co.gregs.properties.query.PropertyEquivalence;
+import nz.co.gregs.properties.query.SortKey;
 
 import nz.co.gregs.properties.exceptions.*;
 
@@ -45,7 +46,12 @@ public class PropertyContainerClass {
 	/**
 	 * Indexed by java property name.
 	 */
-	private final Map<String, PropertyDefinition> propertiesByPropertyName;
+	private final PropertyNameIndex propertiesByPropertyName;
+
+	/**
+	 * How snapshots of instances are packed, worked out on first use.
+	 */
+	private volatile PropertySnapshot.Layout snapshotLayout;
 
 	/**
 	 * Fully constructs a wrapper for the given class, including performing all
@@ -74,6 +80,22 @@ public class PropertyContainerClass {
 	 * and types etc.
 	 */
 	PropertyContainerClass(Class<? extends PropertyContainer> clazz, PropertyTypeHandler handler, boolean processIdentityOnly) {
+		// identity-only: extract only primary key properties
+		this(clazz, handler, processIdentityOnly, getJavaPropertyFinder().getPropertiesOf(clazz));
+	}
+
+	/**
+	 * Internal constructor only. Wraps the class using the supplied java
+	 * properties instead of scanning the class for them.
+	 *
+	 * <p>
+	 * Used when the properties of the class are already known, for instance
+	 * when they have been restored from a metadata snapshot.
+	 *
+	 * @param javaProperties the candidate properties of the class, in the order
+	 * they should be presented
+	 */
+	PropertyContainerClass(Class<? extends PropertyContainer> clazz, PropertyTypeHandler handler, boolean processIdentityOnly, List<JavaProperty> javaProperties) {
 		adapteeClass = clazz;
 		identityOnly = processIdentityOnly;
 
@@ -81,21 +103,18 @@ public class PropertyContainerClass {
 		// (note: skip if processing identity only, in order to avoid
 		//  all the per-property validation)
 		properties = new ArrayList<PropertyDefinition>();
-		propertiesByPropertyName = new HashMap<String, PropertyDefinition>();
-		// identity-only: extract only primary key properties
-		JavaPropertyFinder propertyFinder = getJavaPropertyFinder();
-		for (JavaProperty javaProperty : propertyFinder.getPropertiesOf(clazz)) {
+		for (JavaProperty javaProperty : javaProperties) {
 			PropertyDefinition property;
 			try {
 				property = new PropertyDefinition(this, javaProperty, handler, processIdentityOnly);
 				properties.add(property);
-				propertiesByPropertyName.put(property.javaName(), property);
 			} catch (InvalidDeclaredTypeException ex) {
 				// If it's not set up as a property just ignore it.
 			} catch (Exception ex) {
 				Logger.getLogger(PropertyContainerClass.class.getName()).log(Level.SEVERE, null, ex);
 			}
 		}
+		propertiesByPropertyName = new PropertyNameIndex(properties);
 	}
 
 	/**
@@ -239,6 +258,40 @@ public class PropertyContainerClass {
 		return propertiesByPropertyName.get(propertyName);
 	}
 
+	/**
+	 * Gets the property by its java property name, ignoring case.
+	 *
+	 * <p>
+	 * Where several property names differ only by case, the first one found
+	 * is returned.
+	 *
+	 * @param propertyName	propertyName
+	 * @return the PropertyDefinition for the named object property Null if no
+	 * such property is found.
+	 * @throws AssertionError if called when in {@code identityOnly} mode.
+	 */
+	public PropertyDefinition getPropertyDefinitionByNameIgnoreCase(CharSequence propertyName) {
+		return getPropertyNameIndex().getIgnoreCase(propertyName);
+	}
+
+	/**
+	 * Gets the index of properties by java property name.
+	 *
+	 * <p>
+	 * The index supports looking up names held in any {@code CharSequence} or
+	 * in a range of UTF-8 bytes without creating a {@code String} first, which
+	 * suits parsers resolving many column names.
+	 *
+	 * @return the immutable property name index
+	 * @throws AssertionError if called when in {@code identityOnly} mode.
+	 */
+	public PropertyNameIndex getPropertyNameIndex() {
+		if (identityOnly) {
+			throw new AssertionError("Attempt to access non-identity information of identity-only DBRow class wrapper");
+		}
+		return propertiesByPropertyName;
+	}
+
 	/**
 	 * Gets all properties annotated with {@code DBColumn}.
 	 *
@@ -250,4 +303,73 @@ public class PropertyContainerClass {
 		}
 		return properties;
 	}
+
+	/**
+	 * Gets the layout of snapshots of instances of this class, creating it on
+	 * first use.
+	 *
+	 * @return the snapshot layout
+	 */
+	PropertySnapshot.Layout getSnapshotLayout() {
+		PropertySnapshot.Layout layout = snapshotLayout;
+		if (layout == null) {
+			// racing threads create equivalent layouts, and one of them is kept
+			layout = new PropertySnapshot.Layout(getPropertyDefinitions());
+			snapshotLayout = layout;
+		}
+		return layout;
+	}
+
+	/**
+	 * Creates a comparator of instances of this class by the sort keys.
+	 *
+	 * <p>
+	 * Use the sort methods of the comparator to sort large lists and arrays:
+	 * they read each property once per element rather than once per
+	 * comparison.
+	 *
+	 * @param <T> the wrapped class
+	 * @param keys the properties of this class to sort by, in order of
+	 * precedence
+	 * @return a comparator of instances of this class
+	 * @throws IllegalArgumentException if a key's property belongs to another
+	 * class or can't be ordered
+	 */
+	public <T extends PropertyContainer> PropertyComparator<T> comparator(SortKey... keys) {
+		for (SortKey key : keys) {
+			if (!this.equals(key.getPropertyDefinition().getPropertyContainerClass())) {
+				throw new IllegalArgumentException("Property " + key.getPropertyDefinition().qualifiedJavaName() + " is not a property of " + qualifiedJavaName());
+			}
+		}
+		return new PropertyComparator<>(keys);
+	}
+
+	/**
+	 * Creates hashCode, equals, and toString helpers for instances of this
+	 * class based on the values of the properties.
+	 *
+	 * @param <T> the wrapped class
+	 * @param properties the properties of this class that define equality,
+	 * or none to use all readable properties
+	 * @return the helpers for instances of this class
+	 * @throws IllegalArgumentException if a property belongs to another class
+	 * or is not readable
+	 */
+	public <T extends PropertyContainer> PropertyEquivalence<T> equivalence(PropertyDefinition... properties) {
+		if (properties.length == 0) {
+			List<PropertyDefinition> readable = new ArrayList<PropertyDefinition>();
+			for (PropertyDefinition property : getPropertyDefinitions()) {
+				if (property.isReadable()) {
+					readable.add(property);
+				}
+			}
+			properties = readable.toArray(new PropertyDefinition[readable.size()]);
+		}
+		for (PropertyDefinition property : properties) {
+			if (!this.equals(property.getPropertyContainerClass())) {
+				throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " is not a property of " + qualifiedJavaName());
+			}
+		}
+		return new PropertyEquivalence<>(adapteeClass.getSimpleName(), properties);
+	}
 }
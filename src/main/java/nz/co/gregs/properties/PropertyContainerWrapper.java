@@ -1,6 +1,7 @@
 package nz.co.gregs.properties;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 import nz.co.gregs.properties.exceptions.PropertyException;
@@ -194,4 +195,73 @@ public class PropertyContainerWrapper {
   public List<PropertyDefinition> getPropertyDefinitions() {
     return containingClassWrapper.getPropertyDefinitions();
   }
+
+  /**
+   * Takes an immutable copy of the values of all readable properties of the wrapped instance.
+   *
+   * <p>
+   * Numbers, dates, and Booleans are copied into a packed array of longs rather than read into new {@code AdaptableType} instances, so snapshots are cheap
+   * enough to take before every edit.
+   *
+   * @return a snapshot of the wrapped instance
+   * @see #restore(nz.co.gregs.properties.PropertySnapshot)
+   */
+  public PropertySnapshot snapshot() {
+    return PropertySnapshot.take(containingClassWrapper, containingInstance);
+  }
+
+  /**
+   * Writes the values of a snapshot back into the writable properties of the wrapped instance.
+   *
+   * @param snapshot a snapshot of an instance of the same class
+   * @throws PropertyException if the snapshot was taken of another class
+   */
+  public void restore(PropertySnapshot snapshot) {
+    if (!containingClassWrapper.equals(snapshot.getPropertyContainerClass())) {
+      throw new PropertyException("Snapshot of " + snapshot.getPropertyContainerClass().qualifiedJavaName()
+              + " can't be restored into " + containingClassWrapper.qualifiedJavaName());
+    }
+    snapshot.restoreInto(containingInstance);
+  }
+
+  /**
+   * Finds the properties whose values differ between two snapshots of the same class.
+   *
+   * @param first a snapshot
+   * @param second a later snapshot of the same class
+   * @return the indexes, in {@link #getPropertyDefinitions()}, of the properties that changed
+   * @throws PropertyException if the snapshots were taken of different classes
+   */
+  public static BitSet diff(PropertySnapshot first, PropertySnapshot second) {
+    return PropertySnapshot.diff(first, second);
+  }
+
+  /**
+   * Adds a listener for changes to any property of the wrapped instance.
+   *
+   * <p>
+   * Changes are reported when made through {@link PropertyDefinition#setRawJavaValue(java.lang.Object, java.lang.Object) setRawJavaValue},
+   * {@link PropertyDefinition#setAdaptableType(java.lang.Object, nz.co.gregs.properties.adapt.AdaptableType) setAdaptableType}, or the {@code setValue}
+   * method of a property's {@code AdaptableType}, unless the property is type-adapted. Assigning a field directly is not reported. Use a
+   * {@link ChangeBatch} to receive one event for a group of changes.
+   *
+   * <p>
+   * An instance without listeners pays nothing for this: the setters only check a field to find that nobody is listening. Listeners should be added
+   * before the instance is shared between threads.
+   *
+   * @param listener the listener to add
+   */
+  public void addChangeListener(ContainerChangeListener listener) {
+    ContainerChangeSupport.addListener(containingClassWrapper, containingInstance, listener, null);
+  }
+
+  /**
+   * Removes a listener added with {@link #addChangeListener(nz.co.gregs.properties.ContainerChangeListener)}.
+   *
+   * @param listener the listener to remove
+   * @return true if the listener was removed
+   */
+  public boolean removeChangeListener(ContainerChangeListener listener) {
+    return ContainerChangeSupport.removeListener(containingInstance, listener, null);
+  }
 }
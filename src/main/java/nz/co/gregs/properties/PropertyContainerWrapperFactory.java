@@ -1,7 +1,9 @@
 package nz.co.gregs.properties;
 
-import java.util.HashMap;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
 import nz.co.gregs.properties.adapt.PropertyTypeHandler;
 
 /**
@@ -20,11 +22,27 @@ import nz.co.gregs.properties.adapt.PropertyTypeHandler;
 public class PropertyContainerWrapperFactory {
 
   /**
-   * Thread-safety: access to this object must be synchronized on it
+   * Thread-safety: read without locking, but only written while holding {@link #lock}
    */
-  private final Map<Class<?>, PropertyContainerClass> classWrappersByClass = new HashMap<>();
+  private final Map<Class<?>, PropertyContainerClass> classWrappersByClass = new ConcurrentHashMap<>();
+
+  /**
+   * Serialises the building of class adaptors and access to the metadata snapshot.
+   *
+   * <p>
+   * A lock rather than a monitor, so that virtual threads waiting for a class adaptor to be built don't pin their carrier threads.
+   */
+  private final ReentrantLock lock = new ReentrantLock();
   private final PropertyTypeHandler handler;
 
+  /**
+   * Optional persistent metadata, null if not used.
+   *
+   * <p>
+   * Thread-safety: access to this object must hold {@link #lock}
+   */
+  private final PropertyMetadataSnapshot metadataSnapshot;
+
   /**
    * Creates a PropertyContainerWrapperFactory using the PropertyTypeHandler provided
    *
@@ -32,6 +50,25 @@ public class PropertyContainerWrapperFactory {
    */
   public PropertyContainerWrapperFactory(PropertyTypeHandler handler) {
     this.handler = handler;
+    this.metadataSnapshot = null;
+  }
+
+  /**
+   * Creates a PropertyContainerWrapperFactory using the PropertyTypeHandler provided and a persistent metadata snapshot.
+   *
+   * <p>
+   * Class adaptors for classes recorded in the snapshot are restored by binding directly to the fields and methods found by an earlier JVM, instead of scanning
+   * the class again. Entries are checked against a hash of the class files involved and stale entries are rebuilt automatically.
+   *
+   * <p>
+   * The snapshot file is only read here, use {@link #saveMetadataSnapshot()} to write new or rebuilt entries back to it.
+   *
+   * @param handler the PropertyTypeHandler
+   * @param metadataSnapshotFile the file storing the metadata, it doesn't need to exist yet
+   */
+  public PropertyContainerWrapperFactory(PropertyTypeHandler handler, Path metadataSnapshotFile) {
+    this.handler = handler;
+    this.metadataSnapshot = new PropertyMetadataSnapshot(metadataSnapshotFile);
   }
 
   /**
@@ -42,13 +79,48 @@ public class PropertyContainerWrapperFactory {
    * @return the class adaptor
    */
   public PropertyContainerClass classWrapperFor(Class<? extends PropertyContainer> clazz) {
-    synchronized (classWrappersByClass) {
-      PropertyContainerClass wrapper = classWrappersByClass.get(clazz);
-      if (wrapper == null) {
+    PropertyContainerClass wrapper = classWrappersByClass.get(clazz);
+    if (wrapper != null) {
+      return wrapper;
+    }
+    lock.lock();
+    try {
+      wrapper = classWrappersByClass.get(clazz);
+      if (wrapper == null && metadataSnapshot != null) {
+        wrapper = metadataSnapshot.restore(clazz, handler);
+        if (wrapper == null) {
+          wrapper = new PropertyContainerClass(clazz, handler);
+          metadataSnapshot.record(wrapper, handler);
+        }
+        classWrappersByClass.put(clazz, wrapper);
+      } else if (wrapper == null) {
         wrapper = new PropertyContainerClass(clazz, handler);
         classWrappersByClass.put(clazz, wrapper);
       }
       return wrapper;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes the metadata of all class adaptors created so far to the metadata snapshot file, if they differ from what was read.
+   *
+   * <p>
+   * Does nothing if this factory was created without a snapshot file.
+   *
+   * @throws nz.co.gregs.properties.exceptions.PropertyException if the snapshot can't be written
+   */
+  public void saveMetadataSnapshot() {
+    if (metadataSnapshot != null) {
+      lock.lock();
+      try {
+        if (metadataSnapshot.isModified()) {
+          metadataSnapshot.save();
+        }
+      } finally {
+        lock.unlock();
+      }
     }
   }
 
@@ -66,8 +66,9 @@ public class PropertyDefinition {
 		this.javaProperty = javaProperty;
 
 		// handlers
-		this.typeHandler = handler;
-		typeHandler.initialiseHandler(javaProperty, processIdentityOnly);
+		// (note: handlers hold per-property state, so the supplied handler is
+		//  only used as a prototype for this property's own handler)
+		this.typeHandler = handler.newHandlerFor(javaProperty, processIdentityOnly);
 	}
 
   /**
@@ -79,6 +80,15 @@ public class PropertyDefinition {
 		return javaProperty;
 	}
 
+	/**
+	 * Returns the handler that manages the type of this property.
+	 *
+	 * @return the PropertyTypeHandler initialised for this property
+	 */
+	PropertyTypeHandler getTypeHandler() {
+		return typeHandler;
+	}
+
 	/**
 	 * Gets a string representation of the wrapped property, suitable for
 	 * debugging and logging.
@@ -206,6 +216,22 @@ public class PropertyDefinition {
 		return refType.isAssignableFrom(type());
 	}
 
+	/**
+	 * Gets the class of the literal value held by the internal AdaptableType of
+	 * this property.
+	 *
+	 * <p>
+	 * For example, a property of type {@code IntegerProperty} has the literal
+	 * type {@code Long} under the example type handler. The mapping is defined
+	 * by {@link PropertyTypeHandler#literalTypeOf(java.lang.Class)}.
+	 *
+	 * @return the class of the values returned by
+	 * {@code getAdaptableType(target).getValue()}
+	 */
+	public Class<?> literalType() {
+		return typeHandler.literalTypeOf(type());
+	}
+
 	/**
 	 * Indicates whether the value of the property can be retrieved. Bean
 	 * properties which are missing a 'getter' can not be read, but may be able
@@ -249,7 +275,8 @@ public class PropertyDefinition {
 	 * read.
 	 *
 	 * @param target object instance containing this property
-	 * @return the QueryableDatatype used internally.
+	 * @return the QueryableDatatype used internally, or null if the field of a
+	 * property that isn't type-adapted is null.
 	 * @throws IllegalStateException if not readable (you should have called
 	 * isReadable() first)
 	 * @throws DBThrownByEndUserCodeException if any user code throws an
@@ -257,7 +284,35 @@ public class PropertyDefinition {
 	 */
 	public AdaptableType getAdaptableType(Object target) {
 		AdaptableType adaptable = typeHandler.getJavaPropertyAsAdaptableType(target);
-		new InternalAdaptableTypeProxy(adaptable).setPropertyWrapper(this);
+		if (adaptable != null) {
+			InternalAdaptableTypeProxy.setPropertyWrapper(adaptable, this);
+		}
+		return adaptable;
+	}
+
+	/**
+	 * Gets the DBvolution-centric value of the property like
+	 * {@link #getAdaptableType(java.lang.Object)}, but without using the
+	 * AdaptableType cached in the type handler, which is shared by every
+	 * instance of the class, so that many instances can be read at once.
+	 *
+	 * <p>
+	 * The value of a type-adapted property is converted into a new
+	 * AdaptableType, so changing it doesn't change the target.
+	 *
+	 * @param target object instance containing this property
+	 * @return the QueryableDatatype used internally, or null if the field of a
+	 * property that isn't type-adapted is null.
+	 * @throws IllegalStateException if not readable (you should have called
+	 * isReadable() first)
+	 * @throws DBThrownByEndUserCodeException if any user code throws an
+	 * exception
+	 */
+	public AdaptableType readAdaptableType(Object target) {
+		AdaptableType adaptable = typeHandler.readJavaPropertyAsAdaptableType(target);
+		if (adaptable != null && adaptable.getPropertyDefinition() != this) {
+			InternalAdaptableTypeProxy.setPropertyWrapper(adaptable, this);
+		}
 		return adaptable;
 	}
 
@@ -281,7 +336,32 @@ public class PropertyDefinition {
 	 */
 	public void setAdaptableType(Object target, AdaptableType value) {
 		new InternalAdaptableTypeProxy(value).setPropertyWrapper(this);
-		typeHandler.setJavaPropertyAsAdaptableType(target, value);
+		ContainerChangeSupport changes = ContainerChangeSupport.of(target);
+		if (changes == null) {
+			typeHandler.setJavaPropertyAsAdaptableType(target, value);
+		} else {
+			changes.write(this, () -> typeHandler.setJavaPropertyAsAdaptableType(target, value));
+		}
+	}
+
+	/**
+	 * Sets the DBvolution-centric value of the property like
+	 * {@link #setAdaptableType(java.lang.Object, nz.co.gregs.properties.adapt.AdaptableType)},
+	 * but without caching the value in the type handler, which is shared by
+	 * every instance of the class, so that many instances can be written at
+	 * once.
+	 *
+	 * @param target object instance containing this property
+	 * @param value value
+	 */
+	void writeAdaptableType(Object target, AdaptableType value) {
+		new InternalAdaptableTypeProxy(value).setPropertyWrapper(this);
+		ContainerChangeSupport changes = ContainerChangeSupport.of(target);
+		if (changes == null) {
+			typeHandler.writeJavaPropertyAsAdaptableType(target, value);
+		} else {
+			changes.write(this, () -> typeHandler.writeJavaPropertyAsAdaptableType(target, value));
+		}
 	}
 
 	/**
@@ -329,7 +409,12 @@ public class PropertyDefinition {
 	 * exception
 	 */
 	public void setRawJavaValue(Object target, Object value) {
-		javaProperty.set(target, value);
+		ContainerChangeSupport changes = ContainerChangeSupport.of(target);
+		if (changes == null) {
+			javaProperty.set(target, value);
+		} else {
+			changes.write(this, () -> javaProperty.set(target, value));
+		}
 	}
 
 	/**
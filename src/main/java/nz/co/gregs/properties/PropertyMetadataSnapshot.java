@@ -0,0 +1,542 @@
+package nz.co.gregs.properties;
+
+import java.beans.IntrospectionException;
+import java.beans.PropertyDescriptor;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.PropertyTypeHandler;
+import nz.co.gregs.properties.exceptions.PropertyException;
+import nz.co.gregs.properties.exceptions.UnsupportedType;
+
+/**
+ * Persistent store of the resolved property metadata of property container
+ * classes.
+ *
+ * <p>
+ * Finding the properties of a class requires scanning its fields,
+ * introspecting its bean-properties, and resolving the generics of every type
+ * adaptor used. This snapshot records the outcome of that work so that a later
+ * JVM can bind straight to the fields and methods found previously.
+ *
+ * <p>
+ * Entries are keyed by class name and a hash of the class files involved: the
+ * class, its superclasses, any type adaptors its properties use, the type
+ * handler and its superclasses, and the library classes that find properties.
+ * An entry whose hash no longer matches, or that can no longer be bound, is
+ * stale and is ignored so that the class is scanned again. Upgrading the
+ * library or changing the handler therefore rebuilds every entry.
+ *
+ * <p>
+ * Each class file is read and digested once per JVM, and the digest of the
+ * handler and discovery classes once per snapshot and handler class, so
+ * checking an entry only combines a few cached digests.
+ *
+ * <p>
+ * Instances of this class are not thread-safe, callers must synchronize
+ * access.
+ *
+ * @author Gregory Graham
+ */
+final class PropertyMetadataSnapshot {
+
+	private static final Logger LOG = Logger.getLogger(PropertyMetadataSnapshot.class.getName());
+
+	private static final int MAGIC = 0x50524f50; // "PROP"
+	/**
+	 * The format and discovery rules of the snapshot.
+	 *
+	 * <p>
+	 * Bump this whenever the properties found for a class change, even if the
+	 * file format doesn't: 2 finds inherited non-public fields and record
+	 * components.
+	 */
+	private static final int VERSION = 2;
+
+	/**
+	 * The library classes whose rules decide which properties a class has.
+	 */
+	private static final Class<?>[] DISCOVERY_CLASSES = {
+		JavaPropertyFinder.class, PropertyContainerClass.class, PropertyDefinition.class, RecordClass.class
+	};
+
+	private static final byte FIELD = 0;
+	private static final byte BEAN_PROPERTY = 1;
+
+	/**
+	 * Marks a class file that can't be read, as ClassValue can't hold null.
+	 */
+	private static final byte[] UNREADABLE = new byte[0];
+
+	/**
+	 * The digest of the class file of each class.
+	 */
+	private static final ClassValue<byte[]> CLASS_FILE_DIGESTS = new ClassValue<byte[]>() {
+		@Override
+		protected byte[] computeValue(Class<?> type) {
+			MessageDigest digest = newDigest();
+			return digestClassFile(digest, type.getName(), type.getClassLoader()) ? digest.digest() : UNREADABLE;
+		}
+	};
+
+	/**
+	 * The digest of the class files of each class and its superclasses.
+	 */
+	private static final ClassValue<byte[]> HIERARCHY_DIGESTS = new ClassValue<byte[]>() {
+		@Override
+		protected byte[] computeValue(Class<?> type) {
+			MessageDigest digest = newDigest();
+			for (Class<?> current = type; current != null && !current.equals(Object.class); current = current.getSuperclass()) {
+				byte[] classDigest = CLASS_FILE_DIGESTS.get(current);
+				if (classDigest == UNREADABLE) {
+					return UNREADABLE;
+				}
+				digest.update(classDigest);
+			}
+			return digest.digest();
+		}
+	};
+
+	private final Path file;
+	private final Map<String, ClassEntry> entries = new HashMap<>();
+	private final Map<Class<?>, byte[]> handlerDigests = new HashMap<>();
+	private boolean modified = false;
+
+	/**
+	 * Creates a snapshot backed by the supplied file, loading any entries
+	 * already stored in it.
+	 *
+	 * <p>
+	 * A missing or unreadable file results in an empty snapshot.
+	 *
+	 * @param file the snapshot file
+	 */
+	PropertyMetadataSnapshot(Path file) {
+		this.file = file;
+		if (Files.isReadable(file)) {
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+				read(in);
+			} catch (IOException | RuntimeException ex) {
+				LOG.log(Level.WARNING, "Ignoring unreadable property metadata snapshot " + file, ex);
+				entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Indicates whether entries have been added or removed since the snapshot
+	 * was loaded or last saved.
+	 *
+	 * @return true if the snapshot needs saving
+	 */
+	boolean isModified() {
+		return modified;
+	}
+
+	/**
+	 * Restores the class wrapper for the class from the snapshot.
+	 *
+	 * <p>
+	 * Stale entries are discarded and null returned, so that the caller scans
+	 * the class as normal.
+	 *
+	 * @param clazz the class to wrap
+	 * @param handler the handler used to create the property definitions
+	 * @return the restored class wrapper, or null if there is no usable entry
+	 */
+	PropertyContainerClass restore(Class<? extends PropertyContainer> clazz, PropertyTypeHandler handler) {
+		ClassEntry entry = entries.get(clazz.getName());
+		if (entry == null) {
+			return null;
+		}
+		try {
+			byte[] hash = hashOf(clazz, entry.adaptorClassNames(), handler.getClass(), clazz.getClassLoader());
+			if (hash != null && Arrays.equals(hash, entry.hash)) {
+				List<JavaProperty> javaProperties = new ArrayList<>(entry.properties.size());
+				for (PropertyEntry property : entry.properties) {
+					javaProperties.add(property.bind(clazz));
+				}
+				PropertyContainerClass wrapper = new PropertyContainerClass(clazz, handler, false, javaProperties);
+				if (entry.matches(wrapper)) {
+					return wrapper;
+				}
+			}
+		} catch (ReflectiveOperationException | IntrospectionException | RuntimeException ex) {
+			LOG.log(Level.FINE, "Stale property metadata for " + clazz.getName(), ex);
+		}
+		entries.remove(clazz.getName());
+		modified = true;
+		return null;
+	}
+
+	/**
+	 * Records the metadata of the class wrapper.
+	 *
+	 * <p>
+	 * Classes whose class files can't be located are not recorded, as there is
+	 * no way to detect when their entries become stale.
+	 *
+	 * @param wrapper the fully scanned class wrapper
+	 * @param handler the handler used to create the property definitions
+	 */
+	void record(PropertyContainerClass wrapper, PropertyTypeHandler handler) {
+		Class<? extends PropertyContainer> clazz = wrapper.adapteeClass();
+		List<PropertyEntry> properties = new ArrayList<>();
+		for (PropertyDefinition definition : wrapper.getPropertyDefinitions()) {
+			PropertyEntry property = PropertyEntry.of(definition);
+			if (property == null) {
+				return;
+			}
+			properties.add(property);
+		}
+		ClassEntry entry = new ClassEntry(clazz.getName(), null, properties);
+		byte[] hash = hashOf(clazz, entry.adaptorClassNames(), handler.getClass(), clazz.getClassLoader());
+		if (hash != null) {
+			entries.put(clazz.getName(), new ClassEntry(clazz.getName(), hash, properties));
+			modified = true;
+		}
+	}
+
+	/**
+	 * Writes the snapshot to its file.
+	 *
+	 * <p>
+	 * The file is replaced atomically where the file system supports it, so
+	 * other JVMs never read a partially written snapshot.
+	 *
+	 * @throws PropertyException if the file can't be written
+	 */
+	void save() {
+		try {
+			Path parent = file.toAbsolutePath().getParent();
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+			Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+				write(out);
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (IOException notAtomic) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			modified = false;
+		} catch (IOException ex) {
+			throw new PropertyException("Unable to save property metadata snapshot to " + file + ": " + ex.getMessage(), ex);
+		}
+	}
+
+	private void read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readUnsignedShort() != VERSION) {
+			// not ours, or an older format: start again
+			return;
+		}
+		int classCount = in.readInt();
+		for (int i = 0; i < classCount; i++) {
+			String className = in.readUTF();
+			byte[] hash = new byte[in.readUnsignedByte()];
+			in.readFully(hash);
+			int propertyCount = in.readInt();
+			List<PropertyEntry> properties = new ArrayList<>(propertyCount);
+			for (int j = 0; j < propertyCount; j++) {
+				properties.add(PropertyEntry.read(in));
+			}
+			entries.put(className, new ClassEntry(className, hash, properties));
+		}
+	}
+
+	private void write(DataOutputStream out) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeShort(VERSION);
+		out.writeInt(entries.size());
+		for (ClassEntry entry : entries.values()) {
+			out.writeUTF(entry.className);
+			out.writeByte(entry.hash.length);
+			out.write(entry.hash);
+			out.writeInt(entry.properties.size());
+			for (PropertyEntry property : entry.properties) {
+				property.write(out);
+			}
+		}
+	}
+
+	/**
+	 * Hashes the class files of the class, its superclasses, the named type
+	 * adaptors, the handler and its superclasses, and the library's discovery
+	 * classes.
+	 *
+	 * @return the hash, or null if any class file can't be read
+	 */
+	private byte[] hashOf(Class<?> clazz, Set<String> adaptorClassNames, Class<?> handlerClass, ClassLoader loader) {
+		byte[] classDigest = HIERARCHY_DIGESTS.get(clazz);
+		byte[] handlerDigest = handlerDigests.computeIfAbsent(handlerClass, PropertyMetadataSnapshot::handlerDigestOf);
+		if (classDigest == UNREADABLE || handlerDigest == UNREADABLE) {
+			return null;
+		}
+		MessageDigest digest = newDigest();
+		digest.update(classDigest);
+		digest.update(handlerDigest);
+		for (String adaptorClassName : adaptorClassNames) {
+			byte[] adaptorDigest;
+			try {
+				adaptorDigest = CLASS_FILE_DIGESTS.get(classForName(adaptorClassName, loader));
+			} catch (ClassNotFoundException | LinkageError ex) {
+				return null;
+			}
+			if (adaptorDigest == UNREADABLE) {
+				return null;
+			}
+			digest.update(adaptorDigest);
+		}
+		return digest.digest();
+	}
+
+	/**
+	 * Digests the class files of the handler, its superclasses, and the
+	 * library's discovery classes.
+	 */
+	private static byte[] handlerDigestOf(Class<?> handlerClass) {
+		byte[] hierarchyDigest = HIERARCHY_DIGESTS.get(handlerClass);
+		if (hierarchyDigest == UNREADABLE) {
+			return UNREADABLE;
+		}
+		MessageDigest digest = newDigest();
+		digest.update(hierarchyDigest);
+		for (Class<?> discoveryClass : DISCOVERY_CLASSES) {
+			byte[] classDigest = CLASS_FILE_DIGESTS.get(discoveryClass);
+			if (classDigest == UNREADABLE) {
+				return UNREADABLE;
+			}
+			digest.update(classDigest);
+		}
+		return digest.digest();
+	}
+
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException ex) {
+			// SHA-256 is required of every JVM
+			throw new PropertyException("Unable to hash class files: " + ex.getMessage(), ex);
+		}
+	}
+
+	private static boolean digestClassFile(MessageDigest digest, String className, ClassLoader loader) {
+		String resource = className.replace('.', '/') + ".class";
+		try (InputStream in = (loader == null) ? ClassLoader.getSystemResourceAsStream(resource) : loader.getResourceAsStream(resource)) {
+			if (in == null) {
+				return false;
+			}
+			digest.update(className.getBytes(StandardCharsets.UTF_8));
+			digest.update(in.readAllBytes());
+			return true;
+		} catch (IOException ex) {
+			return false;
+		}
+	}
+
+	private static Class<?> classForName(String name, ClassLoader loader) throws ClassNotFoundException {
+		switch (name) {
+			case "boolean":
+				return boolean.class;
+			case "byte":
+				return byte.class;
+			case "char":
+				return char.class;
+			case "short":
+				return short.class;
+			case "int":
+				return int.class;
+			case "long":
+				return long.class;
+			case "float":
+				return float.class;
+			case "double":
+				return double.class;
+			default:
+				return Class.forName(name, false, loader);
+		}
+	}
+
+	/**
+	 * The stored metadata of a single class.
+	 */
+	private static class ClassEntry {
+
+		private final String className;
+		private final byte[] hash;
+		private final List<PropertyEntry> properties;
+
+		ClassEntry(String className, byte[] hash, List<PropertyEntry> properties) {
+			this.className = className;
+			this.hash = hash;
+			this.properties = properties;
+		}
+
+		Set<String> adaptorClassNames() {
+			Set<String> names = new LinkedHashSet<>();
+			for (PropertyEntry property : properties) {
+				if (!property.adaptorClass.isEmpty()) {
+					names.add(property.adaptorClass);
+				}
+			}
+			return names;
+		}
+
+		/**
+		 * Checks that the restored wrapper resolved to the same properties and
+		 * types as when the entry was recorded.
+		 */
+		boolean matches(PropertyContainerClass wrapper) {
+			List<PropertyDefinition> definitions = wrapper.getPropertyDefinitions();
+			if (definitions.size() != properties.size()) {
+				return false;
+			}
+			for (int i = 0; i < definitions.size(); i++) {
+				PropertyDefinition definition = definitions.get(i);
+				PropertyEntry property = properties.get(i);
+				if (!definition.javaName().equals(property.name) || !definition.type().getName().equals(property.adaptableType)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * The stored metadata of a single property.
+	 *
+	 * <p>
+	 * Unused strings are stored as the empty string.
+	 */
+	private static class PropertyEntry {
+
+		private final byte kind;
+		private final String name;
+		private final String declaringClass;
+		private final String getterName;
+		private final String setterName;
+		private final String setterType;
+		private final String adaptableType;
+		private final String adaptorClass;
+		private final String adaptorExternalType;
+		private final String adaptorInternalType;
+
+		PropertyEntry(byte kind, String name, String declaringClass, String getterName, String setterName, String setterType,
+				String adaptableType, String adaptorClass, String adaptorExternalType, String adaptorInternalType) {
+			this.kind = kind;
+			this.name = name;
+			this.declaringClass = declaringClass;
+			this.getterName = getterName;
+			this.setterName = setterName;
+			this.setterType = setterType;
+			this.adaptableType = adaptableType;
+			this.adaptorClass = adaptorClass;
+			this.adaptorExternalType = adaptorExternalType;
+			this.adaptorInternalType = adaptorInternalType;
+		}
+
+		/**
+		 * Extracts the metadata of the property definition.
+		 *
+		 * @return the entry, or null if the property can't be recorded
+		 */
+		static PropertyEntry of(PropertyDefinition definition) {
+			JavaProperty javaProperty = definition.getRawJavaProperty();
+			String adaptableType = definition.type().getName();
+			String adaptorClass = "";
+			String externalType = "";
+			String internalType = "";
+			AdaptType annotation = definition.getTypeHandler().getAnnotation();
+			if (annotation != null) {
+				adaptorClass = annotation.value().getName();
+				InterfaceInfo.ParameterBounds[] bounds = PropertyTypeHandler.typeAdaptorParameterBoundsOf(annotation.value());
+				if (bounds.length == 2) {
+					try {
+						externalType = bounds[0].upperClass().getName();
+						internalType = bounds[1].upperClass().getName();
+					} catch (UnsupportedType ex) {
+						// leave the bounds to be resolved again on restore
+						externalType = "";
+						internalType = "";
+					}
+				}
+			}
+			if (javaProperty instanceof JavaField) {
+				Field field = ((JavaField) javaProperty).getField();
+				return new PropertyEntry(FIELD, field.getName(), field.getDeclaringClass().getName(), "", "", "",
+						adaptableType, adaptorClass, externalType, internalType);
+			} else if (javaProperty instanceof JavaBeanProperty) {
+				JavaBeanProperty bean = (JavaBeanProperty) javaProperty;
+				Method getter = bean.getGetter();
+				Method setter = bean.getSetter();
+				return new PropertyEntry(BEAN_PROPERTY, bean.name(), "",
+						(getter == null) ? "" : getter.getName(),
+						(setter == null) ? "" : setter.getName(),
+						(setter == null) ? "" : setter.getParameterTypes()[0].getName(),
+						adaptableType, adaptorClass, externalType, internalType);
+			}
+			return null;
+		}
+
+		/**
+		 * Binds the entry to the actual field or methods of the class.
+		 */
+		JavaProperty bind(Class<?> clazz) throws ReflectiveOperationException, IntrospectionException {
+			ClassLoader loader = clazz.getClassLoader();
+			if (!adaptorClass.isEmpty() && !adaptorExternalType.isEmpty()) {
+				PropertyTypeHandler.registerTypeAdaptorParameterBounds(
+						classForName(adaptorClass, loader),
+						classForName(adaptorExternalType, loader),
+						classForName(adaptorInternalType, loader));
+			}
+			if (kind == FIELD) {
+				return new JavaField(classForName(declaringClass, loader).getDeclaredField(name));
+			} else {
+				Method getter = getterName.isEmpty() ? null : clazz.getMethod(getterName);
+				Method setter = setterName.isEmpty() ? null : clazz.getMethod(setterName, classForName(setterType, loader));
+				return new JavaBeanProperty(new PropertyDescriptor(name, getter, setter));
+			}
+		}
+
+		static PropertyEntry read(DataInputStream in) throws IOException {
+			return new PropertyEntry(in.readByte(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(),
+					in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF());
+		}
+
+		void write(DataOutputStream out) throws IOException {
+			out.writeByte(kind);
+			out.writeUTF(name);
+			out.writeUTF(declaringClass);
+			out.writeUTF(getterName);
+			out.writeUTF(setterName);
+			out.writeUTF(setterType);
+			out.writeUTF(adaptableType);
+			out.writeUTF(adaptorClass);
+			out.writeUTF(adaptorExternalType);
+			out.writeUTF(adaptorInternalType);
+		}
+	}
+}
@@ -0,0 +1,337 @@
+package nz.co.gregs.properties;
+
+import java.util.List;
+
+/**
+ * Immutable index of property definitions by java property name.
+ *
+ * <p>
+ * Built once by {@link PropertyContainerClass} and intended for resolving
+ * names read by parsers, so as well as {@code String} lookups it supports
+ * looking up any {@code CharSequence}, a range within one, or a range of UTF-8
+ * bytes, all without allocating. Case-insensitive variants are provided for
+ * formats whose column names don't follow the java capitalisation.
+ *
+ * <p>
+ * The index is an open-addressed hash table using the same hash as
+ * {@link String#hashCode()}, so {@code String} keys use their cached hash.
+ *
+ * <p>
+ * Where two properties share a name the later one is found, as with a
+ * {@code Map}. Where two property names differ only by case the
+ * case-insensitive lookups find the first one.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class PropertyNameIndex {
+
+	private final String[] names;
+	private final int[] hashes;
+	private final PropertyDefinition[] definitions;
+	private final String[] foldedNames;
+	private final int[] foldedHashes;
+	private final PropertyDefinition[] foldedDefinitions;
+	private final int mask;
+	private final int size;
+
+	/**
+	 * Creates an index of the property definitions.
+	 *
+	 * @param properties the definitions to index, in the order they were found
+	 */
+	PropertyNameIndex(List<PropertyDefinition> properties) {
+		int capacity = 2;
+		while (capacity < properties.size() * 2) {
+			capacity <<= 1;
+		}
+		mask = capacity - 1;
+		names = new String[capacity];
+		hashes = new int[capacity];
+		definitions = new PropertyDefinition[capacity];
+		foldedNames = new String[capacity];
+		foldedHashes = new int[capacity];
+		foldedDefinitions = new PropertyDefinition[capacity];
+		int count = 0;
+		for (PropertyDefinition property : properties) {
+			String name = property.javaName();
+			int hash = name.hashCode();
+			int slot = slotFor(names, hashes, hash, name, false);
+			if (names[slot] == null) {
+				count++;
+			}
+			names[slot] = name;
+			hashes[slot] = hash;
+			definitions[slot] = property;
+
+			int foldedHash = foldedHashOf(name, 0, name.length());
+			int foldedSlot = slotFor(foldedNames, foldedHashes, foldedHash, name, true);
+			if (foldedNames[foldedSlot] == null) {
+				foldedNames[foldedSlot] = name;
+				foldedHashes[foldedSlot] = foldedHash;
+				foldedDefinitions[foldedSlot] = property;
+			}
+		}
+		size = count;
+	}
+
+	/**
+	 * Finds the slot holding the name, or the empty slot where it belongs.
+	 */
+	private int slotFor(String[] keys, int[] keyHashes, int hash, CharSequence name, boolean ignoreCase) {
+		int slot = spread(hash) & mask;
+		while (keys[slot] != null) {
+			if (keyHashes[slot] == hash && regionMatches(keys[slot], name, 0, name.length(), ignoreCase)) {
+				return slot;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	/**
+	 * Gets the number of property names in the index.
+	 *
+	 * @return the number of distinct property names
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the property with exactly the given name.
+	 *
+	 * @param name the java property name
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition get(String name) {
+		return find(name.hashCode(), name, 0, name.length());
+	}
+
+	/**
+	 * Gets the property with exactly the given name.
+	 *
+	 * @param name the java property name
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition get(CharSequence name) {
+		return get(name, 0, name.length());
+	}
+
+	/**
+	 * Gets the property whose name is exactly the given range of characters.
+	 *
+	 * @param chars the characters containing the name
+	 * @param start the index of the first character of the name
+	 * @param end the index after the last character of the name
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition get(CharSequence chars, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + chars.charAt(i);
+		}
+		return find(hash, chars, start, end);
+	}
+
+	/**
+	 * Gets the property whose name is exactly the given range of UTF-8 encoded
+	 * bytes.
+	 *
+	 * @param utf8 the bytes containing the name
+	 * @param offset the index of the first byte of the name
+	 * @param length the number of bytes in the name
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition get(byte[] utf8, int offset, int length) {
+		int hash = utf8HashOf(utf8, offset, offset + length, false);
+		int slot = spread(hash) & mask;
+		while (names[slot] != null) {
+			if (hashes[slot] == hash && utf8Matches(names[slot], utf8, offset, offset + length, false)) {
+				return definitions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the property with the given name, ignoring case.
+	 *
+	 * @param name the java property name in any case
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition getIgnoreCase(CharSequence name) {
+		return getIgnoreCase(name, 0, name.length());
+	}
+
+	/**
+	 * Gets the property whose name is the given range of characters, ignoring
+	 * case.
+	 *
+	 * @param chars the characters containing the name
+	 * @param start the index of the first character of the name
+	 * @param end the index after the last character of the name
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition getIgnoreCase(CharSequence chars, int start, int end) {
+		int hash = foldedHashOf(chars, start, end);
+		int slot = spread(hash) & mask;
+		while (foldedNames[slot] != null) {
+			if (foldedHashes[slot] == hash && regionMatches(foldedNames[slot], chars, start, end, true)) {
+				return foldedDefinitions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	/**
+	 * Gets the property whose name is the given range of UTF-8 encoded bytes,
+	 * ignoring case.
+	 *
+	 * @param utf8 the bytes containing the name
+	 * @param offset the index of the first byte of the name
+	 * @param length the number of bytes in the name
+	 * @return the property definition, or null if there is no such property
+	 */
+	public PropertyDefinition getIgnoreCase(byte[] utf8, int offset, int length) {
+		int hash = utf8HashOf(utf8, offset, offset + length, true);
+		int slot = spread(hash) & mask;
+		while (foldedNames[slot] != null) {
+			if (foldedHashes[slot] == hash && utf8Matches(foldedNames[slot], utf8, offset, offset + length, true)) {
+				return foldedDefinitions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	private PropertyDefinition find(int hash, CharSequence chars, int start, int end) {
+		int slot = spread(hash) & mask;
+		while (names[slot] != null) {
+			if (hashes[slot] == hash && regionMatches(names[slot], chars, start, end, false)) {
+				return definitions[slot];
+			}
+			slot = (slot + 1) & mask;
+		}
+		return null;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Folds the character the same way as
+	 * {@link String#equalsIgnoreCase(java.lang.String)}.
+	 */
+	private static char fold(char c) {
+		return Character.toLowerCase(Character.toUpperCase(c));
+	}
+
+	private static int foldedHashOf(CharSequence chars, int start, int end) {
+		int hash = 0;
+		for (int i = start; i < end; i++) {
+			hash = 31 * hash + fold(chars.charAt(i));
+		}
+		return hash;
+	}
+
+	private static boolean regionMatches(String name, CharSequence chars, int start, int end, boolean ignoreCase) {
+		if (name.length() != end - start) {
+			return false;
+		}
+		for (int i = 0; i < name.length(); i++) {
+			char c1 = name.charAt(i);
+			char c2 = chars.charAt(start + i);
+			if (c1 != c2 && (!ignoreCase || fold(c1) != fold(c2))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Hashes the UTF-16 characters encoded by the UTF-8 bytes.
+	 */
+	private static int utf8HashOf(byte[] utf8, int start, int end, boolean ignoreCase) {
+		int hash = 0;
+		int i = start;
+		while (i < end) {
+			int codePoint;
+			int b = utf8[i] & 0xff;
+			if (b < 0x80) {
+				codePoint = b;
+				i++;
+			} else if (b < 0xe0 && i + 1 < end) {
+				codePoint = ((b & 0x1f) << 6) | (utf8[i + 1] & 0x3f);
+				i += 2;
+			} else if (b < 0xf0 && i + 2 < end) {
+				codePoint = ((b & 0x0f) << 12) | ((utf8[i + 1] & 0x3f) << 6) | (utf8[i + 2] & 0x3f);
+				i += 3;
+			} else if (i + 3 < end) {
+				codePoint = ((b & 0x07) << 18) | ((utf8[i + 1] & 0x3f) << 12) | ((utf8[i + 2] & 0x3f) << 6) | (utf8[i + 3] & 0x3f);
+				i += 4;
+			} else {
+				// truncated sequence: can't match any name
+				return hash * 31 + 0xfffd;
+			}
+			if (Character.isBmpCodePoint(codePoint)) {
+				char c = (char) codePoint;
+				hash = 31 * hash + (ignoreCase ? fold(c) : c);
+			} else {
+				hash = 31 * hash + Character.highSurrogate(codePoint);
+				hash = 31 * hash + Character.lowSurrogate(codePoint);
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * Compares the name to the UTF-16 characters encoded by the UTF-8 bytes.
+	 */
+	private static boolean utf8Matches(String name, byte[] utf8, int start, int end, boolean ignoreCase) {
+		int n = 0;
+		int i = start;
+		while (i < end) {
+			int codePoint;
+			int b = utf8[i] & 0xff;
+			if (b < 0x80) {
+				codePoint = b;
+				i++;
+			} else if (b < 0xe0 && i + 1 < end) {
+				codePoint = ((b & 0x1f) << 6) | (utf8[i + 1] & 0x3f);
+				i += 2;
+			} else if (b < 0xf0 && i + 2 < end) {
+				codePoint = ((b & 0x0f) << 12) | ((utf8[i + 1] & 0x3f) << 6) | (utf8[i + 2] & 0x3f);
+				i += 3;
+			} else if (i + 3 < end) {
+				codePoint = ((b & 0x07) << 18) | ((utf8[i + 1] & 0x3f) << 12) | ((utf8[i + 2] & 0x3f) << 6) | (utf8[i + 3] & 0x3f);
+				i += 4;
+			} else {
+				return false;
+			}
+			if (Character.isBmpCodePoint(codePoint)) {
+				if (n >= name.length()) {
+					return false;
+				}
+				char c1 = name.charAt(n++);
+				char c2 = (char) codePoint;
+				if (c1 != c2 && (!ignoreCase || fold(c1) != fold(c2))) {
+					return false;
+				}
+			} else {
+				if (n + 1 >= name.length()
+						|| name.charAt(n) != Character.highSurrogate(codePoint)
+						|| name.charAt(n + 1) != Character.lowSurrogate(codePoint)) {
+					return false;
+				}
+				n += 2;
+			}
+		}
+		return n == name.length();
+	}
+}
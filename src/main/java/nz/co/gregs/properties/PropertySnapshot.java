@@ -0,0 +1,289 @@
+package nz.co.gregs.properties;
+
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Objects;
+import nz.co.gregs.properties.adapt.AdaptableType;
+import nz.co.gregs.properties.adapt.Instantiator;
+import nz.co.gregs.properties.adapt.InternalAdaptableTypeProxy;
+import nz.co.gregs.properties.exceptions.PropertyException;
+
+/**
+ * The values of the properties of a container at one moment.
+ *
+ * <p>
+ * Snapshots are taken with {@link PropertyContainerWrapper#snapshot()},
+ * written back with {@link PropertyContainerWrapper#restore(PropertySnapshot)},
+ * and compared with
+ * {@link PropertyContainerWrapper#diff(PropertySnapshot, PropertySnapshot)}.
+ * Numbers, dates, and Booleans are unboxed into a packed array of longs and
+ * all other values are kept in an array of references, so a snapshot is
+ * three small arrays however many properties the class has. Values are
+ * indexed in the order of
+ * {@link PropertyContainerClass#getPropertyDefinitions()}, and properties
+ * that aren't readable are always null.
+ *
+ * <p>
+ * Snapshots are immutable, but values other than numbers, dates, and
+ * Booleans are held by reference, so a mutable value changed after the
+ * snapshot was taken changes in the snapshot too.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class PropertySnapshot {
+
+	private final PropertyContainerClass classWrapper;
+	private final Layout layout;
+	private final long[] primitives;
+	private final Object[] references;
+	private final BitSet nulls;
+
+	private PropertySnapshot(PropertyContainerClass classWrapper, Layout layout, long[] primitives, Object[] references, BitSet nulls) {
+		this.classWrapper = classWrapper;
+		this.layout = layout;
+		this.primitives = primitives;
+		this.references = references;
+		this.nulls = nulls;
+	}
+
+	/**
+	 * Reads the values of all readable properties of the container.
+	 */
+	static PropertySnapshot take(PropertyContainerClass classWrapper, PropertyContainer target) {
+		Layout layout = classWrapper.getSnapshotLayout();
+		long[] primitives = new long[layout.primitiveCount];
+		Object[] references = new Object[layout.referenceCount];
+		BitSet nulls = new BitSet(layout.definitions.length);
+		for (int i = 0; i < layout.definitions.length; i++) {
+			PropertyDefinition definition = layout.definitions[i];
+			Object value = null;
+			if (definition.isReadable()) {
+				AdaptableType<?> adaptable = definition.readAdaptableType(target);
+				value = adaptable == null ? null : adaptable.getValue();
+			}
+			if (value == null) {
+				nulls.set(i);
+			} else if (layout.kinds[i] == Layout.REFERENCE) {
+				references[layout.slots[i]] = value;
+			} else {
+				primitives[layout.slots[i]] = Layout.pack(layout.kinds[i], value);
+			}
+		}
+		return new PropertySnapshot(classWrapper, layout, primitives, references, nulls);
+	}
+
+	/**
+	 * Writes the values of all writable properties into the container.
+	 */
+	void restoreInto(PropertyContainer target) {
+		for (int i = 0; i < layout.definitions.length; i++) {
+			PropertyDefinition definition = layout.definitions[i];
+			if (!definition.isWritable() || !definition.isReadable()) {
+				continue;
+			}
+			write(definition, target, getValue(i));
+		}
+	}
+
+	/**
+	 * Writes a literal value into a readable and writable property of the
+	 * container, creating its AdaptableType if the container doesn't have one.
+	 *
+	 * <p>
+	 * Safe to call for many containers of the same class at once: type-adapted
+	 * values are converted through a new AdaptableType rather than the one
+	 * cached by the property's type handler.
+	 */
+	static void write(PropertyDefinition definition, PropertyContainer target, Object value) {
+		if (definition.isTypeAdapted()) {
+			AdaptableType<?> adaptable = Instantiator.of(definition.type()).newInstance();
+			new InternalAdaptableTypeProxy(adaptable).setValue(value);
+			definition.writeAdaptableType(target, adaptable);
+			return;
+		}
+		AdaptableType<?> adaptable = definition.getAdaptableType(target);
+		boolean created = adaptable == null;
+		if (created) {
+			if (value == null) {
+				return;
+			}
+			adaptable = Instantiator.of(definition.type()).newInstance();
+		}
+		new InternalAdaptableTypeProxy(adaptable).setValue(value);
+		if (created) {
+			definition.setAdaptableType(target, adaptable);
+		}
+	}
+
+	/**
+	 * Finds the properties whose values differ between the snapshots.
+	 */
+	static BitSet diff(PropertySnapshot first, PropertySnapshot second) {
+		if (!first.classWrapper.equals(second.classWrapper)) {
+			throw new PropertyException("Snapshots of " + first.classWrapper.qualifiedJavaName()
+					+ " and " + second.classWrapper.qualifiedJavaName() + " can't be compared");
+		}
+		Layout layout = first.layout;
+		BitSet changed = (BitSet) first.nulls.clone();
+		changed.xor(second.nulls);
+		for (int i = 0; i < layout.definitions.length; i++) {
+			if (changed.get(i) || first.nulls.get(i)) {
+				continue;
+			}
+			int slot = layout.slots[i];
+			boolean equal = layout.kinds[i] == Layout.REFERENCE
+					? Objects.equals(first.references[slot], second.references[slot])
+					: first.primitives[slot] == second.primitives[slot];
+			if (!equal) {
+				changed.set(i);
+			}
+		}
+		return changed;
+	}
+
+	/**
+	 * Gets the class of the container the snapshot was taken of.
+	 *
+	 * @return the class wrapper
+	 */
+	public PropertyContainerClass getPropertyContainerClass() {
+		return classWrapper;
+	}
+
+	/**
+	 * Gets the number of properties in the snapshot.
+	 *
+	 * @return the number of property definitions of the class
+	 */
+	public int size() {
+		return layout.definitions.length;
+	}
+
+	/**
+	 * Tests whether the value of a property was null.
+	 *
+	 * @param index the index of the property in
+	 * {@link PropertyContainerClass#getPropertyDefinitions()}
+	 * @return true if the value was null
+	 */
+	public boolean isNull(int index) {
+		return nulls.get(index);
+	}
+
+	/**
+	 * Gets the value of a property, boxed as its literal type.
+	 *
+	 * @param index the index of the property in
+	 * {@link PropertyContainerClass#getPropertyDefinitions()}
+	 * @return the value, which may be null; dates are new instances
+	 */
+	public Object getValue(int index) {
+		if (nulls.get(index)) {
+			return null;
+		}
+		int kind = layout.kinds[index];
+		if (kind == Layout.REFERENCE) {
+			return references[layout.slots[index]];
+		}
+		return Layout.unpack(kind, primitives[layout.slots[index]]);
+	}
+
+	/**
+	 * How the values of the properties of a class are packed into a snapshot.
+	 *
+	 * <p>
+	 * Worked out once per class and cached by the class wrapper.
+	 */
+	static final class Layout {
+
+		static final int REFERENCE = 0;
+		static final int LONG = 1;
+		static final int INTEGER = 2;
+		static final int SHORT = 3;
+		static final int BYTE = 4;
+		static final int DOUBLE = 5;
+		static final int FLOAT = 6;
+		static final int DATE = 7;
+		static final int BOOLEAN = 8;
+
+		final PropertyDefinition[] definitions;
+		final int[] kinds;
+		final int[] slots;
+		final int primitiveCount;
+		final int referenceCount;
+
+		Layout(List<PropertyDefinition> properties) {
+			definitions = properties.toArray(new PropertyDefinition[properties.size()]);
+			kinds = new int[definitions.length];
+			slots = new int[definitions.length];
+			int primitive = 0;
+			int reference = 0;
+			for (int i = 0; i < definitions.length; i++) {
+				kinds[i] = kindOf(definitions[i].literalType());
+				slots[i] = kinds[i] == REFERENCE ? reference++ : primitive++;
+			}
+			primitiveCount = primitive;
+			referenceCount = reference;
+		}
+
+		private static int kindOf(Class<?> type) {
+			if (type == Long.class) {
+				return LONG;
+			} else if (type == Integer.class) {
+				return INTEGER;
+			} else if (type == Short.class) {
+				return SHORT;
+			} else if (type == Byte.class) {
+				return BYTE;
+			} else if (type == Double.class) {
+				return DOUBLE;
+			} else if (type == Float.class) {
+				return FLOAT;
+			} else if (type == Date.class) {
+				return DATE;
+			} else if (type == Boolean.class) {
+				return BOOLEAN;
+			}
+			return REFERENCE;
+		}
+
+		static long pack(int kind, Object value) {
+			switch (kind) {
+				case DOUBLE:
+				case FLOAT:
+					return Double.doubleToRawLongBits(((Number) value).doubleValue());
+				case DATE:
+					return ((Date) value).getTime();
+				case BOOLEAN:
+					return ((Boolean) value) ? 1 : 0;
+				default:
+					return ((Number) value).longValue();
+			}
+		}
+
+		static Object unpack(int kind, long value) {
+			switch (kind) {
+				case LONG:
+					return value;
+				case INTEGER:
+					return (int) value;
+				case SHORT:
+					return (short) value;
+				case BYTE:
+					return (byte) value;
+				case DOUBLE:
+					return Double.longBitsToDouble(value);
+				case FLOAT:
+					return (float) Double.longBitsToDouble(value);
+				case DATE:
+					return new Date(value);
+				default:
+					return value != 0;
+			}
+		}
+	}
+}
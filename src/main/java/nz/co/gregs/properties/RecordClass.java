@@ -0,0 +1,292 @@
+package nz.co.gregs.properties;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import nz.co.gregs.properties.exceptions.DBThrownByEndUserCodeException;
+import nz.co.gregs.properties.exceptions.PropertyException;
+
+/**
+ * The components of a record class, and a fast way to create its instances.
+ *
+ * <p>
+ * Records can't extend {@link PropertyContainer}, and their components can't
+ * be set one at a time, so they are described here rather than by a
+ * {@link PropertyContainerClass}. The components are read through their
+ * accessor methods, and records are created with a single call to the
+ * canonical constructor, through a method handle that takes the values of all
+ * the components as an array:
+ *
+ * <pre>
+ * RecordClass&lt;Point&gt; points = RecordClass.of(Point.class);
+ * List&lt;Point&gt; rows = points.newInstances(valueArrays);
+ * Object[] values = points.getValues(rows.get(0));
+ * </pre>
+ *
+ * <p>
+ * This library is compiled for Java 10, so records are recognised through
+ * reflection rather than by the compiler. On a Java runtime without records
+ * no class is a record and {@link #of(java.lang.Class)} always fails.
+ *
+ * <p>
+ * Each record class is examined once and the result is shared.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <R> the record class
+ */
+public final class RecordClass<R> {
+
+	private static final Method IS_RECORD = classMethod("isRecord");
+	private static final Method GET_RECORD_COMPONENTS = classMethod("getRecordComponents");
+	private static final Method GET_ACCESSOR = recordComponentMethod("getAccessor");
+
+	private static final ClassValue<RecordClass<?>> RECORD_CLASSES = new ClassValue<RecordClass<?>>() {
+		@Override
+		protected RecordClass<?> computeValue(Class<?> type) {
+			return new RecordClass<>(type);
+		}
+	};
+
+	private final Class<R> type;
+	private final List<JavaProperty> components;
+	private final Class<?>[] boxedTypes;
+	private final boolean[] primitive;
+	private final MethodHandle constructor;
+
+	private RecordClass(Class<R> type) {
+		this.type = type;
+		List<JavaProperty> list = new ArrayList<>();
+		for (Method accessor : accessorsOf(type)) {
+			list.add(new JavaRecordComponent(accessor));
+		}
+		this.components = Collections.unmodifiableList(list);
+		Class<?>[] types = new Class<?>[list.size()];
+		boxedTypes = new Class<?>[types.length];
+		primitive = new boolean[types.length];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = list.get(i).type();
+			primitive[i] = types[i].isPrimitive();
+			boxedTypes[i] = primitive[i] ? MethodType.methodType(types[i]).wrap().returnType() : types[i];
+		}
+		try {
+			Constructor<R> canonical = type.getDeclaredConstructor(types);
+			if (!canonical.trySetAccessible()) {
+				throw new PropertyException("Unable to access the canonical constructor of " + type.getName());
+			}
+			this.constructor = MethodHandles.lookup().unreflectConstructor(canonical)
+					.asType(MethodType.genericMethodType(types.length))
+					.asSpreader(Object[].class, types.length);
+		} catch (NoSuchMethodException | IllegalAccessException e) {
+			throw new PropertyException("Unable to find the canonical constructor of " + type.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the description of a record class.
+	 *
+	 * @param <R> the record class
+	 * @param type the record class
+	 * @return the shared description of the class
+	 * @throws PropertyException if the class isn't a record or its
+	 * constructor can't be used
+	 */
+	@SuppressWarnings("unchecked")
+	public static <R> RecordClass<R> of(Class<R> type) {
+		if (!isRecord(type)) {
+			throw new PropertyException(type.getName() + " is not a record class");
+		}
+		return (RecordClass<R>) RECORD_CLASSES.get(type);
+	}
+
+	/**
+	 * Tests whether the class is a record class.
+	 *
+	 * @param type the class to test
+	 * @return true if the class is a record, always false before Java 16
+	 */
+	public static boolean isRecord(Class<?> type) {
+		if (IS_RECORD == null) {
+			return false;
+		}
+		try {
+			return (Boolean) IS_RECORD.invoke(type);
+		} catch (ReflectiveOperationException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Gets the accessors of the components of a record, in the order of the
+	 * canonical constructor's parameters.
+	 */
+	static List<Method> accessorsOf(Class<?> type) {
+		try {
+			Object[] recordComponents = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+			List<Method> accessors = new ArrayList<>(recordComponents.length);
+			for (Object component : recordComponents) {
+				accessors.add((Method) GET_ACCESSOR.invoke(component));
+			}
+			return accessors;
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			throw new PropertyException("Unable to find the components of record " + type.getName() + ": " + e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Gets the record class.
+	 *
+	 * @return the class described
+	 */
+	public Class<R> adapteeClass() {
+		return type;
+	}
+
+	/**
+	 * Gets the components of the record, in the order of the canonical
+	 * constructor's parameters.
+	 *
+	 * @return the readable, but not writable, components
+	 */
+	public List<JavaProperty> getComponents() {
+		return components;
+	}
+
+	/**
+	 * Gets the position of a component in the canonical constructor.
+	 *
+	 * @param name the name of the component
+	 * @return the index of the component, or -1 if there is no such component
+	 */
+	public int indexOf(String name) {
+		for (int i = 0; i < components.size(); i++) {
+			if (components.get(i).name().equals(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the values of all the components of a record.
+	 *
+	 * @param record an instance of the record class
+	 * @return the values, in the order of the canonical constructor's
+	 * parameters, with primitives boxed
+	 */
+	public Object[] getValues(R record) {
+		Object[] values = new Object[components.size()];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = components.get(i).get(record);
+		}
+		return values;
+	}
+
+	/**
+	 * Creates a record from the values of its components.
+	 *
+	 * @param values the values, in the order of the canonical constructor's
+	 * parameters, with primitives boxed
+	 * @return the new record
+	 * @throws PropertyException if there are the wrong number of values or a
+	 * value has the wrong type
+	 * @throws DBThrownByEndUserCodeException if the constructor throws an
+	 * exception; Errors thrown by the constructor are rethrown unchanged
+	 */
+	public R newInstance(Object... values) {
+		check(values);
+		try {
+			return type.cast(constructor.invokeExact(values));
+		} catch (Error e) {
+			throw e;
+		} catch (Throwable e) {
+			throw new DBThrownByEndUserCodeException("Constructor threw " + e.getClass().getSimpleName() + " when instantiating " + type.getName()
+					+ (e.getLocalizedMessage() == null ? "" : ": " + e.getLocalizedMessage()), e);
+		}
+	}
+
+	/**
+	 * Creates a record from each array of values.
+	 *
+	 * @param rows the values of each record, in the order of the canonical
+	 * constructor's parameters
+	 * @return the new records, in the order of the rows
+	 * @throws PropertyException if a row has the wrong number of values or a
+	 * value has the wrong type
+	 * @throws DBThrownByEndUserCodeException if the constructor throws an
+	 * exception
+	 */
+	public List<R> newInstances(Collection<Object[]> rows) {
+		List<R> records = new ArrayList<>(rows.size());
+		for (Object[] row : rows) {
+			records.add(newInstance(row));
+		}
+		return records;
+	}
+
+	/**
+	 * Creates an array of records from each array of values.
+	 *
+	 * @param rows the values of each record, in the order of the canonical
+	 * constructor's parameters
+	 * @return the new records, in the order of the rows
+	 */
+	@SuppressWarnings("unchecked")
+	public R[] newArray(Object[][] rows) {
+		R[] records = (R[]) Array.newInstance(type, rows.length);
+		for (int i = 0; i < rows.length; i++) {
+			records[i] = newInstance(rows[i]);
+		}
+		return records;
+	}
+
+	/**
+	 * Checks the values before they reach the constructor, so that a mistake
+	 * in the values isn't blamed on the constructor.
+	 */
+	private void check(Object[] values) {
+		if (values.length != boxedTypes.length) {
+			throw new PropertyException(type.getName() + " has " + boxedTypes.length + " components but " + values.length + " values were supplied");
+		}
+		for (int i = 0; i < values.length; i++) {
+			Object value = values[i];
+			if (value == null ? primitive[i] : !boxedTypes[i].isInstance(value)) {
+				throw new PropertyException("Value " + value + " can't be used for record component " + components.get(i).qualifiedName()
+						+ " of type " + components.get(i).type().getName());
+			}
+		}
+	}
+
+	private static Method classMethod(String name) {
+		try {
+			return Class.class.getMethod(name);
+		} catch (NoSuchMethodException e) {
+			// a runtime before records
+			return null;
+		}
+	}
+
+	private static Method recordComponentMethod(String name) {
+		try {
+			return Class.forName("java.lang.reflect.RecordComponent").getMethod(name);
+		} catch (ClassNotFoundException | NoSuchMethodException e) {
+			// a runtime before records
+			return null;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "<" + type.getName() + Arrays.toString(components.toArray()) + ">";
+	}
+}
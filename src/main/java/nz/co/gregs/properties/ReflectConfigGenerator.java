@@ -0,0 +1,295 @@
+package nz.co.gregs.properties;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Executable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.Instantiator;
+import nz.co.gregs.properties.adapt.PropertyTypeHandler;
+import nz.co.gregs.properties.exceptions.PropertyException;
+
+/**
+ * Writes the GraalVM native-image reflection configuration needed by property
+ * container classes.
+ *
+ * <p>
+ * Each container class is scanned exactly as
+ * {@link PropertyContainerWrapperFactory} would scan it, and the fields,
+ * getters, and setters of its properties are registered with the classes that
+ * declare them. The no-argument constructors of the containers, of the
+ * {@link nz.co.gregs.properties.adapt.AdaptableType AdaptableType} of each
+ * property, of each {@link AdaptType#value() type adaptor}, and of the type
+ * handler are registered too, as are the queries used to find the properties
+ * on the containers and their superclasses, so a native image
+ * finds the same properties as the JVM without any trial-and-error
+ * configuration.
+ *
+ * <p>
+ * Run from the command line or the {@code native-image} Maven profile with
+ * the name of the {@link PropertyTypeHandler} to use, the file to write, and
+ * the directories or jars to search for container classes:
+ *
+ * <pre>
+ * java nz.co.gregs.properties.ReflectConfigGenerator com.example.MyTypeHandler \
+ *		target/classes/META-INF/native-image/com.example/app/reflect-config.json \
+ *		target/classes
+ * </pre>
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ */
+public final class ReflectConfigGenerator {
+
+	private static final Logger LOG = Logger.getLogger(ReflectConfigGenerator.class.getName());
+
+	private final PropertyTypeHandler handler;
+	private final Map<String, Entry> entries = new TreeMap<>();
+
+	/**
+	 * Creates a generator that scans classes with the type handler.
+	 *
+	 * @param handler the type handler the application's factory uses
+	 */
+	public ReflectConfigGenerator(PropertyTypeHandler handler) {
+		this.handler = handler;
+	}
+
+	/**
+	 * Adds the reflection needed by a container class.
+	 *
+	 * @param clazz the container class
+	 * @return this generator
+	 * @throws nz.co.gregs.properties.exceptions.InvalidDeclaredTypeException if
+	 * the class has a property the type handler can't handle
+	 */
+	public ReflectConfigGenerator add(Class<? extends PropertyContainer> clazz) {
+		PropertyContainerClass classWrapper = new PropertyContainerClass(clazz, handler);
+		entryFor(clazz).queryAllPublicFields = true;
+		// the finder scans the declared fields and methods of every superclass too,
+		// up to and including PropertyContainer
+		for (Class<?> type = clazz; type != null && !Object.class.equals(type); type = type.getSuperclass()) {
+			Entry container = entryFor(type);
+			container.queryAllDeclaredFields = true;
+			container.queryAllPublicMethods = true;
+		}
+		addNoArgConstructor(clazz);
+		addNoArgConstructor(handler.getClass());
+		for (PropertyDefinition definition : classWrapper.getPropertyDefinitions()) {
+			JavaProperty property = definition.getRawJavaProperty();
+			if (property instanceof JavaField) {
+				Field field = ((JavaField) property).getField();
+				entryFor(field.getDeclaringClass()).fields.add(field.getName());
+			} else if (property instanceof JavaBeanProperty) {
+				addMethod(((JavaBeanProperty) property).getGetter());
+				addMethod(((JavaBeanProperty) property).getSetter());
+			}
+			addNoArgConstructor(definition.type());
+			AdaptType annotation = property.getAnnotation(AdaptType.class);
+			if (annotation != null) {
+				addNoArgConstructor(annotation.value());
+				entryFor(annotation.value()).queryAllPublicMethods = true;
+			}
+		}
+		return this;
+	}
+
+	/**
+	 * Adds the reflection needed by every concrete container class in a
+	 * directory of class files or a jar.
+	 *
+	 * @param classes the root directory of the class files, or the jar
+	 * @param loader the class loader that can load the classes
+	 * @return this generator
+	 * @throws IOException if the directory or jar can't be read
+	 */
+	public ReflectConfigGenerator addAll(Path classes, ClassLoader loader) throws IOException {
+		if (Files.isDirectory(classes)) {
+			addAllUnder(classes, loader);
+		} else {
+			try (FileSystem jar = FileSystems.newFileSystem(classes, (ClassLoader) null)) {
+				addAllUnder(jar.getPath("/"), loader);
+			}
+		}
+		return this;
+	}
+
+	private void addAllUnder(Path root, ClassLoader loader) throws IOException {
+		List<String> names;
+		try (Stream<Path> files = Files.walk(root)) {
+			names = files
+					.map(file -> root.relativize(file).toString())
+					.filter(name -> name.endsWith(".class") && !name.endsWith("module-info.class") && !name.endsWith("package-info.class"))
+					.map(name -> name.substring(0, name.length() - ".class".length()).replace('\\', '.').replace('/', '.'))
+					.sorted()
+					.collect(Collectors.toList());
+		}
+		for (String name : names) {
+			Class<?> clazz;
+			try {
+				clazz = Class.forName(name, false, loader);
+			} catch (ClassNotFoundException | LinkageError e) {
+				LOG.log(Level.FINE, "Skipping {0}: {1}", new Object[]{name, e});
+				continue;
+			}
+			if (PropertyContainer.class.isAssignableFrom(clazz)
+					&& !Modifier.isAbstract(clazz.getModifiers())
+					&& !clazz.isAnonymousClass()) {
+				add(clazz.asSubclass(PropertyContainer.class));
+			}
+		}
+	}
+
+	private Entry entryFor(Class<?> clazz) {
+		return entries.computeIfAbsent(clazz.getName(), name -> new Entry());
+	}
+
+	private void addMethod(Method method) {
+		if (method != null) {
+			entryFor(method.getDeclaringClass()).methods.add(signatureOf(method.getName(), method));
+		}
+	}
+
+	private void addNoArgConstructor(Class<?> clazz) {
+		if (clazz == null || clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers())) {
+			return;
+		}
+		try {
+			Constructor<?> constructor = clazz.getDeclaredConstructor();
+			entryFor(clazz).methods.add(signatureOf("<init>", constructor));
+		} catch (NoSuchMethodException e) {
+			// nothing to register, the library can't create instances of it anyway
+		}
+	}
+
+	private static String signatureOf(String name, Executable executable) {
+		return name + Arrays.stream(executable.getParameterTypes())
+				.map(type -> '"' + type.getTypeName() + '"')
+				.collect(Collectors.joining(", ", "(", ")"));
+	}
+
+	/**
+	 * Writes the configuration as the contents of a {@code reflect-config.json}
+	 * file.
+	 *
+	 * @param out where to write the JSON
+	 * @throws IOException if writing fails
+	 */
+	public void write(Appendable out) throws IOException {
+		out.append("[");
+		String separator = "\n";
+		for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+			out.append(separator);
+			entry.getValue().write(entry.getKey(), out);
+			separator = ",\n";
+		}
+		out.append("\n]\n");
+	}
+
+	/**
+	 * Writes the configuration to a file, creating its directory if needed.
+	 *
+	 * @param file the {@code reflect-config.json} file
+	 * @throws IOException if writing fails
+	 */
+	public void write(Path file) throws IOException {
+		Path directory = file.toAbsolutePath().getParent();
+		if (directory != null) {
+			Files.createDirectories(directory);
+		}
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			write(out);
+		}
+	}
+
+	/**
+	 * Writes the reflection configuration of the container classes found on
+	 * the class path.
+	 *
+	 * @param args the name of the type handler class, the file to write, and
+	 * one or more directories or jars to search for container classes
+	 * @throws IOException if reading the classes or writing the file fails
+	 * @throws IllegalArgumentException if there are too few arguments
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 3) {
+			throw new IllegalArgumentException("Usage: " + ReflectConfigGenerator.class.getName() + " <type handler class> <output file> <classes directory or jar>...");
+		}
+		ClassLoader loader = Thread.currentThread().getContextClassLoader();
+		Class<? extends PropertyTypeHandler> handlerClass;
+		try {
+			handlerClass = Class.forName(args[0], true, loader).asSubclass(PropertyTypeHandler.class);
+		} catch (ClassNotFoundException | ClassCastException e) {
+			throw new PropertyException(args[0] + " is not a " + PropertyTypeHandler.class.getSimpleName() + " on the class path", e);
+		}
+		ReflectConfigGenerator generator = new ReflectConfigGenerator(Instantiator.ofPublic(handlerClass).newInstance());
+		for (int i = 2; i < args.length; i++) {
+			generator.addAll(Paths.get(args[i]), loader);
+		}
+		generator.write(Paths.get(args[1]));
+		LOG.log(Level.INFO, "Wrote reflection configuration for {0} classes to {1}", new Object[]{generator.entries.size(), args[1]});
+	}
+
+	/**
+	 * The reflection registered for one class.
+	 */
+	private static final class Entry {
+
+		private final Set<String> fields = new TreeSet<>();
+		private final Set<String> methods = new TreeSet<>();
+		private boolean queryAllPublicFields;
+		private boolean queryAllDeclaredFields;
+		private boolean queryAllPublicMethods;
+
+		void write(String name, Appendable out) throws IOException {
+			List<String> members = new ArrayList<>();
+			members.add("\"name\" : \"" + name + "\"");
+			if (queryAllPublicFields) {
+				members.add("\"queryAllPublicFields\" : true");
+			}
+			if (queryAllDeclaredFields) {
+				members.add("\"queryAllDeclaredFields\" : true");
+			}
+			if (queryAllPublicMethods) {
+				members.add("\"queryAllPublicMethods\" : true");
+			}
+			if (!fields.isEmpty()) {
+				members.add(fields.stream()
+						.map(field -> "    { \"name\" : \"" + field + "\" }")
+						.collect(Collectors.joining(",\n", "\"fields\" : [\n", "\n  ]")));
+			}
+			if (!methods.isEmpty()) {
+				members.add(methods.stream()
+						.map(method -> {
+							int open = method.indexOf('(');
+							return "    { \"name\" : \"" + method.substring(0, open) + "\", \"parameterTypes\" : ["
+									+ method.substring(open + 1, method.length() - 1) + "] }";
+						})
+						.collect(Collectors.joining(",\n", "\"methods\" : [\n", "\n  ]")));
+			}
+			out.append("{\n  ").append(String.join(",\n  ", members)).append("\n}");
+		}
+	}
+}
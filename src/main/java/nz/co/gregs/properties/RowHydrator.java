@@ -0,0 +1,60 @@
+package nz.co.gregs.properties;
+
+import java.util.List;
+import nz.co.gregs.properties.adapt.Instantiator;
+
+/**
+ * Creates containers from rows of literal values in the order of
+ * {@link PropertyContainerClass#getPropertyDefinitions()}.
+ *
+ * <p>
+ * Values of properties that can't be both read and written are ignored.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+final class RowHydrator<T extends PropertyContainer> {
+
+	private final PropertyContainerClass classWrapper;
+	private final PropertyDefinition[] definitions;
+	private final boolean[] writable;
+	private final Instantiator<T> instantiator;
+
+	RowHydrator(PropertyContainerClass classWrapper, Class<T> type) {
+		if (!type.equals(classWrapper.adapteeClass())) {
+			throw new IllegalArgumentException(classWrapper.qualifiedJavaName() + " can't create instances of " + type.getName());
+		}
+		this.classWrapper = classWrapper;
+		List<PropertyDefinition> list = classWrapper.getPropertyDefinitions();
+		definitions = list.toArray(new PropertyDefinition[list.size()]);
+		writable = new boolean[definitions.length];
+		for (int i = 0; i < definitions.length; i++) {
+			writable[i] = definitions[i].isReadable() && definitions[i].isWritable();
+		}
+		instantiator = Instantiator.of(type);
+	}
+
+	/**
+	 * Creates a container holding the values of the row.
+	 *
+	 * @param row the values, one per property definition
+	 * @return a new container
+	 * @throws IllegalArgumentException if the row has the wrong number of
+	 * values
+	 */
+	T hydrate(Object[] row) {
+		if (row.length != definitions.length) {
+			throw new IllegalArgumentException(classWrapper.qualifiedJavaName() + " has " + definitions.length + " properties but a row has " + row.length + " values");
+		}
+		T container = instantiator.newInstance();
+		for (int i = 0; i < definitions.length; i++) {
+			if (writable[i]) {
+				PropertySnapshot.write(definitions[i], container, row[i]);
+			}
+		}
+		return container;
+	}
+}
@@ -47,7 +47,11 @@ public @interface AdaptType {
 	 *
 	 * <p>
 	 * The indicated class must be able to be instantiated. It cannot be an
-	 * interface or an abstract class and must have a default constructor.
+	 * interface or an abstract class and must have a default constructor,
+	 * unless an instance has been registered for it with
+	 * {@link TypeAdaptorRegistry#register(java.lang.Class, nz.co.gregs.properties.adapt.TypeAdaptor)}
+	 * on the {@link PropertyTypeHandler#getTypeAdaptorRegistry() registry} of the
+	 * handler.
 	 *
 	 * @return the adaptor used to mediate between the raw java object
 	 * and the property's reference type.
@@ -1,5 +1,6 @@
 package nz.co.gregs.properties.adapt;
 
+import java.util.Objects;
 import nz.co.gregs.properties.PropertyDefinition;
 
 /**
@@ -21,6 +22,8 @@ public abstract class AdaptableType<A extends Object> {
 
   transient private PropertyDefinition propertyDefn; // no guarantees whether this gets set
 
+  transient private Runnable changeNotifier; // only set while the container has change listeners
+
   private A literalValue = null;
 
   /**
@@ -45,7 +48,11 @@ public abstract class AdaptableType<A extends Object> {
    * @param object the new value to use
    */
   protected void setLiteralValue(A object) {
+    A previous = literalValue;
     this.literalValue = object;
+    if (changeNotifier != null && !Objects.equals(previous, object)) {
+      changeNotifier.run();
+    }
   }
 
   /**
@@ -110,7 +117,11 @@ public abstract class AdaptableType<A extends Object> {
    * @return a reference to this object.
    */
   public AdaptableType<A> clear() {
+    A previous = literalValue;
     literalValue = null;
+    if (changeNotifier != null && previous != null) {
+      changeNotifier.run();
+    }
     return this;
   }
 
@@ -126,6 +137,30 @@ public abstract class AdaptableType<A extends Object> {
     this.propertyDefn = propertyDefn;
   }
 
+  /**
+   * Empties the value and forgets the property definition and change callback, so that the instance can be reused by {@link AdaptableTypePool}.
+   *
+   * <p>
+   * This is done automatically when the instance is released, and should never be done manually. So the method is NOT public.</p>
+   */
+  void recycle() {
+    literalValue = null;
+    propertyDefn = null;
+    changeNotifier = null;
+  }
+
+  /**
+   * Sets the callback run when the value stored changes.
+   *
+   * <p>
+   * This is done automatically while the containing object has change listeners, and should never be done manually. So the method is NOT public.</p>
+   *
+   * @param changeNotifier the callback, or null to stop reporting changes
+   */
+  void setChangeNotifier(Runnable changeNotifier) {
+    this.changeNotifier = changeNotifier;
+  }
+
   /**
    * Return the PropertyDefinition
    *
@@ -0,0 +1,99 @@
+package nz.co.gregs.properties.adapt;
+
+import java.util.ArrayDeque;
+
+/**
+ * Reuses {@link AdaptableType} instances that their callers have finished
+ * with.
+ *
+ * <p>
+ * Code that converts many values through short-lived AdaptableTypes, such as
+ * a loader that copies each value into a container and discards its holder,
+ * can acquire the holders here and release them when done, instead of
+ * creating a new instance per value:
+ *
+ * <pre>
+ * StringProperty holder = AdaptableTypePool.acquire(StringProperty.class);
+ * try {
+ *	holder.setValue(text);
+ *	...
+ * } finally {
+ *	AdaptableTypePool.release(holder);
+ * }
+ * </pre>
+ *
+ * <p>
+ * Each thread has its own pool for each class, holding at most
+ * {@value #MAXIMUM_POOLED} instances, so acquiring and releasing need no
+ * locking. Released instances are emptied, and lose their property definition
+ * and change listeners. Release each instance once, and never one that is still held in a
+ * container's field or used elsewhere, and only pool classes whose whole
+ * state is their value.
+ *
+ * <p>
+ * Because the pools belong to threads, reuse only pays off on long-lived
+ * platform threads, such as those of a fixed thread pool. With a new virtual
+ * thread per task, each task starts with an empty pool and the instances it
+ * releases are dropped with its thread, so pooling only adds work there.
+ *
+ * <p>
+ * This class is <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class AdaptableTypePool {
+
+	/**
+	 * The most instances of each class kept for each thread.
+	 */
+	public static final int MAXIMUM_POOLED = 64;
+
+	private static final ClassValue<ThreadLocal<ArrayDeque<AdaptableType<?>>>> POOLS = new ClassValue<ThreadLocal<ArrayDeque<AdaptableType<?>>>>() {
+		@Override
+		protected ThreadLocal<ArrayDeque<AdaptableType<?>>> computeValue(Class<?> type) {
+			return ThreadLocal.withInitial(ArrayDeque::new);
+		}
+	};
+
+	private AdaptableTypePool() {
+	}
+
+	/**
+	 * Gets an empty instance of the class, reusing a released one if this
+	 * thread has one.
+	 *
+	 * @param <T> the AdaptableType class
+	 * @param type the AdaptableType class
+	 * @return an instance with a null value
+	 */
+	public static <T extends AdaptableType<?>> T acquire(Class<T> type) {
+		AdaptableType<?> pooled = POOLS.get(type).get().pollFirst();
+		return pooled == null ? Instantiator.of(type).newInstance() : type.cast(pooled);
+	}
+
+	/**
+	 * Returns an instance to this thread's pool, emptying it.
+	 *
+	 * @param adaptableType the instance to reuse, ignored if null
+	 */
+	public static void release(AdaptableType<?> adaptableType) {
+		if (adaptableType == null) {
+			return;
+		}
+		adaptableType.recycle();
+		ArrayDeque<AdaptableType<?>> pool = POOLS.get(adaptableType.getClass()).get();
+		if (pool.size() < MAXIMUM_POOLED) {
+			pool.addFirst(adaptableType);
+		}
+	}
+
+	/**
+	 * Counts the instances of the class waiting to be reused on this thread.
+	 *
+	 * @param type the AdaptableType class
+	 * @return the number of pooled instances
+	 */
+	public static int pooled(Class<? extends AdaptableType<?>> type) {
+		return POOLS.get(type).get().size();
+	}
+}
@@ -15,11 +15,7 @@
  */
 package nz.co.gregs.properties.adapt;
 
-import java.util.AbstractMap.SimpleEntry;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
+import java.util.concurrent.atomic.AtomicReference;
 import nz.co.gregs.properties.exceptions.PropertyException;
 import nz.co.gregs.properties.adapt.SafeOneWaySimpleTypeAdaptor.Direction;
 
@@ -29,6 +25,11 @@ import org.apache.commons.logging.LogFactory;
 /**
  * Allows synchronizations to be done between two QueryableDatatypes, based on a Type Adaptor.
  *
+ * <p>
+ * A syncer is shared by every instance of the property's class. The methods that take or create an explicit internal AdaptableType, such as
+ * {@link #setExternalFromInternal(AdaptableType, AdaptableType)} and {@link #newInternalFromExternal(AdaptableType)}, keep their state in the call and
+ * are <i>thread-safe</i>; the methods that use the cached {@link #getInternalInstance() internal instance} are not.
+ *
  * @author Malcolm Lett
  */
 public class AdaptableTypeSyncer {
@@ -38,9 +39,12 @@ public class AdaptableTypeSyncer {
   private final String propertyName;
   private final TypeAdaptor<Object, Object> typeAdaptor;
   private final Class<? extends AdaptableType> internalAdaptableTypeClass;
+  private final Instantiator<? extends AdaptableType> internalInstantiator;
   private AdaptableType internalAdaptableType;
   private SafeOneWaySimpleTypeAdaptor toExternalSimpleTypeAdaptor;
   private SafeOneWaySimpleTypeAdaptor toInternalSimpleTypeAdaptor;
+  private final AtomicReference<SafeInternalAdaptableTypeAdaptor> toInternalContext = new AtomicReference<>();
+  private final AtomicReference<SafeInternalAdaptableTypeAdaptor> toExternalContext = new AtomicReference<>();
 
   /**
    * Class for copying one AdaptableType to another
@@ -70,17 +74,8 @@ public class AdaptableTypeSyncer {
     this.toInternalSimpleTypeAdaptor = new SafeOneWaySimpleTypeAdaptor(propertyName,
             typeAdaptor, Direction.TO_INTERNAL, externalSimpleClass, internalAdaptableTypeLiteralClass);
 
-    try {
-      this.internalAdaptableType = internalAdaptableTypeClass.newInstance();
-    } catch (InstantiationException e) {
-      // TODO produce a better error message that is consistent with how this is handled elsewhere
-      throw new PropertyException("Instantiation error creating internal "
-              + internalAdaptableTypeClass.getSimpleName() + " AdaptableTypeClass: " + e.getMessage(), e);
-    } catch (IllegalAccessException e) {
-      // TODO produce a better error message that is consistent with how this is handled elsewhere
-      throw new PropertyException("Access error creating internal "
-              + internalAdaptableTypeClass.getSimpleName() + " AdaptableTypeClass: " + e.getMessage(), e);
-    }
+    this.internalInstantiator = Instantiator.of(internalAdaptableTypeClass);
+    this.internalAdaptableType = internalInstantiator.newInstance();
   }
 
   /**
@@ -116,12 +111,79 @@ public class AdaptableTypeSyncer {
     if (externalAdaptableType == null) {
       internalAdaptableType = null;
     } else {
-      SafeInternalAdaptableTypeAdaptor qdtAdaptor = new SafeInternalAdaptableTypeAdaptor(internalAdaptableTypeClass, getToInternalSimpleTypeAdaptor());
-      qdtAdaptor.setTargetFromSource(getInternalInstance(), externalAdaptableType);
+      SafeInternalAdaptableTypeAdaptor qdtAdaptor = acquire(toInternalContext, internalAdaptableTypeClass, getToInternalSimpleTypeAdaptor());
+      try {
+        qdtAdaptor.setTargetFromSource(getInternalInstance(), externalAdaptableType);
+      } finally {
+        release(toInternalContext, qdtAdaptor);
+      }
     }
     return getInternalInstance();
   }
 
+  /**
+   * Creates a new internal AdaptableType holding the value adapted from the provided AdaptableType, without touching the cached internal instance.
+   *
+   * @param externalAdaptableType may be null
+   * @return a new internal AdaptableType, or null if the external is null
+   */
+  public AdaptableType newInternalFromExternal(AdaptableType externalAdaptableType) {
+    if (externalAdaptableType == null) {
+      return null;
+    }
+    AdaptableType internal = newInternalInstance();
+    SafeInternalAdaptableTypeAdaptor qdtAdaptor = acquire(toInternalContext, internalAdaptableTypeClass, getToInternalSimpleTypeAdaptor());
+    try {
+      qdtAdaptor.setTargetFromSource(internal, externalAdaptableType);
+    } finally {
+      release(toInternalContext, qdtAdaptor);
+    }
+    return internal;
+  }
+
+  /**
+   * Creates an empty instance of the internal AdaptableType class.
+   *
+   * @return a new internal AdaptableType
+   */
+  protected AdaptableType newInternalInstance() {
+    return internalInstantiator.newInstance();
+  }
+
+  /**
+   * Sets the provided external AdaptableType from the provided internal AdaptableType, without touching the cached internal instance.
+   *
+   * @param externalAdaptableType external AdaptableType
+   * @param internal the internal AdaptableType to adapt, which may be null
+   * @return the updated external or null if the internal is null
+   */
+  public AdaptableType setExternalFromInternal(AdaptableType externalAdaptableType, AdaptableType internal) {
+    if (internal == null) {
+      return null;
+    }
+    checkInternalType(internal);
+    SafeInternalAdaptableTypeAdaptor qdtAdaptor = acquire(toExternalContext, externalAdaptableType.getClass(), getToExternalSimpleTypeAdaptor());
+    try {
+      qdtAdaptor.setTargetFromSource(externalAdaptableType, internal);
+    } finally {
+      release(toExternalContext, qdtAdaptor);
+    }
+    return externalAdaptableType;
+  }
+
+  /**
+   * Checks that the AdaptableType is of the internal AdaptableType class.
+   *
+   * @param internal the AdaptableType to check, which must not be null
+   * @throws ClassCastException if it is of another class
+   */
+  protected void checkInternalType(AdaptableType internal) {
+    if (!internal.getClass().equals(internalAdaptableTypeClass)) {
+      throw new ClassCastException("Cannot assign " + internal.getClass().getSimpleName()
+              + " to " + internalAdaptableTypeClass.getSimpleName() + " property " + propertyName);
+    }
+  }
+
   /**
    * Sets the provided external AdaptableType from the internal AdaptableType and returns the updated external AdaptableType.
    *
@@ -129,13 +191,32 @@ public class AdaptableTypeSyncer {
    * @return the updated external or null if the internal is null
    */
   public AdaptableType setExternalFromInternal(AdaptableType externalAdaptableType) {
-    if (getInternalInstance() == null) {
-      return null;
-    } else {
-      SafeInternalAdaptableTypeAdaptor qdtAdaptor = new SafeInternalAdaptableTypeAdaptor(externalAdaptableType.getClass(), getToExternalSimpleTypeAdaptor());
-      qdtAdaptor.setTargetFromSource(externalAdaptableType, getInternalInstance());
+    return setExternalFromInternal(externalAdaptableType, getInternalInstance());
+  }
+
+  /**
+   * Takes the syncer's idle adaptor for the conversion, or creates a new one if another sync, on this thread or another, is using it or it is set
+   * up for a different conversion.
+   *
+   * <p>
+   * The adaptor belongs to the syncer rather than to a thread, so reusing it allocates nothing for the cycle detection whether syncs run on a few
+   * pooled threads or on a new virtual thread per task, and only concurrent or re-entrant syncs of the same property create adaptors.
+   */
+  private static SafeInternalAdaptableTypeAdaptor acquire(AtomicReference<SafeInternalAdaptableTypeAdaptor> slot,
+          Class<? extends AdaptableType> targetClass, SafeOneWaySimpleTypeAdaptor simpleTypeAdaptor) {
+    SafeInternalAdaptableTypeAdaptor context = slot.getAndSet(null);
+    if (context == null || context.targetAdaptableTypeClass != targetClass || context.simpleTypeAdaptor != simpleTypeAdaptor) {
+      context = new SafeInternalAdaptableTypeAdaptor(targetClass, simpleTypeAdaptor);
     }
-    return externalAdaptableType;
+    return context;
+  }
+
+  /**
+   * Resets the adaptor and makes it the syncer's idle adaptor for the next sync.
+   */
+  private static void release(AtomicReference<SafeInternalAdaptableTypeAdaptor> slot, SafeInternalAdaptableTypeAdaptor context) {
+    context.reset();
+    slot.set(context);
   }
 
   // for DEBUG purposes only
@@ -189,14 +270,14 @@ public class AdaptableTypeSyncer {
    * the previously mapped target AdaptableType when re-observed.
    *
    * <p>
-   * Must be used only once for a given read or write of a field.
+   * Must be used only once for a given read or write of a field, or {@link #reset() reset} between uses.
    */
   public static class SafeInternalAdaptableTypeAdaptor {
 
     private final Class<? extends AdaptableType> targetAdaptableTypeClass;
+    private final Instantiator<? extends AdaptableType> targetInstantiator;
     private final SafeOneWaySimpleTypeAdaptor simpleTypeAdaptor;
-    private final List<Map.Entry<AdaptableType, AdaptableType>> observedSourcesAndTargets
-            = new ArrayList<>();
+    private final ObservedAdaptableTypes observed = new ObservedAdaptableTypes();
 
     /**
      * Constructor
@@ -208,6 +289,7 @@ public class AdaptableTypeSyncer {
             Class<? extends AdaptableType> targetQdtType,
             SafeOneWaySimpleTypeAdaptor typeAdaptor) {
       this.targetAdaptableTypeClass = targetQdtType;
+      this.targetInstantiator = Instantiator.of(targetQdtType);
       this.simpleTypeAdaptor = typeAdaptor;
     }
 
@@ -229,20 +311,23 @@ public class AdaptableTypeSyncer {
         try {
           // cycle-detection
           // (note: important that it uses reference equality, not object equality)
-          for (Map.Entry<AdaptableType, AdaptableType> sourceAndTarget : observedSourcesAndTargets) {
-            if (sourceAndTarget.getKey() == sourceAdaptableType) {
-              // re-use existing value
-              return sourceAndTarget.getValue();
-            }
+          AdaptableType observedTarget = observed.get(sourceAdaptableType);
+          if (observedTarget != null) {
+            // re-use existing value
+            return observedTarget;
           }
 
           AdaptableType targetAdaptableType = newTargetAdaptableType();
           setTargetFromSource(targetAdaptableType, sourceAdaptableType);
 
-          log.debug(simpleTypeAdaptor + " converting " + debugToString(sourceAdaptableType) + " ==> " + debugToString(targetAdaptableType));
+          if (log.isDebugEnabled()) {
+            log.debug(simpleTypeAdaptor + " converting " + debugToString(sourceAdaptableType) + " ==> " + debugToString(targetAdaptableType));
+          }
           return targetAdaptableType;
         } catch (RuntimeException e) {
-          log.debug(simpleTypeAdaptor + " converting " + debugToString(sourceAdaptableType) + " ==> " + e.getClass().getSimpleName());
+          if (log.isDebugEnabled()) {
+            log.debug(simpleTypeAdaptor + " converting " + debugToString(sourceAdaptableType) + " ==> " + e.getClass().getSimpleName());
+          }
           throw e;
         }
       }
@@ -264,30 +349,26 @@ public class AdaptableTypeSyncer {
 
       // cycle-detection
       // (note: important that it uses reference equality, not object equality)
-      for (Map.Entry<AdaptableType, AdaptableType> soFarEntry : observedSourcesAndTargets) {
-        if (soFarEntry.getKey() == sourceAdaptableType) {
-          // already observed, so already done.
-          return;
-        }
+      if (observed.get(sourceAdaptableType) != null) {
+        // already observed, so already done.
+        return;
       }
-      observedSourcesAndTargets.add(new SimpleEntry<AdaptableType, AdaptableType>(sourceAdaptableType, targetAdaptableType));
+      observed.put(sourceAdaptableType, targetAdaptableType);
 
       targetAdaptableType.setValue(simpleTypeAdaptor.convert(sourceAdaptableType.getValue()));
     }
 
+    /**
+     * Forgets the AdaptableTypes observed so far, so that the adaptor can be used for another read or write.
+     */
+    public void reset() {
+      observed.clear();
+    }
+
+
     // factory method
     private AdaptableType newTargetAdaptableType() {
-      try {
-        return targetAdaptableTypeClass.newInstance();
-      } catch (InstantiationException e) {
-        // TODO produce a better error message that is consistent with how this is handled elsewhere
-        throw new PropertyException("Instantiation error creating internal "
-                + targetAdaptableTypeClass.getSimpleName() + " targetAdaptableTypeClass: " + e.getMessage(), e);
-      } catch (IllegalAccessException e) {
-        // TODO produce a better error message that is consistent with how this is handled elsewhere
-        throw new PropertyException("Access error creating internal "
-                + targetAdaptableTypeClass.getSimpleName() + " targetAdaptableTypeClass: " + e.getMessage(), e);
-      }
+      return targetInstantiator.newInstance();
     }
   }
 }
@@ -0,0 +1,203 @@
+package nz.co.gregs.properties.adapt;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.function.Supplier;
+import nz.co.gregs.properties.exceptions.DBThrownByEndUserCodeException;
+import nz.co.gregs.properties.exceptions.PropertyException;
+
+/**
+ * Creates instances of a class with its no-argument constructor.
+ *
+ * <p>
+ * {@code AdaptableType} subclasses, {@link TypeAdaptor type adaptors}, and
+ * property containers are created over and over again while values are
+ * converted and rows are hydrated. The constructor of each class is found
+ * once and compiled into a {@link Supplier} with {@link LambdaMetafactory},
+ * so that creating an instance costs the same as calling {@code new}. If the
+ * class can't be reached that way, a method handle is used instead, and if
+ * the class has no usable constructor the problem is remembered and reported
+ * by {@link #newInstance()}.
+ *
+ * <p>
+ * {@link #of(Class)} will use any no-argument constructor, including a
+ * private one. Classes the library creates on behalf of the user, such as
+ * {@link TypeAdaptor type adaptors} and {@link PropertyTypeHandler type
+ * handlers}, are created with {@link #ofPublic(Class)} instead, which only
+ * uses a public constructor, so declaring a constructor private still keeps
+ * the library from calling it.
+ *
+ * <p>
+ * Instantiators are cached per class and shared by all callers.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class instantiated
+ */
+public final class Instantiator<T> {
+
+	private static final ClassValue<Instantiator<?>> INSTANTIATORS = new ClassValue<Instantiator<?>>() {
+		@Override
+		protected Instantiator<?> computeValue(Class<?> type) {
+			return new Instantiator<>(type, false);
+		}
+	};
+
+	private static final ClassValue<Instantiator<?>> PUBLIC_INSTANTIATORS = new ClassValue<Instantiator<?>>() {
+		@Override
+		protected Instantiator<?> computeValue(Class<?> type) {
+			return new Instantiator<>(type, true);
+		}
+	};
+
+	private final Class<T> type;
+	private final Supplier<T> supplier;
+	private final MethodHandle handle;
+	private final ReflectiveOperationException problem;
+
+	private Instantiator(Class<T> type, boolean publicOnly) {
+		this.type = type;
+		Supplier<T> foundSupplier = null;
+		MethodHandle foundHandle = null;
+		ReflectiveOperationException foundProblem = null;
+		if (type.isInterface() || type.isPrimitive() || type.isArray() || Modifier.isAbstract(type.getModifiers())) {
+			foundProblem = new InstantiationException(type.getName() + " is an interface or abstract class");
+		} else {
+			try {
+				if (publicOnly) {
+					// throws NoSuchMethodException unless the constructor is public
+					type.getConstructor();
+				}
+				foundHandle = findConstructor(type);
+				foundSupplier = compile(type, foundHandle);
+			} catch (ReflectiveOperationException e) {
+				foundProblem = e;
+			}
+		}
+		this.supplier = foundSupplier;
+		this.handle = foundHandle;
+		this.problem = foundProblem;
+	}
+
+	/**
+	 * Gets the instantiator of a class.
+	 *
+	 * @param <T> the class to instantiate
+	 * @param type the class to instantiate
+	 * @return the shared instantiator of the class
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Instantiator<T> of(Class<T> type) {
+		return (Instantiator<T>) INSTANTIATORS.get(type);
+	}
+
+	/**
+	 * Gets the instantiator of a class that may only be created through its
+	 * public no-argument constructor.
+	 *
+	 * @param <T> the class to instantiate
+	 * @param type the class to instantiate
+	 * @return the shared instantiator of the class, which is not instantiable
+	 * if the class has no public no-argument constructor
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Instantiator<T> ofPublic(Class<T> type) {
+		return (Instantiator<T>) PUBLIC_INSTANTIATORS.get(type);
+	}
+
+	private static MethodHandle findConstructor(Class<?> type) throws ReflectiveOperationException {
+		try {
+			// a lookup in the class itself can use its private constructor
+			return MethodHandles.privateLookupIn(type, MethodHandles.lookup()).findConstructor(type, MethodType.methodType(void.class));
+		} catch (IllegalAccessException e) {
+			// the class is in a module that isn't open to us, but may still have a public constructor
+			Constructor<?> constructor = type.getDeclaredConstructor();
+			if (!constructor.trySetAccessible()) {
+				throw e;
+			}
+			return MethodHandles.lookup().unreflectConstructor(constructor);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <T> Supplier<T> compile(Class<T> type, MethodHandle constructor) {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(type, MethodHandles.lookup());
+			CallSite site = LambdaMetafactory.metafactory(lookup, "get",
+					MethodType.methodType(Supplier.class),
+					MethodType.methodType(Object.class),
+					constructor,
+					MethodType.methodType(type));
+			return (Supplier<T>) site.getTarget().invoke();
+		} catch (Throwable e) {
+			// not every class can host a lambda (hidden or unreachable classes for instance), so use the handle directly
+			return null;
+		}
+	}
+
+	/**
+	 * Gets the class instantiated.
+	 *
+	 * @return the class
+	 */
+	public Class<T> getType() {
+		return type;
+	}
+
+	/**
+	 * Indicates whether the class has a usable no-argument constructor.
+	 *
+	 * @return true if {@link #newInstance()} will call the constructor
+	 */
+	public boolean isInstantiable() {
+		return problem == null;
+	}
+
+	/**
+	 * Gets the reason the class can't be instantiated.
+	 *
+	 * @return the exception raised while finding the constructor, or null if
+	 * the class is instantiable
+	 */
+	public ReflectiveOperationException getProblem() {
+		return problem;
+	}
+
+	/**
+	 * Creates a new instance of the class.
+	 *
+	 * @return a new instance
+	 * @throws PropertyException if the class has no usable no-argument
+	 * constructor
+	 * @throws DBThrownByEndUserCodeException if the constructor throws an
+	 * exception; Errors thrown by the constructor are rethrown unchanged
+	 */
+	public T newInstance() {
+		if (problem != null) {
+			throw new PropertyException("Unable to instantiate " + type.getName() + ": " + problem.getMessage(), problem);
+		}
+		try {
+			if (supplier != null) {
+				return supplier.get();
+			}
+			return type.cast(handle.invoke());
+		} catch (Error error) {
+			throw error;
+		} catch (Throwable cause) {
+			String msg = (cause.getLocalizedMessage() == null) ? "" : ": " + cause.getLocalizedMessage();
+			throw new DBThrownByEndUserCodeException("Constructor threw " + cause.getClass().getSimpleName() + " when instantiating " + type.getName() + msg, cause);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "<" + type.getName() + ">";
+	}
+}
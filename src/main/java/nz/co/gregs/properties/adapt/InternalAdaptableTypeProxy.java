@@ -43,6 +43,19 @@ public class InternalAdaptableTypeProxy {
 		adaptableType.setPropertyDefinition(propertyWrapperDefn);
 	}
 
+	/**
+	 * Internal class, do not use.
+	 * <p>
+	 * Injects the PropertyWrapper into the QDT without creating a proxy for
+	 * each value.
+	 *
+	 * @param adaptableType the AdaptableType to inject into
+	 * @param propertyWrapperDefn	 propertyWrapperDefn
+	 */
+	public static void setPropertyWrapper(AdaptableType adaptableType, PropertyDefinition propertyWrapperDefn) {
+		adaptableType.setPropertyDefinition(propertyWrapperDefn);
+	}
+
 	/**
 	 * Internal class, do not use.
 	 * <p>
@@ -55,4 +68,29 @@ public class InternalAdaptableTypeProxy {
 	public void setValue(Object obj) {
 		adaptableType.setValue(obj);
 	}
+
+	/**
+	 * Internal class, do not use.
+	 * <p>
+	 * Hides the generic setValue(Object) method within AdaptableType while
+	 * allowing it to be used, without creating a proxy for each value.
+	 *
+	 * @param adaptableType the AdaptableType to set
+	 * @param obj	 obj
+	 */
+	@SuppressWarnings("unchecked")
+	public static void setValue(AdaptableType adaptableType, Object obj) {
+		adaptableType.setValue(obj);
+	}
+
+	/**
+	 * Internal class, do not use.
+	 * <p>
+	 * Binds the AdaptableType to the change listeners of its container.
+	 *
+	 * @param changeNotifier run when the value changes, or null to unbind
+	 */
+	public void setChangeNotifier(Runnable changeNotifier) {
+		adaptableType.setChangeNotifier(changeNotifier);
+	}
 }
@@ -0,0 +1,147 @@
+package nz.co.gregs.properties.adapt;
+
+import java.util.Arrays;
+
+/**
+ * The targets of the AdaptableTypes observed during one conversion, looked
+ * up by the identity of the source.
+ *
+ * <p>
+ * Almost every conversion observes one to four sources, so the first few
+ * pairs are kept in small arrays and scanned. Beyond that the pairs move into
+ * an open-addressed hash table keyed on {@link System#identityHashCode}, so
+ * large graphs of shared sources are converted in linear rather than
+ * quadratic time.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ */
+final class ObservedAdaptableTypes {
+
+	private static final int INLINE = 4;
+	private static final int LARGEST_KEPT_TABLE = 256;
+
+	private final AdaptableType[] inlineSources = new AdaptableType[INLINE];
+	private final AdaptableType[] inlineTargets = new AdaptableType[INLINE];
+	private int inlineCount;
+
+	private AdaptableType[] sources;
+	private AdaptableType[] targets;
+	private int size;
+
+	/**
+	 * Gets the target paired with the source.
+	 *
+	 * @param source the source AdaptableType
+	 * @return the target, or null if the source hasn't been observed
+	 */
+	AdaptableType get(AdaptableType source) {
+		if (sources == null) {
+			for (int i = 0; i < inlineCount; i++) {
+				if (inlineSources[i] == source) {
+					return inlineTargets[i];
+				}
+			}
+			return null;
+		}
+		int mask = sources.length - 1;
+		for (int slot = hash(source) & mask;; slot = (slot + 1) & mask) {
+			AdaptableType key = sources[slot];
+			if (key == source) {
+				return targets[slot];
+			} else if (key == null) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Pairs a source that hasn't been observed with its target.
+	 *
+	 * @param source the source AdaptableType
+	 * @param target the target AdaptableType
+	 */
+	void put(AdaptableType source, AdaptableType target) {
+		if (sources == null) {
+			if (inlineCount < INLINE) {
+				inlineSources[inlineCount] = source;
+				inlineTargets[inlineCount] = target;
+				inlineCount++;
+				return;
+			}
+			sources = new AdaptableType[INLINE * 4];
+			targets = new AdaptableType[INLINE * 4];
+			for (int i = 0; i < inlineCount; i++) {
+				insert(inlineSources[i], inlineTargets[i]);
+			}
+			clearInline();
+		} else if ((size + 1) * 2 > sources.length) {
+			grow();
+		}
+		insert(source, target);
+	}
+
+	/**
+	 * Forgets all the pairs, keeping a table of modest size for reuse.
+	 */
+	void clear() {
+		clearInline();
+		if (sources != null) {
+			if (size > 0 && sources.length <= LARGEST_KEPT_TABLE) {
+				Arrays.fill(sources, null);
+				Arrays.fill(targets, null);
+			} else if (sources.length > LARGEST_KEPT_TABLE) {
+				sources = null;
+				targets = null;
+			}
+			size = 0;
+		}
+	}
+
+	/**
+	 * Counts the pairs.
+	 *
+	 * @return the number of sources observed
+	 */
+	int size() {
+		return sources == null ? inlineCount : size;
+	}
+
+	private void clearInline() {
+		Arrays.fill(inlineSources, 0, inlineCount, null);
+		Arrays.fill(inlineTargets, 0, inlineCount, null);
+		inlineCount = 0;
+	}
+
+	private void insert(AdaptableType source, AdaptableType target) {
+		int mask = sources.length - 1;
+		int slot = hash(source) & mask;
+		while (sources[slot] != null) {
+			slot = (slot + 1) & mask;
+		}
+		sources[slot] = source;
+		targets[slot] = target;
+		size++;
+	}
+
+	private void grow() {
+		AdaptableType[] oldSources = sources;
+		AdaptableType[] oldTargets = targets;
+		sources = new AdaptableType[oldSources.length * 2];
+		targets = new AdaptableType[oldSources.length * 2];
+		size = 0;
+		for (int i = 0; i < oldSources.length; i++) {
+			if (oldSources[i] != null) {
+				insert(oldSources[i], oldTargets[i]);
+			}
+		}
+	}
+
+	private static int hash(AdaptableType source) {
+		// spread the identity hash, as sequential objects often have similar ones
+		int h = System.identityHashCode(source) * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+}
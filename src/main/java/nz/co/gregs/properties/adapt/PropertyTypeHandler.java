@@ -1,9 +1,9 @@
 package nz.co.gregs.properties.adapt;
 
 import nz.co.gregs.properties.exceptions.UnsupportedType;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import nz.co.gregs.properties.InterfaceInfo;
 import nz.co.gregs.properties.JavaProperty;
 
@@ -27,12 +27,22 @@ import nz.co.gregs.properties.exceptions.InvalidDeclaredTypeException;
  */
 public abstract class PropertyTypeHandler {
 
+  /**
+   * Resolved generic parameter bounds of each type adaptor class seen so far.
+   *
+   * <p>
+   * Resolving the bounds walks the whole generic type hierarchy of the adaptor, and the result depends only on the adaptor class, so it is shared by every
+   * property using the adaptor. An empty array records an adaptor that {@link InterfaceInfo} couldn't handle.
+   */
+  private static final Map<Class<?>, InterfaceInfo.ParameterBounds[]> TYPE_ADAPTOR_BOUNDS = new ConcurrentHashMap<>();
+
   private JavaProperty javaProperty;
   private Class<? extends AdaptableType> adaptableTypeClass;
   private TypeAdaptor<Object, Object> typeAdaptor;
   private AdaptableTypeSyncer internalAdaptableTypeSyncer;
   private boolean identityOnly;
   private AdaptType annotation;
+  private TypeAdaptorRegistry typeAdaptorRegistry = new TypeAdaptorRegistry();
 
   /**
    * Create a new PropertyTypeHandler.
@@ -83,7 +93,8 @@ public abstract class PropertyTypeHandler {
       }
     }
     // validation: type adaptor must not be an interface or abstract
-    if (typeAdaptorClass != null) {
+    // (unless an instance has been registered for it)
+    if (typeAdaptorClass != null && !typeAdaptorRegistry.isRegistered(typeAdaptorClass)) {
       if (typeAdaptorClass.isInterface()) {
         throw new InvalidDeclaredTypeException("Type adaptor " + typeAdaptorClass.getName()
                 + " must not be an interface, on " + javaProperty1);
@@ -99,16 +110,7 @@ public abstract class PropertyTypeHandler {
     //   This is intentional to future-proof and because generics of type
     //   hierarchies is tremendously complex and its process very prone to error.)
     if (typeAdaptorClass != null) {
-      InterfaceInfo.ParameterBounds[] parameterBounds = null;
-      try {
-        InterfaceInfo interfaceInfo = new InterfaceInfo(TypeAdaptor.class, typeAdaptorClass);
-        parameterBounds = interfaceInfo.getInterfaceParameterValueBounds();
-      } catch (UnsupportedOperationException dropped) {
-        // bumped into generics that can't be handled, so best to give the
-        // end-user the benefit of doubt and just skip the validation
-//                logger.debug("Cancelled validation on type adaptor " + typeAdaptorClass.getName()
-//                        + " due to internal error: " + dropped.getMessage(), dropped);
-      }
+      InterfaceInfo.ParameterBounds[] parameterBounds = typeAdaptorParameterBoundsOf(typeAdaptorClass);
       if (parameterBounds != null && parameterBounds.length == 2) {
         if (parameterBounds[0].isUpperMulti()) {
           throw new InvalidDeclaredTypeException("Type adaptor " + typeAdaptorClass.getName() + " must not be"
@@ -227,7 +229,7 @@ public abstract class PropertyTypeHandler {
       this.internalAdaptableTypeSyncer = null;
     } else {
       // initialise type adapting
-      this.typeAdaptor = newTypeAdaptorInstanceGiven(javaProperty1, getAnnotation());
+      this.typeAdaptor = newTypeAdaptorInstanceGiven(typeAdaptorRegistry, javaProperty1, getAnnotation());
       Class<? extends AdaptableType> type = explicitTypeOrNullOf(getAnnotation());
       if (type == null && typeAdaptorInternalType != null) {
         type = inferredAdaptableTypeForSimpleType(typeAdaptorInternalType);
@@ -251,6 +253,81 @@ public abstract class PropertyTypeHandler {
     }
   }
 
+  /**
+   * Creates a new handler of the same type as this handler and initialises it for the supplied property.
+   *
+   * <p>
+   * Handlers hold the state of a single property, so every {@link nz.co.gregs.properties.PropertyDefinition} needs its own. This handler is used as the
+   * prototype.
+   *
+   * <p>
+   * The default implementation uses the public default constructor of the handler's class. A handler without one is initialised and returned itself, as
+   * before handlers were copied, so it is shared by every property that uses it. Override this method if your handler doesn't have a default
+   * constructor or needs extra configuration copied across, and give the new handler this handler's {@link #getTypeAdaptorRegistry() registry}.
+   *
+   * @param javaProperty the property to track
+   * @param processIdentityOnly whether the property is identity or identity+value
+   * @return a new handler initialised for the property
+   * @throws InvalidDeclaredTypeException javaProperty is not an AdaptableType or correctly annotated
+   */
+  public PropertyTypeHandler newHandlerFor(JavaProperty javaProperty, boolean processIdentityOnly) throws InvalidDeclaredTypeException {
+    Instantiator<? extends PropertyTypeHandler> instantiator = Instantiator.ofPublic(getClass());
+    if (!instantiator.isInstantiable()) {
+      // (the original behaviour, for handlers written before newHandlerFor existed)
+      initialiseHandler(javaProperty, processIdentityOnly);
+      return this;
+    }
+    PropertyTypeHandler newHandler = instantiator.newInstance();
+    newHandler.setTypeAdaptorRegistry(typeAdaptorRegistry);
+    newHandler.initialiseHandler(javaProperty, processIdentityOnly);
+    return newHandler;
+  }
+
+  /**
+   * Gets the generic parameter bounds of the type adaptor class, as declared on its {@link TypeAdaptor} interface.
+   *
+   * <p>
+   * The bounds are resolved once per adaptor class and cached.
+   *
+   * @param typeAdaptorClass the type adaptor class to inspect
+   * @return the bounds of the external and internal types, or an empty array if they couldn't be resolved
+   */
+  public static InterfaceInfo.ParameterBounds[] typeAdaptorParameterBoundsOf(Class<?> typeAdaptorClass) {
+    InterfaceInfo.ParameterBounds[] parameterBounds = TYPE_ADAPTOR_BOUNDS.get(typeAdaptorClass);
+    if (parameterBounds == null) {
+      try {
+        InterfaceInfo interfaceInfo = new InterfaceInfo(TypeAdaptor.class, typeAdaptorClass);
+        parameterBounds = interfaceInfo.getInterfaceParameterValueBounds();
+      } catch (UnsupportedOperationException dropped) {
+        // bumped into generics that can't be handled, so best to give the
+        // end-user the benefit of doubt and just skip the validation
+//                logger.debug("Cancelled validation on type adaptor " + typeAdaptorClass.getName()
+//                        + " due to internal error: " + dropped.getMessage(), dropped);
+      }
+      if (parameterBounds == null) {
+        parameterBounds = new InterfaceInfo.ParameterBounds[0];
+      }
+      TYPE_ADAPTOR_BOUNDS.putIfAbsent(typeAdaptorClass, parameterBounds);
+    }
+    return parameterBounds;
+  }
+
+  /**
+   * Records previously resolved generic parameter bounds for the type adaptor class, so they don't need to be resolved again.
+   *
+   * <p>
+   * Used when restoring metadata saved by an earlier run. Bounds that have already been resolved in this JVM are not replaced.
+   *
+   * @param typeAdaptorClass the type adaptor class
+   * @param externalType the resolved upper class of the adaptor's external type
+   * @param internalType the resolved upper class of the adaptor's internal type
+   */
+  public static void registerTypeAdaptorParameterBounds(Class<?> typeAdaptorClass, Class<?> externalType, Class<?> internalType) {
+    TYPE_ADAPTOR_BOUNDS.putIfAbsent(typeAdaptorClass, new InterfaceInfo.ParameterBounds[]{
+      new InterfaceInfo.ParameterBounds(new Class<?>[]{externalType}, null),
+      new InterfaceInfo.ParameterBounds(new Class<?>[]{internalType}, null)});
+  }
+
   /**
    * Infers the AdaptableType-type that corresponds to the given simple type. Used to infer the AdaptableType-type that should be used internally, based on the
    * type supplied by the type adaptor.
@@ -396,6 +473,37 @@ public abstract class PropertyTypeHandler {
     }
   }
 
+  /**
+   * Gets the AdaptableType-centric value from the underlying java property like {@link #getJavaPropertyAsAdaptableType(Object)}, but converts a
+   * type-adapted value into a new AdaptableType instead of the one cached in the handler's {@link AdaptableTypeSyncer}.
+   *
+   * <p>
+   * The syncer is shared by every instance of the class, so this method can be used on many instances at once. Changing the AdaptableType returned for
+   * a type-adapted property doesn't change the java property.
+   *
+   * @param target object containing the property
+   * @return the AdaptableType-centric property value
+   * @throws DBThrownByEndUserCodeException if any user code throws an exception
+   * @throws IllegalStateException if the underlying java property is not readable
+   */
+  public AdaptableType readJavaPropertyAsAdaptableType(Object target) {
+    if (isIdentityOnly()) {
+      throw new AssertionError("Attempt to read value from identity-only property");
+    }
+
+    // get via type adaptor and simple-type java property
+    if (getTypeAdaptor() != null && getInternalAdaptableTypeSyncer() instanceof SimpleValueAdaptableTypeSyncer) {
+      SimpleValueAdaptableTypeSyncer syncer = (SimpleValueAdaptableTypeSyncer) getInternalAdaptableTypeSyncer();
+      return syncer.newInternalTypeFromExternalSimpleValue(getJavaProperty().get(target));
+    } // get via type adaptor and QDT java property
+    else if (getTypeAdaptor() != null) {
+      return getInternalAdaptableTypeSyncer().newInternalFromExternal((AdaptableType) getJavaProperty().get(target));
+    } // get directly without type adaptor
+    else {
+      return (AdaptableType) getJavaProperty().get(target);
+    }
+  }
+
   /**
    * Sets the underlying java property according to the given AdaptableType-centric value. This method behaves correctly regardless of whether an
    * {@link AdaptType} annotation is present.
@@ -410,12 +518,35 @@ public abstract class PropertyTypeHandler {
     if (isIdentityOnly()) {
       throw new AssertionError("Attempt to write value to identity-only property");
     }
+    if (getTypeAdaptor() != null) {
+      // later reads convert into the value written
+      getInternalAdaptableTypeSyncer().setInternalAdaptableType(source);
+    }
+    writeJavaPropertyAsAdaptableType(target, source);
+  }
+
+  /**
+   * Sets the underlying java property according to the given AdaptableType-centric value, without caching the value for later reads.
+   *
+   * <p>
+   * Unlike {@link #setJavaPropertyAsAdaptableType(Object, AdaptableType)}, this method keeps no state in the handler's {@link AdaptableTypeSyncer}, which is
+   * shared by every instance of the class, so it can be used on many instances at once.
+   *
+   * @param target object containing the property
+   * @param source source value as an AdaptableType
+   *
+   * @throws DBThrownByEndUserCodeException if any user code throws an exception
+   * @throws IllegalStateException if the underlying java property is not writable
+   */
+  public void writeJavaPropertyAsAdaptableType(Object target, AdaptableType source) {
+    if (isIdentityOnly()) {
+      throw new AssertionError("Attempt to write value to identity-only property");
+    }
 
     // set via type adaptor and simple-type java property
     if (getTypeAdaptor() != null && getInternalAdaptableTypeSyncer() instanceof SimpleValueAdaptableTypeSyncer) {
       SimpleValueAdaptableTypeSyncer syncer = (SimpleValueAdaptableTypeSyncer) getInternalAdaptableTypeSyncer();
-      syncer.setInternalAdaptableType(source);
-      Object externalValue = syncer.getExternalSimpleValueFromInternalAdaptableType();
+      Object externalValue = syncer.getExternalSimpleValueFrom(source);
 
       // TODO think this still needs some last-minute type checks
       getJavaProperty().set(target, externalValue);
@@ -427,8 +558,7 @@ public abstract class PropertyTypeHandler {
       AdaptableType externalAdaptableType = (AdaptableType) externalValue;
 
       // convert
-      getInternalAdaptableTypeSyncer().setInternalAdaptableType(source);
-      externalAdaptableType = getInternalAdaptableTypeSyncer().setExternalFromInternal(externalAdaptableType);
+      externalAdaptableType = getInternalAdaptableTypeSyncer().setExternalFromInternal(externalAdaptableType, source);
       if (externalAdaptableType == null && externalValue != null) {
         getJavaProperty().set(target, null);
       }
@@ -440,16 +570,14 @@ public abstract class PropertyTypeHandler {
   }
 
   /**
-   * Constructs a new instance of the type adaptor referenced by the given annotation instance. Handles all exceptions and throws them as the appropriate runtime
-   * exceptions
-   *
-   *
+   * Gets the type adaptor referenced by the given annotation instance: the instance in the {@link TypeAdaptorRegistry}, or a new instance. Handles all
+   * exceptions and throws them as the appropriate runtime exceptions
    *
-   * @return a new instance of the type adaptor
+   * @return the registered or a new instance of the type adaptor
    * @throws PropertyException on unexpected internal errors, and
    * @throws InvalidDeclaredTypeException on errors with the end-user supplied code
    */
-  private static TypeAdaptor<Object, Object> newTypeAdaptorInstanceGiven(JavaProperty property, AdaptType annotation) {
+  private static TypeAdaptor<Object, Object> newTypeAdaptorInstanceGiven(TypeAdaptorRegistry registry, JavaProperty property, AdaptType annotation) {
     Class<? extends TypeAdaptor<?, ?>> adaptorClass = annotation.value();
     if (adaptorClass == null) {
       // shouldn't be possible
@@ -457,6 +585,24 @@ public abstract class PropertyTypeHandler {
               + ".adptor() (probably a bug in DBvolution)");
     }
 
+    // use the registered or shared instance, if any
+    TypeAdaptor<?, ?> instance = registry.getAdaptor(adaptorClass);
+    if (instance == null) {
+      instance = newTypeAdaptorInstance(property, adaptorClass);
+      if (TypeAdaptorRegistry.isStateless(adaptorClass)) {
+        instance = TypeAdaptorRegistry.share(adaptorClass, instance);
+      }
+    }
+
+    // downcast
+    // (technically the instance is for <?,? extends QueryableDataType> but
+    //  that can't be used reflectively when all we know is Object and QueryableDataType)
+    @SuppressWarnings("unchecked")
+    TypeAdaptor<Object, Object> result = (TypeAdaptor<Object, Object>) instance;
+    return result;
+  }
+
+  private static TypeAdaptor<?, ?> newTypeAdaptorInstance(JavaProperty property, Class<? extends TypeAdaptor<?, ?>> adaptorClass) {
     if (adaptorClass.isInterface()) {
       throw new InvalidDeclaredTypeException("TypeAdaptor cannot be an interface (" + adaptorClass.getSimpleName()
               + "), on property " + property.qualifiedName());
@@ -466,63 +612,25 @@ public abstract class PropertyTypeHandler {
               + "), on property " + property.qualifiedName());
     }
 
-    try {
-      adaptorClass.newInstance();
-    } catch (InstantiationException e) {
-      throw new InvalidDeclaredTypeException("Type adaptor " + adaptorClass.getName()
-              + " could not be constructed, on property "
-              + property.qualifiedName() + ": " + e.getMessage(), e);
-    } catch (IllegalAccessException e) {
-      throw new InvalidDeclaredTypeException("Type adaptor " + adaptorClass.getName()
-              + " could not be constructed, on property "
-              + property.qualifiedName() + ": " + e.getMessage(), e);
-    }
-
-    // get default constructor
-    Constructor<? extends TypeAdaptor<?, ?>> constructor;
-    try {
-      constructor = adaptorClass.getConstructor();
-    } catch (NoSuchMethodException e) {
+    // construct adaptor instance
+    // (the constructor is found once per adaptor class and shared)
+    Instantiator<? extends TypeAdaptor<?, ?>> instantiator = Instantiator.ofPublic(adaptorClass);
+    if (!instantiator.isInstantiable()) {
       throw new InvalidDeclaredTypeException("Type adaptor " + adaptorClass.getName()
-              + " has no default constructor, on property "
-              + property.qualifiedName(), e);
-    } catch (SecurityException e) {
-      // caused by a Java security manager or an attempt to access a non-visible field
-      // without first making it visible
-      throw new PropertyException("Java security error retrieving constructor for " + adaptorClass.getName()
-              + ", referenced by property " + property.qualifiedName() + ": " + e.getLocalizedMessage(), e);
+              + " has no public default constructor, on property "
+              + property.qualifiedName() + ": " + instantiator.getProblem().getMessage(), instantiator.getProblem());
     }
-
-    // construct adaptor instance
     TypeAdaptor<?, ?> instance;
     try {
-      instance = constructor.newInstance();
-    } catch (InstantiationException e) {
-      throw new InvalidDeclaredTypeException(adaptorClass.getName() + " cannot be constructed (it is probably abstract), referenced by property "
-              + property.qualifiedName(), e);
-    } catch (IllegalAccessException e) {
-      // caused by a Java security manager or an attempt to access a non-visible field
-      // without first making it visible
-      throw new PropertyException("Java security error instantiating " + adaptorClass.getName()
-              + ", referenced by property " + property.qualifiedName() + ": " + e.getLocalizedMessage(), e);
-    } catch (IllegalArgumentException e) {
-      // expected, so probably represents a bug
-      throw new IllegalArgumentException("Internal error instantiating "
-              + adaptorClass.getName() + ", referenced by property " + property.qualifiedName() + ": " + e.getLocalizedMessage(), e);
-    } catch (InvocationTargetException e) {
-      // any checked or runtime exception thrown by the setter method itself
+      instance = instantiator.newInstance();
+    } catch (DBThrownByEndUserCodeException e) {
+      // any checked or runtime exception thrown by the constructor itself
       Throwable cause = (e.getCause() == null) ? e : e.getCause();
       String msg = (cause.getLocalizedMessage() == null) ? "" : ": " + cause.getLocalizedMessage();
       throw new DBThrownByEndUserCodeException("Constructor threw " + cause.getClass().getSimpleName() + " when instantiating "
               + adaptorClass.getName() + ", referenced by property " + property.qualifiedName() + msg, cause);
     }
-
-    // downcast
-    // (technically the instance is for <?,? extends QueryableDataType> but
-    //  that can't be used reflectively when all we know is Object and QueryableDataType)
-    @SuppressWarnings("unchecked")
-    TypeAdaptor<Object, Object> result = (TypeAdaptor<Object, Object>) instance;
-    return result;
+    return instance;
   }
 
   /**
@@ -563,6 +671,34 @@ public abstract class PropertyTypeHandler {
     return typeAdaptor;
   }
 
+  /**
+   * Gets the registry of the type adaptors used by the properties this handler, and the handlers it creates, examine.
+   *
+   * <p>
+   * Register adaptors here, on the handler given to a {@link nz.co.gregs.properties.PropertyContainerWrapperFactory}, to use them for the container
+   * classes that factory wraps.
+   *
+   * @return the registry shared with the handlers created by {@link #newHandlerFor(JavaProperty, boolean)}
+   */
+  public TypeAdaptorRegistry getTypeAdaptorRegistry() {
+    return typeAdaptorRegistry;
+  }
+
+  /**
+   * Replaces the registry of the type adaptors used by this handler, for instance to share one registry between several handlers.
+   *
+   * <p>
+   * Set the registry before the handler examines any property.
+   *
+   * @param typeAdaptorRegistry the registry to use
+   */
+  public void setTypeAdaptorRegistry(TypeAdaptorRegistry typeAdaptorRegistry) {
+    if (typeAdaptorRegistry == null) {
+      throw new IllegalArgumentException("A handler needs a type adaptor registry");
+    }
+    this.typeAdaptorRegistry = typeAdaptorRegistry;
+  }
+
   /**
    * Returns the internal AdaptableTypeSyncer
    * 
@@ -214,19 +214,25 @@ public class SafeOneWaySimpleTypeAdaptor {
    * @throws DBThrownByEndUserCodeException if the type adaptor throws an exception
    */
   public Object convert(Object value) {
-    String valStr = (value == null) ? "null" : value.getClass().getSimpleName() + "[" + value + "]";
     try {
       Object result = convertInternal(value);
 
-      String resultStr = (result == null) ? "null" : result.getClass().getSimpleName() + "[" + result + "]";
-      log.debug(this + " converting " + valStr + " ==> " + resultStr);
+      if (log.isDebugEnabled()) {
+        log.debug(this + " converting " + debugString(value) + " ==> " + debugString(result));
+      }
       return result;
     } catch (RuntimeException e) {
-      log.debug(this + " converting " + valStr + " ==> " + e.getClass().getSimpleName());
+      if (log.isDebugEnabled()) {
+        log.debug(this + " converting " + debugString(value) + " ==> " + e.getClass().getSimpleName());
+      }
       throw e;
     }
   }
 
+  private static String debugString(Object value) {
+    return (value == null) ? "null" : value.getClass().getSimpleName() + "[" + value + "]";
+  }
+
   private Object convertInternal(Object value) {
     // validate source
     if (sourceCast != null && value != null) {
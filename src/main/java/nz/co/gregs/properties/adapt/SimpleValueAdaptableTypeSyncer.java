@@ -56,6 +56,39 @@ public class SimpleValueAdaptableTypeSyncer extends AdaptableTypeSyncer {
 		return internal;
 	}
 
+	/**
+	 * Creates a new internal AdaptableType holding the value adapted from the
+	 * provided non-QDT external value, without touching the cached internal
+	 * instance.
+	 *
+	 * @param externalValue may be null
+	 * @return a new internal AdaptableType
+	 */
+	public AdaptableType newInternalTypeFromExternalSimpleValue(Object externalValue) {
+		AdaptableType internal = newInternalInstance();
+		internal.setValue(getToInternalSimpleTypeAdaptor().convert(externalValue));
+		return internal;
+	}
+
+	/**
+	 * Adapts the value of the provided internal AdaptableType to the external
+	 * simple type, without touching the cached internal instance.
+	 *
+	 * <p>
+	 * Warning: this directly returns the value from the type adaptor, without
+	 * casting to the specific type expected by the target java property.
+	 *
+	 * @param internal the internal AdaptableType, which may be null
+	 * @return the external value as a base Java object
+	 */
+	public Object getExternalSimpleValueFrom(AdaptableType internal) {
+		if (internal == null) {
+			return getToExternalSimpleTypeAdaptor().convert(null);
+		}
+		checkInternalType(internal);
+		return getToExternalSimpleTypeAdaptor().convert(internal.getValue());
+	}
+
 	/**
 	 * Warning: this directly returns the value from the type adaptor, without
 	 * casting to the specific type expected by the target java property.
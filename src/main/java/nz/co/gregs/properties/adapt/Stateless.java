@@ -0,0 +1,34 @@
+package nz.co.gregs.properties.adapt;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a {@link TypeAdaptor} as holding no state, so that one instance can be
+ * shared by every property it adapts.
+ *
+ * <p>
+ * Without this annotation each property annotated with {@link AdaptType} gets
+ * its own instance of the adaptor. With it, the first instance created is
+ * kept with the adaptor class and used for every property of every container
+ * class, whichever handler examines it, unless a {@link TypeAdaptorRegistry}
+ * has another instance registered. The adaptor's methods must be safe to
+ * call from many threads at once.
+ *
+ * <pre>
+ * &#64;Stateless
+ * public class TrimmingStringAdaptor implements TypeAdaptor&lt;String, String&gt; {
+ *	...
+ * }
+ * </pre>
+ *
+ * @author Gregory Graham
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Stateless {
+}
@@ -0,0 +1,134 @@
+package nz.co.gregs.properties.adapt;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * The {@link TypeAdaptor} instances shared by the properties that use their
+ * classes.
+ *
+ * <p>
+ * Each {@link PropertyTypeHandler} has a registry, which the handlers it
+ * creates for each property share, so the adaptors registered for the handler
+ * given to a {@link nz.co.gregs.properties.PropertyContainerWrapperFactory}
+ * are used by every container class that factory wraps, and by no other.
+ *
+ * <p>
+ * When a property annotated with {@link AdaptType} is examined, the adaptor
+ * registered for the annotation's class is used if there is one. Otherwise a
+ * new adaptor is created for the property, unless the adaptor class is marked
+ * {@link Stateless}, in which case the first instance created is kept with
+ * the adaptor class itself and shared by every registry from then on. Keeping
+ * it with the class means it is unloaded along with the class.
+ *
+ * <p>
+ * Registering an instance lets adaptors be created with configuration, or
+ * by a dependency injection container, rather than by their default
+ * constructor. The registered class may even be an interface or abstract
+ * class. Register adaptors before the container classes that use them are
+ * first wrapped, as the wrappers keep the adaptors they were built with.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class TypeAdaptorRegistry {
+
+	/**
+	 * The shared instance of each {@link Stateless} adaptor class, once one
+	 * has been created.
+	 */
+	private static final ClassValue<AtomicReference<TypeAdaptor<?, ?>>> STATELESS_ADAPTORS = new ClassValue<AtomicReference<TypeAdaptor<?, ?>>>() {
+		@Override
+		protected AtomicReference<TypeAdaptor<?, ?>> computeValue(Class<?> type) {
+			return new AtomicReference<>();
+		}
+	};
+
+	private final Map<Class<?>, TypeAdaptor<?, ?>> adaptors = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates an empty registry.
+	 */
+	public TypeAdaptorRegistry() {
+	}
+
+	/**
+	 * Registers an adaptor to be used by every property that names its class
+	 * in an {@link AdaptType} annotation.
+	 *
+	 * <p>
+	 * The adaptor is shared, so it must be safe to call from many threads at
+	 * once.
+	 *
+	 * @param <A> the adaptor class
+	 * @param adaptorClass the class named by the annotations
+	 * @param adaptor the adaptor to use
+	 * @return the adaptor previously registered for the class, or null
+	 */
+	public <A extends TypeAdaptor<?, ?>> TypeAdaptor<?, ?> register(Class<A> adaptorClass, A adaptor) {
+		if (adaptorClass == null || adaptor == null) {
+			throw new IllegalArgumentException("Registering a type adaptor needs both a class and an instance");
+		}
+		return adaptors.put(adaptorClass, adaptor);
+	}
+
+	/**
+	 * Removes the adaptor registered for the class.
+	 *
+	 * <p>
+	 * Container classes that have already been wrapped keep using the
+	 * adaptor.
+	 *
+	 * @param adaptorClass the class named by the annotations
+	 * @return the adaptor that was registered, or null
+	 */
+	public TypeAdaptor<?, ?> unregister(Class<? extends TypeAdaptor<?, ?>> adaptorClass) {
+		return adaptors.remove(adaptorClass);
+	}
+
+	/**
+	 * Gets the adaptor registered for the class, or the shared instance of a
+	 * {@link Stateless} adaptor class.
+	 *
+	 * @param <A> the adaptor class
+	 * @param adaptorClass the class named by the annotations
+	 * @return the registered or shared {@link Stateless} adaptor, or null
+	 */
+	@SuppressWarnings("unchecked")
+	public <A extends TypeAdaptor<?, ?>> A getAdaptor(Class<A> adaptorClass) {
+		TypeAdaptor<?, ?> adaptor = adaptors.get(adaptorClass);
+		if (adaptor == null && isStateless(adaptorClass)) {
+			adaptor = STATELESS_ADAPTORS.get(adaptorClass).get();
+		}
+		return (A) adaptor;
+	}
+
+	/**
+	 * Indicates whether an adaptor has been registered for the class.
+	 */
+	boolean isRegistered(Class<?> adaptorClass) {
+		return adaptors.containsKey(adaptorClass);
+	}
+
+	/**
+	 * Indicates whether one instance of the adaptor class may be shared by
+	 * all properties.
+	 */
+	static boolean isStateless(Class<?> adaptorClass) {
+		return adaptorClass.isAnnotationPresent(Stateless.class);
+	}
+
+	/**
+	 * Keeps a newly created stateless adaptor unless another thread got there
+	 * first.
+	 *
+	 * @return the adaptor to share
+	 */
+	static TypeAdaptor<?, ?> share(Class<?> adaptorClass, TypeAdaptor<?, ?> adaptor) {
+		AtomicReference<TypeAdaptor<?, ?>> shared = STATELESS_ADAPTORS.get(adaptorClass);
+		return shared.compareAndSet(null, adaptor) ? adaptor : shared.get();
+	}
+}
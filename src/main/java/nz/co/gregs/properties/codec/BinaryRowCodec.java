@@ -0,0 +1,465 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+
+/**
+ * Compact binary encoding of property containers.
+ *
+ * <p>
+ * The properties written are those of the class's {@code PropertyDefinition}
+ * list that are readable and writable, and each must have an integral,
+ * floating point, String, Date, or Boolean literal type. An encoded row is:
+ * <ul>
+ * <li>the 8 byte schema fingerprint, a hash of the property names and
+ * encodings, which is checked when decoding,
+ * <li>a bitmap with one bit per property, set when the value is null,
+ * <li>each non-null value in property order: integral numbers as zig-zag
+ * varints, floating point numbers as 8 byte doubles, Strings as a varint
+ * length followed by UTF-8 bytes, Dates as zig-zag varint epoch milliseconds,
+ * and Booleans as a single byte.
+ * </ul>
+ *
+ * <p>
+ * The {@code ByteBuffer} methods read and write the buffer directly, with no
+ * intermediate copies, and always use big-endian byte order whatever the order
+ * of the buffer. Use {@link #encodedSize(nz.co.gregs.properties.PropertyContainer)}
+ * to size buffers.
+ *
+ * <p>
+ * The stream methods write the fingerprint once, followed by each row
+ * prefixed with its length, so lists can be written and read one row at a
+ * time.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class BinaryRowCodec<T extends PropertyContainer> {
+
+	private final Class<T> clazz;
+	private final RowSchema schema;
+
+	/**
+	 * Creates a codec for the class.
+	 *
+	 * @param clazz the class of the containers
+	 * @param factory the factory providing the class's metadata
+	 * @throws PropertyCodecException if a property has a literal type that
+	 * can't be encoded
+	 */
+	public BinaryRowCodec(Class<T> clazz, PropertyContainerWrapperFactory factory) {
+		this.clazz = clazz;
+		this.schema = new RowSchema(factory.classWrapperFor(clazz));
+	}
+
+	/**
+	 * Gets the fingerprint of the property names and encodings written at the
+	 * start of every row and stream.
+	 *
+	 * @return the schema fingerprint
+	 */
+	public long schemaFingerprint() {
+		return schema.fingerprint();
+	}
+
+	/**
+	 * Calculates the number of bytes
+	 * {@link #encode(nz.co.gregs.properties.PropertyContainer, java.nio.ByteBuffer)}
+	 * will write for the row.
+	 *
+	 * @param row the container to encode
+	 * @return the encoded size in bytes
+	 */
+	public int encodedSize(T row) {
+		return Long.BYTES + bodySize(row);
+	}
+
+	/**
+	 * Encodes the row into the buffer, starting at the buffer's position.
+	 *
+	 * @param row the container to encode
+	 * @param out the buffer to write to
+	 * @throws java.nio.BufferOverflowException if the buffer doesn't have
+	 * {@link #encodedSize(nz.co.gregs.properties.PropertyContainer)} bytes
+	 * remaining
+	 */
+	public void encode(T row, ByteBuffer out) {
+		putLong(out, schema.fingerprint());
+		encodeBody(row, out);
+	}
+
+	/**
+	 * Decodes a row from the buffer into a new container.
+	 *
+	 * @param in the buffer to read from, starting at its position
+	 * @return a new container holding the decoded values
+	 * @throws PropertyCodecException if the row was written for a different
+	 * schema or is truncated
+	 */
+	public T decode(ByteBuffer in) {
+		return decode(in, clazz.cast(schema.newContainer()));
+	}
+
+	/**
+	 * Decodes a row from the buffer into an existing container, replacing the
+	 * values of all encoded properties.
+	 *
+	 * @param in the buffer to read from, starting at its position
+	 * @param target the container to set the values on
+	 * @return the target
+	 * @throws PropertyCodecException if the row was written for a different
+	 * schema or is truncated
+	 */
+	public T decode(ByteBuffer in, T target) {
+		try {
+			checkFingerprint(getLong(in));
+			decodeBody(in, target);
+			return target;
+		} catch (BufferUnderflowException ex) {
+			throw new PropertyCodecException("Truncated row of " + schema.getClassWrapper().qualifiedJavaName(), ex);
+		}
+	}
+
+	/**
+	 * Encodes the rows to the stream.
+	 *
+	 * <p>
+	 * The rows are encoded one at a time, so the iterable may be lazily
+	 * produced. The stream is not closed.
+	 *
+	 * @param rows the containers to encode
+	 * @param out the stream to write to
+	 * @throws IOException if the stream can't be written
+	 */
+	public void encodeAll(Iterable<? extends T> rows, OutputStream out) throws IOException {
+		byte[] header = new byte[Long.BYTES];
+		ByteBuffer.wrap(header).putLong(schema.fingerprint());
+		out.write(header);
+		ByteBuffer buffer = ByteBuffer.allocate(256);
+		for (T row : rows) {
+			int size = bodySize(row);
+			int required = size + 5;
+			if (buffer.capacity() < required) {
+				buffer = ByteBuffer.allocate(Math.max(required, buffer.capacity() * 2));
+			}
+			buffer.clear();
+			// (note: length+1 so that 0 can mark the end of the stream)
+			putVarint(buffer, size + 1);
+			encodeBody(row, buffer);
+			out.write(buffer.array(), 0, buffer.position());
+		}
+		out.write(0);
+	}
+
+	/**
+	 * Decodes all rows from the stream into a list.
+	 *
+	 * @param in the stream to read from
+	 * @return new containers holding the decoded values, in stream order
+	 * @throws IOException if the stream can't be read
+	 * @throws PropertyCodecException if the stream was written for a different
+	 * schema or is truncated
+	 */
+	public List<T> decodeAll(InputStream in) throws IOException {
+		List<T> rows = new ArrayList<>();
+		decodeAll(in, rows::add);
+		return rows;
+	}
+
+	/**
+	 * Decodes the rows from the stream one at a time, passing each to the
+	 * consumer as it is decoded.
+	 *
+	 * <p>
+	 * Reads up to the end-of-rows marker, leaving the stream open and
+	 * positioned after it. Single bytes are read from the stream so a buffered
+	 * stream is recommended.
+	 *
+	 * @param in the stream to read from
+	 * @param consumer receives each new container
+	 * @throws IOException if the stream can't be read
+	 * @throws PropertyCodecException if the stream was written for a different
+	 * schema or is truncated
+	 */
+	public void decodeAll(InputStream in, Consumer<? super T> consumer) throws IOException {
+		byte[] header = new byte[Long.BYTES];
+		if (in.readNBytes(header, 0, Long.BYTES) < Long.BYTES) {
+			throw new PropertyCodecException("Truncated stream of " + schema.getClassWrapper().qualifiedJavaName());
+		}
+		checkFingerprint(ByteBuffer.wrap(header).getLong());
+		byte[] body = new byte[256];
+		int length;
+		while ((length = readVarint(in)) != 0) {
+			int size = length - 1;
+			if (body.length < size) {
+				body = new byte[Math.max(size, body.length * 2)];
+			}
+			if (in.readNBytes(body, 0, size) < size) {
+				throw new PropertyCodecException("Truncated stream of " + schema.getClassWrapper().qualifiedJavaName());
+			}
+			T row = clazz.cast(schema.newContainer());
+			try {
+				decodeBody(ByteBuffer.wrap(body, 0, size), row);
+			} catch (BufferUnderflowException ex) {
+				throw new PropertyCodecException("Corrupt row in stream of " + schema.getClassWrapper().qualifiedJavaName(), ex);
+			}
+			consumer.accept(row);
+		}
+	}
+
+	private void checkFingerprint(long fingerprint) {
+		if (fingerprint != schema.fingerprint()) {
+			throw new PropertyCodecException("Schema fingerprint " + Long.toHexString(fingerprint)
+					+ " does not match " + Long.toHexString(schema.fingerprint())
+					+ " of " + schema.getClassWrapper().qualifiedJavaName()
+					+ ", the data was written for a different version of the class");
+		}
+	}
+
+	private int bodySize(T row) {
+		int size = (schema.size() + 7) / 8;
+		for (int i = 0; i < schema.size(); i++) {
+			Object value = schema.get(row, i);
+			if (value != null) {
+				switch (schema.kind(i)) {
+					case LONG:
+						size += varintSize(zigzag(((Number) value).longValue()));
+						break;
+					case DOUBLE:
+						size += Double.BYTES;
+						break;
+					case STRING:
+						int length = utf8Length((String) value);
+						size += varintSize(length) + length;
+						break;
+					case DATE:
+						size += varintSize(zigzag(((Date) value).getTime()));
+						break;
+					case BOOLEAN:
+						size += 1;
+						break;
+				}
+			}
+		}
+		return size;
+	}
+
+	private void encodeBody(T row, ByteBuffer out) {
+		int count = schema.size();
+		int bitmapStart = out.position();
+		for (int i = 0; i < (count + 7) / 8; i++) {
+			out.put((byte) 0);
+		}
+		for (int i = 0; i < count; i++) {
+			Object value = schema.get(row, i);
+			if (value == null) {
+				int index = bitmapStart + (i >>> 3);
+				out.put(index, (byte) (out.get(index) | (1 << (i & 7))));
+			} else {
+				switch (schema.kind(i)) {
+					case LONG:
+						putVarint(out, zigzag(((Number) value).longValue()));
+						break;
+					case DOUBLE:
+						putLong(out, Double.doubleToRawLongBits(((Number) value).doubleValue()));
+						break;
+					case STRING:
+						putString(out, (String) value);
+						break;
+					case DATE:
+						putVarint(out, zigzag(((Date) value).getTime()));
+						break;
+					case BOOLEAN:
+						out.put(((Boolean) value) ? (byte) 1 : (byte) 0);
+						break;
+				}
+			}
+		}
+	}
+
+	private void decodeBody(ByteBuffer in, T target) {
+		int count = schema.size();
+		int bitmapStart = in.position();
+		int bitmapSize = (count + 7) / 8;
+		if (in.remaining() < bitmapSize) {
+			throw new BufferUnderflowException();
+		}
+		in.position(bitmapStart + bitmapSize);
+		for (int i = 0; i < count; i++) {
+			Object value;
+			if ((in.get(bitmapStart + (i >>> 3)) & (1 << (i & 7))) != 0) {
+				value = null;
+			} else {
+				switch (schema.kind(i)) {
+					case LONG:
+						value = schema.fromLong(i, unzigzag(getVarint(in)));
+						break;
+					case DOUBLE:
+						value = schema.fromDouble(i, Double.longBitsToDouble(getLong(in)));
+						break;
+					case STRING:
+						value = getString(in);
+						break;
+					case DATE:
+						value = schema.fromEpochMillis(i, unzigzag(getVarint(in)));
+						break;
+					default:
+						value = in.get() != 0;
+						break;
+				}
+			}
+			schema.set(target, i, value);
+		}
+	}
+
+	private static long zigzag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unzigzag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static int varintSize(long value) {
+		int size = 1;
+		while ((value & ~0x7fL) != 0) {
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	private static void putVarint(ByteBuffer out, long value) {
+		while ((value & ~0x7fL) != 0) {
+			out.put((byte) ((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.put((byte) value);
+	}
+
+	private static long getVarint(ByteBuffer in) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = in.get();
+			if (shift == 63 && (b & 0xff) > 0x01) {
+				// the tenth byte only holds the top bit of a long
+				throw new PropertyCodecException("Malformed varint");
+			}
+			value |= (long) (b & 0x7f) << shift;
+			if (b >= 0) {
+				return value;
+			}
+		}
+		throw new PropertyCodecException("Malformed varint");
+	}
+
+	private static int readVarint(InputStream in) throws IOException {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			int b = in.read();
+			if (b < 0) {
+				throw new PropertyCodecException("Truncated stream, missing end-of-rows marker");
+			}
+			if (shift == 28 && b > 0x07) {
+				// the fifth byte only holds the top 3 bits of a non-negative int
+				throw new PropertyCodecException("Malformed row length");
+			}
+			value |= (b & 0x7f) << shift;
+			if (b < 0x80) {
+				return value;
+			}
+		}
+		throw new PropertyCodecException("Malformed row length");
+	}
+
+	private static void putLong(ByteBuffer out, long value) {
+		out.putLong(out.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value));
+	}
+
+	private static long getLong(ByteBuffer in) {
+		long value = in.getLong();
+		return in.order() == ByteOrder.BIG_ENDIAN ? value : Long.reverseBytes(value);
+	}
+
+	private static int utf8Length(String value) {
+		int length = value.length();
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c >= 0x800) {
+				if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+					// 4 bytes for the 2 chars of the pair
+					length += 2;
+					i++;
+				} else {
+					length += 2;
+				}
+			} else if (c >= 0x80) {
+				length += 1;
+			}
+		}
+		return length;
+	}
+
+	private static void putString(ByteBuffer out, String value) {
+		putVarint(out, utf8Length(value));
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				out.put((byte) c);
+			} else if (c < 0x800) {
+				out.put((byte) (0xc0 | (c >> 6)));
+				out.put((byte) (0x80 | (c & 0x3f)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				out.put((byte) (0xf0 | (codePoint >> 18)));
+				out.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+				out.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+				out.put((byte) (0x80 | (codePoint & 0x3f)));
+			} else {
+				if (Character.isSurrogate(c)) {
+					// unpaired surrogate, written as the replacement character
+					c = '\ufffd';
+				}
+				out.put((byte) (0xe0 | (c >> 12)));
+				out.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+				out.put((byte) (0x80 | (c & 0x3f)));
+			}
+		}
+	}
+
+	private static String getString(ByteBuffer in) {
+		long length = getVarint(in);
+		if (length < 0) {
+			throw new PropertyCodecException("Malformed string length");
+		}
+		if (length > in.remaining()) {
+			throw new BufferUnderflowException();
+		}
+		int size = (int) length;
+		String value;
+		if (in.hasArray()) {
+			value = new String(in.array(), in.arrayOffset() + in.position(), size, StandardCharsets.UTF_8);
+			in.position(in.position() + size);
+		} else {
+			byte[] bytes = new byte[size];
+			in.get(bytes);
+			value = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,188 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * An append-only file read through memory-mapped segments.
+ *
+ * <p>
+ * Appends are collected in a small buffer and written at the end of the file
+ * when the buffer fills, when {@link #flush()} is called, or when a read
+ * needs the buffered bytes. Reads use read-only mappings of up to
+ * {@link #SEGMENT_SIZE} bytes, so files larger than a single buffer can be
+ * read, and a segment is re-mapped when the file has grown past it.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ */
+final class ColumnFile implements Closeable {
+
+	/**
+	 * The size of each mapping, a power of two and a multiple of 8 so that
+	 * aligned longs never span segments.
+	 */
+	static final int SEGMENT_SIZE = 1 << 30;
+	private static final int SEGMENT_SHIFT = 30;
+
+	private final FileChannel channel;
+	private final ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+	private long flushedLength;
+	private MappedByteBuffer[] segments = new MappedByteBuffer[1];
+
+	/**
+	 * Opens or creates the file, discarding any bytes beyond validLength.
+	 *
+	 * @param path the file
+	 * @param validLength the length of the data known to be complete
+	 * @throws IOException if the file can't be opened
+	 */
+	ColumnFile(Path path, long validLength) throws IOException {
+		channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (channel.size() > validLength) {
+			channel.truncate(validLength);
+		}
+		flushedLength = channel.size();
+		if (flushedLength < validLength) {
+			channel.close();
+			throw new IOException("Column file " + path + " is shorter than expected, " + flushedLength + " bytes instead of " + validLength);
+		}
+	}
+
+	/**
+	 * Gets the length of the file, including appended bytes not yet written.
+	 */
+	long length() {
+		return flushedLength + pending.position();
+	}
+
+	void append(byte value) throws IOException {
+		if (!pending.hasRemaining()) {
+			flush();
+		}
+		pending.put(value);
+	}
+
+	void appendLong(long value) throws IOException {
+		if (pending.remaining() < Long.BYTES) {
+			flush();
+		}
+		pending.putLong(value);
+	}
+
+	void append(byte[] bytes) throws IOException {
+		if (pending.remaining() < bytes.length) {
+			flush();
+			if (bytes.length > pending.capacity()) {
+				writeFully(ByteBuffer.wrap(bytes), flushedLength);
+				flushedLength += bytes.length;
+				return;
+			}
+		}
+		pending.put(bytes);
+	}
+
+	/**
+	 * Sets bits in a byte already appended.
+	 */
+	void or(long position, byte bits) throws IOException {
+		if (position >= flushedLength) {
+			int index = (int) (position - flushedLength);
+			pending.put(index, (byte) (pending.get(index) | bits));
+		} else {
+			ByteBuffer one = ByteBuffer.allocate(1);
+			channel.read(one, position);
+			one.put(0, (byte) (one.get(0) | bits));
+			one.rewind();
+			writeFully(one, position);
+		}
+	}
+
+	void flush() throws IOException {
+		if (pending.position() > 0) {
+			pending.flip();
+			writeFully(pending, flushedLength);
+			flushedLength += pending.limit();
+			pending.clear();
+		}
+	}
+
+	private void writeFully(ByteBuffer bytes, long position) throws IOException {
+		while (bytes.hasRemaining()) {
+			position += channel.write(bytes, position);
+		}
+	}
+
+	/**
+	 * Gets the mapped segment containing the bytes, flushing and re-mapping as
+	 * needed.
+	 */
+	private MappedByteBuffer segmentFor(long position, int size) throws IOException {
+		if (position + size > flushedLength) {
+			flush();
+		}
+		int segment = (int) (position >>> SEGMENT_SHIFT);
+		if (segment >= segments.length) {
+			segments = Arrays.copyOf(segments, segment + 1);
+		}
+		MappedByteBuffer mapped = segments[segment];
+		int offset = (int) (position & (SEGMENT_SIZE - 1));
+		if (mapped == null || mapped.limit() < offset + size) {
+			long start = (long) segment << SEGMENT_SHIFT;
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(SEGMENT_SIZE, flushedLength - start));
+			segments[segment] = mapped;
+		}
+		return mapped;
+	}
+
+	byte get(long position) throws IOException {
+		return segmentFor(position, 1).get((int) (position & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Reads an 8 byte aligned long.
+	 */
+	long getLong(long position) throws IOException {
+		return segmentFor(position, Long.BYTES).getLong((int) (position & (SEGMENT_SIZE - 1)));
+	}
+
+	/**
+	 * Decodes UTF-8 bytes, which may span segments.
+	 */
+	String getUtf8(long position, int length) throws IOException {
+		if (length == 0) {
+			return "";
+		}
+		int offset = (int) (position & (SEGMENT_SIZE - 1));
+		if (offset + length <= SEGMENT_SIZE) {
+			MappedByteBuffer mapped = segmentFor(position, length);
+			ByteBuffer slice = mapped.duplicate();
+			slice.position(offset).limit(offset + length);
+			return StandardCharsets.UTF_8.decode(slice).toString();
+		}
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			bytes[i] = get(position + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			segments = new MappedByteBuffer[1];
+			channel.close();
+		}
+	}
+}
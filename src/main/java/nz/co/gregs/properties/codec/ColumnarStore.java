@@ -0,0 +1,505 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.NoSuchElementException;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyContainerClass;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+
+/**
+ * Stores the values of many containers off the heap, one memory-mapped file
+ * per property.
+ *
+ * <p>
+ * The store for a class lives in a sub-directory named after the class. Each
+ * readable and writable property has a null bitmap file and a values file:
+ * integral numbers, doubles, and dates (as epoch milliseconds) are stored as 8
+ * byte values, Booleans as single bytes, and Strings as 8 byte end offsets
+ * into a separate file of UTF-8 data. A metadata file records the schema
+ * fingerprint and the number of complete rows, and is updated by
+ * {@link #flush()}.
+ *
+ * <p>
+ * Rows are appended from containers and read back either into containers,
+ * new or reused, or through a {@link RowView}: a reusable cursor whose
+ * accessors decode each value from the mapped files only when asked for it.
+ * Use {@link #view()} and {@link RowView#next()} to scan the rows in order,
+ * or {@link RowView#moveTo(long)} for random access.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class ColumnarStore<T extends PropertyContainer> implements Closeable {
+
+	private static final int MAGIC = 0x434f4c53;
+	private static final int VERSION = 1;
+
+	private final Class<T> clazz;
+	private final RowSchema schema;
+	private final Path metadataFile;
+	private final ColumnFile[] nulls;
+	private final ColumnFile[] values;
+	private final ColumnFile[] data;
+	private long size;
+
+	private ColumnarStore(Class<T> clazz, RowSchema schema, Path directory) throws IOException {
+		this.clazz = clazz;
+		this.schema = schema;
+		this.metadataFile = directory.resolve("store.meta");
+		nulls = new ColumnFile[schema.size()];
+		values = new ColumnFile[schema.size()];
+		data = new ColumnFile[schema.size()];
+		if (Files.exists(metadataFile)) {
+			readMetadata();
+		}
+		try {
+			for (int i = 0; i < schema.size(); i++) {
+				String prefix = String.format("%03d-%s", i, schema.definition(i).javaName());
+				nulls[i] = new ColumnFile(directory.resolve(prefix + ".nulls"), (size + 7) / 8);
+				values[i] = new ColumnFile(directory.resolve(prefix + ".values"), size * width(i));
+				if (schema.kind(i) == ValueKind.STRING) {
+					long dataLength = size == 0 ? 0 : values[i].getLong((size - 1) * Long.BYTES);
+					data[i] = new ColumnFile(directory.resolve(prefix + ".data"), dataLength);
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			closeFiles();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Opens the store for the class in the directory, creating it if it
+	 * doesn't exist.
+	 *
+	 * @param <T> the class of the containers
+	 * @param directory the directory holding the stores of all classes
+	 * @param clazz the class of the containers
+	 * @param factory the factory providing the class's metadata
+	 * @return the opened store
+	 * @throws IOException if the files can't be opened or created
+	 * @throws PropertyCodecException if the existing store was created for a
+	 * different version of the class
+	 */
+	public static <T extends PropertyContainer> ColumnarStore<T> open(Path directory, Class<T> clazz, PropertyContainerWrapperFactory factory) throws IOException {
+		PropertyContainerClass classWrapper = factory.classWrapperFor(clazz);
+		Path classDirectory = directory.resolve(classWrapper.adapteeClass().getName());
+		Files.createDirectories(classDirectory);
+		return new ColumnarStore<>(clazz, new RowSchema(classWrapper), classDirectory);
+	}
+
+	private int width(int index) {
+		return schema.kind(index) == ValueKind.BOOLEAN ? 1 : Long.BYTES;
+	}
+
+	private void readMetadata() throws IOException {
+		ByteBuffer metadata = ByteBuffer.wrap(Files.readAllBytes(metadataFile));
+		if (metadata.remaining() < 24 || metadata.getInt() != MAGIC || metadata.getInt() != VERSION) {
+			throw new PropertyCodecException("Columnar store metadata " + metadataFile + " is not valid");
+		}
+		long fingerprint = metadata.getLong();
+		if (fingerprint != schema.fingerprint()) {
+			throw new PropertyCodecException("Columnar store " + metadataFile.getParent()
+					+ " was written for a different version of " + schema.getClassWrapper().qualifiedJavaName());
+		}
+		size = metadata.getLong();
+	}
+
+	/**
+	 * Gets the number of rows in the store.
+	 *
+	 * @return the number of rows
+	 */
+	public long size() {
+		return size;
+	}
+
+	/**
+	 * Appends the values of the container as a new row.
+	 *
+	 * @param row the container to store
+	 * @return the index of the new row
+	 * @throws IOException if the files can't be written
+	 */
+	public long append(T row) throws IOException {
+		long index = size;
+		for (int i = 0; i < schema.size(); i++) {
+			Object value = schema.get(row, i);
+			if ((index & 7) == 0) {
+				nulls[i].append((byte) 0);
+			}
+			if (value == null) {
+				nulls[i].or(index >>> 3, (byte) (1 << (index & 7)));
+			}
+			switch (schema.kind(i)) {
+				case LONG:
+					values[i].appendLong(value == null ? 0 : ((Number) value).longValue());
+					break;
+				case DOUBLE:
+					values[i].appendLong(value == null ? 0 : Double.doubleToRawLongBits(((Number) value).doubleValue()));
+					break;
+				case DATE:
+					values[i].appendLong(value == null ? 0 : ((Date) value).getTime());
+					break;
+				case BOOLEAN:
+					values[i].append(value != null && (Boolean) value ? (byte) 1 : (byte) 0);
+					break;
+				case STRING:
+					if (value != null) {
+						data[i].append(((String) value).getBytes(StandardCharsets.UTF_8));
+					}
+					values[i].appendLong(data[i].length());
+					break;
+			}
+		}
+		size++;
+		return index;
+	}
+
+	/**
+	 * Appends the values of each container as new rows.
+	 *
+	 * @param rows the containers to store
+	 * @throws IOException if the files can't be written
+	 */
+	public void appendAll(Iterable<? extends T> rows) throws IOException {
+		for (T row : rows) {
+			append(row);
+		}
+	}
+
+	/**
+	 * Reads a row into a new container.
+	 *
+	 * @param row the index of the row
+	 * @return a new container holding the values of the row
+	 * @throws IndexOutOfBoundsException if there is no such row
+	 */
+	public T get(long row) {
+		return get(row, clazz.cast(schema.newContainer()));
+	}
+
+	/**
+	 * Reads a row into an existing container, replacing the values of all
+	 * stored properties.
+	 *
+	 * @param row the index of the row
+	 * @param target the container to set the values on
+	 * @return the target
+	 * @throws IndexOutOfBoundsException if there is no such row
+	 */
+	public T get(long row, T target) {
+		return new RowView().moveTo(row).load(target);
+	}
+
+	/**
+	 * Creates a cursor positioned before the first row.
+	 *
+	 * @return a new row view
+	 */
+	public RowView view() {
+		return new RowView();
+	}
+
+	/**
+	 * Writes all appended rows to the files and records the number of rows.
+	 *
+	 * @throws IOException if the files can't be written
+	 */
+	public void flush() throws IOException {
+		for (int i = 0; i < schema.size(); i++) {
+			nulls[i].flush();
+			if (data[i] != null) {
+				data[i].flush();
+			}
+			values[i].flush();
+		}
+		ByteBuffer metadata = ByteBuffer.allocate(24);
+		metadata.putInt(MAGIC).putInt(VERSION).putLong(schema.fingerprint()).putLong(size).flip();
+		try (FileChannel channel = FileChannel.open(metadataFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+			while (metadata.hasRemaining()) {
+				channel.write(metadata, metadata.position());
+			}
+			channel.force(false);
+		}
+	}
+
+	/**
+	 * Flushes the store and closes the files.
+	 *
+	 * @throws IOException if the files can't be written
+	 */
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			closeFiles();
+		}
+	}
+
+	private void closeFiles() throws IOException {
+		IOException failure = null;
+		for (ColumnFile[] files : new ColumnFile[][]{nulls, values, data}) {
+			for (ColumnFile file : files) {
+				if (file != null) {
+					try {
+						file.close();
+					} catch (IOException ex) {
+						failure = ex;
+					}
+				}
+			}
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * A reusable cursor over the rows of the store.
+	 *
+	 * <p>
+	 * The accessors read the value of one property of the current row from the
+	 * mapped files each time they are called, so scanning a few properties of
+	 * many rows only touches the columns involved.
+	 */
+	public final class RowView {
+
+		private long row = -1;
+
+		private RowView() {
+		}
+
+		/**
+		 * Moves to the row.
+		 *
+		 * @param row the index of the row
+		 * @return this view
+		 * @throws IndexOutOfBoundsException if there is no such row
+		 */
+		public RowView moveTo(long row) {
+			if (row < 0 || row >= size) {
+				throw new IndexOutOfBoundsException("Row " + row + " of " + size);
+			}
+			this.row = row;
+			return this;
+		}
+
+		/**
+		 * Moves to the next row.
+		 *
+		 * @return false if there are no more rows
+		 */
+		public boolean next() {
+			if (row + 1 >= size) {
+				return false;
+			}
+			row++;
+			return true;
+		}
+
+		/**
+		 * Gets the index of the current row.
+		 *
+		 * @return the row index, or -1 before the first call to next
+		 */
+		public long row() {
+			return row;
+		}
+
+		private int column(PropertyDefinition property) {
+			if (row < 0) {
+				throw new NoSuchElementException("The view is not positioned on a row");
+			}
+			int index = schema.indexOf(property.javaName());
+			if (index < 0 || schema.definition(index) != property) {
+				throw new PropertyCodecException("Property " + property.qualifiedJavaName() + " is not stored in " + schema.getClassWrapper().qualifiedJavaName() + " columns");
+			}
+			return index;
+		}
+
+		private PropertyCodecException wrongKind(int index, String requested) {
+			return new PropertyCodecException("Property " + schema.definition(index).qualifiedJavaName() + " is stored as " + schema.kind(index) + ", not " + requested);
+		}
+
+		private boolean isNull(int index) {
+			try {
+				return (nulls[index].get(row >>> 3) & (1 << (row & 7))) != 0;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		private long rawLong(int index) {
+			try {
+				return values[index].getLong(row * Long.BYTES);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		/**
+		 * Tests whether the property is null in the current row.
+		 *
+		 * @param property the property
+		 * @return true if the value is null
+		 */
+		public boolean isNull(PropertyDefinition property) {
+			return isNull(column(property));
+		}
+
+		/**
+		 * Gets an integral number or date, as epoch milliseconds, from the
+		 * current row.
+		 *
+		 * @param property an integral number or date property
+		 * @return the value, or 0 if it is null
+		 */
+		public long getLong(PropertyDefinition property) {
+			int index = column(property);
+			if (schema.kind(index) != ValueKind.LONG && schema.kind(index) != ValueKind.DATE) {
+				throw wrongKind(index, "a long");
+			}
+			return rawLong(index);
+		}
+
+		/**
+		 * Gets a number from the current row.
+		 *
+		 * @param property a numeric property
+		 * @return the value, or 0 if it is null
+		 */
+		public double getDouble(PropertyDefinition property) {
+			int index = column(property);
+			if (schema.kind(index) == ValueKind.DOUBLE) {
+				return Double.longBitsToDouble(rawLong(index));
+			} else if (schema.kind(index) == ValueKind.LONG) {
+				return rawLong(index);
+			}
+			throw wrongKind(index, "a double");
+		}
+
+		/**
+		 * Gets a Boolean from the current row.
+		 *
+		 * @param property a Boolean property
+		 * @return the value, or false if it is null
+		 */
+		public boolean getBoolean(PropertyDefinition property) {
+			int index = column(property);
+			if (schema.kind(index) != ValueKind.BOOLEAN) {
+				throw wrongKind(index, "a boolean");
+			}
+			try {
+				return values[index].get(row) != 0;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		/**
+		 * Gets a String from the current row.
+		 *
+		 * @param property a String property
+		 * @return the value, or null if it is null
+		 */
+		public String getString(PropertyDefinition property) {
+			int index = column(property);
+			if (schema.kind(index) != ValueKind.STRING) {
+				throw wrongKind(index, "a String");
+			}
+			return string(index);
+		}
+
+		private String string(int index) {
+			if (isNull(index)) {
+				return null;
+			}
+			try {
+				long end = values[index].getLong(row * Long.BYTES);
+				long start = row == 0 ? 0 : values[index].getLong((row - 1) * Long.BYTES);
+				return data[index].getUtf8(start, (int) (end - start));
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		/**
+		 * Gets a Date from the current row.
+		 *
+		 * @param property a Date property
+		 * @return the value, or null if it is null
+		 */
+		public Date getDate(PropertyDefinition property) {
+			int index = column(property);
+			if (schema.kind(index) != ValueKind.DATE) {
+				throw wrongKind(index, "a Date");
+			}
+			return isNull(index) ? null : new Date(rawLong(index));
+		}
+
+		/**
+		 * Gets the value of the property from the current row, as the literal
+		 * type of the property.
+		 *
+		 * @param property the property
+		 * @return the value, or null if it is null
+		 */
+		public Object getValue(PropertyDefinition property) {
+			return value(column(property));
+		}
+
+		private Object value(int index) {
+			if (isNull(index)) {
+				return null;
+			}
+			switch (schema.kind(index)) {
+				case LONG:
+					return schema.fromLong(index, rawLong(index));
+				case DOUBLE:
+					return schema.fromDouble(index, Double.longBitsToDouble(rawLong(index)));
+				case DATE:
+					return schema.fromEpochMillis(index, rawLong(index));
+				case STRING:
+					return string(index);
+				default:
+					try {
+						return values[index].get(row) != 0;
+					} catch (IOException ex) {
+						throw new UncheckedIOException(ex);
+					}
+			}
+		}
+
+		/**
+		 * Copies the values of the current row into the container.
+		 *
+		 * @param target the container to set the values on
+		 * @return the target
+		 */
+		public T load(T target) {
+			if (row < 0) {
+				throw new NoSuchElementException("The view is not positioned on a row");
+			}
+			for (int i = 0; i < schema.size(); i++) {
+				schema.set(target, i, value(i));
+			}
+			return target;
+		}
+	}
+}
@@ -0,0 +1,183 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+
+/**
+ * Parses CSV records from a Reader, one record at a time.
+ *
+ * <p>
+ * Follows RFC 4180: fields are separated by the separator character, records
+ * by CR, LF or CRLF, and fields may be quoted with double quotes, doubling
+ * any quotes within them. Empty lines are skipped.
+ *
+ * <p>
+ * The input is read through a fixed size buffer and the fields of the
+ * current record are held in one reusable buffer, so memory use depends only
+ * on the length of the longest record.
+ *
+ * @author Gregory Graham
+ */
+final class CsvParser {
+
+	private final Reader in;
+	private final char separator;
+	private final char[] buffer = new char[65536];
+	private int position;
+	private int limit;
+	private final StringBuilder record = new StringBuilder();
+	private int[] starts = new int[16];
+	private int[] ends = new int[16];
+	private boolean[] quoted = new boolean[16];
+	private int fieldCount;
+	private long recordNumber;
+
+	CsvParser(Reader in, char separator) {
+		this.in = in;
+		this.separator = separator;
+	}
+
+	private int peek() throws IOException {
+		if (position == limit) {
+			int read = in.read(buffer, 0, buffer.length);
+			if (read <= 0) {
+				return -1;
+			}
+			position = 0;
+			limit = read;
+		}
+		return buffer[position];
+	}
+
+	/**
+	 * Reads the next record.
+	 *
+	 * @return false at the end of the input
+	 * @throws IOException if the input can't be read
+	 * @throws PropertyCodecException if a quoted field is malformed
+	 */
+	boolean next() throws IOException {
+		int c;
+		while ((c = peek()) == '\n' || c == '\r') {
+			position++;
+		}
+		if (c < 0) {
+			return false;
+		}
+		recordNumber++;
+		record.setLength(0);
+		fieldCount = 0;
+		while (true) {
+			int start = record.length();
+			boolean isQuoted = peek() == '"';
+			if (isQuoted) {
+				position++;
+				readQuoted();
+			} else {
+				readUnquoted();
+			}
+			addField(start, record.length(), isQuoted);
+			c = peek();
+			if (c == separator) {
+				position++;
+			} else if (c < 0 || c == '\n' || c == '\r') {
+				return true;
+			} else {
+				throw new PropertyCodecException("Malformed CSV record " + recordNumber + ": unexpected '" + (char) c + "' after quoted field");
+			}
+		}
+	}
+
+	private void readUnquoted() throws IOException {
+		while (true) {
+			int start = position;
+			while (position < limit) {
+				char c = buffer[position];
+				if (c == separator || c == '\n' || c == '\r') {
+					record.append(buffer, start, position - start);
+					return;
+				}
+				position++;
+			}
+			record.append(buffer, start, position - start);
+			if (peek() < 0) {
+				return;
+			}
+		}
+	}
+
+	private void readQuoted() throws IOException {
+		while (true) {
+			int start = position;
+			while (position < limit && buffer[position] != '"') {
+				position++;
+			}
+			record.append(buffer, start, position - start);
+			if (position < limit) {
+				// closing quote, or the first of a doubled quote
+				position++;
+				if (peek() == '"') {
+					record.append('"');
+					position++;
+				} else {
+					return;
+				}
+			} else if (peek() < 0) {
+				throw new PropertyCodecException("Malformed CSV record " + recordNumber + ": unterminated quoted field");
+			}
+		}
+	}
+
+	private void addField(int start, int end, boolean isQuoted) {
+		if (fieldCount == starts.length) {
+			starts = Arrays.copyOf(starts, fieldCount * 2);
+			ends = Arrays.copyOf(ends, fieldCount * 2);
+			quoted = Arrays.copyOf(quoted, fieldCount * 2);
+		}
+		starts[fieldCount] = start;
+		ends[fieldCount] = end;
+		quoted[fieldCount] = isQuoted;
+		fieldCount++;
+	}
+
+	/**
+	 * Gets the number of the current record, counting from 1 and not
+	 * including empty lines.
+	 */
+	long recordNumber() {
+		return recordNumber;
+	}
+
+	int fieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * Tests whether the field is null, that is empty and not quoted.
+	 */
+	boolean isNull(int field) {
+		return starts[field] == ends[field] && !quoted[field];
+	}
+
+	/**
+	 * Gets the buffer holding the fields of the current record, valid until the
+	 * next record is read.
+	 */
+	CharSequence chars() {
+		return record;
+	}
+
+	int start(int field) {
+		return starts[field];
+	}
+
+	int end(int field) {
+		return ends[field];
+	}
+
+	String string(int field) {
+		return record.substring(starts[field], ends[field]);
+	}
+}
@@ -0,0 +1,496 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+
+/**
+ * CSV import and export of property containers.
+ *
+ * <p>
+ * The header row names the properties, using the java property names, and
+ * is matched to the class's {@code PropertyDefinition}s once per file, first
+ * exactly and then ignoring case. Columns that don't match a property are
+ * ignored.
+ *
+ * <p>
+ * Numbers are written with {@code Long.toString}/{@code Double.toString}, Dates
+ * as ISO-8601 instants, and null values as empty fields. Empty Strings are
+ * written as {@code ""} so they can be told apart from nulls. When reading, a
+ * value that can't be parsed in that form is passed to the
+ * {@code setValue(String)} method of the property's AdaptableType, if it has
+ * one, so for instance {@code DateProperty} columns may use its date format.
+ *
+ * <p>
+ * Rows are read lazily through an iterator or stream, using a fixed size
+ * buffer, so memory use doesn't depend on the size of the file. Files can
+ * also be memory-mapped and split by line into ranges for parallel streams,
+ * in which case quoted fields must not contain line breaks.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class CsvRowCodec<T extends PropertyContainer> {
+
+	/**
+	 * Ranges of a file smaller than this aren't split for parallel streams.
+	 */
+	private static final long MINIMUM_SPLIT_SIZE = 1024 * 1024;
+
+	private final Class<T> clazz;
+	private final RowSchema schema;
+	private final char separator;
+
+	/**
+	 * Creates a comma-separated codec for the class.
+	 *
+	 * @param clazz the class of the containers
+	 * @param factory the factory providing the class's metadata
+	 * @throws PropertyCodecException if a property has a literal type that
+	 * can't be converted
+	 */
+	public CsvRowCodec(Class<T> clazz, PropertyContainerWrapperFactory factory) {
+		this(clazz, factory, ',');
+	}
+
+	/**
+	 * Creates a codec for the class using the separator.
+	 *
+	 * @param clazz the class of the containers
+	 * @param factory the factory providing the class's metadata
+	 * @param separator the field separator, for instance ',' or '\t'
+	 * @throws PropertyCodecException if a property has a literal type that
+	 * can't be converted
+	 */
+	public CsvRowCodec(Class<T> clazz, PropertyContainerWrapperFactory factory, char separator) {
+		if (separator == '"' || separator == '\n' || separator == '\r') {
+			throw new IllegalArgumentException("Invalid CSV separator: " + separator);
+		}
+		this.clazz = clazz;
+		this.schema = new RowSchema(factory.classWrapperFor(clazz));
+		this.separator = separator;
+	}
+
+	/**
+	 * Writes the header row.
+	 *
+	 * @param out where to write the CSV
+	 * @throws IOException if the CSV can't be written
+	 */
+	public void writeHeader(Appendable out) throws IOException {
+		for (int i = 0; i < schema.size(); i++) {
+			if (i > 0) {
+				out.append(separator);
+			}
+			appendField(out, schema.definition(i).javaName());
+		}
+		out.append("\r\n");
+	}
+
+	/**
+	 * Writes the row, without a header.
+	 *
+	 * @param row the container to write
+	 * @param out where to write the CSV
+	 * @throws IOException if the CSV can't be written
+	 */
+	public void write(T row, Appendable out) throws IOException {
+		for (int i = 0; i < schema.size(); i++) {
+			if (i > 0) {
+				out.append(separator);
+			}
+			Object value = schema.get(row, i);
+			if (value != null) {
+				switch (schema.kind(i)) {
+					case LONG:
+						out.append(Long.toString(((Number) value).longValue()));
+						break;
+					case DOUBLE:
+						out.append(Double.toString(((Number) value).doubleValue()));
+						break;
+					case STRING:
+						appendField(out, (String) value);
+						break;
+					case DATE:
+						out.append(((Date) value).toInstant().toString());
+						break;
+					case BOOLEAN:
+						out.append(value.toString());
+						break;
+				}
+			}
+		}
+		out.append("\r\n");
+	}
+
+	/**
+	 * Writes the header row followed by the rows.
+	 *
+	 * @param rows the containers to write
+	 * @param out where to write the CSV
+	 * @throws IOException if the CSV can't be written
+	 */
+	public void writeAll(Iterable<? extends T> rows, Appendable out) throws IOException {
+		writeHeader(out);
+		for (T row : rows) {
+			write(row, out);
+		}
+	}
+
+	private void appendField(Appendable out, String value) throws IOException {
+		boolean quote = value.isEmpty();
+		for (int i = 0; i < value.length() && !quote; i++) {
+			char c = value.charAt(i);
+			quote = c == separator || c == '"' || c == '\n' || c == '\r';
+		}
+		if (!quote) {
+			out.append(value);
+			return;
+		}
+		out.append('"');
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			if (value.charAt(i) == '"') {
+				out.append(value, start, i + 1);
+				start = i;
+			}
+		}
+		out.append(value, start, value.length());
+		out.append('"');
+	}
+
+	/**
+	 * Reads the header row and returns an iterator over the remaining rows.
+	 *
+	 * <p>
+	 * Each row is read from the reader as the iterator reaches it. IO errors
+	 * while iterating are thrown as {@link UncheckedIOException}.
+	 *
+	 * @param in the CSV to read
+	 * @return an iterator of new containers
+	 * @throws IOException if the header can't be read
+	 * @throws PropertyCodecException if there is no header row
+	 */
+	public Iterator<T> iterator(Reader in) throws IOException {
+		CsvParser parser = new CsvParser(in, separator);
+		return new RowIterator(parser, readColumns(parser));
+	}
+
+	/**
+	 * Reads the header row and returns a sequential stream of the remaining
+	 * rows.
+	 *
+	 * <p>
+	 * Closing the stream closes the reader.
+	 *
+	 * @param in the CSV to read
+	 * @return a stream of new containers
+	 * @throws IOException if the header can't be read
+	 * @throws PropertyCodecException if there is no header row
+	 */
+	public Stream<T> stream(Reader in) throws IOException {
+		Spliterator<T> rows = Spliterators.spliteratorUnknownSize(iterator(in), Spliterator.ORDERED | Spliterator.NONNULL);
+		return StreamSupport.stream(rows, false).onClose(() -> {
+			try {
+				in.close();
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		});
+	}
+
+	/**
+	 * Memory-maps the UTF-8 encoded CSV file and returns a stream of its rows.
+	 *
+	 * <p>
+	 * The file is mapped a window at a time, so files of any size can be read.
+	 * A parallel stream splits the file into ranges at line breaks, so quoted
+	 * fields must not contain line breaks when reading in parallel. Closing
+	 * the stream closes the file.
+	 *
+	 * @param file the CSV file to read
+	 * @param parallel true for a parallel stream
+	 * @return a stream of new containers
+	 * @throws IOException if the file can't be opened or the header can't be
+	 * read
+	 * @throws PropertyCodecException if there is no header row
+	 */
+	public Stream<T> stream(Path file, boolean parallel) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			long headerEnd = indexOfLineEnd(channel, 0, channel.size());
+			CsvParser header = new CsvParser(new MappedFileReader(channel, 0, headerEnd), separator);
+			int[] columns = readColumns(header);
+			return StreamSupport.stream(new FileSpliterator(channel, headerEnd, channel.size(), columns), parallel)
+					.onClose(() -> {
+						try {
+							channel.close();
+						} catch (IOException ex) {
+							throw new UncheckedIOException(ex);
+						}
+					});
+		} catch (IOException | RuntimeException ex) {
+			channel.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Finds the position after the first LF at or after start, or end if
+	 * there is none.
+	 */
+	private static long indexOfLineEnd(FileChannel channel, long start, long end) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(8192);
+		long position = start;
+		while (position < end) {
+			bytes.clear();
+			int read = channel.read(bytes, position);
+			if (read <= 0) {
+				break;
+			}
+			for (int i = 0; i < read; i++) {
+				if (bytes.get(i) == '\n') {
+					return Math.min(position + i + 1, end);
+				}
+			}
+			position += read;
+		}
+		return end;
+	}
+
+	/**
+	 * Reads the header row and maps each column to the index of its property
+	 * in the schema, or -1 to ignore the column.
+	 */
+	private int[] readColumns(CsvParser parser) throws IOException {
+		if (!parser.next()) {
+			throw new PropertyCodecException("CSV for " + schema.getClassWrapper().qualifiedJavaName() + " has no header row");
+		}
+		int[] columns = new int[parser.fieldCount()];
+		for (int column = 0; column < columns.length; column++) {
+			CharSequence chars = parser.chars();
+			int start = parser.start(column);
+			int end = parser.end(column);
+			if (column == 0 && start < end && chars.charAt(start) == '\ufeff') {
+				// byte order mark
+				start++;
+			}
+			String name = chars.subSequence(start, end).toString().trim();
+			int index = schema.indexOf(name);
+			if (index < 0) {
+				PropertyDefinition definition = schema.getClassWrapper().getPropertyDefinitionByNameIgnoreCase(name);
+				index = definition == null ? -1 : schema.indexOf(definition.javaName());
+			}
+			columns[column] = index;
+		}
+		return columns;
+	}
+
+	private T readRow(CsvParser parser, int[] columns) {
+		T row = clazz.cast(schema.newContainer());
+		int count = Math.min(columns.length, parser.fieldCount());
+		for (int column = 0; column < count; column++) {
+			int index = columns[column];
+			if (index >= 0) {
+				if (parser.isNull(column)) {
+					schema.set(row, index, null);
+				} else {
+					setValue(row, index, parser, column);
+				}
+			}
+		}
+		return row;
+	}
+
+	private void setValue(T row, int index, CsvParser parser, int column) {
+		Object value;
+		try {
+			switch (schema.kind(index)) {
+				case LONG:
+					value = schema.fromLong(index, parseLong(parser.chars(), parser.start(column), parser.end(column)));
+					break;
+				case DOUBLE:
+					value = schema.fromDouble(index, Double.parseDouble(parser.string(column)));
+					break;
+				case STRING:
+					value = parser.string(column);
+					break;
+				case DATE:
+					value = Date.from(Instant.parse(parser.string(column)));
+					break;
+				default:
+					value = parseBoolean(parser.string(column));
+					break;
+			}
+		} catch (NumberFormatException | DateTimeParseException ex) {
+			if (!schema.hasStringSetter(index)) {
+				throw invalidValue(parser, column, index, ex);
+			}
+			try {
+				schema.setFromString(row, index, parser.string(column));
+			} catch (PropertyCodecException stringSetterEx) {
+				throw invalidValue(parser, column, index, stringSetterEx.getCause() == null ? stringSetterEx : stringSetterEx.getCause());
+			}
+			return;
+		}
+		schema.set(row, index, value);
+	}
+
+	private PropertyCodecException invalidValue(CsvParser parser, int column, int index, Throwable cause) {
+		return new PropertyCodecException("CSV record " + parser.recordNumber() + " has invalid value \"" + parser.string(column)
+				+ "\" for " + schema.definition(index).qualifiedJavaName(), cause);
+	}
+
+	/**
+	 * Parses a decimal long directly from the record buffer.
+	 */
+	private static long parseLong(CharSequence chars, int start, int end) {
+		boolean negative = start < end && chars.charAt(start) == '-';
+		int i = (negative || (start < end && chars.charAt(start) == '+')) ? start + 1 : start;
+		if (i == end || end - i > 18) {
+			// let Long handle the edge cases and overflow
+			return Long.parseLong(chars.subSequence(start, end).toString().trim());
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			char c = chars.charAt(i);
+			if (c < '0' || c > '9') {
+				return Long.parseLong(chars.subSequence(start, end).toString().trim());
+			}
+			value = value * 10 + (c - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	private static Boolean parseBoolean(String text) {
+		if (text.equalsIgnoreCase("true")) {
+			return Boolean.TRUE;
+		} else if (text.equalsIgnoreCase("false")) {
+			return Boolean.FALSE;
+		}
+		throw new NumberFormatException("not a boolean: " + text);
+	}
+
+	/**
+	 * Iterates over the rows of a parser, reading one record ahead.
+	 */
+	private final class RowIterator implements Iterator<T> {
+
+		private final CsvParser parser;
+		private final int[] columns;
+		private Boolean hasNext;
+
+		RowIterator(CsvParser parser, int[] columns) {
+			this.parser = parser;
+			this.columns = columns;
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (hasNext == null) {
+				try {
+					hasNext = parser.next();
+				} catch (IOException ex) {
+					throw new UncheckedIOException(ex);
+				}
+			}
+			return hasNext;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			hasNext = null;
+			return readRow(parser, columns);
+		}
+	}
+
+	/**
+	 * Splits a range of a memory-mapped file at line breaks, parsing each range
+	 * with its own reader.
+	 */
+	private final class FileSpliterator implements Spliterator<T> {
+
+		private final FileChannel channel;
+		private final int[] columns;
+		private long start;
+		private final long end;
+		private CsvParser parser;
+
+		FileSpliterator(FileChannel channel, long start, long end, int[] columns) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.columns = Arrays.copyOf(columns, columns.length);
+		}
+
+		@Override
+		public boolean tryAdvance(Consumer<? super T> action) {
+			try {
+				if (parser == null) {
+					parser = new CsvParser(new MappedFileReader(channel, start, end), separator);
+				}
+				if (!parser.next()) {
+					return false;
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			action.accept(readRow(parser, columns));
+			return true;
+		}
+
+		@Override
+		public Spliterator<T> trySplit() {
+			if (parser != null || end - start < MINIMUM_SPLIT_SIZE) {
+				return null;
+			}
+			try {
+				long split = indexOfLineEnd(channel, start + (end - start) / 2, end);
+				if (split >= end) {
+					return null;
+				}
+				FileSpliterator prefix = new FileSpliterator(channel, start, split, columns);
+				start = split;
+				return prefix;
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}
+
+		@Override
+		public long estimateSize() {
+			// (note: a guess of 64 bytes per row, it only guides splitting)
+			return Math.max(1, (end - start) / 64);
+		}
+
+		@Override
+		public int characteristics() {
+			return Spliterator.ORDERED | Spliterator.NONNULL;
+		}
+	}
+}
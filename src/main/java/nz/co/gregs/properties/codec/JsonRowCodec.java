@@ -0,0 +1,730 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Consumer;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+
+/**
+ * Streaming JSON encoding of property containers.
+ *
+ * <p>
+ * Each container is written as a JSON object with a member per readable and
+ * writable property, named with the java property name. Numbers and Booleans
+ * are written as JSON numbers and booleans, Strings as JSON strings, Dates as
+ * epoch milliseconds, and null values as {@code null}. Properties with a type
+ * adaptor are written in their internal form, as converted by the
+ * {@code PropertyTypeHandler}, and converted back when read.
+ *
+ * <p>
+ * The member names are encoded once, when the codec is created, and written
+ * straight to the {@code Appendable} or {@code OutputStream}. When reading,
+ * member names are matched from the parser's token buffer without creating
+ * Strings, and unknown members are skipped.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class JsonRowCodec<T extends PropertyContainer> {
+
+	private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+	private final Class<T> clazz;
+	private final RowSchema schema;
+	private final String[] names;
+	private final byte[][] nameBytes;
+
+	/**
+	 * Creates a codec for the class.
+	 *
+	 * @param clazz the class of the containers
+	 * @param factory the factory providing the class's metadata
+	 * @throws PropertyCodecException if a property has a literal type that
+	 * can't be encoded
+	 */
+	public JsonRowCodec(Class<T> clazz, PropertyContainerWrapperFactory factory) {
+		this.clazz = clazz;
+		this.schema = new RowSchema(factory.classWrapperFor(clazz));
+		names = new String[schema.size()];
+		nameBytes = new byte[schema.size()][];
+		for (int i = 0; i < schema.size(); i++) {
+			StringBuilder name = new StringBuilder();
+			try {
+				appendString(name, schema.definition(i).javaName());
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+			name.append(':');
+			names[i] = name.toString();
+			nameBytes[i] = names[i].getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/**
+	 * Writes the row as a JSON object.
+	 *
+	 * @param row the container to write
+	 * @param out where to write the JSON
+	 * @throws IOException if the JSON can't be written
+	 * @throws PropertyCodecException if a number is infinite or NaN
+	 */
+	public void write(T row, Appendable out) throws IOException {
+		out.append('{');
+		for (int i = 0; i < schema.size(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			out.append(names[i]);
+			appendValue(out, row, i);
+		}
+		out.append('}');
+	}
+
+	/**
+	 * Writes the rows as a JSON array of objects.
+	 *
+	 * @param rows the containers to write
+	 * @param out where to write the JSON
+	 * @throws IOException if the JSON can't be written
+	 * @throws PropertyCodecException if a number is infinite or NaN
+	 */
+	public void writeAll(Iterable<? extends T> rows, Appendable out) throws IOException {
+		out.append('[');
+		boolean first = true;
+		for (T row : rows) {
+			if (!first) {
+				out.append(',');
+			}
+			first = false;
+			write(row, out);
+		}
+		out.append(']');
+	}
+
+	/**
+	 * Writes the row as a UTF-8 encoded JSON object.
+	 *
+	 * @param row the container to write
+	 * @param out where to write the JSON
+	 * @throws IOException if the JSON can't be written
+	 * @throws PropertyCodecException if a number is infinite or NaN
+	 */
+	public void write(T row, OutputStream out) throws IOException {
+		Utf8Sink sink = new Utf8Sink(out);
+		write(row, sink);
+		sink.flush();
+	}
+
+	/**
+	 * Writes the rows as a UTF-8 encoded JSON array of objects.
+	 *
+	 * @param rows the containers to write
+	 * @param out where to write the JSON
+	 * @throws IOException if the JSON can't be written
+	 * @throws PropertyCodecException if a number is infinite or NaN
+	 */
+	public void writeAll(Iterable<? extends T> rows, OutputStream out) throws IOException {
+		Utf8Sink sink = new Utf8Sink(out);
+		sink.append('[');
+		boolean first = true;
+		for (T row : rows) {
+			if (!first) {
+				sink.append(',');
+			}
+			first = false;
+			write(row, sink);
+		}
+		sink.append(']');
+		sink.flush();
+	}
+
+	private void write(T row, Utf8Sink sink) throws IOException {
+		sink.append('{');
+		for (int i = 0; i < schema.size(); i++) {
+			if (i > 0) {
+				sink.append(',');
+			}
+			sink.write(nameBytes[i]);
+			appendValue(sink, row, i);
+		}
+		sink.append('}');
+	}
+
+	private void appendValue(Appendable out, T row, int index) throws IOException {
+		Object value = schema.get(row, index);
+		if (value == null) {
+			out.append("null");
+			return;
+		}
+		switch (schema.kind(index)) {
+			case LONG:
+				out.append(Long.toString(((Number) value).longValue()));
+				break;
+			case DOUBLE:
+				double number = ((Number) value).doubleValue();
+				if (Double.isNaN(number) || Double.isInfinite(number)) {
+					throw new PropertyCodecException("Property " + schema.definition(index).qualifiedJavaName() + " has value " + number + " which can't be written as JSON");
+				}
+				out.append(Double.toString(number));
+				break;
+			case STRING:
+				appendString(out, (String) value);
+				break;
+			case DATE:
+				out.append(Long.toString(((Date) value).getTime()));
+				break;
+			case BOOLEAN:
+				out.append(((Boolean) value) ? "true" : "false");
+				break;
+		}
+	}
+
+	private static void appendString(Appendable out, String value) throws IOException {
+		out.append('"');
+		int start = 0;
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c < 0x20 || c == '"' || c == '\\') {
+				out.append(value, start, i);
+				start = i + 1;
+				switch (c) {
+					case '"':
+						out.append("\\\"");
+						break;
+					case '\\':
+						out.append("\\\\");
+						break;
+					case '\n':
+						out.append("\\n");
+						break;
+					case '\r':
+						out.append("\\r");
+						break;
+					case '\t':
+						out.append("\\t");
+						break;
+					default:
+						out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xf]);
+						break;
+				}
+			}
+		}
+		out.append(value, start, value.length());
+		out.append('"');
+	}
+
+	/**
+	 * Reads a JSON object into a new container.
+	 *
+	 * @param json the JSON object
+	 * @return a new container holding the values read
+	 * @throws PropertyCodecException if the JSON is malformed or a value has
+	 * the wrong JSON type for its property
+	 */
+	public T read(CharSequence json) {
+		try {
+			return read(new StringReader(json.toString()));
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	/**
+	 * Reads a JSON object into a new container.
+	 *
+	 * @param in the JSON to read, positioned before the object
+	 * @return a new container holding the values read
+	 * @throws IOException if the JSON can't be read
+	 * @throws PropertyCodecException if the JSON is malformed or a value has
+	 * the wrong JSON type for its property
+	 */
+	public T read(Reader in) throws IOException {
+		JsonParser parser = new JsonParser(in);
+		T row = readObject(parser, clazz.cast(schema.newContainer()));
+		parser.expectEnd();
+		return row;
+	}
+
+	/**
+	 * Reads a JSON object into an existing container, setting the values of
+	 * the properties present in the JSON.
+	 *
+	 * @param in the JSON to read, positioned before the object
+	 * @param target the container to set the values on
+	 * @return the target
+	 * @throws IOException if the JSON can't be read
+	 * @throws PropertyCodecException if the JSON is malformed or a value has
+	 * the wrong JSON type for its property
+	 */
+	public T read(Reader in, T target) throws IOException {
+		JsonParser parser = new JsonParser(in);
+		readObject(parser, target);
+		parser.expectEnd();
+		return target;
+	}
+
+	/**
+	 * Reads a JSON array of objects into new containers.
+	 *
+	 * @param in the JSON to read, positioned before the array
+	 * @return new containers holding the values read, in array order
+	 * @throws IOException if the JSON can't be read
+	 * @throws PropertyCodecException if the JSON is malformed or a value has
+	 * the wrong JSON type for its property
+	 */
+	public List<T> readAll(Reader in) throws IOException {
+		List<T> rows = new ArrayList<>();
+		readAll(in, rows::add);
+		return rows;
+	}
+
+	/**
+	 * Reads a JSON array of objects, passing each new container to the consumer
+	 * as soon as it has been read.
+	 *
+	 * @param in the JSON to read, positioned before the array
+	 * @param consumer receives each new container
+	 * @throws IOException if the JSON can't be read
+	 * @throws PropertyCodecException if the JSON is malformed or a value has
+	 * the wrong JSON type for its property
+	 */
+	public void readAll(Reader in, Consumer<? super T> consumer) throws IOException {
+		JsonParser parser = new JsonParser(in);
+		parser.expect('[');
+		if (parser.peek() == ']') {
+			parser.next();
+		} else {
+			do {
+				consumer.accept(readObject(parser, clazz.cast(schema.newContainer())));
+			} while (parser.nextIsComma(']'));
+		}
+		parser.expectEnd();
+	}
+
+	private T readObject(JsonParser parser, T target) throws IOException {
+		parser.expect('{');
+		if (parser.peek() == '}') {
+			parser.next();
+			return target;
+		}
+		do {
+			int index = schema.indexOf(parser.readString());
+			parser.expect(':');
+			if (index < 0) {
+				parser.skipValue();
+			} else {
+				schema.set(target, index, readValue(parser, index));
+			}
+		} while (parser.nextIsComma('}'));
+		return target;
+	}
+
+	private Object readValue(JsonParser parser, int index) throws IOException {
+		int c = parser.peek();
+		if (c == 'n') {
+			parser.expectLiteral("null");
+			return null;
+		}
+		switch (schema.kind(index)) {
+			case LONG:
+				return schema.fromLong(index, parseLong(parser.readNumber(), index));
+			case DOUBLE:
+				return schema.fromDouble(index, parseDouble(parser.readNumber(), index));
+			case STRING:
+				if (c != '"') {
+					throw wrongType(parser, index, "a string");
+				}
+				return parser.readString().toString();
+			case DATE:
+				return schema.fromEpochMillis(index, parseLong(parser.readNumber(), index));
+			default:
+				if (c == 't') {
+					parser.expectLiteral("true");
+					return Boolean.TRUE;
+				} else if (c == 'f') {
+					parser.expectLiteral("false");
+					return Boolean.FALSE;
+				}
+				throw wrongType(parser, index, "a boolean");
+		}
+	}
+
+	private long parseLong(CharSequence digits, int index) {
+		boolean negative = digits.length() > 0 && digits.charAt(0) == '-';
+		int start = negative ? 1 : 0;
+		if (start == digits.length() || digits.length() - start > 19) {
+			return parseWholeNumber(digits, index);
+		}
+		long value = 0;
+		for (int i = start; i < digits.length(); i++) {
+			char c = digits.charAt(i);
+			if (c < '0' || c > '9') {
+				return parseWholeNumber(digits, index);
+			}
+			value = value * 10 + (c - '0');
+			if (value < 0) {
+				return parseWholeNumber(digits, index);
+			}
+		}
+		return negative ? -value : value;
+	}
+
+	private double parseDouble(CharSequence digits, int index) {
+		try {
+			return Double.parseDouble(digits.toString());
+		} catch (NumberFormatException ex) {
+			throw new PropertyCodecException("Property " + schema.definition(index).qualifiedJavaName() + " requires a number, found " + digits, ex);
+		}
+	}
+
+	/**
+	 * Parses numbers written with a fraction or exponent, as long as they are
+	 * whole numbers.
+	 */
+	private long parseWholeNumber(CharSequence digits, int index) {
+		try {
+			return new BigDecimal(digits.toString()).longValueExact();
+		} catch (NumberFormatException | ArithmeticException ex) {
+			throw new PropertyCodecException("Property " + schema.definition(index).qualifiedJavaName() + " requires a whole number, found " + digits, ex);
+		}
+	}
+
+	private PropertyCodecException wrongType(JsonParser parser, int index, String expected) {
+		return new PropertyCodecException("Property " + schema.definition(index).qualifiedJavaName()
+				+ " requires " + expected + " at offset " + parser.offset());
+	}
+
+	/**
+	 * Minimal pull parser over a Reader, buffering the input and reusing one
+	 * token buffer.
+	 */
+	private static final class JsonParser {
+
+		private final Reader in;
+		private final char[] buffer = new char[4096];
+		private final StringBuilder token = new StringBuilder();
+		private int position;
+		private int limit;
+		private long consumed;
+
+		JsonParser(Reader in) {
+			this.in = in;
+		}
+
+		long offset() {
+			return consumed + position;
+		}
+
+		private boolean fill() throws IOException {
+			consumed += limit;
+			position = 0;
+			limit = 0;
+			int read = in.read(buffer, 0, buffer.length);
+			if (read > 0) {
+				limit = read;
+				return true;
+			}
+			return false;
+		}
+
+		/**
+		 * Gets the next non-whitespace character without consuming it, or -1 at
+		 * the end of the input.
+		 */
+		int peek() throws IOException {
+			while (true) {
+				if (position == limit && !fill()) {
+					return -1;
+				}
+				char c = buffer[position];
+				if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+					position++;
+				} else {
+					return c;
+				}
+			}
+		}
+
+		int next() throws IOException {
+			int c = peek();
+			if (c >= 0) {
+				position++;
+			}
+			return c;
+		}
+
+		private int nextRaw() throws IOException {
+			if (position == limit && !fill()) {
+				throw error("unexpected end of input");
+			}
+			return buffer[position++];
+		}
+
+		void expect(char expected) throws IOException {
+			int c = next();
+			if (c != expected) {
+				throw error("expected '" + expected + "' but found " + describe(c));
+			}
+		}
+
+		/**
+		 * Consumes a comma, returning true, or the closing character, returning
+		 * false.
+		 */
+		boolean nextIsComma(char close) throws IOException {
+			int c = next();
+			if (c == ',') {
+				return true;
+			} else if (c == close) {
+				return false;
+			}
+			throw error("expected ',' or '" + close + "' but found " + describe(c));
+		}
+
+		void expectEnd() throws IOException {
+			int c = peek();
+			if (c >= 0) {
+				throw error("unexpected " + describe(c) + " after JSON value");
+			}
+		}
+
+		void expectLiteral(String literal) throws IOException {
+			peek();
+			for (int i = 0; i < literal.length(); i++) {
+				if (nextRaw() != literal.charAt(i)) {
+					throw error("expected " + literal);
+				}
+			}
+		}
+
+		/**
+		 * Reads a string into the token buffer, which is valid until the next
+		 * token is read.
+		 */
+		CharSequence readString() throws IOException {
+			expect('"');
+			token.setLength(0);
+			while (true) {
+				int start = position;
+				while (position < limit && buffer[position] != '"' && buffer[position] != '\\') {
+					position++;
+				}
+				token.append(buffer, start, position - start);
+				int c = nextRaw();
+				if (c == '"') {
+					return token;
+				} else if (c == '\\') {
+					int escaped = nextRaw();
+					switch (escaped) {
+						case '"':
+						case '\\':
+						case '/':
+							token.append((char) escaped);
+							break;
+						case 'b':
+							token.append('\b');
+							break;
+						case 'f':
+							token.append('\f');
+							break;
+						case 'n':
+							token.append('\n');
+							break;
+						case 'r':
+							token.append('\r');
+							break;
+						case 't':
+							token.append('\t');
+							break;
+						case 'u':
+							int code = 0;
+							for (int i = 0; i < 4; i++) {
+								int digit = Character.digit(nextRaw(), 16);
+								if (digit < 0) {
+									throw error("invalid unicode escape");
+								}
+								code = (code << 4) | digit;
+							}
+							token.append((char) code);
+							break;
+						default:
+							throw error("invalid escape character " + describe(escaped));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Reads a number into the token buffer, which is valid until the next
+		 * token is read.
+		 */
+		CharSequence readNumber() throws IOException {
+			int c = peek();
+			if (c != '-' && (c < '0' || c > '9')) {
+				throw error("expected a number but found " + describe(c));
+			}
+			token.setLength(0);
+			while (true) {
+				if (position == limit && !fill()) {
+					return token;
+				}
+				char d = buffer[position];
+				if ((d >= '0' && d <= '9') || d == '-' || d == '+' || d == '.' || d == 'e' || d == 'E') {
+					token.append(d);
+					position++;
+				} else {
+					return token;
+				}
+			}
+		}
+
+		void skipValue() throws IOException {
+			int c = peek();
+			switch (c) {
+				case '"':
+					readString();
+					break;
+				case '{':
+					next();
+					if (peek() == '}') {
+						next();
+					} else {
+						do {
+							readString();
+							expect(':');
+							skipValue();
+						} while (nextIsComma('}'));
+					}
+					break;
+				case '[':
+					next();
+					if (peek() == ']') {
+						next();
+					} else {
+						do {
+							skipValue();
+						} while (nextIsComma(']'));
+					}
+					break;
+				case 't':
+					expectLiteral("true");
+					break;
+				case 'f':
+					expectLiteral("false");
+					break;
+				case 'n':
+					expectLiteral("null");
+					break;
+				default:
+					readNumber();
+					break;
+			}
+		}
+
+		private static String describe(int c) {
+			return c < 0 ? "end of input" : "'" + (char) c + "'";
+		}
+
+		private PropertyCodecException error(String message) {
+			return new PropertyCodecException("Malformed JSON at offset " + offset() + ": " + message);
+		}
+	}
+
+	/**
+	 * Buffered UTF-8 writer that also accepts pre-encoded bytes.
+	 */
+	private static final class Utf8Sink implements Appendable {
+
+		private final OutputStream out;
+		private final byte[] buffer = new byte[8192];
+		private int position;
+
+		Utf8Sink(OutputStream out) {
+			this.out = out;
+		}
+
+		void write(byte[] bytes) throws IOException {
+			if (bytes.length > buffer.length - position) {
+				flushBuffer();
+				if (bytes.length > buffer.length) {
+					out.write(bytes);
+					return;
+				}
+			}
+			System.arraycopy(bytes, 0, buffer, position, bytes.length);
+			position += bytes.length;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			return append(csq, 0, csq.length());
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			for (int i = start; i < end; i++) {
+				char c = csq.charAt(i);
+				if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(csq.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, csq.charAt(++i));
+					ensure(4);
+					buffer[position++] = (byte) (0xf0 | (codePoint >> 18));
+					buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+					buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+					buffer[position++] = (byte) (0x80 | (codePoint & 0x3f));
+				} else {
+					append(c);
+				}
+			}
+			return this;
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			ensure(3);
+			if (c < 0x80) {
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xc0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			} else {
+				if (Character.isSurrogate(c)) {
+					// unpaired surrogate, written as the replacement character
+					c = '\ufffd';
+				}
+				buffer[position++] = (byte) (0xe0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+				buffer[position++] = (byte) (0x80 | (c & 0x3f));
+			}
+			return this;
+		}
+
+		private void ensure(int bytes) throws IOException {
+			if (buffer.length - position < bytes) {
+				flushBuffer();
+			}
+		}
+
+		private void flushBuffer() throws IOException {
+			out.write(buffer, 0, position);
+			position = 0;
+		}
+
+		void flush() throws IOException {
+			flushBuffer();
+			out.flush();
+		}
+	}
+}
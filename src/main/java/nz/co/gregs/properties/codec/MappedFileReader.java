@@ -0,0 +1,125 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads a range of UTF-8 bytes from a file by memory-mapping it one window at
+ * a time.
+ *
+ * <p>
+ * Only one window is mapped at a time, so files larger than the address
+ * space of a single buffer can be read, and the bytes are decoded straight
+ * from the mapped window into the caller's char array. Closing the reader
+ * doesn't close the channel.
+ *
+ * <p>
+ * A read of a single char is decoded into a two-char buffer, because a
+ * supplementary character decodes to a pair of surrogates that won't fit in
+ * one char; the second char is kept and returned by the next read.
+ *
+ * @author Gregory Graham
+ */
+final class MappedFileReader extends Reader {
+
+	static final int WINDOW_SIZE = 16 * 1024 * 1024;
+
+	private final FileChannel channel;
+	private final long end;
+	private final int windowSize;
+	private final CharsetDecoder decoder = StandardCharsets.UTF_8.newDecoder()
+			.onMalformedInput(CodingErrorAction.REPLACE)
+			.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	private final CharBuffer pair = CharBuffer.allocate(2);
+	private long windowStart;
+	private MappedByteBuffer window;
+	private boolean done;
+	private boolean hasPending;
+	private char pending;
+
+	/**
+	 * Creates a reader of the bytes from start, inclusive, to end, exclusive.
+	 */
+	MappedFileReader(FileChannel channel, long start, long end) {
+		this(channel, start, end, WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a reader of the bytes from start, inclusive, to end, exclusive,
+	 * mapping at most windowSize bytes at a time.
+	 */
+	MappedFileReader(FileChannel channel, long start, long end, int windowSize) {
+		this.channel = channel;
+		this.windowSize = windowSize;
+		this.windowStart = start;
+		this.end = end;
+		this.done = start >= end;
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (done && !hasPending) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		if (hasPending) {
+			cbuf[off] = pending;
+			hasPending = false;
+			return 1;
+		}
+		if (len == 1) {
+			int read = decode(pair);
+			if (read <= 0) {
+				return read;
+			}
+			pair.flip();
+			cbuf[off] = pair.get();
+			if (pair.hasRemaining()) {
+				pending = pair.get();
+				hasPending = true;
+			}
+			pair.clear();
+			return 1;
+		}
+		return decode(CharBuffer.wrap(cbuf, off, len));
+	}
+
+	/**
+	 * Decodes at least one char into the buffer, which must have room for two,
+	 * unless the range has been read.
+	 */
+	private int decode(CharBuffer chars) throws IOException {
+		int off = chars.position();
+		while (chars.position() == off) {
+			if (window == null || (window.remaining() < 4 && windowStart + window.limit() < end)) {
+				// map the next window, starting with any bytes of a partly decoded character
+				long next = (window == null) ? windowStart : windowStart + window.position();
+				windowStart = next;
+				window = channel.map(FileChannel.MapMode.READ_ONLY, next, Math.min(windowSize, end - next));
+			}
+			boolean last = windowStart + window.limit() >= end;
+			decoder.decode(window, chars, last);
+			if (last && !window.hasRemaining()) {
+				decoder.flush(chars);
+				done = true;
+				window = null;
+				break;
+			}
+		}
+		int read = chars.position() - off;
+		return (read == 0 && done) ? -1 : read;
+	}
+
+	@Override
+	public void close() {
+		window = null;
+	}
+}
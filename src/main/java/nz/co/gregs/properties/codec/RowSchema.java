@@ -0,0 +1,292 @@
+package nz.co.gregs.properties.codec;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyContainerClass;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.adapt.AdaptableType;
+import nz.co.gregs.properties.adapt.Instantiator;
+import nz.co.gregs.properties.adapt.InternalAdaptableTypeProxy;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+
+/**
+ * The properties of a property container class that the codecs read and
+ * write, with the encoding of each one.
+ *
+ * <p>
+ * Only properties that are both readable and writable are included, in the
+ * order of {@link PropertyContainerClass#getPropertyDefinitions()}.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+final class RowSchema {
+
+	private final PropertyContainerClass classWrapper;
+	private final PropertyDefinition[] definitions;
+	private final ValueKind[] kinds;
+	private final Class<?>[] literalTypes;
+	private final Method[] stringSetters;
+	private final long fingerprint;
+	private final Map<PropertyDefinition, Integer> indexes = new IdentityHashMap<>();
+	private final Instantiator<?>[] adaptableTypes;
+	private final Instantiator<? extends PropertyContainer> containers;
+
+	/**
+	 * Creates the schema for the class.
+	 *
+	 * @param classWrapper the class of the containers to read and write
+	 * @throws PropertyCodecException if a property has an unsupported literal
+	 * type
+	 */
+	RowSchema(PropertyContainerClass classWrapper) {
+		this.classWrapper = classWrapper;
+		List<PropertyDefinition> included = new ArrayList<>();
+		for (PropertyDefinition definition : classWrapper.getPropertyDefinitions()) {
+			if (definition.isReadable() && definition.isWritable()) {
+				included.add(definition);
+			}
+		}
+		definitions = included.toArray(new PropertyDefinition[included.size()]);
+		kinds = new ValueKind[definitions.length];
+		literalTypes = new Class<?>[definitions.length];
+		stringSetters = new Method[definitions.length];
+		adaptableTypes = new Instantiator<?>[definitions.length];
+		containers = Instantiator.of(classWrapper.adapteeClass());
+		// FNV-1a over the names and encodings, so any change to either is detected
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < definitions.length; i++) {
+			indexes.put(definitions[i], i);
+			adaptableTypes[i] = Instantiator.of(definitions[i].type());
+			literalTypes[i] = definitions[i].literalType();
+			kinds[i] = ValueKind.of(literalTypes[i]);
+			if (kinds[i] == null) {
+				throw new PropertyCodecException("Property " + definitions[i].qualifiedJavaName()
+						+ " has literal type " + literalTypes[i].getName() + " which can't be encoded");
+			}
+			try {
+				stringSetters[i] = definitions[i].type().getMethod("setValue", String.class);
+			} catch (NoSuchMethodException ex) {
+				// no string conversion for this type
+			}
+			String name = definitions[i].javaName();
+			for (int c = 0; c < name.length(); c++) {
+				hash = (hash ^ name.charAt(c)) * 0x100000001b3L;
+			}
+			hash = (hash ^ (0x100 + kinds[i].ordinal())) * 0x100000001b3L;
+		}
+		fingerprint = hash;
+	}
+
+	/**
+	 * Gets the class of the containers.
+	 *
+	 * @return the class wrapper
+	 */
+	PropertyContainerClass getClassWrapper() {
+		return classWrapper;
+	}
+
+	/**
+	 * Gets the number of properties in the schema.
+	 *
+	 * @return the number of properties
+	 */
+	int size() {
+		return definitions.length;
+	}
+
+	/**
+	 * Gets the property at the index.
+	 *
+	 * @param index the index of the property
+	 * @return the property definition
+	 */
+	PropertyDefinition definition(int index) {
+		return definitions[index];
+	}
+
+	/**
+	 * Finds the index of the named property.
+	 *
+	 * <p>
+	 * Uses the class's {@link nz.co.gregs.properties.PropertyNameIndex} so the
+	 * name can be looked up directly from a parser's token buffer.
+	 *
+	 * @param name the java property name
+	 * @return the index of the property, or -1 if there is no such property in
+	 * the schema
+	 */
+	int indexOf(CharSequence name) {
+		PropertyDefinition definition = classWrapper.getPropertyNameIndex().get(name);
+		Integer index = definition == null ? null : indexes.get(definition);
+		return index == null ? -1 : index;
+	}
+
+	/**
+	 * Gets the encoding of the property at the index.
+	 *
+	 * @param index the index of the property
+	 * @return the encoding
+	 */
+	ValueKind kind(int index) {
+		return kinds[index];
+	}
+
+	/**
+	 * Gets the fingerprint of the property names and encodings.
+	 *
+	 * @return the fingerprint
+	 */
+	long fingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * Reads the literal value of the property.
+	 *
+	 * @param target the container
+	 * @param index the index of the property
+	 * @return the literal value, or null if the property or its value is null
+	 */
+	Object get(Object target, int index) {
+		AdaptableType<?> adaptable = definitions[index].readAdaptableType(target);
+		return adaptable == null ? null : adaptable.getValue();
+	}
+
+	/**
+	 * Sets the literal value of the property, creating the AdaptableType if the
+	 * container doesn't have one.
+	 *
+	 * @param target the container
+	 * @param index the index of the property
+	 * @param value the literal value, may be null
+	 */
+	void set(Object target, int index, Object value) {
+		PropertyDefinition definition = definitions[index];
+		AdaptableType<?> adaptable = definition.getAdaptableType(target);
+		boolean created = adaptable == null;
+		if (created) {
+			adaptable = newAdaptableType(index);
+		}
+		InternalAdaptableTypeProxy.setValue(adaptable, value);
+		if (created || definition.isTypeAdapted()) {
+			definition.setAdaptableType(target, adaptable);
+		}
+	}
+
+	/**
+	 * Indicates whether the AdaptableType of the property declares a
+	 * {@code setValue(String)} method.
+	 *
+	 * @param index the index of the property
+	 * @return true if the property's type can parse strings itself
+	 */
+	boolean hasStringSetter(int index) {
+		return stringSetters[index] != null;
+	}
+
+	/**
+	 * Sets the value of the property using the {@code setValue(String)} method
+	 * of its AdaptableType, creating the AdaptableType if the container doesn't
+	 * have one.
+	 *
+	 * @param target the container
+	 * @param index the index of the property
+	 * @param text the text to parse
+	 * @throws PropertyCodecException if the AdaptableType can't parse the text
+	 */
+	void setFromString(Object target, int index, String text) {
+		PropertyDefinition definition = definitions[index];
+		AdaptableType<?> adaptable = definition.getAdaptableType(target);
+		boolean created = adaptable == null;
+		if (created) {
+			adaptable = newAdaptableType(index);
+		}
+		try {
+			stringSetters[index].invoke(adaptable, text);
+		} catch (IllegalAccessException ex) {
+			throw new PropertyCodecException("Unable to call setValue(String) on " + definition.type().getName() + ": " + ex.getMessage(), ex);
+		} catch (InvocationTargetException ex) {
+			Throwable cause = (ex.getCause() == null) ? ex : ex.getCause();
+			throw new PropertyCodecException("Property " + definition.qualifiedJavaName() + " can't parse \"" + text + "\": " + cause.getLocalizedMessage(), cause);
+		}
+		if (created || definition.isTypeAdapted()) {
+			definition.setAdaptableType(target, adaptable);
+		}
+	}
+
+	/**
+	 * Converts a decoded integral number to the literal type of the property.
+	 *
+	 * @param index the index of the property
+	 * @param value the decoded value
+	 * @return the boxed value
+	 */
+	Object fromLong(int index, long value) {
+		Class<?> type = literalTypes[index];
+		if (type == Long.class) {
+			return value;
+		} else if (type == Integer.class) {
+			return (int) value;
+		} else if (type == Short.class) {
+			return (short) value;
+		} else {
+			return (byte) value;
+		}
+	}
+
+	/**
+	 * Converts a decoded floating point number to the literal type of the
+	 * property.
+	 *
+	 * @param index the index of the property
+	 * @param value the decoded value
+	 * @return the boxed value
+	 */
+	Object fromDouble(int index, double value) {
+		return literalTypes[index] == Float.class ? (Object) (float) value : (Object) value;
+	}
+
+	/**
+	 * Converts decoded epoch milliseconds to the literal type of the property.
+	 *
+	 * @param index the index of the property
+	 * @param value the decoded value
+	 * @return the date
+	 */
+	Object fromEpochMillis(int index, long value) {
+		return new Date(value);
+	}
+
+	/**
+	 * Creates a new, empty container.
+	 *
+	 * @return a new instance of the container class
+	 * @throws PropertyCodecException if the class has no accessible default
+	 * constructor
+	 */
+	PropertyContainer newContainer() {
+		if (!containers.isInstantiable()) {
+			throw new PropertyCodecException(classWrapper.qualifiedJavaName() + " has no accessible default constructor, decode into an existing instance instead: "
+					+ containers.getProblem().getMessage(), containers.getProblem());
+		}
+		return containers.newInstance();
+	}
+
+	private AdaptableType<?> newAdaptableType(int index) {
+		Instantiator<?> instantiator = adaptableTypes[index];
+		if (!instantiator.isInstantiable()) {
+			throw new PropertyCodecException("Unable to instantiate " + instantiator.getType().getName() + ": " + instantiator.getProblem().getMessage(), instantiator.getProblem());
+		}
+		return (AdaptableType<?>) instantiator.newInstance();
+	}
+}
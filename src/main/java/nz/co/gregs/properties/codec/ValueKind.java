@@ -0,0 +1,54 @@
+package nz.co.gregs.properties.codec;
+
+import java.util.Date;
+
+/**
+ * The encodings the codecs use for the literal values of properties.
+ *
+ * @author Gregory Graham
+ */
+enum ValueKind {
+
+	/**
+	 * Integral numbers, held as a long.
+	 */
+	LONG,
+	/**
+	 * Floating point and other numbers, held as a double.
+	 */
+	DOUBLE,
+	/**
+	 * Strings.
+	 */
+	STRING,
+	/**
+	 * Dates, held as epoch milliseconds.
+	 */
+	DATE,
+	/**
+	 * Booleans.
+	 */
+	BOOLEAN;
+
+	/**
+	 * Finds the encoding for the literal type of a property.
+	 *
+	 * @param literalType the literal type of the property
+	 * @return the encoding, or null if the literal type isn't supported
+	 */
+	static ValueKind of(Class<?> literalType) {
+		if (literalType == Long.class || literalType == Integer.class
+				|| literalType == Short.class || literalType == Byte.class) {
+			return LONG;
+		} else if (literalType == Double.class || literalType == Float.class || literalType == Number.class) {
+			return DOUBLE;
+		} else if (literalType == String.class) {
+			return STRING;
+		} else if (literalType == Date.class) {
+			return DATE;
+		} else if (literalType == Boolean.class) {
+			return BOOLEAN;
+		}
+		return null;
+	}
+}
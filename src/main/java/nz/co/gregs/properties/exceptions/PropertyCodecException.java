@@ -0,0 +1,35 @@
+package nz.co.gregs.properties.exceptions;
+
+/**
+ * Thrown when a property container can't be encoded or decoded.
+ *
+ * <p>
+ * Usually this means the encoded data was written for a different version of
+ * the class, is truncated or corrupt, or a property has a literal type the
+ * codec doesn't support.
+ *
+ * @author Gregory Graham
+ */
+public class PropertyCodecException extends PropertyException {
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Thrown when a property container can't be encoded or decoded.
+	 *
+	 * @param message message
+	 */
+	public PropertyCodecException(String message) {
+		super(message);
+	}
+
+	/**
+	 * Thrown when a property container can't be encoded or decoded.
+	 *
+	 * @param message message
+	 * @param cause cause
+	 */
+	public PropertyCodecException(String message, Throwable cause) {
+		super(message, cause);
+	}
+}
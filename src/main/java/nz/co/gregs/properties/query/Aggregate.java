@@ -0,0 +1,109 @@
+package nz.co.gregs.properties.query;
+
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * A function that summarises the containers of each group of a
+ * {@link GroupBy}.
+ *
+ * <p>
+ * Sums, minimums, maximums, and averages ignore null values and are null for
+ * a group without any non-null values, as in SQL. Integral properties are
+ * summed as longs and other numbers as doubles; the minimum and maximum of a
+ * date property are dates.
+ *
+ * <p>
+ * Instances of this class are immutable and <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class Aggregate {
+
+	/**
+	 * The aggregate functions.
+	 */
+	enum Function {
+		COUNT, COUNT_VALUES, SUM, MIN, MAX, AVG
+	}
+
+	final Function function;
+	final PropertyDefinition property;
+	final ValueReader.Kind kind;
+
+	private Aggregate(Function function, PropertyDefinition property) {
+		this.function = function;
+		this.property = property;
+		this.kind = property == null ? ValueReader.Kind.LONG : ValueReader.Kind.of(ValueReader.readable(property).literalType());
+		if (kind == ValueReader.Kind.OTHER && function != Function.COUNT_VALUES) {
+			throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " is not numeric");
+		}
+		if (kind == ValueReader.Kind.DATE && (function == Function.SUM || function == Function.AVG)) {
+			throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " is a date and can't be summed");
+		}
+	}
+
+	/**
+	 * Counts the containers in each group.
+	 *
+	 * @return the aggregate, whose values are Longs
+	 */
+	public static Aggregate count() {
+		return new Aggregate(Function.COUNT, null);
+	}
+
+	/**
+	 * Counts the non-null values of the property in each group.
+	 *
+	 * @param property a readable property
+	 * @return the aggregate, whose values are Longs
+	 */
+	public static Aggregate count(PropertyDefinition property) {
+		return new Aggregate(Function.COUNT_VALUES, property);
+	}
+
+	/**
+	 * Sums the values of the property in each group.
+	 *
+	 * @param property a readable numeric property
+	 * @return the aggregate, whose values are Longs for integral properties and
+	 * Doubles otherwise
+	 */
+	public static Aggregate sum(PropertyDefinition property) {
+		return new Aggregate(Function.SUM, property);
+	}
+
+	/**
+	 * Finds the lowest value of the property in each group.
+	 *
+	 * @param property a readable numeric or date property
+	 * @return the aggregate, whose values are Longs, Doubles, or Dates
+	 */
+	public static Aggregate min(PropertyDefinition property) {
+		return new Aggregate(Function.MIN, property);
+	}
+
+	/**
+	 * Finds the highest value of the property in each group.
+	 *
+	 * @param property a readable numeric or date property
+	 * @return the aggregate, whose values are Longs, Doubles, or Dates
+	 */
+	public static Aggregate max(PropertyDefinition property) {
+		return new Aggregate(Function.MAX, property);
+	}
+
+	/**
+	 * Averages the values of the property in each group.
+	 *
+	 * @param property a readable numeric property
+	 * @return the aggregate, whose values are Doubles
+	 */
+	public static Aggregate avg(PropertyDefinition property) {
+		return new Aggregate(Function.AVG, property);
+	}
+
+	@Override
+	public String toString() {
+		return (function == Function.COUNT_VALUES ? "count" : function.name().toLowerCase()) + "(" + (property == null ? "*" : property.javaName()) + ")";
+	}
+}
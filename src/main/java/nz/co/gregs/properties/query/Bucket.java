@@ -0,0 +1,124 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The containers indexed under one key, in the order they were indexed.
+ *
+ * <p>
+ * Containers are matched by identity. Small buckets are searched linearly;
+ * once a bucket grows past a few entries the position of each container is
+ * kept in an IdentityHashMap and removed containers leave a gap that is
+ * compacted away later, so adding and removing stay constant time however
+ * many containers share the key.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+final class Bucket<T> {
+
+	private static final int LINEAR_LIMIT = 8;
+
+	private final ArrayList<T> rows = new ArrayList<>(2);
+	private Map<T, Integer> positions;
+	private int size;
+
+	/**
+	 * Adds the container to the end of the bucket.
+	 */
+	void add(T row) {
+		if (positions != null) {
+			positions.put(row, rows.size());
+		}
+		rows.add(row);
+		size++;
+		if (positions == null && size > LINEAR_LIMIT) {
+			positions = new IdentityHashMap<>();
+			for (int i = 0; i < rows.size(); i++) {
+				positions.put(rows.get(i), i);
+			}
+		}
+	}
+
+	/**
+	 * Removes the container from the bucket, comparing by identity.
+	 *
+	 * @return true if the container was in the bucket
+	 */
+	boolean remove(T row) {
+		if (positions == null) {
+			for (int i = rows.size() - 1; i >= 0; i--) {
+				if (rows.get(i) == row) {
+					rows.remove(i);
+					size--;
+					return true;
+				}
+			}
+			return false;
+		}
+		Integer position = positions.remove(row);
+		if (position == null) {
+			return false;
+		}
+		rows.set(position, null);
+		size--;
+		if (rows.size() > 2 * size + LINEAR_LIMIT) {
+			compact();
+		}
+		return true;
+	}
+
+	private void compact() {
+		int next = 0;
+		for (int i = 0; i < rows.size(); i++) {
+			T row = rows.get(i);
+			if (row != null) {
+				rows.set(next, row);
+				positions.put(row, next);
+				next++;
+			}
+		}
+		rows.subList(next, rows.size()).clear();
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Adds the containers of the bucket to the collection, in order.
+	 */
+	void addTo(Collection<? super T> found) {
+		if (size == rows.size()) {
+			found.addAll(rows);
+		} else {
+			for (T row : rows) {
+				if (row != null) {
+					found.add(row);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies the containers of the bucket into a new list, in order.
+	 */
+	List<T> toList() {
+		List<T> found = new ArrayList<>(size);
+		addTo(found);
+		return found;
+	}
+
+	void clear() {
+		rows.clear();
+		positions = null;
+		size = 0;
+	}
+}
@@ -0,0 +1,380 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collector;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * Groups containers by the values of some properties and summarises each
+ * group with {@link Aggregate aggregates}.
+ *
+ * <pre>
+ * List&lt;GroupBy.Group&gt; totals = GroupBy.groupBy(status)
+ *		.aggregate(Aggregate.sum(amount), Aggregate.count(), Aggregate.max(amount))
+ *		.apply(orders, true);
+ * </pre>
+ *
+ * <p>
+ * Each group accumulates into primitive long and double arrays, so rows are
+ * summarised without boxing. A parallel run gives each fork/join task its
+ * own partial groups and merges them as the tasks complete. A single
+ * integral or date grouping property is looked up as a primitive long.
+ * Containers with null grouping values form groups of their own, and the
+ * groups are returned in the order their first containers were found.
+ *
+ * <p>
+ * Values are read with {@link PropertyDefinition#readAdaptableType(Object)},
+ * so type-adapted properties can be grouped and aggregated in parallel.
+ *
+ * <p>
+ * Instances of this class are immutable and <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+public final class GroupBy {
+
+	private final PropertyDefinition[] properties;
+	private final Aggregate[] aggregates;
+	private final KeyReader reader;
+
+	private GroupBy(PropertyDefinition[] properties, Aggregate[] aggregates) {
+		this.properties = properties;
+		this.aggregates = aggregates;
+		ValueReader.Kind[] kinds = new ValueReader.Kind[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			kinds[i] = ValueReader.Kind.of(ValueReader.readable(properties[i]).literalType());
+		}
+		this.reader = new KeyReader(properties, kinds);
+	}
+
+	/**
+	 * Starts a grouping by the properties.
+	 *
+	 * @param properties the readable properties whose values define the
+	 * groups, or none to summarise all containers as one group
+	 * @return a grouping without aggregates
+	 */
+	public static GroupBy groupBy(PropertyDefinition... properties) {
+		return new GroupBy(properties.clone(), new Aggregate[0]);
+	}
+
+	/**
+	 * Creates a grouping with these aggregates.
+	 *
+	 * @param aggregates the aggregates to calculate for each group
+	 * @return a new grouping by the same properties
+	 */
+	public GroupBy aggregate(Aggregate... aggregates) {
+		return new GroupBy(properties, aggregates.clone());
+	}
+
+	/**
+	 * Groups and summarises the containers.
+	 *
+	 * @param rows the containers
+	 * @return the groups, in the order their first containers were found
+	 */
+	public List<Group> apply(Collection<? extends PropertyContainer> rows) {
+		return apply(rows, false);
+	}
+
+	/**
+	 * Groups and summarises the containers, optionally in parallel.
+	 *
+	 * @param rows the containers
+	 * @param parallel true to summarise parts of the collection in parallel
+	 * and merge the partial groups
+	 * @return the groups, in the order their first containers were found
+	 */
+	public List<Group> apply(Collection<? extends PropertyContainer> rows, boolean parallel) {
+		Partial result;
+		if (parallel) {
+			result = rows.parallelStream().collect(Collector.of(Partial::new, Partial::add, Partial::merge));
+		} else {
+			result = new Partial();
+			for (PropertyContainer row : rows) {
+				result.add(row);
+			}
+		}
+		if (properties.length == 0 && result.groups.isEmpty()) {
+			// a grouping by nothing has one group, even of nothing
+			result.groups.add(new Group(new Object[0], aggregates));
+		}
+		return Collections.unmodifiableList(result.groups);
+	}
+
+	/**
+	 * The groups found in part of the containers.
+	 */
+	private final class Partial {
+
+		private final List<Group> groups = new ArrayList<>();
+		private final LongTable<Group> longs = reader.primitive ? new LongTable<>() : null;
+		private final Map<Object, Group> objects = reader.primitive ? null : new HashMap<>();
+		private final long[] key = new long[1];
+		private Group nulls;
+
+		void add(PropertyContainer row) {
+			Group group;
+			if (longs != null) {
+				if (reader.readLong(row, key)) {
+					group = longs.get(key[0]);
+					if (group == null) {
+						group = newGroup(row, null, key[0]);
+						longs.put(key[0], group);
+					}
+				} else {
+					if (nulls == null) {
+						nulls = newGroup(row, null, 0);
+					}
+					group = nulls;
+				}
+			} else {
+				KeyReader.CompositeKey composite = reader.readGroupKey(row);
+				group = objects.get(composite);
+				if (group == null) {
+					group = newGroup(row, composite, 0);
+					objects.put(composite, group);
+				}
+			}
+			group.add(row);
+		}
+
+		private Group newGroup(PropertyContainer row, KeyReader.CompositeKey composite, long primitiveKey) {
+			Object[] values = new Object[properties.length];
+			for (int i = 0; i < properties.length; i++) {
+				values[i] = ValueReader.read(properties[i], row);
+			}
+			Group group = new Group(values, aggregates);
+			group.composite = composite;
+			group.primitiveKey = primitiveKey;
+			groups.add(group);
+			return group;
+		}
+
+		Partial merge(Partial later) {
+			for (Group group : later.groups) {
+				Group existing;
+				if (longs != null) {
+					if (group.keys[0] == null) {
+						existing = nulls;
+						if (existing == null) {
+							nulls = group;
+						}
+					} else {
+						existing = longs.get(group.primitiveKey);
+						if (existing == null) {
+							longs.put(group.primitiveKey, group);
+						}
+					}
+				} else {
+					existing = objects.get(group.composite);
+					if (existing == null) {
+						objects.put(group.composite, group);
+					}
+				}
+				if (existing == null) {
+					groups.add(group);
+				} else {
+					existing.merge(group);
+				}
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * The values of the grouping properties shared by some containers, and the
+	 * aggregates of those containers.
+	 */
+	public static final class Group {
+
+		private final Object[] keys;
+		private final Aggregate[] aggregates;
+		private final long[] counts;
+		private final long[] longs;
+		private final double[] doubles;
+		private KeyReader.CompositeKey composite;
+		private long primitiveKey;
+
+		private Group(Object[] keys, Aggregate[] aggregates) {
+			this.keys = keys;
+			this.aggregates = aggregates;
+			counts = new long[aggregates.length];
+			longs = new long[aggregates.length];
+			doubles = new double[aggregates.length];
+		}
+
+		private void add(PropertyContainer row) {
+			for (int i = 0; i < aggregates.length; i++) {
+				Aggregate aggregate = aggregates[i];
+				if (aggregate.function == Aggregate.Function.COUNT) {
+					counts[i]++;
+					continue;
+				}
+				Object value = ValueReader.read(aggregate.property, row);
+				if (value == null) {
+					continue;
+				}
+				long count = counts[i]++;
+				switch (aggregate.kind) {
+					case LONG:
+					case DATE:
+						long number = aggregate.kind == ValueReader.Kind.DATE ? ((Date) value).getTime() : ((Number) value).longValue();
+						accumulate(i, count, number);
+						break;
+					case DOUBLE:
+						accumulate(i, count, ((Number) value).doubleValue());
+						break;
+					default:
+				}
+			}
+		}
+
+		private void accumulate(int index, long count, long value) {
+			switch (aggregates[index].function) {
+				case SUM:
+				case AVG:
+					longs[index] += value;
+					break;
+				case MIN:
+					longs[index] = count == 0 ? value : Math.min(longs[index], value);
+					break;
+				case MAX:
+					longs[index] = count == 0 ? value : Math.max(longs[index], value);
+					break;
+				default:
+			}
+		}
+
+		private void accumulate(int index, long count, double value) {
+			switch (aggregates[index].function) {
+				case SUM:
+				case AVG:
+					doubles[index] += value;
+					break;
+				case MIN:
+					doubles[index] = count == 0 ? value : Math.min(doubles[index], value);
+					break;
+				case MAX:
+					doubles[index] = count == 0 ? value : Math.max(doubles[index], value);
+					break;
+				default:
+			}
+		}
+
+		private void merge(Group other) {
+			for (int i = 0; i < aggregates.length; i++) {
+				if (other.counts[i] > 0) {
+					if (aggregates[i].kind == ValueReader.Kind.DOUBLE) {
+						accumulate(i, counts[i], other.doubles[i]);
+					} else {
+						accumulate(i, counts[i], other.longs[i]);
+					}
+					counts[i] += other.counts[i];
+				}
+			}
+		}
+
+		/**
+		 * Gets the value of a grouping property shared by the containers of
+		 * this group.
+		 *
+		 * @param index the position of the property in the grouping
+		 * @return the value, which may be null
+		 */
+		public Object getKey(int index) {
+			return keys[index];
+		}
+
+		/**
+		 * Gets the values of the grouping properties shared by the containers
+		 * of this group.
+		 *
+		 * @return the values, in the order of the grouping properties
+		 */
+		public List<Object> getKeys() {
+			return Collections.unmodifiableList(Arrays.asList(keys));
+		}
+
+		/**
+		 * Gets the value of an aggregate for this group.
+		 *
+		 * @param index the position of the aggregate
+		 * @return a Long, Double, or Date, or null if the group has no non-null
+		 * values of the property
+		 */
+		public Object getValue(int index) {
+			Aggregate aggregate = aggregates[index];
+			switch (aggregate.function) {
+				case COUNT:
+				case COUNT_VALUES:
+					return counts[index];
+				default:
+			}
+			if (counts[index] == 0) {
+				return null;
+			} else if (aggregate.function == Aggregate.Function.AVG) {
+				return getDouble(index);
+			} else if (aggregate.kind == ValueReader.Kind.DOUBLE) {
+				return doubles[index];
+			} else if (aggregate.kind == ValueReader.Kind.DATE) {
+				return new Date(longs[index]);
+			}
+			return longs[index];
+		}
+
+		/**
+		 * Gets the value of a count or of an aggregate of an integral or date
+		 * property, as epoch milliseconds, without boxing it.
+		 *
+		 * @param index the position of the aggregate
+		 * @return the value, or 0 if the group has no non-null values
+		 */
+		public long getLong(int index) {
+			Aggregate aggregate = aggregates[index];
+			if (aggregate.function == Aggregate.Function.COUNT || aggregate.function == Aggregate.Function.COUNT_VALUES) {
+				return counts[index];
+			} else if (aggregate.kind == ValueReader.Kind.DOUBLE || aggregate.function == Aggregate.Function.AVG) {
+				return (long) getDouble(index);
+			}
+			return longs[index];
+		}
+
+		/**
+		 * Gets the value of an aggregate as a double without boxing it.
+		 *
+		 * @param index the position of the aggregate
+		 * @return the value, or 0 if the group has no non-null values and NaN for
+		 * such an average
+		 */
+		public double getDouble(int index) {
+			Aggregate aggregate = aggregates[index];
+			if (aggregate.function == Aggregate.Function.COUNT || aggregate.function == Aggregate.Function.COUNT_VALUES) {
+				return counts[index];
+			}
+			double value = aggregate.kind == ValueReader.Kind.DOUBLE ? doubles[index] : longs[index];
+			if (aggregate.function == Aggregate.Function.AVG) {
+				return value / counts[index];
+			}
+			return value;
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder().append(Arrays.toString(keys)).append(" {");
+			for (int i = 0; i < aggregates.length; i++) {
+				text.append(i == 0 ? "" : ", ").append(aggregates[i]).append('=').append(getValue(i));
+			}
+			return text.append('}').toString();
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package nz.co.gregs.properties.query;
+
+import java.util.HashMap;
+import java.util.Map;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * An index of containers for looking up equal values of a property.
+ *
+ * <p>
+ * Numeric and date values are kept in an open-addressed table of primitive
+ * long keys, doubles by their bits, so neither lookups nor updates box the
+ * key. Other values are kept in a HashMap.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the indexed containers
+ */
+public final class HashIndex<T extends PropertyContainer> extends PropertyIndex<T> {
+
+	private final LongTable<Bucket<T>> numbers;
+	private final Map<Object, Bucket<T>> objects;
+
+	/**
+	 * Creates an empty index of the property.
+	 *
+	 * @param property the readable property to index by
+	 * @throws IllegalArgumentException if the property is not readable
+	 */
+	public HashIndex(PropertyDefinition property) {
+		super(property);
+		if (kind == ValueReader.Kind.OTHER) {
+			numbers = null;
+			objects = new HashMap<>();
+		} else {
+			numbers = new LongTable<>();
+			objects = null;
+		}
+	}
+
+	private static long bits(Object key) {
+		return key instanceof Double ? Double.doubleToLongBits((Double) key) : (Long) key;
+	}
+
+	@Override
+	void insert(Object key, T row) {
+		Bucket<T> rows;
+		if (numbers != null) {
+			long bits = bits(key);
+			rows = numbers.get(bits);
+			if (rows == null) {
+				rows = new Bucket<>();
+				numbers.put(bits, rows);
+			}
+		} else {
+			rows = objects.computeIfAbsent(key, k -> new Bucket<>());
+		}
+		rows.add(row);
+	}
+
+	@Override
+	void delete(Object key, T row) {
+		if (numbers != null) {
+			long bits = bits(key);
+			Bucket<T> rows = numbers.get(bits);
+			rows.remove(row);
+			if (rows.isEmpty()) {
+				numbers.remove(bits);
+			}
+		} else {
+			Bucket<T> rows = objects.get(key);
+			rows.remove(row);
+			if (rows.isEmpty()) {
+				objects.remove(key);
+			}
+		}
+	}
+
+	@Override
+	Bucket<T> find(Object key) {
+		return numbers != null ? numbers.get(bits(key)) : objects.get(key);
+	}
+
+	@Override
+	void clearKeys() {
+		if (numbers != null) {
+			numbers.clear();
+		} else {
+			objects.clear();
+		}
+	}
+
+	/**
+	 * Gets the number of distinct non-null values in the index.
+	 *
+	 * @return the number of keys
+	 */
+	public int keyCount() {
+		return numbers != null ? numbers.size() : objects.size();
+	}
+}
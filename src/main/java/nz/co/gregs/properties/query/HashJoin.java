@@ -0,0 +1,292 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * Joins two collections of containers in memory on equal property values.
+ *
+ * <p>
+ * The join is described by pairs of properties, one from each side, and
+ * then run as an inner or left outer join:
+ *
+ * <pre>
+ * Stream&lt;HashJoin.Pair&lt;Order, Customer&gt;&gt; joined = HashJoin.of(orders, customers)
+ *		.on(orderCustomerId, customerId)
+ *		.parallel(true)
+ *		.inner();
+ * </pre>
+ *
+ * <p>
+ * When the stream's terminal operation starts, a hash table is built from
+ * one side: the smaller side for inner joins and the right side for left
+ * outer joins. The other side is then streamed, in parallel if requested,
+ * and each of its containers is looked up in the table, so matches are
+ * produced lazily in the order of the probing side. A single integral or
+ * date key is looked up as a primitive long; other keys are combined into a
+ * composite key. Null key values never match.
+ *
+ * <p>
+ * Instances of this class are not thread-safe, but the streams they create
+ * can be run in parallel: keys are read with
+ * {@link PropertyDefinition#readAdaptableType(Object)}, so type-adapted keys
+ * don't share the converted value cached by their type handler.
+ *
+ * @author Gregory Graham
+ * @param <L> the class of the containers on the left
+ * @param <R> the class of the containers on the right
+ */
+public final class HashJoin<L extends PropertyContainer, R extends PropertyContainer> {
+
+	private final Collection<L> left;
+	private final Collection<R> right;
+	private final List<PropertyDefinition> leftKeys = new ArrayList<>();
+	private final List<PropertyDefinition> rightKeys = new ArrayList<>();
+	private boolean parallel;
+
+	private HashJoin(Collection<L> left, Collection<R> right) {
+		this.left = left;
+		this.right = right;
+	}
+
+	/**
+	 * Starts a join of the collections.
+	 *
+	 * @param <L> the class of the containers on the left
+	 * @param <R> the class of the containers on the right
+	 * @param left the containers on the left
+	 * @param right the containers on the right
+	 * @return a join without any key properties
+	 */
+	public static <L extends PropertyContainer, R extends PropertyContainer> HashJoin<L, R> of(Collection<L> left, Collection<R> right) {
+		return new HashJoin<>(left, right);
+	}
+
+	/**
+	 * Adds a pair of properties that must have equal values.
+	 *
+	 * @param leftProperty a readable property of the containers on the left
+	 * @param rightProperty a readable property of the containers on the right
+	 * @return this join
+	 * @throws IllegalArgumentException if a property isn't readable or the
+	 * values of the properties can't be equal
+	 */
+	public HashJoin<L, R> on(PropertyDefinition leftProperty, PropertyDefinition rightProperty) {
+		ValueReader.Kind leftKind = ValueReader.Kind.of(ValueReader.readable(leftProperty).literalType());
+		ValueReader.Kind rightKind = ValueReader.Kind.of(ValueReader.readable(rightProperty).literalType());
+		boolean numeric = leftKind != ValueReader.Kind.DATE && leftKind != ValueReader.Kind.OTHER
+				&& rightKind != ValueReader.Kind.DATE && rightKind != ValueReader.Kind.OTHER;
+		if (leftKind != rightKind && !numeric) {
+			throw new IllegalArgumentException("Properties " + leftProperty.qualifiedJavaName() + " and " + rightProperty.qualifiedJavaName() + " can't have equal values");
+		}
+		leftKeys.add(leftProperty);
+		rightKeys.add(rightProperty);
+		return this;
+	}
+
+	/**
+	 * Sets whether the probing side is streamed in parallel.
+	 *
+	 * @param parallel true to probe the hash table in parallel
+	 * @return this join
+	 */
+	public HashJoin<L, R> parallel(boolean parallel) {
+		this.parallel = parallel;
+		return this;
+	}
+
+	/**
+	 * Streams the pairs of containers with equal key values.
+	 *
+	 * @return a lazy stream of the matching pairs
+	 */
+	public Stream<Pair<L, R>> inner() {
+		return inner(Pair::new);
+	}
+
+	/**
+	 * Streams the merged pairs of containers with equal key values.
+	 *
+	 * @param <X> the type of the merged results
+	 * @param merger combines a matching pair into a result
+	 * @return a lazy stream of the merged results
+	 */
+	public <X> Stream<X> inner(BiFunction<? super L, ? super R, ? extends X> merger) {
+		KeyReader leftReader = keyReader(leftKeys, rightKeys);
+		KeyReader rightReader = keyReader(rightKeys, leftKeys);
+		if (left.size() <= right.size()) {
+			return probe(right, rightReader, left, leftReader)
+					.flatMap(match -> match.matches.stream().map(built -> merger.apply(built, match.row)));
+		} else {
+			return probe(left, leftReader, right, rightReader)
+					.flatMap(match -> match.matches.stream().map(built -> merger.apply(match.row, built)));
+		}
+	}
+
+	/**
+	 * Streams the pairs of containers with equal key values, and a pair with a
+	 * null right side for each container on the left without a match.
+	 *
+	 * @return a lazy stream of the pairs
+	 */
+	public Stream<Pair<L, R>> leftOuter() {
+		return leftOuter(Pair::new);
+	}
+
+	/**
+	 * Streams the merged pairs of containers with equal key values, and the
+	 * merged result of each container on the left without a match and null.
+	 *
+	 * @param <X> the type of the merged results
+	 * @param merger combines a pair into a result, and must accept a null
+	 * right side
+	 * @return a lazy stream of the merged results
+	 */
+	public <X> Stream<X> leftOuter(BiFunction<? super L, ? super R, ? extends X> merger) {
+		return probe(left, keyReader(leftKeys, rightKeys), right, keyReader(rightKeys, leftKeys))
+				.flatMap(match -> match.matches.isEmpty()
+						? Stream.of(merger.apply(match.row, null))
+						: match.matches.stream().map(built -> merger.apply(match.row, built)));
+	}
+
+	/**
+	 * Streams each container of the probing side with its matches, building
+	 * the hash table when the stream's terminal operation starts.
+	 */
+	private <P, B> Stream<Match<P, B>> probe(Collection<P> probing, KeyReader probeReader, Collection<B> building, KeyReader buildReader) {
+		if (leftKeys.isEmpty()) {
+			throw new IllegalStateException("The join has no key properties");
+		}
+		Table<B> table = new Table<>(buildReader);
+		int characteristics = probing.spliterator().characteristics();
+		Stream<P> rows = StreamSupport.stream(() -> {
+			table.build(building);
+			return probing.spliterator();
+		}, characteristics, parallel);
+		return rows.map(row -> new Match<>(row, table.find(probeReader, row)));
+	}
+
+	private static KeyReader keyReader(List<PropertyDefinition> properties, List<PropertyDefinition> others) {
+		PropertyDefinition[] array = properties.toArray(new PropertyDefinition[properties.size()]);
+		ValueReader.Kind[] kinds = new ValueReader.Kind[array.length];
+		for (int i = 0; i < array.length; i++) {
+			ValueReader.Kind kind = ValueReader.Kind.of(array[i].literalType());
+			ValueReader.Kind other = ValueReader.Kind.of(others.get(i).literalType());
+			// integral numbers joined to other numbers are compared as doubles
+			kinds[i] = kind == ValueReader.Kind.LONG && other == ValueReader.Kind.DOUBLE ? ValueReader.Kind.DOUBLE : kind;
+		}
+		return new KeyReader(array, kinds);
+	}
+
+	/**
+	 * A pair of joined containers.
+	 *
+	 * @param <L> the class of the container on the left
+	 * @param <R> the class of the container on the right
+	 */
+	public static final class Pair<L, R> {
+
+		private final L left;
+		private final R right;
+
+		Pair(L left, R right) {
+			this.left = left;
+			this.right = right;
+		}
+
+		/**
+		 * Gets the container from the left side.
+		 *
+		 * @return the left container
+		 */
+		public L getLeft() {
+			return left;
+		}
+
+		/**
+		 * Gets the container from the right side.
+		 *
+		 * @return the right container, or null for an unmatched left container
+		 * of a left outer join
+		 */
+		public R getRight() {
+			return right;
+		}
+
+		@Override
+		public String toString() {
+			return "(" + left + ", " + right + ")";
+		}
+	}
+
+	private static final class Match<P, B> {
+
+		final P row;
+		final List<B> matches;
+
+		Match(P row, List<B> matches) {
+			this.row = row;
+			this.matches = matches;
+		}
+	}
+
+	/**
+	 * The hash table of the building side, read concurrently once built.
+	 */
+	private static final class Table<B> {
+
+		private final KeyReader reader;
+		private LongTable<List<B>> longs;
+		private Map<Object, List<B>> objects;
+
+		Table(KeyReader reader) {
+			this.reader = reader;
+		}
+
+		void build(Collection<B> rows) {
+			if (reader.primitive) {
+				longs = new LongTable<>();
+				long[] key = new long[1];
+				for (B row : rows) {
+					if (reader.readLong(row, key)) {
+						List<B> matches = longs.get(key[0]);
+						if (matches == null) {
+							matches = new ArrayList<>(1);
+							longs.put(key[0], matches);
+						}
+						matches.add(row);
+					}
+				}
+			} else {
+				objects = new HashMap<>();
+				for (B row : rows) {
+					Object key = reader.readObject(row);
+					if (key != null) {
+						objects.computeIfAbsent(key, k -> new ArrayList<>(1)).add(row);
+					}
+				}
+			}
+		}
+
+		List<B> find(KeyReader probeReader, Object row) {
+			List<B> matches;
+			if (longs != null) {
+				long[] key = new long[1];
+				matches = probeReader.readLong(row, key) ? longs.get(key[0]) : null;
+			} else {
+				Object key = probeReader.readObject(row);
+				matches = key == null ? null : objects.get(key);
+			}
+			return matches == null ? Collections.emptyList() : matches;
+		}
+	}
+}
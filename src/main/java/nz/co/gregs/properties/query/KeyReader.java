@@ -0,0 +1,108 @@
+package nz.co.gregs.properties.query;
+
+import java.util.Arrays;
+import java.util.Date;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * Reads the key of a container made of the values of one or more
+ * properties, either as a primitive long or as an object.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ */
+final class KeyReader {
+
+	private final PropertyDefinition[] properties;
+	private final ValueReader.Kind[] kinds;
+	final boolean primitive;
+
+	KeyReader(PropertyDefinition[] properties, ValueReader.Kind[] kinds) {
+		this.properties = properties;
+		this.kinds = kinds;
+		this.primitive = properties.length == 1 && (kinds[0] == ValueReader.Kind.LONG || kinds[0] == ValueReader.Kind.DATE);
+	}
+
+	/**
+	 * Reads a single integral or date key, returning false if it is null.
+	 */
+	boolean readLong(Object row, long[] key) {
+		Object value = ValueReader.read(properties[0], row);
+		if (value == null) {
+			return false;
+		}
+		key[0] = kinds[0] == ValueReader.Kind.DATE ? ((Date) value).getTime() : ((Number) value).longValue();
+		return true;
+	}
+
+	/**
+	 * Reads the key as an object, returning null if any value is null.
+	 */
+	Object readObject(Object row) {
+		if (properties.length == 1) {
+			return normalise(kinds[0], ValueReader.read(properties[0], row));
+		}
+		Object[] values = new Object[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			values[i] = normalise(kinds[i], ValueReader.read(properties[i], row));
+			if (values[i] == null) {
+				return null;
+			}
+		}
+		return new CompositeKey(values);
+	}
+
+	/**
+	 * Reads the key as an object in which null values are allowed and equal to
+	 * each other.
+	 */
+	CompositeKey readGroupKey(Object row) {
+		Object[] values = new Object[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			values[i] = normalise(kinds[i], ValueReader.read(properties[i], row));
+		}
+		return new CompositeKey(values);
+	}
+
+	private static Object normalise(ValueReader.Kind kind, Object value) {
+		if (value == null) {
+			return null;
+		}
+		switch (kind) {
+			case LONG:
+				return ((Number) value).longValue();
+			case DOUBLE:
+				return ((Number) value).doubleValue() + 0.0;
+			case DATE:
+				return ((Date) value).getTime();
+			default:
+				return value;
+		}
+	}
+
+	/**
+	 * The normalised values of several properties, compared element by element.
+	 */
+	static final class CompositeKey {
+
+		private final Object[] values;
+		private final int hash;
+
+		CompositeKey(Object[] values) {
+			this.values = values;
+			this.hash = Arrays.hashCode(values);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			return obj instanceof CompositeKey && hash == ((CompositeKey) obj).hash && Arrays.equals(values, ((CompositeKey) obj).values);
+		}
+	}
+}
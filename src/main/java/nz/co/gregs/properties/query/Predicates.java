@@ -0,0 +1,631 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoublePredicate;
+import java.util.function.LongPredicate;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * Builds predicates that test the property values of containers.
+ *
+ * <p>
+ * Conditions on a single property are started with {@link #on(PropertyDefinition)}
+ * and combined with {@link #and(Predicate[])}, {@link #or(Predicate[])}, and
+ * {@link #not(Predicate)}:
+ *
+ * <pre>
+ * PropertyDefinition status = classWrapper.getPropertyDefinitionByName("status");
+ * PropertyDefinition amount = classWrapper.getPropertyDefinitionByName("amount");
+ * List&lt;Order&gt; large = Predicates.filter(orders,
+ *		Predicates.and(Predicates.on(status).in("OPEN", "HELD"), Predicates.on(amount).gt(1000)));
+ * </pre>
+ *
+ * <p>
+ * The bounds are converted once, when the predicate is built, into the form
+ * used for the property's literal type: integral numbers and dates are
+ * compared as primitive longs, other numbers as primitive doubles, and
+ * everything else with equals or compareTo. A null value only matches
+ * {@link Condition#isNull()}; every comparison with a null value is false.
+ *
+ * <p>
+ * The predicates hold no state and can be shared between threads.
+ *
+ * @author Gregory Graham
+ */
+public final class Predicates {
+
+	private Predicates() {
+	}
+
+	/**
+	 * Starts a condition on the property.
+	 *
+	 * @param property a readable property of the containers to be tested
+	 * @return a builder of conditions on the property
+	 * @throws IllegalArgumentException if the property is not readable
+	 */
+	public static Condition on(PropertyDefinition property) {
+		return new Condition(ValueReader.readable(property));
+	}
+
+	/**
+	 * Combines predicates so that all of them must match.
+	 *
+	 * <p>
+	 * The predicates are tested in order and testing stops at the first that
+	 * doesn't match.
+	 *
+	 * @param predicates the predicates to combine
+	 * @return a predicate matching containers matched by every predicate
+	 */
+	@SafeVarargs
+	public static Predicate<PropertyContainer> and(Predicate<? super PropertyContainer>... predicates) {
+		return new AllOf(predicates.clone());
+	}
+
+	/**
+	 * Combines predicates so that any of them may match.
+	 *
+	 * <p>
+	 * The predicates are tested in order and testing stops at the first that
+	 * matches.
+	 *
+	 * @param predicates the predicates to combine
+	 * @return a predicate matching containers matched by at least one
+	 * predicate
+	 */
+	@SafeVarargs
+	public static Predicate<PropertyContainer> or(Predicate<? super PropertyContainer>... predicates) {
+		return new AnyOf(predicates.clone());
+	}
+
+	/**
+	 * Negates a predicate.
+	 *
+	 * @param predicate the predicate to negate
+	 * @return a predicate matching containers not matched by the predicate
+	 */
+	public static Predicate<PropertyContainer> not(Predicate<? super PropertyContainer> predicate) {
+		return new Not(predicate);
+	}
+
+	/**
+	 * Selects the elements of the list that match the predicate.
+	 *
+	 * @param <T> the type of the elements
+	 * @param rows the list to filter
+	 * @param predicate the predicate to test each element with
+	 * @return a new list of the matching elements, in their original order
+	 */
+	public static <T> List<T> filter(List<T> rows, Predicate<? super T> predicate) {
+		return filter(rows, predicate, false);
+	}
+
+	/**
+	 * Selects the elements of the list that match the predicate, optionally
+	 * testing them in parallel.
+	 *
+	 * @param <T> the type of the elements
+	 * @param rows the list to filter
+	 * @param predicate the predicate to test each element with
+	 * @param parallel true to test the elements with a parallel stream
+	 * @return a new list of the matching elements, in their original order
+	 */
+	public static <T> List<T> filter(List<T> rows, Predicate<? super T> predicate, boolean parallel) {
+		if (parallel) {
+			return rows.parallelStream().filter(predicate).collect(Collectors.toList());
+		}
+		List<T> matched = new ArrayList<>();
+		for (T row : rows) {
+			if (predicate.test(row)) {
+				matched.add(row);
+			}
+		}
+		return matched;
+	}
+
+	/**
+	 * The comparisons supported by the specialised predicates.
+	 */
+	private enum Operator {
+		EQ, NE, LT, LE, GT, GE, BETWEEN
+	}
+
+	/**
+	 * Builds conditions on one property.
+	 */
+	public static final class Condition {
+
+		private final PropertyDefinition property;
+		private final ValueReader.Kind kind;
+
+		private Condition(PropertyDefinition property) {
+			this.property = property;
+			this.kind = ValueReader.Kind.of(property.literalType());
+		}
+
+		/**
+		 * Matches containers whose value of the property is null.
+		 *
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> isNull() {
+			return new IsNull(property, true);
+		}
+
+		/**
+		 * Matches containers whose value of the property is not null.
+		 *
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> isNotNull() {
+			return new IsNull(property, false);
+		}
+
+		/**
+		 * Matches containers whose value of the property equals the value.
+		 *
+		 * @param value the value to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> eq(Object value) {
+			return compare(Operator.EQ, value, null);
+		}
+
+		/**
+		 * Matches containers whose value of the property is not null and doesn't
+		 * equal the value.
+		 *
+		 * @param value the value to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> ne(Object value) {
+			return compare(Operator.NE, value, null);
+		}
+
+		/**
+		 * Matches containers whose value of the property is less than the value.
+		 *
+		 * @param value the value to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> lt(Object value) {
+			return compare(Operator.LT, value, null);
+		}
+
+		/**
+		 * Matches containers whose value of the property is less than or equal
+		 * to the value.
+		 *
+		 * @param value the value to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> le(Object value) {
+			return compare(Operator.LE, value, null);
+		}
+
+		/**
+		 * Matches containers whose value of the property is greater than the
+		 * value.
+		 *
+		 * @param value the value to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> gt(Object value) {
+			return compare(Operator.GT, value, null);
+		}
+
+		/**
+		 * Matches containers whose value of the property is greater than or
+		 * equal to the value.
+		 *
+		 * @param value the value to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> ge(Object value) {
+			return compare(Operator.GE, value, null);
+		}
+
+		/**
+		 * Matches containers whose value of the property is between the values,
+		 * inclusive.
+		 *
+		 * @param lower the lowest matching value
+		 * @param upper the highest matching value
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> between(Object lower, Object upper) {
+			return compare(Operator.BETWEEN, lower, upper);
+		}
+
+		/**
+		 * Matches containers whose value of the property equals one of the
+		 * values.
+		 *
+		 * @param values the values to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> in(Object... values) {
+			return in(Arrays.asList(values));
+		}
+
+		/**
+		 * Matches containers whose value of the property equals one of the
+		 * values.
+		 *
+		 * @param values the values to compare with
+		 * @return the predicate
+		 */
+		public Predicate<PropertyContainer> in(Collection<?> values) {
+			boolean integral = true;
+			for (Object value : values) {
+				check(value);
+				integral &= kind == ValueReader.Kind.DATE || ValueReader.isIntegral(value);
+			}
+			switch (kind) {
+				case LONG:
+				case DATE:
+					if (integral) {
+						long[] keys = new long[values.size()];
+						int i = 0;
+						for (Object value : values) {
+							keys[i++] = asLong(value);
+						}
+						Arrays.sort(keys);
+						return new LongIn(property, keys, kind == ValueReader.Kind.DATE);
+					}
+				// fall through: non-integral bounds on an integral property
+				case DOUBLE:
+					// NaN matches nothing and -0.0 matches 0.0, as with eq()
+					double[] keys = new double[values.size()];
+					int i = 0;
+					for (Object value : values) {
+						double key = ((Number) value).doubleValue() + 0.0;
+						if (!Double.isNaN(key)) {
+							keys[i++] = key;
+						}
+					}
+					keys = Arrays.copyOf(keys, i);
+					Arrays.sort(keys);
+					return new DoubleIn(property, keys);
+				default:
+					return new ObjectIn(property, new HashSet<>(values));
+			}
+		}
+
+		private Predicate<PropertyContainer> compare(Operator operator, Object first, Object second) {
+			check(first);
+			if (operator == Operator.BETWEEN) {
+				check(second);
+			}
+			switch (kind) {
+				case LONG:
+					if (ValueReader.isIntegral(first) && (second == null || ValueReader.isIntegral(second))) {
+						return new LongComparison(property, longTest(operator, asLong(first), second == null ? 0 : asLong(second)), false);
+					}
+					return new DoubleComparison(property, doubleTest(operator, ((Number) first).doubleValue(), second == null ? 0 : ((Number) second).doubleValue()));
+				case DATE:
+					return new LongComparison(property, longTest(operator, asLong(first), second == null ? 0 : asLong(second)), true);
+				case DOUBLE:
+					return new DoubleComparison(property, doubleTest(operator, ((Number) first).doubleValue(), second == null ? 0 : ((Number) second).doubleValue()));
+				default:
+					if (operator == Operator.EQ || operator == Operator.NE) {
+						return new ObjectEquals(property, first, operator == Operator.NE);
+					}
+					for (Object bound : operator == Operator.BETWEEN ? new Object[]{first, second} : new Object[]{first}) {
+						if (!(bound instanceof Comparable)) {
+							throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " can't be ordered by " + bound.getClass().getName());
+						}
+					}
+					return new ComparableComparison(property, operator, (Comparable<?>) first, (Comparable<?>) second);
+			}
+		}
+
+		private void check(Object value) {
+			if (value == null) {
+				throw new IllegalArgumentException("Use isNull() to test " + property.qualifiedJavaName() + " for null values");
+			}
+			boolean valid;
+			switch (kind) {
+				case LONG:
+				case DOUBLE:
+					valid = value instanceof Number;
+					break;
+				case DATE:
+					valid = value instanceof Date;
+					break;
+				default:
+					valid = property.literalType() == null || property.literalType().isInstance(value);
+			}
+			if (!valid) {
+				throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " can't be compared with " + value.getClass().getName());
+			}
+		}
+
+		private static long asLong(Object value) {
+			return value instanceof Date ? ((Date) value).getTime() : ((Number) value).longValue();
+		}
+	}
+
+	private static final class AllOf implements Predicate<PropertyContainer> {
+
+		private final Predicate<? super PropertyContainer>[] predicates;
+
+		AllOf(Predicate<? super PropertyContainer>[] predicates) {
+			this.predicates = predicates;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			// an indexed loop, as an iterator may be allocated for every row
+			for (int i = 0; i < predicates.length; i++) {
+				if (!predicates[i].test(row)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final class AnyOf implements Predicate<PropertyContainer> {
+
+		private final Predicate<? super PropertyContainer>[] predicates;
+
+		AnyOf(Predicate<? super PropertyContainer>[] predicates) {
+			this.predicates = predicates;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			for (int i = 0; i < predicates.length; i++) {
+				if (predicates[i].test(row)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static final class Not implements Predicate<PropertyContainer> {
+
+		private final Predicate<? super PropertyContainer> predicate;
+
+		Not(Predicate<? super PropertyContainer> predicate) {
+			this.predicate = predicate;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			return !predicate.test(row);
+		}
+	}
+
+	private static final class IsNull implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final boolean matchNull;
+
+		IsNull(PropertyDefinition property, boolean matchNull) {
+			this.property = property;
+			this.matchNull = matchNull;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			return (ValueReader.read(property, row) == null) == matchNull;
+		}
+	}
+
+	/**
+	 * Chooses the test of a primitive long for the operator, once, so that
+	 * testing each row doesn't switch on the operator.
+	 */
+	private static LongPredicate longTest(Operator operator, long first, long second) {
+		switch (operator) {
+			case EQ:
+				return actual -> actual == first;
+			case NE:
+				return actual -> actual != first;
+			case LT:
+				return actual -> actual < first;
+			case LE:
+				return actual -> actual <= first;
+			case GT:
+				return actual -> actual > first;
+			case GE:
+				return actual -> actual >= first;
+			default:
+				return actual -> actual >= first && actual <= second;
+		}
+	}
+
+	/**
+	 * Chooses the test of a primitive double for the operator, once, so that
+	 * testing each row doesn't switch on the operator.
+	 */
+	private static DoublePredicate doubleTest(Operator operator, double first, double second) {
+		switch (operator) {
+			case EQ:
+				return actual -> actual == first;
+			case NE:
+				return actual -> actual != first;
+			case LT:
+				return actual -> actual < first;
+			case LE:
+				return actual -> actual <= first;
+			case GT:
+				return actual -> actual > first;
+			case GE:
+				return actual -> actual >= first;
+			default:
+				return actual -> actual >= first && actual <= second;
+		}
+	}
+
+	private static final class LongComparison implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final LongPredicate test;
+		private final boolean date;
+
+		LongComparison(PropertyDefinition property, LongPredicate test, boolean date) {
+			this.property = property;
+			this.test = test;
+			this.date = date;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			if (value == null) {
+				return false;
+			}
+			return test.test(date ? ((Date) value).getTime() : ((Number) value).longValue());
+		}
+	}
+
+	private static final class DoubleComparison implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final DoublePredicate test;
+
+		DoubleComparison(PropertyDefinition property, DoublePredicate test) {
+			this.property = property;
+			this.test = test;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			return value != null && test.test(((Number) value).doubleValue());
+		}
+	}
+
+	private static final class ComparableComparison implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final Operator operator;
+		private final Comparable<Object> first;
+		private final Comparable<Object> second;
+
+		@SuppressWarnings("unchecked")
+		ComparableComparison(PropertyDefinition property, Operator operator, Comparable<?> first, Comparable<?> second) {
+			this.property = property;
+			this.operator = operator;
+			this.first = (Comparable<Object>) first;
+			this.second = (Comparable<Object>) second;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			if (value == null) {
+				return false;
+			}
+			// the sign is reversed, the bound being compared with the value
+			int comparison = first.compareTo(value);
+			switch (operator) {
+				case LT:
+					return comparison > 0;
+				case LE:
+					return comparison >= 0;
+				case GT:
+					return comparison < 0;
+				case GE:
+					return comparison <= 0;
+				default:
+					return comparison <= 0 && second.compareTo(value) >= 0;
+			}
+		}
+	}
+
+	private static final class ObjectEquals implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final Object expected;
+		private final boolean negated;
+
+		ObjectEquals(PropertyDefinition property, Object expected, boolean negated) {
+			this.property = property;
+			this.expected = expected;
+			this.negated = negated;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			return value != null && expected.equals(value) != negated;
+		}
+	}
+
+	private static final class LongIn implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final long[] sortedKeys;
+		private final boolean date;
+
+		LongIn(PropertyDefinition property, long[] sortedKeys, boolean date) {
+			this.property = property;
+			this.sortedKeys = sortedKeys;
+			this.date = date;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			if (value == null) {
+				return false;
+			}
+			long actual = date ? ((Date) value).getTime() : ((Number) value).longValue();
+			return Arrays.binarySearch(sortedKeys, actual) >= 0;
+		}
+	}
+
+	private static final class DoubleIn implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final double[] sortedKeys;
+
+		DoubleIn(PropertyDefinition property, double[] sortedKeys) {
+			this.property = property;
+			this.sortedKeys = sortedKeys;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			if (value == null) {
+				return false;
+			}
+			// binarySearch orders -0.0 before 0.0 and finds NaN, unlike ==
+			double actual = ((Number) value).doubleValue() + 0.0;
+			return !Double.isNaN(actual) && Arrays.binarySearch(sortedKeys, actual) >= 0;
+		}
+	}
+
+	private static final class ObjectIn implements Predicate<PropertyContainer> {
+
+		private final PropertyDefinition property;
+		private final Set<Object> values;
+
+		ObjectIn(PropertyDefinition property, Set<Object> values) {
+			this.property = property;
+			this.values = values;
+		}
+
+		@Override
+		public boolean test(PropertyContainer row) {
+			Object value = ValueReader.read(property, row);
+			return value != null && values.contains(value);
+		}
+	}
+}
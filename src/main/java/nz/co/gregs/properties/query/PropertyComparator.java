@@ -0,0 +1,336 @@
+package nz.co.gregs.properties.query;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * Compares containers by the values of several properties.
+ *
+ * <p>
+ * Used as a Comparator, the values are read from both containers on every
+ * comparison. The sort methods instead read each value once per element into
+ * primitive arrays, longs for integral numbers and dates and doubles for
+ * other numbers, and sort an int array of the element positions by those
+ * arrays with a merge sort, so the O(n log n) comparisons neither read
+ * properties nor unbox values. The parallel sorts extract the values and
+ * sort the positions with fork/join tasks. All sorts are stable.
+ *
+ * <p>
+ * Values are read with {@link PropertyDefinition#readAdaptableType(Object)},
+ * so type-adapted properties can be compared on many threads at once.
+ *
+ * <p>
+ * Create instances with
+ * {@link nz.co.gregs.properties.PropertyContainerClass#comparator(SortKey...)}.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class PropertyComparator<T extends PropertyContainer> implements Comparator<T> {
+
+	private final SortKey[] keys;
+	private final ValueReader.Kind[] kinds;
+
+	/**
+	 * Creates a comparator of the sort keys, in order of precedence.
+	 *
+	 * @param keys the sort keys
+	 */
+	public PropertyComparator(SortKey... keys) {
+		this.keys = keys.clone();
+		this.kinds = new ValueReader.Kind[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			PropertyDefinition property = keys[i].getPropertyDefinition();
+			kinds[i] = ValueReader.Kind.of(property.literalType());
+			if (kinds[i] == ValueReader.Kind.OTHER && (property.literalType() == null || !Comparable.class.isAssignableFrom(property.literalType()))) {
+				throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " has values that can't be ordered");
+			}
+		}
+	}
+
+	/**
+	 * Gets the sort keys, in order of precedence.
+	 *
+	 * @return a copy of the sort keys
+	 */
+	public SortKey[] getSortKeys() {
+		return keys.clone();
+	}
+
+	@Override
+	public int compare(T first, T second) {
+		for (int i = 0; i < keys.length; i++) {
+			PropertyDefinition property = keys[i].getPropertyDefinition();
+			Object a = ValueReader.read(property, first);
+			Object b = ValueReader.read(property, second);
+			int comparison;
+			if (a == null || b == null) {
+				comparison = nullComparison(keys[i], a == null, b == null);
+			} else {
+				switch (kinds[i]) {
+					case LONG:
+						comparison = Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+						break;
+					case DOUBLE:
+						comparison = Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+						break;
+					case DATE:
+						comparison = Long.compare(((Date) a).getTime(), ((Date) b).getTime());
+						break;
+					default:
+						comparison = compareObjects(a, b);
+				}
+				if (keys[i].isDescending()) {
+					comparison = -comparison;
+				}
+			}
+			if (comparison != 0) {
+				return comparison;
+			}
+		}
+		return 0;
+	}
+
+	private static int nullComparison(SortKey key, boolean firstIsNull, boolean secondIsNull) {
+		if (firstIsNull == secondIsNull) {
+			return 0;
+		}
+		return firstIsNull == key.isNullsFirst() ? -1 : 1;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compareObjects(Object a, Object b) {
+		return Integer.signum(((Comparable<Object>) a).compareTo(b));
+	}
+
+	/**
+	 * Sorts the list, reading each value once.
+	 *
+	 * @param rows the list to sort
+	 */
+	public void sort(List<T> rows) {
+		sort(rows, false);
+	}
+
+	/**
+	 * Sorts the list on the common fork/join pool, reading each value once.
+	 *
+	 * @param rows the list to sort
+	 */
+	public void parallelSort(List<T> rows) {
+		sort(rows, true);
+	}
+
+	/**
+	 * Sorts the array, reading each value once.
+	 *
+	 * @param rows the array to sort
+	 */
+	public void sort(T[] rows) {
+		sortArray(rows, false);
+	}
+
+	/**
+	 * Sorts the array on the common fork/join pool, reading each value once.
+	 *
+	 * @param rows the array to sort
+	 */
+	public void parallelSort(T[] rows) {
+		sortArray(rows, true);
+	}
+
+	private void sort(List<T> rows, boolean parallel) {
+		Object[] sorted = rows.toArray();
+		sortArray(sorted, parallel);
+		ListIterator<T> iterator = rows.listIterator();
+		for (Object row : sorted) {
+			iterator.next();
+			@SuppressWarnings("unchecked")
+			T element = (T) row;
+			iterator.set(element);
+		}
+	}
+
+	private void sortArray(Object[] rows, boolean parallel) {
+		final int length = rows.length;
+		if (length < 2) {
+			return;
+		}
+		final Column[] columns = new Column[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			columns[i] = new Column(keys[i], kinds[i], length);
+		}
+		IntStream positions = IntStream.range(0, length);
+		(parallel ? positions.parallel() : positions).forEach(i -> {
+			for (Column column : columns) {
+				column.extract(i, rows[i]);
+			}
+		});
+		int[] order = new int[length];
+		for (int i = 0; i < length; i++) {
+			order[i] = i;
+		}
+		MergeSort sort = new MergeSort(columns, order.clone(), order, 0, length, parallel);
+		if (parallel) {
+			ForkJoinPool.commonPool().invoke(sort);
+		} else {
+			sort.compute();
+		}
+		Object[] original = rows.clone();
+		for (int i = 0; i < length; i++) {
+			rows[i] = original[order[i]];
+		}
+	}
+
+	/**
+	 * The values of one sort key, extracted from every element.
+	 */
+	private static final class Column {
+
+		private final SortKey key;
+		private final PropertyDefinition property;
+		private final ValueReader.Kind kind;
+		private final boolean[] nulls;
+		private long[] longs;
+		private double[] doubles;
+		private Object[] objects;
+
+		Column(SortKey key, ValueReader.Kind kind, int length) {
+			this.key = key;
+			this.property = key.getPropertyDefinition();
+			this.kind = kind;
+			nulls = new boolean[length];
+			switch (kind) {
+				case LONG:
+				case DATE:
+					longs = new long[length];
+					break;
+				case DOUBLE:
+					doubles = new double[length];
+					break;
+				default:
+					objects = new Object[length];
+			}
+		}
+
+		/**
+		 * Reads the value of the element at the position, which no other
+		 * thread is extracting.
+		 */
+		void extract(int i, Object row) {
+			Object value = ValueReader.read(property, row);
+			if (value == null) {
+				nulls[i] = true;
+			} else if (longs != null) {
+				longs[i] = kind == ValueReader.Kind.DATE ? ((Date) value).getTime() : ((Number) value).longValue();
+			} else if (doubles != null) {
+				doubles[i] = ((Number) value).doubleValue();
+			} else {
+				objects[i] = value;
+			}
+		}
+
+		int compare(int a, int b) {
+			if (nulls[a] || nulls[b]) {
+				return nullComparison(key, nulls[a], nulls[b]);
+			}
+			int comparison;
+			if (longs != null) {
+				comparison = Long.compare(longs[a], longs[b]);
+			} else if (doubles != null) {
+				comparison = Double.compare(doubles[a], doubles[b]);
+			} else {
+				comparison = compareObjects(objects[a], objects[b]);
+			}
+			return key.isDescending() ? -comparison : comparison;
+		}
+	}
+
+	/**
+	 * A stable merge sort of element positions by their columns.
+	 *
+	 * <p>
+	 * Sorts {@code to[from, until)}, using {@code from[from, until)}, which must
+	 * hold the same positions, as the buffer. When sorting in parallel, halves
+	 * larger than {@link #PARALLEL_THRESHOLD} are sorted by separate tasks.
+	 */
+	@SuppressWarnings("serial")
+	private static final class MergeSort extends RecursiveAction {
+
+		private static final int INSERTION_THRESHOLD = 32;
+		private static final int PARALLEL_THRESHOLD = 1 << 13;
+
+		private final Column[] columns;
+		private final int[] buffer;
+		private final int[] sorted;
+		private final int start;
+		private final int end;
+		private final boolean parallel;
+
+		MergeSort(Column[] columns, int[] buffer, int[] sorted, int start, int end, boolean parallel) {
+			this.columns = columns;
+			this.buffer = buffer;
+			this.sorted = sorted;
+			this.start = start;
+			this.end = end;
+			this.parallel = parallel;
+		}
+
+		@Override
+		protected void compute() {
+			int length = end - start;
+			if (length < INSERTION_THRESHOLD) {
+				for (int i = start + 1; i < end; i++) {
+					int position = sorted[i];
+					int j = i;
+					for (; j > start && compare(sorted[j - 1], position) > 0; j--) {
+						sorted[j] = sorted[j - 1];
+					}
+					sorted[j] = position;
+				}
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			// the halves are sorted into the buffer, then merged back
+			MergeSort left = new MergeSort(columns, sorted, buffer, start, middle, parallel);
+			MergeSort right = new MergeSort(columns, sorted, buffer, middle, end, parallel);
+			if (parallel && length > PARALLEL_THRESHOLD) {
+				invokeAll(left, right);
+			} else {
+				left.compute();
+				right.compute();
+			}
+			if (compare(buffer[middle - 1], buffer[middle]) <= 0) {
+				System.arraycopy(buffer, start, sorted, start, length);
+				return;
+			}
+			for (int i = start, p = start, q = middle; i < end; i++) {
+				if (q >= end || (p < middle && compare(buffer[p], buffer[q]) <= 0)) {
+					sorted[i] = buffer[p++];
+				} else {
+					sorted[i] = buffer[q++];
+				}
+			}
+		}
+
+		private int compare(int a, int b) {
+			for (Column column : columns) {
+				int comparison = column.compare(a, b);
+				if (comparison != 0) {
+					return comparison;
+				}
+			}
+			return 0;
+		}
+	}
+}
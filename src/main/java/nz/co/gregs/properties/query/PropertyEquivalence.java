@@ -0,0 +1,236 @@
+package nz.co.gregs.properties.query;
+
+import java.util.Date;
+import java.util.Objects;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * Value semantics for containers over a chosen set of properties: a hash
+ * code, an equality test, and a string representation.
+ *
+ * <p>
+ * The properties and the way each one is hashed and compared are worked out
+ * once, when the equivalence is created. Integral numbers and dates, as
+ * epoch milliseconds, are hashed and compared as primitive longs, and other
+ * numbers as primitive doubles with -0.0 equal to 0.0; everything else uses
+ * the value's own equals and hashCode. Null values are equal to each other.
+ *
+ * <p>
+ * Use {@link #keyOf(PropertyContainer)} to put containers in hash-based
+ * collections by their property values, for instance to remove duplicates.
+ *
+ * <p>
+ * Create instances with
+ * {@link nz.co.gregs.properties.PropertyContainerClass#equivalence(PropertyDefinition...)}.
+ *
+ * <p>
+ * Values are read with {@link PropertyDefinition#readAdaptableType(Object)},
+ * so type-adapted properties can be hashed and compared on many threads at
+ * once.
+ *
+ * <p>
+ * Instances of this class are <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+public final class PropertyEquivalence<T extends PropertyContainer> {
+
+	private final String simpleName;
+	private final PropertyDefinition[] properties;
+	private final ValueReader.Kind[] kinds;
+	private final String[] labels;
+
+	/**
+	 * Creates an equivalence over the properties.
+	 *
+	 * @param simpleName the name used by {@link #toString(PropertyContainer)}
+	 * @param properties the readable properties that define equality
+	 */
+	public PropertyEquivalence(String simpleName, PropertyDefinition... properties) {
+		this.simpleName = simpleName;
+		this.properties = properties.clone();
+		this.kinds = new ValueReader.Kind[properties.length];
+		this.labels = new String[properties.length];
+		for (int i = 0; i < properties.length; i++) {
+			kinds[i] = ValueReader.Kind.of(ValueReader.readable(properties[i]).literalType());
+			labels[i] = (i == 0 ? "" : ", ") + properties[i].javaName() + "=";
+		}
+	}
+
+	/**
+	 * Gets the properties that define equality.
+	 *
+	 * @return a copy of the properties
+	 */
+	public PropertyDefinition[] getPropertyDefinitions() {
+		return properties.clone();
+	}
+
+	/**
+	 * Calculates a hash code from the values of the properties.
+	 *
+	 * @param row the container
+	 * @return a hash code consistent with {@link #equalsOn(PropertyContainer, PropertyContainer)}
+	 */
+	public int hashOf(T row) {
+		int hash = 1;
+		for (int i = 0; i < properties.length; i++) {
+			hash = 31 * hash + hash(kinds[i], ValueReader.read(properties[i], row));
+		}
+		return hash;
+	}
+
+	private static int hash(ValueReader.Kind kind, Object value) {
+		if (value == null) {
+			return 0;
+		}
+		switch (kind) {
+			case LONG:
+				return Long.hashCode(((Number) value).longValue());
+			case DOUBLE:
+				return Double.hashCode(((Number) value).doubleValue() + 0.0);
+			case DATE:
+				return Long.hashCode(((Date) value).getTime());
+			default:
+				return value.hashCode();
+		}
+	}
+
+	/**
+	 * Tests whether the containers have equal values of all the properties.
+	 *
+	 * @param first a container
+	 * @param second another container
+	 * @return true if every property has equal values in both containers
+	 */
+	public boolean equalsOn(T first, T second) {
+		if (first == second) {
+			return true;
+		}
+		for (int i = 0; i < properties.length; i++) {
+			Object a = ValueReader.read(properties[i], first);
+			Object b = ValueReader.read(properties[i], second);
+			if (a == null || b == null) {
+				if (a != b) {
+					return false;
+				}
+				continue;
+			}
+			boolean equal;
+			switch (kinds[i]) {
+				case LONG:
+					equal = ((Number) a).longValue() == ((Number) b).longValue();
+					break;
+				case DOUBLE:
+					equal = Double.doubleToLongBits(((Number) a).doubleValue() + 0.0) == Double.doubleToLongBits(((Number) b).doubleValue() + 0.0);
+					break;
+				case DATE:
+					equal = ((Date) a).getTime() == ((Date) b).getTime();
+					break;
+				default:
+					equal = a.equals(b);
+			}
+			if (!equal) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Describes the container by the values of the properties, for example
+	 * {@code Order{id=1, status=OPEN}}. Dates are shown as ISO-8601 instants.
+	 *
+	 * @param row the container
+	 * @return a string representation of the container
+	 */
+	public String toString(T row) {
+		StringBuilder text = new StringBuilder(simpleName.length() + 16 * properties.length);
+		text.append(simpleName).append('{');
+		for (int i = 0; i < properties.length; i++) {
+			text.append(labels[i]);
+			Object value = ValueReader.read(properties[i], row);
+			if (value == null) {
+				text.append("null");
+			} else if (kinds[i] == ValueReader.Kind.LONG) {
+				text.append(((Number) value).longValue());
+			} else if (kinds[i] == ValueReader.Kind.DATE) {
+				text.append(((Date) value).toInstant());
+			} else {
+				text.append(value);
+			}
+		}
+		return text.append('}').toString();
+	}
+
+	/**
+	 * Wraps the container in a key whose equals and hashCode use this
+	 * equivalence.
+	 *
+	 * <p>
+	 * The hash code is calculated once, when the key is created, so the
+	 * properties must not change while the key is in use.
+	 *
+	 * @param row the container
+	 * @return a key for hash-based collections
+	 */
+	public Key<T> keyOf(T row) {
+		return new Key<>(this, row);
+	}
+
+	/**
+	 * A container compared by the values of the properties of an equivalence.
+	 *
+	 * @param <T> the class of the container
+	 */
+	public static final class Key<T extends PropertyContainer> {
+
+		private final PropertyEquivalence<T> equivalence;
+		private final T row;
+		private final int hash;
+
+		private Key(PropertyEquivalence<T> equivalence, T row) {
+			this.equivalence = equivalence;
+			this.row = row;
+			this.hash = equivalence.hashOf(row);
+		}
+
+		/**
+		 * Gets the wrapped container.
+		 *
+		 * @return the container
+		 */
+		public T getRow() {
+			return row;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj) {
+				return true;
+			}
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key<?> other = (Key<?>) obj;
+			if (hash != other.hash || !Objects.equals(equivalence, other.equivalence)) {
+				return false;
+			}
+			@SuppressWarnings("unchecked")
+			T otherRow = (T) other.row;
+			return equivalence.equalsOn(row, otherRow);
+		}
+
+		@Override
+		public String toString() {
+			return equivalence.toString(row);
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import nz.co.gregs.properties.ContainerChangeEvent;
+import nz.co.gregs.properties.ContainerChangeListener;
+import nz.co.gregs.properties.Property;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * An in-memory index of containers by the value of one of their properties.
+ *
+ * <p>
+ * The index is maintained incrementally: containers are added and removed
+ * one at a time, and {@link #update(PropertyContainer)} moves a container
+ * whose value has changed since it was indexed. The index remembers the key
+ * each container was indexed under, so containers are matched by identity
+ * and updates don't need the old value.
+ *
+ * <p>
+ * Containers added with {@link #add(PropertyContainer)} are not watched,
+ * because listening for changes gives every container its own change
+ * support, which costs memory and slows down each write; call
+ * {@link #update(PropertyContainer)} after changing them. Containers added
+ * with {@link #track(PropertyContainer)} are updated by a
+ * {@link ContainerChangeListener} on the indexed property instead, for
+ * changes that are reported to listeners.
+ *
+ * <p>
+ * Values are indexed in the form used for the property's literal type:
+ * integral numbers and dates, as epoch milliseconds, are indexed as longs
+ * and other numbers as doubles. Containers with a null value are kept
+ * separately and returned by {@link #getNulls()}.
+ *
+ * <p>
+ * Instances of this class are not thread-safe, and tracked containers must
+ * only be changed by the threads that use the index.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the indexed containers
+ * @see HashIndex
+ * @see SortedIndex
+ */
+public abstract class PropertyIndex<T extends PropertyContainer> implements ContainerChangeListener {
+
+	private static final Object NULL_KEY = new Object();
+
+	private final PropertyDefinition property;
+	final ValueReader.Kind kind;
+	private final Map<T, Object> indexedKeys = new IdentityHashMap<>();
+	private final Bucket<T> nulls = new Bucket<>();
+	private final Set<T> tracked = Collections.newSetFromMap(new IdentityHashMap<>());
+
+	PropertyIndex(PropertyDefinition property) {
+		this.property = ValueReader.readable(property);
+		this.kind = ValueReader.Kind.of(property.literalType());
+	}
+
+	/**
+	 * Gets the property the containers are indexed by.
+	 *
+	 * @return the indexed property
+	 */
+	public PropertyDefinition getPropertyDefinition() {
+		return property;
+	}
+
+	/**
+	 * Gets the number of containers in the index.
+	 *
+	 * @return the number of indexed containers
+	 */
+	public int size() {
+		return indexedKeys.size();
+	}
+
+	/**
+	 * Tests whether the container is in the index.
+	 *
+	 * @param row the container
+	 * @return true if the container has been added and not removed
+	 */
+	public boolean contains(T row) {
+		return indexedKeys.containsKey(row);
+	}
+
+	/**
+	 * Adds the container to the index, or updates it if it is already
+	 * indexed.
+	 *
+	 * @param row the container to add
+	 */
+	public void add(T row) {
+		update(row);
+	}
+
+	/**
+	 * Adds each container to the index.
+	 *
+	 * @param rows the containers to add
+	 */
+	public void addAll(Iterable<? extends T> rows) {
+		for (T row : rows) {
+			update(row);
+		}
+	}
+
+	/**
+	 * Adds the container to the index and keeps it up to date, by listening
+	 * for changes to the indexed property of the container.
+	 *
+	 * <p>
+	 * Changes that aren't reported to {@link ContainerChangeListener}s, such
+	 * as assigning a field directly or changing a type-adapted property, still
+	 * need {@link #update(PropertyContainer)}.
+	 *
+	 * @param row the container to add and track
+	 */
+	public void track(T row) {
+		update(row);
+		if (tracked.add(row)) {
+			propertyOf(row).addChangeListener(this);
+		}
+	}
+
+	private Property propertyOf(T row) {
+		return property.getPropertyContainerClass().instanceWrapperFor(row).getPropertyByName(property.javaName());
+	}
+
+	/**
+	 * Re-indexes a tracked container when its indexed property has changed.
+	 *
+	 * @param event the container and the properties that changed
+	 */
+	@Override
+	public void propertiesChanged(ContainerChangeEvent event) {
+		@SuppressWarnings("unchecked")
+		T row = (T) event.getContainer();
+		if (event.isChanged(property) && tracked.contains(row)) {
+			update(row);
+		}
+	}
+
+	/**
+	 * Removes the container from the index, and stops tracking it.
+	 *
+	 * @param row the container to remove
+	 * @return true if the container was in the index
+	 */
+	public boolean remove(T row) {
+		if (!indexedKeys.containsKey(row)) {
+			return false;
+		}
+		if (tracked.remove(row)) {
+			propertyOf(row).removeChangeListener(this);
+		}
+		unindex(indexedKeys.remove(row), row);
+		return true;
+	}
+
+	/**
+	 * Re-indexes the container after its value of the property has changed,
+	 * adding it if it isn't indexed.
+	 *
+	 * @param row the container to update
+	 */
+	public void update(T row) {
+		Object value = ValueReader.read(property, row);
+		Object key = value == null ? NULL_KEY : keyOf(value);
+		boolean indexed = indexedKeys.containsKey(row);
+		Object previous = indexedKeys.put(row, key);
+		if (indexed) {
+			if (previous.equals(key)) {
+				return;
+			}
+			unindex(previous, row);
+		}
+		if (key == NULL_KEY) {
+			nulls.add(row);
+		} else {
+			insert(key, row);
+		}
+	}
+
+	private void unindex(Object key, T row) {
+		if (key == NULL_KEY) {
+			nulls.remove(row);
+		} else {
+			delete(key, row);
+		}
+	}
+
+	/**
+	 * Gets the containers whose value of the property is null.
+	 *
+	 * @return a new list of the containers, in the order they were indexed
+	 */
+	public List<T> getNulls() {
+		return nulls.toList();
+	}
+
+	/**
+	 * Gets the containers whose value of the property equals the key.
+	 *
+	 * @param key the value to look up
+	 * @return a new list of the containers, which is empty if there are none
+	 * @throws IllegalArgumentException if the key can't be a value of the
+	 * property
+	 */
+	public List<T> get(Object key) {
+		if (key == null) {
+			return getNulls();
+		}
+		Bucket<T> found = find(keyOf(key));
+		return found == null ? new ArrayList<>() : found.toList();
+	}
+
+	/**
+	 * Removes all containers from the index, and stops tracking them.
+	 */
+	public void clear() {
+		for (T row : tracked) {
+			propertyOf(row).removeChangeListener(this);
+		}
+		tracked.clear();
+		indexedKeys.clear();
+		nulls.clear();
+		clearKeys();
+	}
+
+	/**
+	 * Converts a value of the property, or a key to look up, into the form it
+	 * is indexed in: a Long, a Double, or the value itself.
+	 */
+	final Object keyOf(Object value) {
+		switch (kind) {
+			case LONG:
+				if (ValueReader.isIntegral(value)) {
+					return ((Number) value).longValue();
+				}
+				break;
+			case DOUBLE:
+				if (value instanceof Number) {
+					// normalise -0.0 so that it equals 0.0
+					return ((Number) value).doubleValue() + 0.0;
+				}
+				break;
+			case DATE:
+				if (value instanceof Date) {
+					return ((Date) value).getTime();
+				}
+				break;
+			default:
+				if (property.literalType() == null || property.literalType().isInstance(value)) {
+					return value;
+				}
+		}
+		throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " can't have the value " + value + " of " + value.getClass().getName());
+	}
+
+	/**
+	 * Adds the container under the key.
+	 */
+	abstract void insert(Object key, T row);
+
+	/**
+	 * Removes the container from under the key.
+	 */
+	abstract void delete(Object key, T row);
+
+	/**
+	 * Gets the containers under the key, or null.
+	 */
+	abstract Bucket<T> find(Object key);
+
+	/**
+	 * Removes all keys.
+	 */
+	abstract void clearKeys();
+}
@@ -0,0 +1,101 @@
+package nz.co.gregs.properties.query;
+
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * One property to sort containers by, with its direction and the position of
+ * null values.
+ *
+ * <p>
+ * Keys are created with {@link #ascending(PropertyDefinition)} or
+ * {@link #descending(PropertyDefinition)} and sort null values first unless
+ * {@link #nullsLast()} is used.
+ *
+ * <p>
+ * Instances of this class are immutable and <i>thread-safe</i>.
+ *
+ * @author Gregory Graham
+ * @see PropertyComparator
+ */
+public final class SortKey {
+
+	private final PropertyDefinition property;
+	private final boolean descending;
+	private final boolean nullsFirst;
+
+	private SortKey(PropertyDefinition property, boolean descending, boolean nullsFirst) {
+		this.property = ValueReader.readable(property);
+		this.descending = descending;
+		this.nullsFirst = nullsFirst;
+	}
+
+	/**
+	 * Sorts by the property from the lowest value to the highest.
+	 *
+	 * @param property a readable property
+	 * @return the sort key
+	 */
+	public static SortKey ascending(PropertyDefinition property) {
+		return new SortKey(property, false, true);
+	}
+
+	/**
+	 * Sorts by the property from the highest value to the lowest.
+	 *
+	 * @param property a readable property
+	 * @return the sort key
+	 */
+	public static SortKey descending(PropertyDefinition property) {
+		return new SortKey(property, true, true);
+	}
+
+	/**
+	 * Gets an equivalent key that sorts null values before all others.
+	 *
+	 * @return the sort key
+	 */
+	public SortKey nullsFirst() {
+		return new SortKey(property, descending, true);
+	}
+
+	/**
+	 * Gets an equivalent key that sorts null values after all others.
+	 *
+	 * @return the sort key
+	 */
+	public SortKey nullsLast() {
+		return new SortKey(property, descending, false);
+	}
+
+	/**
+	 * Gets the property to sort by.
+	 *
+	 * @return the property
+	 */
+	public PropertyDefinition getPropertyDefinition() {
+		return property;
+	}
+
+	/**
+	 * Indicates whether the highest values sort first.
+	 *
+	 * @return true if descending
+	 */
+	public boolean isDescending() {
+		return descending;
+	}
+
+	/**
+	 * Indicates whether null values sort before all others.
+	 *
+	 * @return true if null values sort first
+	 */
+	public boolean isNullsFirst() {
+		return nullsFirst;
+	}
+
+	@Override
+	public String toString() {
+		return property.javaName() + (descending ? " DESC" : " ASC") + (nullsFirst ? " NULLS FIRST" : " NULLS LAST");
+	}
+}
@@ -0,0 +1,221 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyDefinition;
+
+/**
+ * An index of containers for looking up ranges of values of a property.
+ *
+ * <p>
+ * The property's values must be numbers, dates, or Comparable. Ranges are
+ * returned in ascending order of the value, and containers with equal values
+ * in the order they were indexed.
+ *
+ * <p>
+ * Numeric and date values are kept under primitive long keys in sorted
+ * chunks, doubles by bits that sort in the same order as the doubles, so
+ * neither updates nor ranges box or compare boxed keys. Other values are kept
+ * in a TreeMap.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the indexed containers
+ */
+public final class SortedIndex<T extends PropertyContainer> extends PropertyIndex<T> {
+
+	private final SortedLongTable<T> numbers;
+	private final NavigableMap<Object, Bucket<T>> objects;
+
+	/**
+	 * Creates an empty index of the property.
+	 *
+	 * @param property the readable property to index by
+	 * @throws IllegalArgumentException if the property is not readable or its
+	 * values can't be ordered
+	 */
+	public SortedIndex(PropertyDefinition property) {
+		super(property);
+		if (kind == ValueReader.Kind.OTHER && (property.literalType() == null || !Comparable.class.isAssignableFrom(property.literalType()))) {
+			throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " has values that can't be ordered");
+		}
+		if (kind == ValueReader.Kind.OTHER) {
+			numbers = null;
+			objects = new TreeMap<>();
+		} else {
+			numbers = new SortedLongTable<>();
+			objects = null;
+		}
+	}
+
+	/**
+	 * Converts a Long or Double key into a long that sorts in the same order,
+	 * with NaN above every other double as in Double.compare.
+	 */
+	private static long sortable(Object key) {
+		if (key instanceof Double) {
+			long bits = Double.doubleToLongBits((Double) key);
+			// flip the magnitude of negative doubles so they sort in reverse
+			return bits ^ ((bits >> 63) & Long.MAX_VALUE);
+		}
+		return (Long) key;
+	}
+
+	@Override
+	void insert(Object key, T row) {
+		Bucket<T> rows = numbers != null ? numbers.getOrAdd(sortable(key)) : objects.computeIfAbsent(key, k -> new Bucket<>());
+		rows.add(row);
+	}
+
+	@Override
+	void delete(Object key, T row) {
+		if (numbers != null) {
+			long sortable = sortable(key);
+			Bucket<T> rows = numbers.get(sortable);
+			rows.remove(row);
+			if (rows.isEmpty()) {
+				numbers.remove(sortable);
+			}
+		} else {
+			Bucket<T> rows = objects.get(key);
+			rows.remove(row);
+			if (rows.isEmpty()) {
+				objects.remove(key);
+			}
+		}
+	}
+
+	@Override
+	Bucket<T> find(Object key) {
+		return numbers != null ? numbers.get(sortable(key)) : objects.get(key);
+	}
+
+	@Override
+	void clearKeys() {
+		if (numbers != null) {
+			numbers.clear();
+		} else {
+			objects.clear();
+		}
+	}
+
+	/**
+	 * Gets the containers whose value is between the bounds.
+	 *
+	 * @param lower the lowest value, or null for no lower bound
+	 * @param lowerInclusive true to include containers equal to lower
+	 * @param upper the highest value, or null for no upper bound
+	 * @param upperInclusive true to include containers equal to upper
+	 * @return a new list of the containers, in ascending order of the value
+	 * @throws IllegalArgumentException if a bound can't be a value of the
+	 * property
+	 */
+	public List<T> range(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+		if (numbers != null) {
+			return numberRange(lower, lowerInclusive, upper, upperInclusive);
+		}
+		NavigableMap<Object, Bucket<T>> range = objects;
+		if (lower != null) {
+			range = range.tailMap(keyOf(lower), lowerInclusive);
+		}
+		if (upper != null) {
+			Object upperKey = keyOf(upper);
+			if (lower != null && compare(keyOf(lower), upperKey) > 0) {
+				return new ArrayList<>();
+			}
+			range = range.headMap(upperKey, upperInclusive);
+		}
+		List<T> found = new ArrayList<>();
+		for (Bucket<T> rows : range.values()) {
+			rows.addTo(found);
+		}
+		return found;
+	}
+
+	private List<T> numberRange(Object lower, boolean lowerInclusive, Object upper, boolean upperInclusive) {
+		List<T> found = new ArrayList<>();
+		long from = Long.MIN_VALUE;
+		long to = Long.MAX_VALUE;
+		if (lower != null) {
+			from = sortable(keyOf(lower));
+			if (!lowerInclusive) {
+				if (from == Long.MAX_VALUE) {
+					return found;
+				}
+				from++;
+			}
+		}
+		if (upper != null) {
+			to = sortable(keyOf(upper));
+			if (!upperInclusive) {
+				if (to == Long.MIN_VALUE) {
+					return found;
+				}
+				to--;
+			}
+		}
+		numbers.addTo(from, to, found);
+		return found;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static int compare(Object first, Object second) {
+		return ((Comparable<Object>) first).compareTo(second);
+	}
+
+	/**
+	 * Gets the containers whose value is between the bounds, inclusive.
+	 *
+	 * @param lower the lowest value
+	 * @param upper the highest value
+	 * @return a new list of the containers, in ascending order of the value
+	 */
+	public List<T> between(Object lower, Object upper) {
+		return range(lower, true, upper, true);
+	}
+
+	/**
+	 * Gets the containers whose value is less than the bound.
+	 *
+	 * @param upper the bound
+	 * @return a new list of the containers, in ascending order of the value
+	 */
+	public List<T> lessThan(Object upper) {
+		return range(null, false, upper, false);
+	}
+
+	/**
+	 * Gets the containers whose value is less than or equal to the bound.
+	 *
+	 * @param upper the bound
+	 * @return a new list of the containers, in ascending order of the value
+	 */
+	public List<T> atMost(Object upper) {
+		return range(null, false, upper, true);
+	}
+
+	/**
+	 * Gets the containers whose value is greater than the bound.
+	 *
+	 * @param lower the bound
+	 * @return a new list of the containers, in ascending order of the value
+	 */
+	public List<T> greaterThan(Object lower) {
+		return range(lower, false, null, false);
+	}
+
+	/**
+	 * Gets the containers whose value is greater than or equal to the bound.
+	 *
+	 * @param lower the bound
+	 * @return a new list of the containers, in ascending order of the value
+	 */
+	public List<T> atLeast(Object lower) {
+		return range(lower, true, null, false);
+	}
+}
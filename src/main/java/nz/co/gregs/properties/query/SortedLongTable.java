@@ -0,0 +1,207 @@
+package nz.co.gregs.properties.query;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * The buckets of a sorted index, under primitive long keys kept in ascending
+ * order.
+ *
+ * <p>
+ * The keys are held in sorted chunks of at most {@link #CHUNK_SIZE} keys, and
+ * the chunk holding a key is found by a binary search of the first key of
+ * each chunk. Looking up, adding, and removing a key only search and shift
+ * short primitive arrays, and ranges are read chunk by chunk, without the
+ * boxed keys and tree nodes of a TreeMap.
+ *
+ * <p>
+ * Instances of this class are not thread-safe.
+ *
+ * @author Gregory Graham
+ * @param <T> the class of the containers
+ */
+final class SortedLongTable<T> {
+
+	private static final int CHUNK_SIZE = 64;
+
+	private long[] firstKeys = new long[4];
+	private Chunk<T>[] chunks = newChunks(4);
+	private int chunkCount;
+	private int size;
+
+	@SuppressWarnings("unchecked")
+	private static <T> Chunk<T>[] newChunks(int length) {
+		return (Chunk<T>[]) new Chunk<?>[length];
+	}
+
+	/**
+	 * Gets the number of keys.
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the bucket under the key, or null.
+	 */
+	Bucket<T> get(long key) {
+		int c = chunkFor(key);
+		if (c < 0) {
+			return null;
+		}
+		Chunk<T> chunk = chunks[c];
+		int i = Arrays.binarySearch(chunk.keys, 0, chunk.size, key);
+		return i < 0 ? null : chunk.buckets[i];
+	}
+
+	/**
+	 * Gets the bucket under the key, adding an empty one if there is none.
+	 */
+	Bucket<T> getOrAdd(long key) {
+		if (chunkCount == 0) {
+			insertChunk(0, new Chunk<>());
+		}
+		int c = Math.max(chunkFor(key), 0);
+		Chunk<T> chunk = chunks[c];
+		int i = Arrays.binarySearch(chunk.keys, 0, chunk.size, key);
+		if (i >= 0) {
+			return chunk.buckets[i];
+		}
+		i = -i - 1;
+		if (chunk.size == CHUNK_SIZE) {
+			Chunk<T> upper = chunk.split();
+			insertChunk(c + 1, upper);
+			if (i > chunk.size) {
+				i -= chunk.size;
+				chunk = upper;
+				c++;
+			}
+		}
+		Bucket<T> bucket = new Bucket<>();
+		chunk.insert(i, key, bucket);
+		firstKeys[c] = chunk.keys[0];
+		size++;
+		return bucket;
+	}
+
+	/**
+	 * Removes the key and its bucket.
+	 */
+	void remove(long key) {
+		int c = chunkFor(key);
+		if (c < 0) {
+			return;
+		}
+		Chunk<T> chunk = chunks[c];
+		int i = Arrays.binarySearch(chunk.keys, 0, chunk.size, key);
+		if (i < 0) {
+			return;
+		}
+		chunk.delete(i);
+		size--;
+		if (chunk.size == 0) {
+			System.arraycopy(firstKeys, c + 1, firstKeys, c, chunkCount - c - 1);
+			System.arraycopy(chunks, c + 1, chunks, c, chunkCount - c - 1);
+			chunks[--chunkCount] = null;
+		} else {
+			firstKeys[c] = chunk.keys[0];
+		}
+	}
+
+	/**
+	 * Adds the containers under the keys from the lower to the upper key,
+	 * both inclusive, to the collection in ascending order of the key.
+	 */
+	void addTo(long lower, long upper, Collection<? super T> found) {
+		if (lower > upper || chunkCount == 0) {
+			return;
+		}
+		int c = Math.max(chunkFor(lower), 0);
+		int i = Arrays.binarySearch(chunks[c].keys, 0, chunks[c].size, lower);
+		if (i < 0) {
+			i = -i - 1;
+		}
+		for (; c < chunkCount; c++, i = 0) {
+			Chunk<T> chunk = chunks[c];
+			for (; i < chunk.size; i++) {
+				if (chunk.keys[i] > upper) {
+					return;
+				}
+				chunk.buckets[i].addTo(found);
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(chunks, 0, chunkCount, null);
+		chunkCount = 0;
+		size = 0;
+	}
+
+	/**
+	 * Finds the last chunk whose first key is no greater than the key.
+	 *
+	 * @return the index of the chunk, or -1 if the key is below every chunk
+	 */
+	private int chunkFor(long key) {
+		int low = 0;
+		int high = chunkCount - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (firstKeys[middle] <= key) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
+	private void insertChunk(int c, Chunk<T> chunk) {
+		if (chunkCount == chunks.length) {
+			firstKeys = Arrays.copyOf(firstKeys, chunkCount * 2);
+			chunks = Arrays.copyOf(chunks, chunkCount * 2);
+		}
+		System.arraycopy(firstKeys, c, firstKeys, c + 1, chunkCount - c);
+		System.arraycopy(chunks, c, chunks, c + 1, chunkCount - c);
+		chunks[c] = chunk;
+		firstKeys[c] = chunk.size == 0 ? 0 : chunk.keys[0];
+		chunkCount++;
+	}
+
+	private static final class Chunk<T> {
+
+		private final long[] keys = new long[CHUNK_SIZE];
+		@SuppressWarnings("unchecked")
+		private final Bucket<T>[] buckets = (Bucket<T>[]) new Bucket<?>[CHUNK_SIZE];
+		private int size;
+
+		void insert(int i, long key, Bucket<T> bucket) {
+			System.arraycopy(keys, i, keys, i + 1, size - i);
+			System.arraycopy(buckets, i, buckets, i + 1, size - i);
+			keys[i] = key;
+			buckets[i] = bucket;
+			size++;
+		}
+
+		void delete(int i) {
+			System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+			System.arraycopy(buckets, i + 1, buckets, i, size - i - 1);
+			buckets[--size] = null;
+		}
+
+		/**
+		 * Moves the upper half of the keys into a new chunk.
+		 */
+		Chunk<T> split() {
+			Chunk<T> upper = new Chunk<>();
+			int half = size / 2;
+			upper.size = size - half;
+			System.arraycopy(keys, half, upper.keys, 0, upper.size);
+			System.arraycopy(buckets, half, upper.buckets, 0, upper.size);
+			Arrays.fill(buckets, half, size, null);
+			size = half;
+			return upper;
+		}
+	}
+}
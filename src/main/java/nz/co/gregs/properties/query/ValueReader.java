@@ -0,0 +1,87 @@
+package nz.co.gregs.properties.query;
+
+import java.util.Date;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.adapt.AdaptableType;
+
+/**
+ * Reads the literal values of properties for the query helpers.
+ *
+ * @author Gregory Graham
+ */
+final class ValueReader {
+
+	/**
+	 * How the literal values of a property are compared.
+	 *
+	 * <p>
+	 * The numbers and dates follow the same rules as the codecs' encodings, so
+	 * that BigDecimal, BigInteger, and other numbers that don't fit a long or a
+	 * double without loss are compared as Comparable objects.
+	 */
+	enum Kind {
+		/**
+		 * Integral numbers, compared as longs.
+		 */
+		LONG,
+		/**
+		 * Doubles, floats, and plain Numbers, compared as doubles.
+		 */
+		DOUBLE,
+		/**
+		 * Dates, compared as epoch milliseconds.
+		 */
+		DATE,
+		/**
+		 * Anything else, compared with equals and, when Comparable, compareTo.
+		 */
+		OTHER;
+
+		static Kind of(Class<?> literalType) {
+			if (literalType == Long.class || literalType == Integer.class || literalType == Short.class || literalType == Byte.class) {
+				return LONG;
+			} else if (literalType == Double.class || literalType == Float.class || literalType == Number.class) {
+				return DOUBLE;
+			} else if (literalType == Date.class) {
+				return DATE;
+			}
+			return OTHER;
+		}
+	}
+
+	private ValueReader() {
+	}
+
+	/**
+	 * Checks that the property can be read.
+	 *
+	 * @param property the property
+	 * @return the property
+	 * @throws IllegalArgumentException if the property is not readable
+	 */
+	static PropertyDefinition readable(PropertyDefinition property) {
+		if (!property.isReadable()) {
+			throw new IllegalArgumentException("Property " + property.qualifiedJavaName() + " is not readable");
+		}
+		return property;
+	}
+
+	/**
+	 * Reads the literal value of the property.
+	 *
+	 * @param property the property
+	 * @param target the container
+	 * @return the literal value, or null if the property or its value is null
+	 */
+	static Object read(PropertyDefinition property, Object target) {
+		AdaptableType<?> adaptable = property.readAdaptableType(target);
+		return adaptable == null ? null : adaptable.getValue();
+	}
+
+	/**
+	 * Tests whether the value is one of the integral boxed types.
+	 */
+	static boolean isIntegral(Object value) {
+		return value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte;
+	}
+}
@@ -0,0 +1,55 @@
+package nz.co.gregs.properties;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.junit.Assume;
+
+/**
+ * Measures the memory allocated by the current thread, for tests that check
+ * that code doesn't allocate.
+ *
+ * <p>
+ * Tests using it are skipped on JVMs that can't measure allocation.
+ */
+public final class Allocations {
+
+	private Allocations() {
+	}
+
+	/**
+	 * Runs the task on the current thread and measures what it allocates.
+	 *
+	 * @param task the code to measure
+	 * @return the bytes allocated by the current thread while the task ran
+	 */
+	public static long allocatedBy(Runnable task) {
+		ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue("allocation can't be measured", threads instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+		Assume.assumeTrue("allocation can't be measured", allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+		long thread = Thread.currentThread().getId();
+		long before = allocations.getThreadAllocatedBytes(thread);
+		task.run();
+		return allocations.getThreadAllocatedBytes(thread) - before;
+	}
+
+	/**
+	 * Runs the task the number of times, after running it as often to warm it
+	 * up, and measures what each run allocates on average.
+	 *
+	 * @param times the number of runs to measure
+	 * @param task the code to measure
+	 * @return the average bytes allocated by a run
+	 */
+	public static long allocatedPerRun(int times, Runnable task) {
+		for (int i = 0; i < times; i++) {
+			task.run();
+		}
+		return allocatedBy(() -> {
+			for (int i = 0; i < times; i++) {
+				task.run();
+			}
+		}) / times;
+	}
+}
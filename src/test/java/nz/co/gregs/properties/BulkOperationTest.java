@@ -0,0 +1,110 @@
+package nz.co.gregs.properties;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import nz.co.gregs.properties.PropertySnapshotTest.Account;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BulkOperationTest {
+
+	private static final int ROWS = 100_000;
+
+	private final PropertyContainerWrapperFactory factory = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+	private ExecutorService executor;
+	private boolean virtual;
+
+	/**
+	 * Uses virtual threads where the runtime has them, found reflectively as
+	 * the library is compiled for Java 10.
+	 */
+	@Before
+	public void createExecutor() {
+		try {
+			executor = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+			virtual = true;
+		} catch (ReflectiveOperationException e) {
+			executor = Executors.newFixedThreadPool(8);
+		}
+	}
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void hydratesContainersConcurrently() {
+		List<PropertyDefinition> definitions = factory.classWrapperFor(Account.class).getPropertyDefinitions();
+		List<Object[]> rows = new ArrayList<>(ROWS);
+		for (int i = 0; i < ROWS; i++) {
+			Object[] row = new Object[definitions.size()];
+			for (int p = 0; p < row.length; p++) {
+				switch (definitions.get(p).javaName()) {
+					case "uid":
+						row[p] = (long) i;
+						break;
+					case "name":
+						row[p] = "account " + i;
+						break;
+					case "opened":
+						row[p] = new Date(i);
+						break;
+					case "code":
+						// type-adapted, so converted by IntegerStringAdaptor
+						row[p] = String.valueOf(i);
+						break;
+					default:
+				}
+			}
+			rows.add(row);
+		}
+
+		BulkOperation bulk = BulkOperation.on(executor).inChunksOf(virtual ? 1 : 1000);
+		List<Account> accounts = bulk.hydrate(factory, Account.class, rows);
+		assertThat(accounts.size(), is(ROWS));
+		AtomicLong total = new AtomicLong();
+		bulk.forEach(accounts, account -> total.addAndGet(account.uid.getValue()));
+		assertThat(total.get(), is((long) ROWS * (ROWS - 1) / 2));
+		assertThat(accounts.get(12345).name.getValue(), is("account 12345"));
+		assertThat(accounts.get(12345).opened.getValue(), is(new Date(12345)));
+		assertThat(accounts.get(12345).balance.getValue(), is(nullValue()));
+		for (int i = 0; i < ROWS; i++) {
+			assertThat(accounts.get(i).getCode(), is(i));
+		}
+	}
+
+	@Test
+	public void keepsTheOrderOfTheItems() {
+		List<Integer> lengths = BulkOperation.on(executor).inChunksOf(2).map(Arrays.asList("a", "bb", "ccc", "dddd", "eeeee"), String::length);
+		assertThat(lengths, contains(1, 2, 3, 4, 5));
+	}
+
+	@Test
+	public void rethrowsFailuresOnTheCallingThread() {
+		try {
+			BulkOperation.on(executor).forEach(Arrays.asList(1, 2, 3), item -> {
+				if (item == 2) {
+					throw new IllegalStateException("item " + item);
+				}
+			});
+			fail("the failure was lost");
+		} catch (IllegalStateException expected) {
+			assertThat(expected.getMessage(), is("item 2"));
+		}
+		try {
+			BulkOperation.on(executor).hydrate(factory, Account.class, Arrays.asList(new Object[][]{new Object[1]}));
+			fail("hydrated a row of the wrong length");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
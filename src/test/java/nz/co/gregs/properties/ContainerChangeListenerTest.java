@@ -0,0 +1,105 @@
+package nz.co.gregs.properties;
+
+import java.util.ArrayList;
+import java.util.List;
+import nz.co.gregs.properties.PropertySnapshotTest.Account;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ContainerChangeListenerTest {
+
+	private final PropertyContainerWrapperFactory factory = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+
+	@Test
+	public void reportsEachChangeOutsideABatch() {
+		Account account = new Account();
+		PropertyContainerWrapper wrapper = factory.instanceWrapperFor(account);
+		List<ContainerChangeEvent> events = new ArrayList<>();
+		wrapper.addChangeListener(events::add);
+
+		account.name.setValue("a");
+		account.name.setValue("a");
+		account.uid.setValue(3);
+		wrapper.getPropertyByName("code").setAdaptableType(new StringProperty("4"));
+
+		assertThat(events.size(), is(3));
+		assertThat(events.get(0).getContainer(), is((PropertyContainer) account));
+		assertThat(names(events.get(0)), contains("name"));
+		assertThat(names(events.get(1)), contains("uid"));
+		assertThat(names(events.get(2)), contains("code"));
+		assertThat(account.getCode(), is(4));
+	}
+
+	@Test
+	public void coalescesChangesInABatch() {
+		Account account = new Account();
+		Account other = new Account();
+		List<ContainerChangeEvent> events = new ArrayList<>();
+		factory.instanceWrapperFor(account).addChangeListener(events::add);
+		factory.instanceWrapperFor(other).addChangeListener(events::add);
+
+		try (ChangeBatch batch = ChangeBatch.begin()) {
+			account.uid.setValue(1);
+			other.name.setValue("other");
+			try (ChangeBatch nested = ChangeBatch.begin()) {
+				account.name.setValue("x");
+				account.uid.setValue(2);
+			}
+			assertThat(events, is(empty()));
+		}
+
+		assertThat(events.size(), is(2));
+		assertThat(events.get(0).getContainer(), is((PropertyContainer) account));
+		assertThat(names(events.get(0)), contains("uid", "name"));
+		assertThat(events.get(1).getContainer(), is((PropertyContainer) other));
+		assertThat(names(events.get(1)), contains("name"));
+	}
+
+	@Test
+	public void followsReplacedAdaptableTypes() {
+		Account account = new Account();
+		PropertyContainerWrapper wrapper = factory.instanceWrapperFor(account);
+		List<ContainerChangeEvent> events = new ArrayList<>();
+		wrapper.addChangeListener(events::add);
+		StringProperty original = account.name;
+
+		Property name = wrapper.getPropertyByName("name");
+		name.setRawJavaValue(new StringProperty());
+		assertThat(events.size(), is(1));
+		original.setValue("detached");
+		assertThat(events.size(), is(1));
+		account.name.setValue("attached");
+		assertThat(events.size(), is(2));
+	}
+
+	@Test
+	public void propertyListenersOnlyHearTheirProperty() {
+		Account account = new Account();
+		PropertyContainerWrapper wrapper = factory.instanceWrapperFor(account);
+		List<ContainerChangeEvent> events = new ArrayList<>();
+		ContainerChangeListener listener = events::add;
+		wrapper.getPropertyByName("uid").addChangeListener(listener);
+
+		account.name.setValue("ignored");
+		account.uid.setValue(9);
+		assertThat(events.size(), is(1));
+		assertThat(events.get(0).isChanged(wrapper.getPropertyByName("uid").getDefinition()), is(true));
+
+		assertThat(wrapper.removeChangeListener(listener), is(false));
+		assertThat(wrapper.getPropertyByName("uid").removeChangeListener(listener), is(true));
+		assertThat(((PropertyContainer) account).changeSupport, is(nullValue()));
+		account.uid.setValue(10);
+		assertThat(events.size(), is(1));
+	}
+
+	private static List<String> names(ContainerChangeEvent event) {
+		List<String> names = new ArrayList<>();
+		for (PropertyDefinition property : event.getChangedProperties()) {
+			names.add(property.javaName());
+		}
+		return names;
+	}
+}
@@ -0,0 +1,419 @@
+package nz.co.gregs.properties;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import nz.co.gregs.properties.PropertySnapshotTest.Account;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.TypeAdaptor;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.After;
+import org.junit.Test;
+
+public class HydratingProcessorTest {
+
+	private final PropertyContainerWrapperFactory factory = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+	private final PropertyContainerClass accounts = factory.classWrapperFor(Account.class);
+	private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+	@After
+	public void shutdownExecutor() {
+		executor.shutdownNow();
+	}
+
+	@Test
+	public void publishesContainersInTheOrderOfTheRows() throws InterruptedException {
+		RowPublisher rows = new RowPublisher(rows(1000));
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(executor).parallelism(4).bufferSize(64);
+		rows.subscribe(processor);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.error, is(nullValue()));
+		assertThat(collector.accounts.size(), is(1000));
+		for (int i = 0; i < 1000; i++) {
+			assertThat(collector.accounts.get(i).uid.getValue(), is((long) i));
+		}
+		assertThat(collector.accounts.get(12).name.getValue(), is("account 12"));
+		assertThat(collector.accounts.get(12).opened.getValue(), is(new Date(12)));
+	}
+
+	@Test
+	public void publishesEveryContainerWhenUnordered() throws InterruptedException {
+		RowPublisher rows = new RowPublisher(rows(1000));
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(executor).parallelism(4).ordered(false);
+		rows.subscribe(processor);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.error, is(nullValue()));
+		long total = 0;
+		for (Account account : collector.accounts) {
+			total += account.uid.getValue();
+		}
+		assertThat(collector.accounts.size(), is(1000));
+		assertThat(total, is(1000L * 999 / 2));
+	}
+
+	@Test
+	public void routesFailedRowsToTheErrorChannel() throws InterruptedException {
+		List<Object[]> list = rows(10);
+		list.set(3, new Object[1]);
+		List<Object[]> failed = Collections.synchronizedList(new ArrayList<>());
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(executor).parallelism(2)
+				.onHydrationError((row, error) -> failed.add(row));
+		new RowPublisher(list).subscribe(processor);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.error, is(nullValue()));
+		assertThat(collector.accounts.size(), is(9));
+		assertThat(failed.size(), is(1));
+		assertThat(failed.get(0).length, is(1));
+	}
+
+	@Test
+	public void failsTheStreamWithoutAnErrorChannel() throws InterruptedException {
+		List<Object[]> list = rows(10);
+		list.set(3, new Object[1]);
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class).executor(executor);
+		new RowPublisher(list).subscribe(processor);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.error, is(instanceOf(IllegalArgumentException.class)));
+		assertThat(collector.accounts.size(), is(3));
+	}
+
+	@Test
+	public void failsTheStreamWhenTheErrorChannelThrows() throws InterruptedException {
+		List<Object[]> list = rows(10);
+		list.set(3, new Object[1]);
+		IllegalStateException thrown = new IllegalStateException("channel");
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(executor)
+				.onHydrationError((row, error) -> {
+					throw thrown;
+				});
+		RowPublisher rows = new RowPublisher(list);
+		rows.subscribe(processor);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.error, is(sameInstance((Throwable) thrown)));
+		assertThat(collector.accounts.size(), is(3));
+	}
+
+	@Test
+	public void callsTheUpstreamSubscriptionSerially() throws InterruptedException {
+		SerialCheckingSubscription upstream = new SerialCheckingSubscription();
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(Runnable::run).bufferSize(4);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+		processor.onSubscribe(upstream);
+		// the row is published, and its replacement requested, on this thread
+		Thread publisher = new Thread(() -> processor.onNext(rows(1).get(0)));
+		publisher.start();
+		while (upstream.calls.get() < 2) {
+			Thread.sleep(1);
+		}
+		collector.subscription.cancel();
+		publisher.join(10_000);
+
+		assertThat(collector.count(), is(1));
+		assertThat(upstream.overlapped, is(false));
+		assertThat(upstream.cancels.get(), is(1));
+	}
+
+	@Test
+	public void boundsTheRowsRequestedFromUpstream() throws InterruptedException {
+		RowPublisher rows = new RowPublisher(rows(1000));
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(executor).parallelism(4).bufferSize(16);
+		rows.subscribe(processor);
+		Collector collector = new Collector(5);
+		processor.subscribe(collector);
+
+		long deadline = System.currentTimeMillis() + 10_000;
+		while (collector.count() < 5 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		Thread.sleep(100);
+		assertThat(collector.count(), is(5));
+		assertThat(rows.requested.get(), is(lessThanOrEqualTo(16L + 5)));
+
+		collector.subscription.request(Long.MAX_VALUE);
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.accounts.size(), is(1000));
+	}
+
+	@Test
+	public void hydratesTypeAdaptedPropertiesInParallel() throws InterruptedException {
+		RowPublisher rows = new RowPublisher(rows(20_000));
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class)
+				.executor(executor).parallelism(4).ordered(false);
+		rows.subscribe(processor);
+		Collector collector = new Collector(Long.MAX_VALUE);
+		processor.subscribe(collector);
+
+		assertTrue(collector.done.await(10, TimeUnit.SECONDS));
+		assertThat(collector.error, is(nullValue()));
+		assertThat(collector.accounts.size(), is(20_000));
+		for (Account account : collector.accounts) {
+			assertThat(account.getCode(), is(account.uid.getValue().intValue()));
+		}
+	}
+
+	@Test
+	public void failsTheStreamWhenHydrationThrowsAnError() throws InterruptedException {
+		PropertyContainerClass fragile = factory.classWrapperFor(Fragile.class);
+		List<Object[]> list = new ArrayList<>();
+		for (String code : new String[]{"1", "2", "boom", "4"}) {
+			list.add(new Object[]{code});
+		}
+		HydratingProcessor<Fragile> processor = HydratingProcessor.of(fragile, Fragile.class)
+				.executor(executor).parallelism(2)
+				.onHydrationError((row, error) -> fail("an Error isn't a failed row"));
+		new RowPublisher(list).subscribe(processor);
+		CountDownLatch done = new CountDownLatch(1);
+		Throwable[] error = new Throwable[1];
+		processor.subscribe(new Flow.Subscriber<Fragile>() {
+			@Override
+			public void onSubscribe(Flow.Subscription subscription) {
+				subscription.request(Long.MAX_VALUE);
+			}
+
+			@Override
+			public void onNext(Fragile item) {
+			}
+
+			@Override
+			public void onError(Throwable throwable) {
+				error[0] = throwable;
+				done.countDown();
+			}
+
+			@Override
+			public void onComplete() {
+				done.countDown();
+			}
+		});
+
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+		assertThat(error[0], is(instanceOf(AssertionError.class)));
+	}
+
+	@Test
+	public void rejectsConfigurationOnceSubscribed() {
+		HydratingProcessor<Account> processor = HydratingProcessor.of(accounts, Account.class);
+		new RowPublisher(rows(1)).subscribe(processor);
+		try {
+			processor.parallelism(2);
+			fail("configured a running processor");
+		} catch (IllegalStateException expected) {
+		}
+	}
+
+	private List<Object[]> rows(int count) {
+		List<PropertyDefinition> definitions = accounts.getPropertyDefinitions();
+		List<Object[]> rows = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			Object[] row = new Object[definitions.size()];
+			for (int p = 0; p < row.length; p++) {
+				switch (definitions.get(p).javaName()) {
+					case "uid":
+						row[p] = (long) i;
+						break;
+					case "name":
+						row[p] = "account " + i;
+						break;
+					case "opened":
+						row[p] = new Date(i);
+						break;
+					case "code":
+						row[p] = String.valueOf(i);
+						break;
+					default:
+				}
+			}
+			rows.add(row);
+		}
+		return rows;
+	}
+
+	public static class Fragile extends PropertyContainerImpl {
+
+		private Integer code;
+
+		@AdaptType(value = FragileAdaptor.class)
+		public Integer getCode() {
+			return code;
+		}
+
+		@AdaptType(value = FragileAdaptor.class)
+		public void setCode(Integer code) {
+			this.code = code;
+		}
+	}
+
+	public static class FragileAdaptor implements TypeAdaptor<Integer, String> {
+
+		@Override
+		public Integer fromInternalValue(String internalValue) {
+			if ("boom".equals(internalValue)) {
+				throw new AssertionError("boom");
+			}
+			return (internalValue == null) ? null : Integer.valueOf(internalValue);
+		}
+
+		@Override
+		public String fromExternalValue(Integer externalValue) {
+			return (externalValue == null) ? null : externalValue.toString();
+		}
+	}
+
+	/**
+	 * Publishes a list of rows on the requesting thread, counting the demand.
+	 */
+	private static class RowPublisher implements Flow.Publisher<Object[]> {
+
+		private final List<Object[]> rows;
+		private final AtomicLong requested = new AtomicLong();
+
+		RowPublisher(List<Object[]> rows) {
+			this.rows = rows;
+		}
+
+		@Override
+		public void subscribe(Flow.Subscriber<? super Object[]> subscriber) {
+			subscriber.onSubscribe(new Flow.Subscription() {
+				private final AtomicLong demand = new AtomicLong();
+				private final AtomicInteger emitters = new AtomicInteger();
+				private int next;
+				private volatile boolean cancelled;
+
+				@Override
+				public void request(long n) {
+					requested.addAndGet(n);
+					demand.addAndGet(n);
+					if (emitters.getAndIncrement() != 0) {
+						return;
+					}
+					int missed = 1;
+					do {
+						while (demand.get() > 0 && next < rows.size() && !cancelled) {
+							demand.decrementAndGet();
+							subscriber.onNext(rows.get(next++));
+							if (next == rows.size()) {
+								subscriber.onComplete();
+							}
+						}
+						missed = emitters.addAndGet(-missed);
+					} while (missed != 0);
+				}
+
+				@Override
+				public void cancel() {
+					cancelled = true;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Records whether its methods are ever called at the same time, holding
+	 * each request for a while to give other threads the chance.
+	 */
+	private static class SerialCheckingSubscription implements Flow.Subscription {
+
+		private final AtomicInteger active = new AtomicInteger();
+		private final AtomicInteger calls = new AtomicInteger();
+		private final AtomicInteger cancels = new AtomicInteger();
+		private volatile boolean overlapped;
+
+		@Override
+		public void request(long n) {
+			enter();
+			try {
+				Thread.sleep(200);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} finally {
+				active.decrementAndGet();
+			}
+		}
+
+		@Override
+		public void cancel() {
+			enter();
+			cancels.incrementAndGet();
+			active.decrementAndGet();
+		}
+
+		private void enter() {
+			calls.incrementAndGet();
+			if (active.incrementAndGet() != 1) {
+				overlapped = true;
+			}
+		}
+	}
+
+	private static class Collector implements Flow.Subscriber<Account> {
+
+		private final long initialRequest;
+		private final List<Account> accounts = Collections.synchronizedList(new ArrayList<>());
+		private final CountDownLatch done = new CountDownLatch(1);
+		private volatile Flow.Subscription subscription;
+		private volatile Throwable error;
+
+		Collector(long initialRequest) {
+			this.initialRequest = initialRequest;
+		}
+
+		int count() {
+			return accounts.size();
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			subscription.request(initialRequest);
+		}
+
+		@Override
+		public void onNext(Account item) {
+			accounts.add(item);
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			error = throwable;
+			done.countDown();
+		}
+
+		@Override
+		public void onComplete() {
+			done.countDown();
+		}
+	}
+}
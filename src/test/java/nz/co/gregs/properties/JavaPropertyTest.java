@@ -78,6 +78,43 @@ public class JavaPropertyTest {
         finder.getPropertiesOf(SimpleIndependentFieldsAndPropertiesClass.class);
     }
 
+    // check inheritance
+    @Test
+    public void getsInheritedProtectedField() {
+        List<JavaProperty> properties = privateFieldPublicBeanFinder.getPropertiesOf(SubclassOfSimpleIndependentFieldsClass.class);
+        assertThat(properties, hasItemJava6(hasJavaPropertyName("protectedField")));
+    }
+
+    @Test
+    public void getsInheritedPrivateField() {
+        List<JavaProperty> properties = privateFieldPublicBeanFinder.getPropertiesOf(SubclassOfSimpleIndependentFieldsClass.class);
+        assertThat(properties, hasItemJava6(hasJavaPropertyName("privateField")));
+        assertThat(properties, hasItemJava6(hasJavaPropertyName("subclassField")));
+    }
+
+    @Test
+    public void cantGetInheritedPrivateFieldGivenProtectedFieldVisibility() {
+        JavaPropertyFinder finder = new JavaPropertyFinder(
+                Visibility.PROTECTED, Visibility.PUBLIC, null, (PropertyType[]) null);
+
+        List<JavaProperty> properties = finder.getPropertiesOf(SubclassOfSimpleIndependentFieldsClass.class);
+        assertThat(properties, hasItemJava6(hasJavaPropertyName("protectedField")));
+        assertThat(properties, not(hasItemJava6(hasJavaPropertyName("privateField"))));
+    }
+
+    @Test
+    public void getsOnlySubclassFieldGivenShadowedInheritedField() {
+        List<JavaProperty> properties = privateFieldPublicBeanFinder.getPropertiesOf(ShadowingSubclassOfSimpleIndependentFieldsClass.class);
+        int count = 0;
+        for (JavaProperty property : properties) {
+            if (property.name().equals("protectedField")) {
+                assertThat(property.qualifiedName(), is(ShadowingSubclassOfSimpleIndependentFieldsClass.class.getName() + ".protectedField"));
+                count++;
+            }
+        }
+        assertThat(count, is(1));
+    }
+
     // check shadowing effects
     @Test
     public void getsShadowingPrivateFieldGivenStandardBean() {
@@ -383,6 +420,81 @@ public class JavaPropertyTest {
         assertThat(property.getAnnotation(DBColumn.class), is(not(nullValue())));
     }
 
+    @Test
+    public void retrievesSameAnnotationGivenRepeatedQueries() {
+        class TestClass {
+
+            @DBColumn("getter")
+            public int getProperty() {
+                return 0;
+            }
+
+            @DBPrimaryKey
+            public void setProperty(int value) {
+            }
+        }
+
+        JavaProperty property = propertyOf(TestClass.class, "property");
+        DBColumn column = property.getAnnotation(DBColumn.class);
+        assertThat(column.value(), is("getter"));
+        assertThat(property.getAnnotation(DBColumn.class), is(sameInstance(column)));
+        assertThat(property.isAnnotationPresent(DBPrimaryKey.class), is(true));
+        assertThat(property.getAnnotation(DBPrimaryKey.class), is(not(nullValue())));
+        assertThat(property.isAnnotationPresent(AdaptType.class), is(false));
+        assertThat(property.getAnnotation(AdaptType.class), is(nullValue()));
+    }
+
+    @Test
+    public void allocatesNothingGivenRepeatedQueriesOfDuplicatedAnnotations() {
+        class TestClass {
+
+            @DBColumn("samename")
+            public int getProperty() {
+                return 0;
+            }
+
+            @DBColumn("samename")
+            public void setProperty(int value) {
+            }
+        }
+
+        JavaProperty property = propertyOf(TestClass.class, "property");
+        long perQuery = Allocations.allocatedPerRun(100_000, () -> property.getAnnotation(DBColumn.class));
+        assertThat("bytes allocated per query", perQuery, is(lessThan(8L)));
+    }
+
+    @Test
+    public void errorsOnlyForConflictingAnnotationGivenOtherAnnotationsAreValid() {
+        class TestClass {
+
+            @DBColumn("samename")
+            @DBPrimaryKey
+            public int getProperty() {
+                return 0;
+            }
+
+            @DBColumn("differentname")
+            public void setProperty(int value) {
+            }
+        }
+
+        JavaProperty property = propertyOf(TestClass.class, "property");
+        assertThat(property.getAnnotation(DBPrimaryKey.class), is(not(nullValue())));
+        assertThat(property.isAnnotationPresent(DBColumn.class), is(true));
+        try {
+            property.getAnnotation(DBColumn.class);
+            fail("expected " + DBPebkacException.class.getSimpleName());
+        } catch (DBPebkacException expected) {
+            // expected, and must be reported on every query
+        }
+        try {
+            property.getAnnotation(DBColumn.class);
+            fail("expected " + DBPebkacException.class.getSimpleName());
+        } catch (DBPebkacException expected) {
+            // expected
+        }
+    }
+
     @Test(expected = DBPebkacException.class)
     public void errorsWhenRetrievingAnnotationGivenDifferentDuplicatedSimpleAnnotationOnGetterAndSetter() {
         class TestClass {
@@ -419,6 +531,80 @@ public class JavaPropertyTest {
         assertThat(property.getAnnotation(DBColumn.class), is(not(nullValue())));
     }
     
+    @Test
+    public void acceptsAnnotationGivenIdenticalArrayAnnotationOnGetterAndSetter() {
+        class TestClass {
+
+            @Tags({"one", "two"})
+            public int getProperty() {
+                return 0;
+            }
+
+            @Tags({"one", "two"})
+            public void setProperty(int value) {
+            }
+        }
+
+        JavaProperty property = propertyOf(TestClass.class, "property");
+        assertThat(property.getAnnotation(Tags.class).value(), is(new String[]{"one", "two"}));
+    }
+
+    @Test(expected = DBPebkacException.class)
+    public void errorsWhenRetrievingAnnotationGivenDifferentArrayAnnotationOnGetterAndSetter() {
+        class TestClass {
+
+            @Tags({"one", "two"})
+            public int getProperty() {
+                return 0;
+            }
+
+            @Tags({"two", "one"})
+            public void setProperty(int value) {
+            }
+        }
+
+        JavaProperty property = propertyOf(TestClass.class, "property");
+        property.getAnnotation(Tags.class);
+    }
+
+    @Test
+    public void annotationsEqualAgreesWithAnnotationValuesGivenNonArrayAnnotations() throws NoSuchMethodException {
+        class TestClass {
+
+            @DBColumn("samename")
+            @AdaptType(value = IntegerStringAdaptor.class, type = StringProperty.class)
+            public void first() {
+            }
+
+            @DBColumn("samename")
+            @AdaptType(value = IntegerStringAdaptor.class, type = StringProperty.class)
+            public void same() {
+            }
+
+            @DBColumn("differentname")
+            @AdaptType(value = IntegerStringAdaptor.class, type = IntegerProperty.class)
+            public void different() {
+            }
+
+            @DBColumn
+            @AdaptType(value = IntegerStringAdaptor.class)
+            public void defaulted() {
+            }
+        }
+
+        String[] methodNames = {"first", "same", "different", "defaulted"};
+        for (String name1 : methodNames) {
+            for (String name2 : methodNames) {
+                for (Class<? extends java.lang.annotation.Annotation> annotationType : java.util.Arrays.asList(DBColumn.class, AdaptType.class)) {
+                    java.lang.annotation.Annotation ann1 = TestClass.class.getMethod(name1).getAnnotation(annotationType);
+                    java.lang.annotation.Annotation ann2 = TestClass.class.getMethod(name2).getAnnotation(annotationType);
+                    boolean byValues = JavaBeanProperty.getAnnotationValues(ann1).equals(JavaBeanProperty.getAnnotationValues(ann2));
+                    assertThat(name1 + " vs " + name2, JavaBeanProperty.annotationsEqual(ann1, ann2), is(byValues));
+                }
+            }
+        }
+    }
+
     @Test(expected = DBPebkacException.class)
     public void errorsWhenRetrievingAnnotationGivenDifferentDuplicatedComplexAnnotationOnGetterAndSetter() {
     	class MyAdaptor implements TypeAdaptor<Object, IntegerProperty> {
@@ -564,6 +750,36 @@ public class JavaPropertyTest {
         }
     }
 
+    @java.lang.annotation.Retention(java.lang.annotation.RetentionPolicy.RUNTIME)
+    @java.lang.annotation.Target(java.lang.annotation.ElementType.METHOD)
+    public static @interface Tags {
+
+        String[] value();
+    }
+
+    public static class IntegerStringAdaptor implements TypeAdaptor<Integer, String> {
+
+        @Override
+        public Integer fromInternalValue(String dbvValue) {
+            return null;
+        }
+
+        @Override
+        public String fromExternalValue(Integer objectValue) {
+            return null;
+        }
+    }
+
+    public static class SubclassOfSimpleIndependentFieldsClass extends SimpleIndependentFieldsAndPropertiesClass {
+
+        private String subclassField;
+    }
+
+    public static class ShadowingSubclassOfSimpleIndependentFieldsClass extends SimpleIndependentFieldsAndPropertiesClass {
+
+        protected Integer protectedField;
+    }
+
     public static class SimpleStandardBeanClass {
 
         private String property;
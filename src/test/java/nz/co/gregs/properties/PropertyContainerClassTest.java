@@ -34,6 +34,50 @@ public class PropertyContainerClassTest {
 		assertThat(classAdaptor.getPropertyDefinitions().size(), is(3));
 	}
 
+	@Test
+	public void eachPropertyHasItsOwnType() {
+		PropertyContainerClass classAdaptor = new PropertyContainerClass(MyTable1.class, new DBPropertyTypeHandler());
+		MyTable1 row = new MyTable1();
+		row.uid.setValue(1);
+		row.text.setValue("text");
+		row.fkTable2.setValue(2);
+		PropertyContainerWrapper wrapper = classAdaptor.instanceWrapperFor(row);
+
+		assertThat(wrapper.getPropertyByName("uid").type(), is((Object) IntegerProperty.class));
+		assertThat(wrapper.getPropertyByName("text").type(), is((Object) StringProperty.class));
+		assertThat(wrapper.getPropertyByName("uid").getAdaptableType().getValue(), is((Object) 1L));
+		assertThat(wrapper.getPropertyByName("text").getAdaptableType().getValue(), is((Object) "text"));
+		assertThat(wrapper.getPropertyByName("fkTable2").getAdaptableType().getValue(), is((Object) 2L));
+	}
+
+	@Test
+	public void acceptsHandlersWithoutDefaultConstructors() {
+		// (such handlers are shared by every property, as they always have been,
+		//  so only the discovery of the properties is checked here)
+		PropertyContainerClass classAdaptor = new PropertyContainerClass(SingleColumn.class, new ConfiguredTypeHandler("configured"));
+		SingleColumn row = new SingleColumn();
+		row.uid.setValue(1);
+		PropertyContainerWrapper wrapper = classAdaptor.instanceWrapperFor(row);
+
+		assertThat(classAdaptor.getPropertyDefinitions().size(), is(1));
+		assertThat(classAdaptor.getPropertyDefinitions().get(0).javaName(), is("uid"));
+		assertThat(wrapper.getPropertyByName("uid").rawJavaValue(), is((Object) row.uid));
+	}
+
+	public static class SingleColumn extends PropertyContainerImpl {
+
+		public IntegerProperty uid = new IntegerProperty();
+	}
+
+	public static class ConfiguredTypeHandler extends DBPropertyTypeHandler {
+
+		private final String configuration;
+
+		public ConfiguredTypeHandler(String configuration) {
+			this.configuration = configuration;
+		}
+	}
+
 	@SuppressWarnings("serial")
 	public static class MyTable1 extends PropertyContainerImpl {
 
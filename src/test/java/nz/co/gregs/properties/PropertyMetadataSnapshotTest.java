@@ -0,0 +1,163 @@
+package nz.co.gregs.properties;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.TypeAdaptor;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class PropertyMetadataSnapshotTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void restoresSamePropertiesFromSavedSnapshot() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metadata.bin");
+		PropertyContainerWrapperFactory first = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler(), file);
+		List<PropertyDefinition> scanned = first.classWrapperFor(MyTable.class).getPropertyDefinitions();
+		first.saveMetadataSnapshot();
+		assertThat(Files.exists(file), is(true));
+		assertThat(new PropertyMetadataSnapshot(file).restore(MyTable.class, new DBPropertyTypeHandler()), notNullValue());
+
+		PropertyContainerWrapperFactory second = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler(), file);
+		List<PropertyDefinition> restored = second.classWrapperFor(MyTable.class).getPropertyDefinitions();
+
+		assertThat(restored.size(), is(scanned.size()));
+		for (int i = 0; i < scanned.size(); i++) {
+			assertThat(restored.get(i), is(scanned.get(i)));
+			assertThat(restored.get(i).type(), is((Object) scanned.get(i).type()));
+			assertThat(restored.get(i).isTypeAdapted(), is(scanned.get(i).isTypeAdapted()));
+		}
+	}
+
+	@Test
+	public void restoredPropertiesReadAndWriteValues() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metadata.bin");
+		PropertyContainerWrapperFactory first = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler(), file);
+		first.classWrapperFor(MyTable.class);
+		first.saveMetadataSnapshot();
+
+		PropertyContainerWrapperFactory second = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler(), file);
+		MyTable row = new MyTable();
+		row.uid.setValue(23);
+		row.setCount(5);
+		PropertyContainerWrapper wrapper = second.instanceWrapperFor(row);
+
+		assertThat(wrapper.getPropertyByName("uid").getAdaptableType().getValue(), is((Object) 23L));
+		assertThat(wrapper.getPropertyByName("count").getAdaptableType().getValue(), is((Object) "5"));
+		wrapper.getPropertyByName("count").setAdaptableType(new StringProperty("7"));
+		assertThat(row.getCount(), is(7));
+	}
+
+	@Test
+	public void discardsStaleEntries() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metadata.bin");
+		PropertyMetadataSnapshot snapshot = new PropertyMetadataSnapshot(file);
+		snapshot.record(new PropertyContainerClass(MyTable.class, new DBPropertyTypeHandler()), new DBPropertyTypeHandler());
+		snapshot.save();
+
+		// simulate a changed class file by tampering with the stored hash
+		byte[] bytes = Files.readAllBytes(file);
+		int hashStart = 4 + 2 + 4 + 2 + MyTable.class.getName().length() + 1;
+		bytes[hashStart] = (byte) ~bytes[hashStart];
+		Files.write(file, bytes);
+
+		PropertyMetadataSnapshot stale = new PropertyMetadataSnapshot(file);
+		assertThat(stale.restore(MyTable.class, new DBPropertyTypeHandler()), nullValue());
+		assertThat(stale.isModified(), is(true));
+	}
+
+	@Test
+	public void discardsEntriesRecordedWithAnotherHandler() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metadata.bin");
+		PropertyMetadataSnapshot snapshot = new PropertyMetadataSnapshot(file);
+		snapshot.record(new PropertyContainerClass(MyTable.class, new DBPropertyTypeHandler()), new DBPropertyTypeHandler());
+		snapshot.save();
+
+		PropertyMetadataSnapshot other = new PropertyMetadataSnapshot(file);
+		assertThat(other.restore(MyTable.class, new OtherTypeHandler()), nullValue());
+		assertThat(new PropertyMetadataSnapshot(file).restore(MyTable.class, new DBPropertyTypeHandler()), notNullValue());
+	}
+
+	@Test
+	public void restoringIsFasterThanScanning() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("metadata.bin");
+		DBPropertyTypeHandler handler = new DBPropertyTypeHandler();
+		PropertyMetadataSnapshot snapshot = new PropertyMetadataSnapshot(file);
+		snapshot.record(new PropertyContainerClass(MyTable.class, handler), handler);
+		int rounds = 2000;
+		long scanning = Long.MAX_VALUE;
+		long restoring = Long.MAX_VALUE;
+		// best of several passes, so that warm-up and collections don't decide it
+		for (int pass = 0; pass < 5; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				assertThat(new PropertyContainerClass(MyTable.class, handler), notNullValue());
+			}
+			scanning = Math.min(scanning, System.nanoTime() - start);
+			start = System.nanoTime();
+			for (int i = 0; i < rounds; i++) {
+				assertThat(snapshot.restore(MyTable.class, handler), notNullValue());
+			}
+			restoring = Math.min(restoring, System.nanoTime() - start);
+		}
+		assertThat("scan " + scanning / rounds + "ns, restore " + restoring / rounds + "ns", restoring, lessThan(scanning));
+	}
+
+	@Test
+	public void ignoresCorruptSnapshot() throws Exception {
+		File file = folder.newFile("metadata.bin");
+		Files.write(file.toPath(), new byte[]{1, 2, 3});
+
+		PropertyContainerWrapperFactory factory = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler(), file.toPath());
+		assertThat(factory.classWrapperFor(MyTable.class).getPropertyDefinitions().size(), is(3));
+		factory.saveMetadataSnapshot();
+
+		PropertyContainerWrapperFactory second = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler(), file.toPath());
+		assertThat(second.classWrapperFor(MyTable.class).getPropertyDefinitions().size(), is(3));
+	}
+
+	public static class MyTable extends PropertyContainerImpl {
+
+		public IntegerProperty uid = new IntegerProperty();
+		public StringProperty name = new StringProperty();
+		private Integer count;
+
+		@AdaptType(value = IntegerStringAdaptor.class)
+		public Integer getCount() {
+			return count;
+		}
+
+		@AdaptType(value = IntegerStringAdaptor.class)
+		public void setCount(Integer count) {
+			this.count = count;
+		}
+	}
+
+	public static class OtherTypeHandler extends DBPropertyTypeHandler {
+	}
+
+	public static class IntegerStringAdaptor implements TypeAdaptor<Integer, String> {
+
+		@Override
+		public Integer fromInternalValue(String internalValue) {
+			return (internalValue == null) ? null : Integer.valueOf(internalValue);
+		}
+
+		@Override
+		public String fromExternalValue(Integer externalValue) {
+			return (externalValue == null) ? null : externalValue.toString();
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package nz.co.gregs.properties;
+
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import nz.co.gregs.properties.examples.DBColumn;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PropertyNameIndexTest {
+
+	private final PropertyContainerClass classAdaptor = new PropertyContainerClass(MyTable.class, new DBPropertyTypeHandler());
+
+	@Test
+	public void findsEveryPropertyByName() {
+		PropertyNameIndex index = classAdaptor.getPropertyNameIndex();
+		assertThat(index.size(), is(classAdaptor.getPropertyDefinitions().size()));
+		for (PropertyDefinition property : classAdaptor.getPropertyDefinitions()) {
+			assertThat(classAdaptor.getPropertyDefinitionByName(property.javaName()), sameInstance(property));
+			assertThat(index.get(new StringBuilder(property.javaName())), sameInstance(property));
+			byte[] utf8 = property.javaName().getBytes(StandardCharsets.UTF_8);
+			assertThat(index.get(utf8, 0, utf8.length), sameInstance(property));
+		}
+		assertThat(classAdaptor.getPropertyDefinitionByName("missing"), is(nullValue()));
+		assertThat(index.get(new StringBuilder("uid2")), is(nullValue()));
+	}
+
+	@Test
+	public void findsNamesWithinLargerBuffers() {
+		PropertyNameIndex index = classAdaptor.getPropertyNameIndex();
+		String line = "uid,name,caf\u00e9";
+		assertThat(index.get(line, 0, 3).javaName(), is("uid"));
+		assertThat(index.get(CharBuffer.wrap(line), 4, 8).javaName(), is("name"));
+		assertThat(index.get(line, 4, 7), is(nullValue()));
+
+		byte[] utf8 = line.getBytes(StandardCharsets.UTF_8);
+		assertThat(index.get(utf8, 0, 3).javaName(), is("uid"));
+		assertThat(index.get(utf8, 4, 4).javaName(), is("name"));
+		assertThat(index.get(utf8, 9, utf8.length - 9).javaName(), is("caf\u00e9"));
+		assertThat(index.get(utf8, 9, utf8.length - 10), is(nullValue()));
+	}
+
+	@Test
+	public void findsNamesIgnoringCase() {
+		PropertyNameIndex index = classAdaptor.getPropertyNameIndex();
+		assertThat(classAdaptor.getPropertyDefinitionByNameIgnoreCase("UID").javaName(), is("uid"));
+		assertThat(index.getIgnoreCase("CAF\u00c9").javaName(), is("caf\u00e9"));
+		byte[] utf8 = "MaxCount".getBytes(StandardCharsets.UTF_8);
+		assertThat(index.getIgnoreCase(utf8, 0, utf8.length).javaName(), is("maxcount"));
+		assertThat(index.get(utf8, 0, utf8.length), is(nullValue()));
+		assertThat(index.getIgnoreCase("nothing"), is(nullValue()));
+	}
+
+	@Test
+	public void ignoringCasePrefersTheFirstPropertyFound() {
+		assertThat(classAdaptor.getPropertyDefinitionByName("name").javaName(), is("name"));
+		assertThat(classAdaptor.getPropertyDefinitionByName("Name").javaName(), is("Name"));
+		PropertyDefinition first = classAdaptor.getPropertyDefinitions().stream()
+				.filter(p -> p.javaName().equalsIgnoreCase("name"))
+				.findFirst().get();
+		assertThat(classAdaptor.getPropertyDefinitionByNameIgnoreCase("NAME"), sameInstance(first));
+	}
+
+	@SuppressWarnings("serial")
+	public static class MyTable extends PropertyContainerImpl {
+
+		@DBColumn
+		public IntegerProperty uid = new IntegerProperty();
+		@DBColumn
+		public StringProperty name = new StringProperty();
+		@DBColumn
+		public StringProperty Name = new StringProperty();
+		@DBColumn
+		public StringProperty caf\u00e9 = new StringProperty();
+		@DBColumn
+		public IntegerProperty maxcount = new IntegerProperty();
+	}
+}
@@ -0,0 +1,132 @@
+package nz.co.gregs.properties;
+
+import java.util.BitSet;
+import java.util.Date;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.TypeAdaptor;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.DateProperty;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.NumberProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.examples.StringProperty;
+import nz.co.gregs.properties.exceptions.PropertyException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PropertySnapshotTest {
+
+	private final PropertyContainerWrapperFactory factory = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+
+	@Test
+	public void restoresTheValuesOfASnapshot() {
+		Account account = new Account();
+		account.uid.setValue(7);
+		account.balance.setValue(12.5);
+		account.name.setValue("savings");
+		account.opened.setValue(new Date(1000));
+		account.setCode(42);
+		PropertyContainerWrapper wrapper = factory.instanceWrapperFor(account);
+		PropertySnapshot snapshot = wrapper.snapshot();
+
+		account.uid.setValue(8);
+		account.balance.setValue((Double) null);
+		account.name.setValue("cheque");
+		account.opened.getValue().setTime(2000);
+		account.setCode(null);
+		wrapper.restore(snapshot);
+
+		assertThat(account.uid.getValue(), is(7L));
+		assertThat(account.balance.getValue(), is(12.5));
+		assertThat(account.name.getValue(), is("savings"));
+		assertThat(account.opened.getValue(), is(new Date(1000)));
+		assertThat(account.getCode(), is(42));
+	}
+
+	@Test
+	public void restoresNullValuesAndCreatesMissingTypes() {
+		Account account = new Account();
+		PropertyContainerWrapper wrapper = factory.instanceWrapperFor(account);
+		PropertySnapshot empty = wrapper.snapshot();
+		account.name.setValue("named");
+		account.uid = null;
+		wrapper.restore(empty);
+		assertThat(account.name.getValue(), is(nullValue()));
+		assertThat(account.uid, is(nullValue()));
+
+		Account other = new Account();
+		other.uid.setValue(3);
+		account.uid = null;
+		wrapper.restore(factory.instanceWrapperFor(other).snapshot());
+		assertThat(account.uid.getValue(), is(3L));
+	}
+
+	@Test
+	public void findsChangedProperties() {
+		Account account = new Account();
+		account.uid.setValue(1);
+		account.name.setValue("a");
+		PropertyContainerWrapper wrapper = factory.instanceWrapperFor(account);
+		PropertySnapshot before = wrapper.snapshot();
+		account.name.setValue("b");
+		account.opened.setValue(new Date(5));
+		account.uid.setValue(1);
+		PropertySnapshot after = wrapper.snapshot();
+
+		BitSet changed = PropertyContainerWrapper.diff(before, after);
+		assertThat(changed.cardinality(), is(2));
+		assertThat(wrapper.getPropertyDefinitions().get(changed.nextSetBit(0)).javaName(), is("name"));
+		assertThat(wrapper.getPropertyDefinitions().get(changed.nextSetBit(changed.nextSetBit(0) + 1)).javaName(), is("opened"));
+		assertThat(PropertyContainerWrapper.diff(after, wrapper.snapshot()).isEmpty(), is(true));
+		assertThat(after.getValue(changed.nextSetBit(0)), is((Object) "b"));
+		assertThat(before.isNull(3), is(true));
+	}
+
+	@Test
+	public void rejectsSnapshotsOfOtherClasses() {
+		PropertySnapshot snapshot = factory.instanceWrapperFor(new Account()).snapshot();
+		try {
+			factory.instanceWrapperFor(new Other()).restore(snapshot);
+			fail("restored a snapshot of another class");
+		} catch (PropertyException expected) {
+		}
+	}
+
+	public static class Account extends PropertyContainerImpl {
+
+		public IntegerProperty uid = new IntegerProperty();
+		public NumberProperty balance = new NumberProperty();
+		public StringProperty name = new StringProperty();
+		public DateProperty opened = new DateProperty();
+		private Integer code;
+
+		@AdaptType(value = IntegerStringAdaptor.class)
+		public Integer getCode() {
+			return code;
+		}
+
+		@AdaptType(value = IntegerStringAdaptor.class)
+		public void setCode(Integer code) {
+			this.code = code;
+		}
+	}
+
+	public static class Other extends PropertyContainerImpl {
+
+		public IntegerProperty uid = new IntegerProperty();
+	}
+
+	public static class IntegerStringAdaptor implements TypeAdaptor<Integer, String> {
+
+		@Override
+		public Integer fromInternalValue(String internalValue) {
+			return (internalValue == null) ? null : Integer.valueOf(internalValue);
+		}
+
+		@Override
+		public String fromExternalValue(Integer externalValue) {
+			return (externalValue == null) ? null : externalValue.toString();
+		}
+	}
+}
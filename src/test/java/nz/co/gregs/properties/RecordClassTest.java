@@ -0,0 +1,121 @@
+package nz.co.gregs.properties;
+
+import java.io.File;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import nz.co.gregs.properties.exceptions.DBThrownByEndUserCodeException;
+import nz.co.gregs.properties.exceptions.PropertyException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RecordClassTest {
+
+	@ClassRule
+	public static final TemporaryFolder FOLDER = new TemporaryFolder();
+
+	private static Class<?> point;
+
+	/**
+	 * The library and its tests are compiled for Java 10, so the record is
+	 * compiled while the tests run.
+	 */
+	@BeforeClass
+	public static void compileRecord() throws Exception {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		Assume.assumeTrue("needs a JDK", compiler != null);
+		Assume.assumeTrue("needs a runtime with records", Runtime.version().feature() >= 16);
+		File source = new File(FOLDER.getRoot(), "Point.java");
+		Files.write(source.toPath(), Arrays.asList(
+				"public record Point(int x, String label, java.util.Date at) {",
+				"	public Point {",
+				"		if (x < 0) throw new IllegalArgumentException(\"negative\");",
+				"		if (x == 99) throw new AssertionError(\"ninety-nine\");",
+				"	}",
+				"}"), StandardCharsets.US_ASCII);
+		assertThat(compiler.run(null, null, null, "-d", FOLDER.getRoot().getPath(), source.getPath()), is(0));
+		point = new URLClassLoader(new URL[]{FOLDER.getRoot().toURI().toURL()}, RecordClassTest.class.getClassLoader()).loadClass("Point");
+	}
+
+	@Test
+	public void findsComponentsInConstructorOrder() {
+		assertThat(RecordClass.isRecord(point), is(true));
+		assertThat(RecordClass.isRecord(String.class), is(false));
+		List<String> names = new ArrayList<>();
+		for (JavaProperty component : new JavaPropertyFinder().getPropertiesOf(point)) {
+			names.add(component.name());
+			assertThat(component.isReadable(), is(true));
+			assertThat(component.isWritable(), is(false));
+		}
+		assertThat(names, contains("x", "label", "at"));
+		assertThat(RecordClass.of(point).indexOf("label"), is(1));
+		assertThat(RecordClass.of(point), is(sameInstance((Object) RecordClass.of(point))));
+	}
+
+	@Test
+	public void createsAndReadsRecords() {
+		RecordClass<?> records = RecordClass.of(point);
+		Date at = new Date(1000);
+		List<Object[]> rows = Arrays.asList(new Object[]{1, "a", at}, new Object[]{2, null, null});
+		List<?> created = records.newInstances(rows);
+		assertThat(created.size(), is(2));
+		assertThat(valuesOf(records, created.get(0)), is(new Object[]{1, "a", at}));
+		assertThat(valuesOf(records, created.get(1)), is(new Object[]{2, null, null}));
+		assertThat(records.getComponents().get(0).get(created.get(1)), is((Object) 2));
+		assertThat(records.newArray(new Object[][]{{3, "c", at}}).length, is(1));
+	}
+
+	@Test
+	public void rejectsBadValues() {
+		RecordClass<?> records = RecordClass.of(point);
+		try {
+			records.newInstance(1, "too few");
+			fail("created a record without all its values");
+		} catch (PropertyException expected) {
+		}
+		try {
+			records.newInstance(null, "a", null);
+			fail("created a record with a null primitive");
+		} catch (PropertyException expected) {
+		}
+		try {
+			records.newInstance(1L, "a", null);
+			fail("created a record with a long for an int");
+		} catch (PropertyException expected) {
+		}
+		try {
+			records.newInstance(-1, "a", null);
+			fail("created a record the constructor rejects");
+		} catch (DBThrownByEndUserCodeException expected) {
+			assertThat(expected.getCause(), is(instanceOf(IllegalArgumentException.class)));
+		}
+		try {
+			records.newInstance(99, "a", null);
+			fail("lost the constructor's Error");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage(), is("ninety-nine"));
+		}
+		try {
+			RecordClass.of(String.class);
+			fail("described a class that isn't a record");
+		} catch (PropertyException expected) {
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <R> Object[] valuesOf(RecordClass<R> records, Object record) {
+		return records.getValues((R) record);
+	}
+}
@@ -0,0 +1,64 @@
+package nz.co.gregs.properties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import nz.co.gregs.properties.PropertySnapshotTest.Account;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ReflectConfigGeneratorTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void registersTheMembersOfTheProperties() throws IOException {
+		StringBuilder json = new StringBuilder();
+		new ReflectConfigGenerator(new DBPropertyTypeHandler()).add(Account.class).write(json);
+		String config = json.toString();
+
+		assertThat(config, startsWith("["));
+		assertThat(config, containsString("\"name\" : \"" + Account.class.getName() + "\",\n  \"queryAllPublicFields\" : true"));
+		assertThat(config, containsString("{ \"name\" : \"uid\" }"));
+		assertThat(config, containsString("{ \"name\" : \"opened\" }"));
+		assertThat(config, containsString("{ \"name\" : \"getCode\", \"parameterTypes\" : [] }"));
+		assertThat(config, containsString("{ \"name\" : \"setCode\", \"parameterTypes\" : [\"java.lang.Integer\"] }"));
+		assertThat(config, containsString("{ \"name\" : \"<init>\", \"parameterTypes\" : [] }"));
+		assertThat(config, containsString("\"name\" : \"" + IntegerProperty.class.getName() + "\""));
+		assertThat(config, containsString("\"name\" : \"" + PropertySnapshotTest.IntegerStringAdaptor.class.getName() + "\""));
+		assertThat(config, not(containsString("\"name\" : \"code\"")));
+	}
+
+	@Test
+	public void registersTheHandlerAndTheSuperclassQueries() throws IOException {
+		StringBuilder json = new StringBuilder();
+		new ReflectConfigGenerator(new DBPropertyTypeHandler()).add(Account.class).write(json);
+		String config = json.toString();
+
+		assertThat(config, containsString("\"name\" : \"" + DBPropertyTypeHandler.class.getName() + "\",\n  \"methods\" : [\n    { \"name\" : \"<init>\", \"parameterTypes\" : [] }"));
+		for (Class<?> type : new Class<?>[]{PropertyContainerImpl.class, PropertyContainer.class}) {
+			assertThat(config, containsString("\"name\" : \"" + type.getName() + "\",\n  \"queryAllDeclaredFields\" : true,\n  \"queryAllPublicMethods\" : true"));
+		}
+	}
+
+	@Test
+	public void findsTheContainersInAClassDirectory() throws IOException {
+		Path classes = Paths.get(Account.class.getProtectionDomain().getCodeSource().getLocation().getPath());
+		Path output = folder.getRoot().toPath().resolve("META-INF/native-image/reflect-config.json");
+		ReflectConfigGenerator.main(new String[]{DBPropertyTypeHandler.class.getName(), output.toString(), classes.toString()});
+
+		String config = new String(Files.readAllBytes(output), StandardCharsets.UTF_8);
+		assertThat(config, containsString("\"name\" : \"" + Account.class.getName() + "\""));
+		assertThat(config, containsString("\"name\" : \"" + PropertySnapshotTest.Other.class.getName() + "\""));
+		assertThat(config, not(containsString("\"name\" : \"" + ReflectConfigGeneratorTest.class.getName() + "\"")));
+	}
+}
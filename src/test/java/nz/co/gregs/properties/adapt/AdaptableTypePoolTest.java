@@ -0,0 +1,48 @@
+package nz.co.gregs.properties.adapt;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AdaptableTypePoolTest {
+
+	@Test
+	public void reusesReleasedInstances() {
+		StringProperty first = AdaptableTypePool.acquire(StringProperty.class);
+		first.setValue("used");
+		int pooled = AdaptableTypePool.pooled(StringProperty.class);
+		AdaptableTypePool.release(first);
+		assertThat(AdaptableTypePool.pooled(StringProperty.class), is(pooled + 1));
+
+		StringProperty second = AdaptableTypePool.acquire(StringProperty.class);
+		assertThat(second, is(sameInstance(first)));
+		assertThat(second.getValue(), is(nullValue()));
+		assertThat(second.getPropertyDefinition(), is(nullValue()));
+		assertThat(AdaptableTypePool.acquire(StringProperty.class), is(not(sameInstance(first))));
+	}
+
+	@Test
+	public void keepsAPoolForEachThread() throws Exception {
+		StringProperty released = AdaptableTypePool.acquire(StringProperty.class);
+		AdaptableTypePool.release(released);
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			StringProperty other = executor.submit(() -> AdaptableTypePool.acquire(StringProperty.class)).get();
+			assertThat(other, is(not(sameInstance(released))));
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void limitsTheInstancesKept() {
+		for (int i = 0; i < AdaptableTypePool.MAXIMUM_POOLED + 10; i++) {
+			AdaptableTypePool.release(new StringProperty());
+		}
+		assertThat(AdaptableTypePool.pooled(StringProperty.class), is(AdaptableTypePool.MAXIMUM_POOLED));
+		AdaptableTypePool.release(null);
+	}
+}
@@ -0,0 +1,93 @@
+package nz.co.gregs.properties.adapt;
+
+import nz.co.gregs.properties.Allocations;
+import nz.co.gregs.properties.JavaProperty;
+import nz.co.gregs.properties.JavaPropertyFinder;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.adapt.AdaptableTypeSyncer.SafeInternalAdaptableTypeAdaptor;
+import nz.co.gregs.properties.adapt.SafeOneWaySimpleTypeAdaptor.Direction;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class AdaptableTypeSyncerTest {
+
+	@Test
+	public void repeatedSyncsAllocateNothing() {
+		PropertyTypeHandler handler = new DBPropertyTypeHandler(propertyOf(Holder.class, "field"), false);
+		Holder target = new Holder();
+		long perSync = Allocations.allocatedPerRun(100_000, () -> handler.getJavaPropertyAsAdaptableType(target));
+		assertThat("bytes allocated per sync", perSync, is(lessThan(8L)));
+	}
+
+	@Test
+	public void convertingManySharedSourcesIsNotQuadratic() {
+		SafeOneWaySimpleTypeAdaptor simpleTypeAdaptor = new SafeOneWaySimpleTypeAdaptor("field", new SameString(), Direction.TO_INTERNAL, String.class, String.class);
+		SafeInternalAdaptableTypeAdaptor adaptor = new SafeInternalAdaptableTypeAdaptor(StringProperty.class, simpleTypeAdaptor);
+		double one = nanosPerSource(adaptor, 1);
+		double ten = nanosPerSource(adaptor, 10);
+		double thousand = nanosPerSource(adaptor, 1000);
+		String timings = String.format("ns per source: 1=%.1f, 10=%.1f, 1000=%.1f", one, ten, thousand);
+		// quadratic growth would make each of 1000 sources 100 times slower than each of 10
+		assertThat(timings, thousand, is(lessThan(ten * 20)));
+	}
+
+	/**
+	 * Converts each of the sources twice, as sources shared by several
+	 * properties are, then resets the adaptor, and returns the best time per
+	 * source over several tries.
+	 */
+	private static double nanosPerSource(SafeInternalAdaptableTypeAdaptor adaptor, int sourceCount) {
+		StringProperty[] sources = new StringProperty[sourceCount];
+		for (int i = 0; i < sourceCount; i++) {
+			sources[i] = new StringProperty("value" + i);
+		}
+		int repeats = Math.max(1, 100_000 / sourceCount);
+		long best = Long.MAX_VALUE;
+		for (int attempt = 0; attempt < 5; attempt++) {
+			long start = System.nanoTime();
+			for (int r = 0; r < repeats; r++) {
+				for (StringProperty source : sources) {
+					adaptor.convert(source);
+				}
+				for (StringProperty source : sources) {
+					adaptor.convert(source);
+				}
+				adaptor.reset();
+			}
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return (double) best / repeats / sourceCount;
+	}
+
+	private static JavaProperty propertyOf(Class<?> clazz, String javaPropertyName) {
+		for (JavaProperty property : new JavaPropertyFinder().getPropertiesOf(clazz)) {
+			if (property.name().equals(javaPropertyName)) {
+				return property;
+			}
+		}
+		throw new IllegalArgumentException("No public property found with java name '" + javaPropertyName + "'");
+	}
+
+	public static class Holder extends PropertyContainerImpl {
+
+		@AdaptType(SameString.class)
+		public StringProperty field = new StringProperty("value");
+	}
+
+	@Stateless
+	public static class SameString implements TypeAdaptor<String, String> {
+
+		@Override
+		public String fromInternalValue(String internalValue) {
+			return internalValue;
+		}
+
+		@Override
+		public String fromExternalValue(String externalValue) {
+			return externalValue;
+		}
+	}
+}
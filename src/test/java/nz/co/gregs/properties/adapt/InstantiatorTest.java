@@ -0,0 +1,106 @@
+package nz.co.gregs.properties.adapt;
+
+import nz.co.gregs.properties.Allocations;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.exceptions.DBThrownByEndUserCodeException;
+import nz.co.gregs.properties.exceptions.PropertyException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class InstantiatorTest {
+
+	private static Object created;
+
+	@Test
+	public void createsNewInstancesFromACachedInstantiator() {
+		Instantiator<IntegerProperty> instantiator = Instantiator.of(IntegerProperty.class);
+		assertThat(Instantiator.of(IntegerProperty.class), is(sameInstance(instantiator)));
+		assertThat(instantiator.isInstantiable(), is(true));
+		IntegerProperty first = instantiator.newInstance();
+		IntegerProperty second = instantiator.newInstance();
+		assertThat(first, is(not(sameInstance(second))));
+		assertThat(first.getValue(), is(nullValue()));
+	}
+
+	@Test
+	public void allocatesOnlyTheNewInstance() {
+		Instantiator<IntegerProperty> instantiator = Instantiator.of(IntegerProperty.class);
+		long perInstance = Allocations.allocatedPerRun(100_000, () -> created = instantiator.newInstance());
+		long perConstructorCall = Allocations.allocatedPerRun(100_000, () -> created = new IntegerProperty());
+		assertThat("bytes allocated per instance", perInstance, is(lessThanOrEqualTo(perConstructorCall)));
+	}
+
+	@Test
+	public void usesPrivateConstructors() {
+		assertThat(Instantiator.of(Hidden.class).newInstance(), is(instanceOf(Hidden.class)));
+	}
+
+	@Test
+	public void requiresPublicConstructorsWhenAsked() {
+		Instantiator<Hidden> instantiator = Instantiator.ofPublic(Hidden.class);
+		assertThat(instantiator, is(not(sameInstance(Instantiator.of(Hidden.class)))));
+		assertThat(instantiator.isInstantiable(), is(false));
+		assertThat(instantiator.getProblem(), is(instanceOf(NoSuchMethodException.class)));
+		assertThat(Instantiator.ofPublic(IntegerProperty.class).newInstance(), is(instanceOf(IntegerProperty.class)));
+	}
+
+	@Test
+	public void reportsClassesWithoutADefaultConstructor() {
+		Instantiator<NoDefault> instantiator = Instantiator.of(NoDefault.class);
+		assertThat(instantiator.isInstantiable(), is(false));
+		assertThat(instantiator.getProblem(), is(instanceOf(NoSuchMethodException.class)));
+		assertThat(Instantiator.of(AdaptableType.class).isInstantiable(), is(false));
+		try {
+			instantiator.newInstance();
+			fail("instantiated a class without a default constructor");
+		} catch (PropertyException expected) {
+		}
+	}
+
+	@Test
+	public void wrapsExceptionsThrownByTheConstructor() {
+		try {
+			Instantiator.of(Failing.class).newInstance();
+			fail("constructor exception was lost");
+		} catch (DBThrownByEndUserCodeException expected) {
+			assertThat(expected.getCause(), is(instanceOf(IllegalStateException.class)));
+		}
+	}
+
+	@Test
+	public void rethrowsErrorsThrownByTheConstructor() {
+		try {
+			Instantiator.of(Erring.class).newInstance();
+			fail("constructor error was lost");
+		} catch (AssertionError expected) {
+			assertThat(expected.getMessage(), is("erred"));
+		}
+	}
+
+	private static class Hidden {
+
+		private Hidden() {
+		}
+	}
+
+	public static class NoDefault {
+
+		public NoDefault(int value) {
+		}
+	}
+
+	public static class Erring {
+
+		public Erring() {
+			throw new AssertionError("erred");
+		}
+	}
+
+	public static class Failing {
+
+		public Failing() {
+			throw new IllegalStateException("failed");
+		}
+	}
+}
@@ -0,0 +1,48 @@
+package nz.co.gregs.properties.adapt;
+
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class ObservedAdaptableTypesTest {
+
+	@Test
+	public void findsTargetsByIdentity() {
+		for (int count : new int[]{1, 4, 5, 10, 1000}) {
+			ObservedAdaptableTypes observed = new ObservedAdaptableTypes();
+			AdaptableType[] sources = new AdaptableType[count];
+			AdaptableType[] targets = new AdaptableType[count];
+			for (int i = 0; i < count; i++) {
+				// equal values, so only identity tells them apart
+				sources[i] = new StringProperty("same");
+				targets[i] = new IntegerProperty(i);
+				observed.put(sources[i], targets[i]);
+			}
+			assertThat(observed.size(), is(count));
+			for (int i = 0; i < count; i++) {
+				assertThat(observed.get(sources[i]), is(sameInstance(targets[i])));
+			}
+			assertThat(observed.get(new StringProperty("same")), is(nullValue()));
+		}
+	}
+
+	@Test
+	public void forgetsEverythingWhenCleared() {
+		ObservedAdaptableTypes observed = new ObservedAdaptableTypes();
+		StringProperty kept = new StringProperty();
+		for (int round = 0; round < 3; round++) {
+			for (int i = 0; i < 600; i++) {
+				observed.put(new StringProperty(), new StringProperty());
+			}
+			observed.put(kept, kept);
+			assertThat(observed.get(kept), is(sameInstance((AdaptableType) kept)));
+			observed.clear();
+			assertThat(observed.size(), is(0));
+			assertThat(observed.get(kept), is(nullValue()));
+		}
+		observed.put(kept, kept);
+		assertThat(observed.size(), is(1));
+	}
+}
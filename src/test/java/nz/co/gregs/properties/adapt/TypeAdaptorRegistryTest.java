@@ -0,0 +1,123 @@
+package nz.co.gregs.properties.adapt;
+
+import nz.co.gregs.properties.JavaProperty;
+import nz.co.gregs.properties.JavaPropertyFinder;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.exceptions.InvalidDeclaredTypeException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class TypeAdaptorRegistryTest {
+
+	private final DBPropertyTypeHandler handler = new DBPropertyTypeHandler();
+
+	@Test
+	public void sharesStatelessAdaptors() {
+		TypeAdaptor<?, ?> first = adaptorOf(handler, First.class, "shared");
+		TypeAdaptor<?, ?> second = adaptorOf(new DBPropertyTypeHandler(), Second.class, "shared");
+		assertThat(first, is(instanceOf(StatelessAdaptor.class)));
+		assertThat(second, is(sameInstance((Object) first)));
+		assertThat(handler.getTypeAdaptorRegistry().getAdaptor(StatelessAdaptor.class), is(sameInstance((Object) first)));
+	}
+
+	@Test
+	public void createsStatefulAdaptorsForEachProperty() {
+		TypeAdaptor<?, ?> first = adaptorOf(handler, First.class, "own");
+		TypeAdaptor<?, ?> second = adaptorOf(handler, Second.class, "own");
+		assertThat(second, is(not(sameInstance((Object) first))));
+		assertThat(handler.getTypeAdaptorRegistry().getAdaptor(StatefulAdaptor.class), is(nullValue()));
+	}
+
+	@Test
+	public void usesRegisteredAdaptors() {
+		PrefixAdaptor configured = new PrefixAdaptor("#") {
+		};
+		assertThat(handler.getTypeAdaptorRegistry().register(PrefixAdaptor.class, configured), is(nullValue()));
+		TypeAdaptor<?, ?> adaptor = adaptorOf(handler, First.class, "prefixed");
+		assertThat(adaptor, is(sameInstance((Object) configured)));
+		assertThat(configured.fromInternalValue("a"), is("#a"));
+	}
+
+	@Test
+	public void scopesRegisteredAdaptorsToTheirHandler() {
+		StatelessAdaptor configured = new StatelessAdaptor();
+		handler.getTypeAdaptorRegistry().register(StatelessAdaptor.class, configured);
+		assertThat(adaptorOf(handler, First.class, "shared"), is(sameInstance((Object) configured)));
+		assertThat(adaptorOf(new DBPropertyTypeHandler(), First.class, "shared"), is(not(sameInstance((Object) configured))));
+		try {
+			adaptorOf(new DBPropertyTypeHandler(), First.class, "prefixed");
+			fail("used an adaptor registered with another handler");
+		} catch (InvalidDeclaredTypeException expected) {
+		}
+	}
+
+	@Test(expected = InvalidDeclaredTypeException.class)
+	public void rejectsAbstractAdaptorsThatAreNotRegistered() {
+		adaptorOf(handler, First.class, "prefixed");
+	}
+
+	private static TypeAdaptor<Object, Object> adaptorOf(PropertyTypeHandler handler, Class<?> type, String name) {
+		for (JavaProperty property : new JavaPropertyFinder().getPropertiesOf(type)) {
+			if (property.name().equals(name)) {
+				return handler.newHandlerFor(property, false).getTypeAdaptor();
+			}
+		}
+		throw new IllegalArgumentException(name);
+	}
+
+	public static class First extends PropertyContainerImpl {
+
+		@AdaptType(StatelessAdaptor.class)
+		public String shared;
+		@AdaptType(StatefulAdaptor.class)
+		public String own;
+		@AdaptType(PrefixAdaptor.class)
+		public String prefixed;
+	}
+
+	public static class Second extends PropertyContainerImpl {
+
+		@AdaptType(StatelessAdaptor.class)
+		public String shared;
+		@AdaptType(StatefulAdaptor.class)
+		public String own;
+	}
+
+	@Stateless
+	public static class StatelessAdaptor implements TypeAdaptor<String, String> {
+
+		@Override
+		public String fromInternalValue(String internalValue) {
+			return internalValue;
+		}
+
+		@Override
+		public String fromExternalValue(String externalValue) {
+			return externalValue;
+		}
+	}
+
+	public static class StatefulAdaptor extends StatelessAdaptor {
+	}
+
+	public abstract static class PrefixAdaptor implements TypeAdaptor<String, String> {
+
+		private final String prefix;
+
+		protected PrefixAdaptor(String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public String fromInternalValue(String internalValue) {
+			return internalValue == null ? null : prefix + internalValue;
+		}
+
+		@Override
+		public String fromExternalValue(String externalValue) {
+			return externalValue == null || !externalValue.startsWith(prefix) ? externalValue : externalValue.substring(prefix.length());
+		}
+	}
+}
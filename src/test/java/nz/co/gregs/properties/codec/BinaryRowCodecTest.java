@@ -0,0 +1,159 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class BinaryRowCodecTest {
+
+	private final BinaryRowCodec<SampleRow> codec = new BinaryRowCodec<>(SampleRow.class, SampleRow.FACTORY);
+
+	private static SampleRow sample(long uid) {
+		SampleRow row = new SampleRow();
+		row.uid.setValue(uid);
+		row.price.setValue(12.5);
+		row.name.setValue("caf\u00e9 \ud83d\ude00 " + uid);
+		row.created.setValue(new Date(1500000000000L + uid));
+		row.setCount((int) uid * 2);
+		return row;
+	}
+
+	private static void assertSameValues(SampleRow actual, SampleRow expected) {
+		assertThat(actual.uid.getValue(), is(expected.uid.getValue()));
+		assertThat(actual.price.getValue(), is(expected.price.getValue()));
+		assertThat(actual.name.getValue(), is(expected.name.getValue()));
+		assertThat(actual.created.getValue(), is(expected.created.getValue()));
+		assertThat(actual.getCount(), is(expected.getCount()));
+	}
+
+	@Test
+	public void roundTripsRowThroughBuffer() {
+		SampleRow row = sample(-42);
+		ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(row));
+		codec.encode(row, buffer);
+		assertThat(buffer.remaining(), is(0));
+		buffer.flip();
+		SampleRow decoded = codec.decode(buffer);
+		assertThat(buffer.remaining(), is(0));
+		assertSameValues(decoded, row);
+	}
+
+	@Test
+	public void roundTripsNullsAndDirectLittleEndianBuffers() {
+		SampleRow row = new SampleRow();
+		row.name.setValue("only name");
+		ByteBuffer buffer = ByteBuffer.allocateDirect(64).order(ByteOrder.LITTLE_ENDIAN);
+		codec.encode(row, buffer);
+		buffer.flip();
+		SampleRow target = sample(7);
+		codec.decode(buffer, target);
+		assertThat(target.uid.isNull(), is(true));
+		assertThat(target.price.isNull(), is(true));
+		assertThat(target.created.isNull(), is(true));
+		assertThat(target.getCount(), is(nullValue()));
+		assertThat(target.name.getValue(), is("only name"));
+	}
+
+	@Test
+	public void encodesSmallNumbersCompactly() {
+		SampleRow row = new SampleRow();
+		row.uid.setValue(1);
+		// fingerprint + 1 byte bitmap + 1 byte varint
+		assertThat(codec.encodedSize(row), is(10));
+	}
+
+	@Test
+	public void roundTripsListsThroughStreams() throws Exception {
+		List<SampleRow> rows = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			rows.add(sample(i * 1000003L));
+		}
+		rows.add(new SampleRow());
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		codec.encodeAll(rows, out);
+		out.write(99);
+
+		ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray());
+		List<SampleRow> decoded = codec.decodeAll(in);
+		assertThat(decoded.size(), is(rows.size()));
+		for (int i = 0; i < rows.size(); i++) {
+			assertSameValues(decoded.get(i), rows.get(i));
+		}
+		assertThat(in.read(), is(99));
+	}
+
+	@Test
+	public void rejectsRowsOfOtherSchemas() {
+		BinaryRowCodec<OtherRow> otherCodec = new BinaryRowCodec<>(OtherRow.class, SampleRow.FACTORY);
+		assertThat(otherCodec.schemaFingerprint(), is(not(codec.schemaFingerprint())));
+		OtherRow other = new OtherRow();
+		ByteBuffer buffer = ByteBuffer.allocate(otherCodec.encodedSize(other));
+		otherCodec.encode(other, buffer);
+		buffer.flip();
+		try {
+			codec.decode(buffer);
+			fail("decoded row of another schema");
+		} catch (PropertyCodecException expected) {
+			assertThat(expected.getMessage(), containsString("fingerprint"));
+		}
+	}
+
+	@Test(expected = PropertyCodecException.class)
+	public void rejectsTruncatedRows() {
+		SampleRow row = sample(3);
+		ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(row));
+		codec.encode(row, buffer);
+		buffer.flip();
+		buffer.limit(buffer.limit() - 3);
+		codec.decode(buffer);
+	}
+
+	@Test(expected = PropertyCodecException.class)
+	public void rejectsRowsEndingAfterTheFingerprint() {
+		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		buffer.putLong(codec.schemaFingerprint());
+		buffer.flip();
+		codec.decode(buffer);
+	}
+
+	@Test(expected = PropertyCodecException.class)
+	public void rejectsNegativeStringLengths() {
+		SampleRow row = new SampleRow();
+		row.name.setValue("name");
+		ByteBuffer buffer = ByteBuffer.allocate(codec.encodedSize(row) + 10);
+		codec.encode(row, buffer);
+		// keep the fingerprint and bitmap, then a ten byte varint of -1
+		buffer.position(Long.BYTES + 1);
+		for (int i = 0; i < 9; i++) {
+			buffer.put((byte) 0xff);
+		}
+		buffer.put((byte) 0x01);
+		buffer.flip();
+		codec.decode(buffer);
+	}
+
+	@Test(expected = PropertyCodecException.class)
+	public void rejectsOverlongRowLengths() throws Exception {
+		ByteBuffer stream = ByteBuffer.allocate(Long.BYTES + 5);
+		stream.putLong(codec.schemaFingerprint());
+		// a fifth byte with bits beyond those of an int
+		stream.put(new byte[]{(byte) 0x81, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x10});
+		codec.decodeAll(new ByteArrayInputStream(stream.array()));
+	}
+
+	public static class OtherRow extends PropertyContainerImpl {
+
+		public IntegerProperty uid = new IntegerProperty();
+		public IntegerProperty name = new IntegerProperty();
+	}
+}
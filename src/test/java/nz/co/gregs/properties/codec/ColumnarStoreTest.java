@@ -0,0 +1,146 @@
+package nz.co.gregs.properties.codec;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import nz.co.gregs.properties.PropertyContainerClass;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ColumnarStoreTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static SampleRow sample(long uid, String name) {
+		SampleRow row = new SampleRow();
+		row.uid.setValue(uid);
+		row.price.setValue(uid / 4.0);
+		row.name.setValue(name);
+		row.created.setValue(new Date(1500000000123L + uid));
+		row.setCount((int) uid);
+		return row;
+	}
+
+	private static void assertSame(SampleRow actual, SampleRow expected) {
+		assertThat(actual.uid.getValue(), is(expected.uid.getValue()));
+		assertThat(actual.price.getValue(), is(expected.price.getValue()));
+		assertThat(actual.name.getValue(), is(expected.name.getValue()));
+		assertThat(actual.created.getValue(), is(expected.created.getValue()));
+		assertThat(actual.getCount(), is(expected.getCount()));
+	}
+
+	@Test
+	public void readsWhatItAppends() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		SampleRow[] rows = {sample(1, "caf\u00e9"), new SampleRow(), sample(-3, ""), sample(4, null)};
+		try (ColumnarStore<SampleRow> store = ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY)) {
+			for (int i = 0; i < rows.length; i++) {
+				assertThat(store.append(rows[i]), is((long) i));
+			}
+			assertThat(store.size(), is(4L));
+			for (int i = rows.length - 1; i >= 0; i--) {
+				assertSame(store.get(i), rows[i]);
+			}
+			SampleRow reused = sample(9, "overwritten");
+			assertThat(store.get(1, reused), sameInstance(reused));
+			assertSame(reused, rows[1]);
+		}
+	}
+
+	@Test
+	public void reopensFlushedRows() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		int count = 20001;
+		try (ColumnarStore<SampleRow> store = ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY)) {
+			for (int i = 0; i < count; i++) {
+				store.append(i % 7 == 0 ? new SampleRow() : sample(i, "row " + i));
+			}
+		}
+		try (ColumnarStore<SampleRow> store = ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY)) {
+			assertThat(store.size(), is((long) count));
+			assertSame(store.get(count - 1), sample(count - 1, "row " + (count - 1)));
+			assertSame(store.get(7 * 100), new SampleRow());
+			store.append(sample(-1, "appended"));
+			assertSame(store.get(count), sample(-1, "appended"));
+		}
+	}
+
+	@Test
+	public void discardsRowsThatWereNotFlushed() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		ColumnarStore<SampleRow> store = ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY);
+		store.append(sample(1, "kept"));
+		store.flush();
+		store.append(sample(2, "lost"));
+		store.get(1);
+		// reopen as if the process had died before the row count was written
+		try (ColumnarStore<SampleRow> reopened = ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY)) {
+			assertThat(reopened.size(), is(1L));
+			assertSame(reopened.get(0), sample(1, "kept"));
+			reopened.append(sample(3, "next"));
+			assertSame(reopened.get(1), sample(3, "next"));
+		}
+	}
+
+	@Test
+	public void scansWithAReusableView() throws Exception {
+		PropertyContainerClass wrapper = SampleRow.FACTORY.classWrapperFor(SampleRow.class);
+		PropertyDefinition uid = wrapper.getPropertyDefinitionByName("uid");
+		PropertyDefinition price = wrapper.getPropertyDefinitionByName("price");
+		PropertyDefinition name = wrapper.getPropertyDefinitionByName("name");
+		PropertyDefinition created = wrapper.getPropertyDefinitionByName("created");
+		try (ColumnarStore<SampleRow> store = ColumnarStore.open(folder.getRoot().toPath(), SampleRow.class, SampleRow.FACTORY)) {
+			for (int i = 0; i < 100; i++) {
+				store.append(i == 50 ? new SampleRow() : sample(i, "n" + i));
+			}
+			ColumnarStore<SampleRow>.RowView view = store.view();
+			long sum = 0;
+			int nulls = 0;
+			while (view.next()) {
+				if (view.isNull(uid)) {
+					nulls++;
+					assertThat(view.getString(name), is(nullValue()));
+					assertThat(view.getDate(created), is(nullValue()));
+				} else {
+					sum += view.getLong(uid);
+					assertThat(view.getDouble(price), is(view.row() / 4.0));
+				}
+			}
+			assertThat(sum, is(4950L - 50));
+			assertThat(nulls, is(1));
+			view.moveTo(42);
+			assertThat(view.getString(name), is("n42"));
+			assertThat(view.getValue(uid), is((Object) 42L));
+			assertThat(view.getDate(created), is(new Date(1500000000123L + 42)));
+			try {
+				view.getString(uid);
+				fail("read a long column as a String");
+			} catch (PropertyCodecException expected) {
+			}
+		}
+	}
+
+	@Test
+	public void rejectsStoresOfADifferentClassVersion() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		try (ColumnarStore<SampleRow> store = ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY)) {
+			store.append(sample(1, "a"));
+		}
+		Path metadata = directory.resolve(SampleRow.class.getName()).resolve("store.meta");
+		byte[] bytes = Files.readAllBytes(metadata);
+		bytes[8] ^= 1;
+		Files.write(metadata, bytes);
+		try {
+			ColumnarStore.open(directory, SampleRow.class, SampleRow.FACTORY);
+			fail("opened a store with a different fingerprint");
+		} catch (PropertyCodecException expected) {
+			assertThat(expected.getMessage(), containsString("different version"));
+		}
+	}
+}
@@ -0,0 +1,165 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.BufferedWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvRowCodecTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private final CsvRowCodec<SampleRow> codec = new CsvRowCodec<>(SampleRow.class, SampleRow.FACTORY);
+
+	private static SampleRow sample(long uid, String name) {
+		SampleRow row = new SampleRow();
+		row.uid.setValue(uid);
+		row.price.setValue(uid / 4.0);
+		row.name.setValue(name);
+		row.created.setValue(new Date(1500000000123L + uid));
+		row.setCount((int) uid);
+		return row;
+	}
+
+	@Test
+	public void writesHeaderAndQuotedFields() throws Exception {
+		StringBuilder csv = new StringBuilder();
+		SampleRow empty = new SampleRow();
+		empty.name.setValue("");
+		codec.writeAll(Arrays.asList(sample(1, "say \"hi\", bob"), empty), csv);
+		assertThat(csv.toString(), is("uid,price,name,created,count\r\n"
+				+ "1,0.25,\"say \"\"hi\"\", bob\",2017-07-14T02:40:00.124Z,1\r\n"
+				+ ",,\"\",,\r\n"));
+	}
+
+	@Test
+	public void readsWhatItWrites() throws Exception {
+		List<SampleRow> rows = Arrays.asList(sample(1, "line\nbreak"), sample(-2, "caf\u00e9"), new SampleRow(), sample(3, ""));
+		StringBuilder csv = new StringBuilder();
+		codec.writeAll(rows, csv);
+		List<SampleRow> read = new ArrayList<>();
+		codec.iterator(new StringReader(csv.toString())).forEachRemaining(read::add);
+		assertThat(read.size(), is(rows.size()));
+		for (int i = 0; i < rows.size(); i++) {
+			assertThat(read.get(i).uid.getValue(), is(rows.get(i).uid.getValue()));
+			assertThat(read.get(i).price.getValue(), is(rows.get(i).price.getValue()));
+			assertThat(read.get(i).name.getValue(), is(rows.get(i).name.getValue()));
+			assertThat(read.get(i).created.getValue(), is(rows.get(i).created.getValue()));
+			assertThat(read.get(i).getCount(), is(rows.get(i).getCount()));
+		}
+	}
+
+	@Test
+	public void mapsHeaderColumnsByName() throws Exception {
+		String csv = "\ufeffNAME\tignored\tuid\n\nbob\tx\t7\nmary\n";
+		CsvRowCodec<SampleRow> tabs = new CsvRowCodec<>(SampleRow.class, SampleRow.FACTORY, '\t');
+		try (Stream<SampleRow> rows = tabs.stream(new StringReader(csv))) {
+			List<SampleRow> read = rows.collect(Collectors.toList());
+			assertThat(read.size(), is(2));
+			assertThat(read.get(0).name.getValue(), is("bob"));
+			assertThat(read.get(0).uid.getValue(), is(7L));
+			assertThat(read.get(1).name.getValue(), is("mary"));
+			assertThat(read.get(1).uid.isNull(), is(true));
+		}
+	}
+
+	@Test
+	public void fallsBackToTheStringSetterOfTheProperty() throws Exception {
+		SimpleDateFormat format = new SimpleDateFormat();
+		Date date = format.parse(format.format(new Date()));
+		String csv = "created\n\"" + format.format(date) + "\"\n";
+		Iterator<SampleRow> rows = codec.iterator(new StringReader(csv));
+		assertThat(rows.next().created.getValue(), is(date));
+	}
+
+	@Test
+	public void rejectsInvalidValues() throws Exception {
+		Iterator<SampleRow> rows = codec.iterator(new StringReader("uid,name\n1,a\nx,b\n"));
+		rows.next();
+		try {
+			rows.next();
+			fail("accepted invalid uid");
+		} catch (PropertyCodecException expected) {
+			assertThat(expected.getMessage(), containsString("record 3"));
+		}
+	}
+
+	@Test
+	public void streamsLargeFilesInParallel() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("rows.csv");
+		int count = 60000;
+		try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			codec.writeHeader(out);
+			for (int i = 0; i < count; i++) {
+				codec.write(sample(i, "name \u00e9\u4e2d " + i), out);
+			}
+		}
+		assertThat(Files.size(file), greaterThan(3L * 1024 * 1024));
+		long expectedSum = (long) count * (count - 1) / 2;
+		try (Stream<SampleRow> rows = codec.stream(file, true)) {
+			assertThat(rows.mapToLong(row -> row.uid.getValue()).sum(), is(expectedSum));
+		}
+		try (Stream<SampleRow> rows = codec.stream(file, false)) {
+			List<SampleRow> read = rows.collect(Collectors.toList());
+			assertThat(read.size(), is(count));
+			assertThat(read.get(count - 1).name.getValue(), is("name \u00e9\u4e2d " + (count - 1)));
+		}
+	}
+
+	@Test
+	public void mappedReaderDecodesAcrossWindows() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("text.txt");
+		StringBuilder text = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			text.append("a\u00e9\u4e2d\ud83d\ude00");
+		}
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Reader reader = new MappedFileReader(channel, 0, channel.size(), 7);
+			StringBuilder read = new StringBuilder();
+			char[] chars = new char[5];
+			int n;
+			while ((n = reader.read(chars, 0, chars.length)) >= 0) {
+				read.append(chars, 0, n);
+			}
+			assertThat(read.toString(), is(text.toString()));
+		}
+	}
+
+	@Test(timeout = 10_000)
+	public void mappedReaderReadsSupplementaryCharactersOneCharAtATime() throws Exception {
+		Path file = folder.getRoot().toPath().resolve("text.txt");
+		String text = "a\ud83d\ude00\u00e9\ud83d\ude00";
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			Reader reader = new MappedFileReader(channel, 0, channel.size(), 7);
+			StringBuilder read = new StringBuilder();
+			char[] chars = new char[1];
+			int n;
+			while ((n = reader.read(chars, 0, 1)) >= 0) {
+				assertThat(n, is(1));
+				read.append(chars[0]);
+			}
+			assertThat(read.toString(), is(text));
+		}
+	}
+}
@@ -0,0 +1,151 @@
+package nz.co.gregs.properties.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import nz.co.gregs.properties.Allocations;
+import nz.co.gregs.properties.exceptions.PropertyCodecException;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class JsonRowCodecTest {
+
+	private final JsonRowCodec<SampleRow> codec = new JsonRowCodec<>(SampleRow.class, SampleRow.FACTORY);
+
+	private static SampleRow sample(long uid) {
+		SampleRow row = new SampleRow();
+		row.uid.setValue(uid);
+		row.price.setValue(12.5);
+		row.name.setValue("say \"caf\u00e9\"\n\ud83d\ude00");
+		row.created.setValue(new Date(1500000000000L));
+		row.setCount(7);
+		return row;
+	}
+
+	@Test
+	public void writesPropertiesAsJsonMembers() throws Exception {
+		StringBuilder json = new StringBuilder();
+		codec.write(sample(3), json);
+		assertThat(json.toString(), is("{\"uid\":3,\"price\":12.5,\"name\":\"say \\\"caf\u00e9\\\"\\n\ud83d\ude00\","
+				+ "\"created\":1500000000000,\"count\":\"7\"}"));
+
+		SampleRow empty = new SampleRow();
+		json.setLength(0);
+		codec.write(empty, json);
+		assertThat(json.toString(), is("{\"uid\":null,\"price\":null,\"name\":null,\"created\":null,\"count\":null}"));
+	}
+
+	@Test
+	public void writesTheSameJsonAsUtf8Bytes() throws Exception {
+		List<SampleRow> rows = Arrays.asList(sample(1), new SampleRow(), sample(-2));
+		StringBuilder chars = new StringBuilder();
+		codec.writeAll(rows, chars);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		codec.writeAll(rows, bytes);
+		assertThat(new String(bytes.toByteArray(), StandardCharsets.UTF_8), is(chars.toString()));
+	}
+
+	@Test
+	public void allocatesLittlePerRow() throws Exception {
+		SampleRow row = sample(123456);
+		row.name.setValue("plain name");
+		List<SampleRow> rows = Collections.nCopies(1000, row);
+		StringBuilder chars = new StringBuilder();
+		long charsPerRow = Allocations.allocatedPerRun(20, () -> {
+			chars.setLength(0);
+			writeAll(rows, chars);
+		}) / rows.size();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		long bytesPerRow = Allocations.allocatedPerRun(20, () -> {
+			bytes.reset();
+			writeAll(rows, bytes);
+		}) / rows.size();
+		String json = chars.toString();
+		long readPerRow = Allocations.allocatedPerRun(20, () -> readAll(json)) / rows.size();
+		String allocations = "bytes allocated per row: written as chars=" + charsPerRow + ", as bytes=" + bytesPerRow + ", read=" + readPerRow;
+		// writing only allocates the text of numbers, and reading the container and its values
+		assertThat(allocations, charsPerRow, is(lessThan(512L)));
+		assertThat(allocations, bytesPerRow, is(lessThan(512L)));
+		assertThat(allocations, readPerRow, is(lessThan(1024L)));
+	}
+
+	private void writeAll(List<SampleRow> rows, Appendable out) {
+		try {
+			codec.writeAll(rows, out);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private void writeAll(List<SampleRow> rows, OutputStream out) {
+		try {
+			codec.writeAll(rows, out);
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private void readAll(String json) {
+		try {
+			codec.readAll(new StringReader(json), row -> {
+			});
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Test
+	public void readsWhatItWrites() throws Exception {
+		SampleRow row = sample(-99);
+		StringBuilder json = new StringBuilder();
+		codec.write(row, json);
+		SampleRow read = codec.read(json);
+		assertThat(read.uid.getValue(), is(-99L));
+		assertThat(read.price.getValue(), is(12.5));
+		assertThat(read.name.getValue(), is(row.name.getValue()));
+		assertThat(read.created.getValue(), is(row.created.getValue()));
+		assertThat(read.getCount(), is(7));
+	}
+
+	@Test
+	public void readsArraysSkippingUnknownMembers() throws Exception {
+		String json = " [ {\"uid\" : 1, \"extra\": {\"a\": [1, 2.5e3, true, null, \"x\"]}, \"name\": \"\\u0041b\\/c\"},\n"
+				+ "{\"price\": 1e2, \"uid\": 2.0, \"count\": \"12\"}, {} ] ";
+		List<SampleRow> rows = codec.readAll(new StringReader(json));
+		assertThat(rows.size(), is(3));
+		assertThat(rows.get(0).uid.getValue(), is(1L));
+		assertThat(rows.get(0).name.getValue(), is("Ab/c"));
+		assertThat(rows.get(1).uid.getValue(), is(2L));
+		assertThat(rows.get(1).price.getValue(), is(100.0));
+		assertThat(rows.get(1).getCount(), is(12));
+		assertThat(rows.get(2).uid.isNull(), is(true));
+	}
+
+	@Test
+	public void readsIntoExistingContainers() throws Exception {
+		SampleRow row = sample(5);
+		codec.read(new StringReader("{\"name\":null,\"uid\":6}"), row);
+		assertThat(row.uid.getValue(), is(6L));
+		assertThat(row.name.isNull(), is(true));
+		assertThat(row.price.getValue(), is(12.5));
+	}
+
+	@Test
+	public void rejectsMalformedJson() {
+		for (String json : new String[]{"{\"uid\":1", "{\"uid\" 1}", "{\"uid\":1}x", "{\"name\":3}", "{\"uid\":1.5}", "{\"price\":-}", "{\"price\":1e}", "{\"uid\":-}"}) {
+			try {
+				codec.read(json);
+				fail("accepted " + json);
+			} catch (PropertyCodecException expected) {
+			}
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package nz.co.gregs.properties.codec;
+
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.TypeAdaptor;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.DateProperty;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.NumberProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.examples.StringProperty;
+
+/**
+ * A container with one property of each supported encoding, shared by the
+ * codec tests.
+ */
+public class SampleRow extends PropertyContainerImpl {
+
+	static final PropertyContainerWrapperFactory FACTORY = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+
+	public IntegerProperty uid = new IntegerProperty();
+	public NumberProperty price = new NumberProperty();
+	public StringProperty name = new StringProperty();
+	public DateProperty created = new DateProperty();
+	private Integer count;
+
+	@AdaptType(value = IntegerStringAdaptor.class)
+	public Integer getCount() {
+		return count;
+	}
+
+	@AdaptType(value = IntegerStringAdaptor.class)
+	public void setCount(Integer count) {
+		this.count = count;
+	}
+
+	public static class IntegerStringAdaptor implements TypeAdaptor<Integer, String> {
+
+		@Override
+		public Integer fromInternalValue(String internalValue) {
+			return (internalValue == null) ? null : Integer.valueOf(internalValue);
+		}
+
+		@Override
+		public String fromExternalValue(Integer externalValue) {
+			return (externalValue == null) ? null : externalValue.toString();
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import static nz.co.gregs.properties.query.Aggregate.*;
+import static nz.co.gregs.properties.query.Order.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class GroupByTest {
+
+	private final List<Order> orders = Arrays.asList(
+			Order.of(1, 10, "OPEN", 5.5, new Date(1000)),
+			Order.of(2, 10, "HELD", 1500.0, new Date(2000)),
+			Order.of(3, 20, "OPEN", null, new Date(3000)),
+			Order.of(4, 30, null, 2.0, null),
+			Order.of(5, 20, "OPEN", 2000.0, new Date(500)));
+
+	@Test
+	public void aggregatesEachGroup() {
+		List<GroupBy.Group> groups = GroupBy.groupBy(STATUS)
+				.aggregate(sum(AMOUNT), count(), max(AMOUNT), count(AMOUNT), min(PLACED), sum(ID), avg(ID))
+				.apply(orders);
+		assertThat(groups.size(), is(3));
+		GroupBy.Group open = groups.get(0);
+		assertThat(open.getKey(0), is((Object) "OPEN"));
+		assertThat(open.getValue(0), is((Object) 2005.5));
+		assertThat(open.getLong(1), is(3L));
+		assertThat(open.getValue(2), is((Object) 2000.0));
+		assertThat(open.getValue(3), is((Object) 2L));
+		assertThat(open.getValue(4), is((Object) new Date(500)));
+		assertThat(open.getValue(5), is((Object) 9L));
+		assertThat(open.getDouble(6), is(3.0));
+		GroupBy.Group unknown = groups.get(2);
+		assertThat(unknown.getKeys(), contains((Object) null));
+		assertThat(unknown.getValue(4), is(nullValue()));
+		assertThat(unknown.getDouble(0), is(2.0));
+		assertThat(groups.get(1).toString(), is("[HELD] {sum(amount)=1500.0, count(*)=1, max(amount)=1500.0, count(amount)=1, min(placed)=" + new Date(2000) + ", sum(id)=2, avg(id)=2.0}"));
+	}
+
+	@Test
+	public void groupsByIntegralAndCompositeKeys() {
+		List<GroupBy.Group> byCustomer = GroupBy.groupBy(CUSTOMER).aggregate(count()).apply(orders);
+		assertThat(byCustomer.size(), is(3));
+		assertThat(byCustomer.get(1).getKey(0), is((Object) 20L));
+		assertThat(byCustomer.get(1).getLong(0), is(2L));
+		List<GroupBy.Group> byBoth = GroupBy.groupBy(CUSTOMER, STATUS).aggregate(count()).apply(orders);
+		assertThat(byBoth.size(), is(4));
+		List<GroupBy.Group> all = GroupBy.groupBy().aggregate(count(), sum(AMOUNT)).apply(new ArrayList<Order>());
+		assertThat(all.size(), is(1));
+		assertThat(all.get(0).getLong(0), is(0L));
+		assertThat(all.get(0).getValue(1), is(nullValue()));
+	}
+
+	@Test
+	public void parallelAggregationMatchesSequential() {
+		List<Order> many = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			many.add(Order.of(i, i % 37, i % 5 == 0 ? null : "S" + (i % 3), i % 11 == 0 ? null : i * 0.5, new Date(i)));
+		}
+		for (GroupBy grouping : new GroupBy[]{GroupBy.groupBy(CUSTOMER), GroupBy.groupBy(STATUS, CUSTOMER)}) {
+			grouping = grouping.aggregate(count(), sum(ID), min(AMOUNT), max(PLACED), avg(AMOUNT));
+			List<GroupBy.Group> sequential = grouping.apply(many);
+			List<GroupBy.Group> parallel = grouping.apply(many, true);
+			assertThat(parallel.size(), is(sequential.size()));
+			for (int i = 0; i < sequential.size(); i++) {
+				assertThat(parallel.get(i).toString(), is(sequential.get(i).toString()));
+			}
+		}
+	}
+
+	@Test
+	public void groupsTypeAdaptedPropertiesInParallel() {
+		List<Order> many = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			Order order = Order.of(i, i % 4, "OPEN", null, null);
+			order.setCode(i % 4);
+			many.add(order);
+		}
+		GroupBy grouping = GroupBy.groupBy(CODE).aggregate(count(), sum(CUSTOMER));
+		for (int run = 0; run < 5; run++) {
+			List<GroupBy.Group> groups = grouping.apply(many, true);
+			assertThat(groups.size(), is(4));
+			for (GroupBy.Group group : groups) {
+				long code = Long.parseLong((String) group.getKey(0));
+				assertThat(group.getLong(0), is(50_000L));
+				assertThat(group.getLong(1), is(code * 50_000L));
+			}
+		}
+	}
+
+	@Test
+	public void rejectsNonNumericSums() {
+		try {
+			sum(STATUS);
+			fail("summed strings");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,150 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import nz.co.gregs.properties.PropertyContainerClass;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.examples.StringProperty;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class HashJoinTest {
+
+	public static class Customer extends PropertyContainerImpl {
+
+		public IntegerProperty uid = new IntegerProperty();
+		public StringProperty name = new StringProperty();
+
+		static Customer of(long uid, String name) {
+			Customer customer = new Customer();
+			customer.uid.setValue(uid);
+			customer.name.setValue(name);
+			return customer;
+		}
+	}
+
+	private static final PropertyContainerClass CUSTOMER_CLASS = Order.FACTORY.classWrapperFor(Customer.class);
+	private static final PropertyDefinition CUSTOMER_UID = CUSTOMER_CLASS.getPropertyDefinitionByName("uid");
+	private static final PropertyDefinition CUSTOMER_NAME = CUSTOMER_CLASS.getPropertyDefinitionByName("name");
+
+	private final List<Customer> customers = Arrays.asList(Customer.of(10, "OPEN"), Customer.of(20, "Bob"), Customer.of(30, "Cy"));
+	private final List<Order> orders = Arrays.asList(
+			Order.of(1, 10, "OPEN", null, new Date(1)),
+			Order.of(2, 20, "OPEN", null, null),
+			Order.of(3, 10, "CLOSED", null, null),
+			Order.of(4, 40, "OPEN", null, null),
+			new Order());
+
+	@Test
+	public void innerJoinMatchesEqualKeys() {
+		List<String> joined = HashJoin.of(orders, customers)
+				.on(Order.CUSTOMER, CUSTOMER_UID)
+				.inner((order, customer) -> order.id.getValue() + ":" + customer.name.getValue())
+				.sorted()
+				.collect(Collectors.toList());
+		assertThat(joined, contains("1:OPEN", "2:Bob", "3:OPEN"));
+		List<String> reversed = HashJoin.of(customers, orders)
+				.on(CUSTOMER_UID, Order.CUSTOMER)
+				.inner()
+				.map(pair -> pair.getRight().id.getValue() + ":" + pair.getLeft().name.getValue())
+				.sorted()
+				.collect(Collectors.toList());
+		assertThat(reversed, is(joined));
+	}
+
+	@Test
+	public void leftOuterJoinKeepsUnmatchedRows() {
+		List<HashJoin.Pair<Order, Customer>> joined = HashJoin.of(orders, customers)
+				.on(Order.CUSTOMER, CUSTOMER_UID)
+				.leftOuter()
+				.collect(Collectors.toList());
+		assertThat(joined.size(), is(5));
+		assertThat(joined.get(0).getRight().name.getValue(), is("OPEN"));
+		assertThat(joined.get(3).getLeft().id.getValue(), is(4L));
+		assertThat(joined.get(3).getRight(), is(nullValue()));
+		assertThat(joined.get(4).getRight(), is(nullValue()));
+	}
+
+	@Test
+	public void joinsOnSeveralProperties() {
+		List<Long> joined = HashJoin.of(orders, customers)
+				.on(Order.CUSTOMER, CUSTOMER_UID)
+				.on(Order.STATUS, CUSTOMER_NAME)
+				.inner()
+				.map(pair -> pair.getLeft().id.getValue())
+				.collect(Collectors.toList());
+		assertThat(joined, contains(1L));
+	}
+
+	@Test
+	public void buildsTheTableLazily() {
+		List<Customer> growing = new ArrayList<>();
+		java.util.stream.Stream<HashJoin.Pair<Order, Customer>> joined = HashJoin.of(orders, growing).on(Order.CUSTOMER, CUSTOMER_UID).leftOuter();
+		growing.add(Customer.of(40, "Di"));
+		assertThat(joined.filter(pair -> pair.getRight() != null).count(), is(1L));
+	}
+
+	@Test
+	public void probesInParallel() {
+		List<Customer> many = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			many.add(Customer.of(i, "c" + i));
+		}
+		List<Order> manyOrders = new ArrayList<>();
+		for (int i = 0; i < 100000; i++) {
+			manyOrders.add(Order.of(i, i % 2000, "OPEN", null, null));
+		}
+		long sum = HashJoin.of(manyOrders, many)
+				.on(Order.CUSTOMER, CUSTOMER_UID)
+				.parallel(true)
+				.inner()
+				.mapToLong(pair -> pair.getRight().uid.getValue())
+				.sum();
+		assertThat(sum, is(50L * 999 * 1000 / 2));
+	}
+
+	@Test
+	public void joinsTypeAdaptedKeysInParallel() {
+		List<Customer> many = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			many.add(Customer.of(i, String.valueOf(i)));
+		}
+		List<Order> manyOrders = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			Order order = Order.of(i, 0, "OPEN", null, null);
+			order.setCode(i % 1000);
+			manyOrders.add(order);
+		}
+		for (int run = 0; run < 5; run++) {
+			long mismatched = HashJoin.of(manyOrders, many)
+					.on(Order.CODE, CUSTOMER_NAME)
+					.parallel(true)
+					.inner()
+					.filter(pair -> pair.getLeft().getCode() != pair.getRight().uid.getValue().intValue())
+					.count();
+			assertThat(mismatched, is(0L));
+			long matched = HashJoin.of(many, manyOrders)
+					.on(CUSTOMER_NAME, Order.CODE)
+					.parallel(true)
+					.inner()
+					.filter(pair -> pair.getRight().getCode() == pair.getLeft().uid.getValue().intValue())
+					.count();
+			assertThat(matched, is(200_000L));
+		}
+	}
+
+	@Test
+	public void rejectsIncompatibleKeys() {
+		try {
+			HashJoin.of(orders, customers).on(Order.PLACED, CUSTOMER_UID);
+			fail("joined a date to a number");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package nz.co.gregs.properties.query;
+
+import java.util.Date;
+import nz.co.gregs.properties.PropertyContainerClass;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.adapt.AdaptType;
+import nz.co.gregs.properties.adapt.TypeAdaptor;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.DateProperty;
+import nz.co.gregs.properties.examples.IntegerProperty;
+import nz.co.gregs.properties.examples.NumberProperty;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import nz.co.gregs.properties.examples.StringProperty;
+
+/**
+ * A container shared by the query tests.
+ */
+public class Order extends PropertyContainerImpl {
+
+	static final PropertyContainerWrapperFactory FACTORY = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+	static final PropertyContainerClass CLASS = FACTORY.classWrapperFor(Order.class);
+	static final PropertyDefinition ID = CLASS.getPropertyDefinitionByName("id");
+	static final PropertyDefinition CUSTOMER = CLASS.getPropertyDefinitionByName("customer");
+	static final PropertyDefinition STATUS = CLASS.getPropertyDefinitionByName("status");
+	static final PropertyDefinition AMOUNT = CLASS.getPropertyDefinitionByName("amount");
+	static final PropertyDefinition PLACED = CLASS.getPropertyDefinitionByName("placed");
+	static final PropertyDefinition CODE = CLASS.getPropertyDefinitionByName("code");
+
+	public IntegerProperty id = new IntegerProperty();
+	public IntegerProperty customer = new IntegerProperty();
+	public StringProperty status = new StringProperty();
+	public NumberProperty amount = new NumberProperty();
+	public DateProperty placed = new DateProperty();
+	private Integer code;
+
+	static Order of(long id, long customer, String status, Double amount, Date placed) {
+		Order order = new Order();
+		order.id.setValue(id);
+		order.customer.setValue(customer);
+		order.status.setValue(status);
+		order.amount.setValue(amount);
+		order.placed.setValue(placed);
+		order.code = (int) id;
+		return order;
+	}
+
+	@AdaptType(value = IntegerStringAdaptor.class)
+	public Integer getCode() {
+		return code;
+	}
+
+	@AdaptType(value = IntegerStringAdaptor.class)
+	public void setCode(Integer code) {
+		this.code = code;
+	}
+
+	@Override
+	public String toString() {
+		return "Order " + id.getValue();
+	}
+
+	/**
+	 * Stores the code as a String, so that reading it goes through the type
+	 * adaptor.
+	 */
+	public static class IntegerStringAdaptor implements TypeAdaptor<Integer, String> {
+
+		@Override
+		public Integer fromInternalValue(String internalValue) {
+			return (internalValue == null) ? null : Integer.valueOf(internalValue);
+		}
+
+		@Override
+		public String fromExternalValue(Integer externalValue) {
+			return (externalValue == null) ? null : externalValue.toString();
+		}
+	}
+}
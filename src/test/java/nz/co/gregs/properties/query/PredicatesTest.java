@@ -0,0 +1,198 @@
+package nz.co.gregs.properties.query;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import nz.co.gregs.properties.Allocations;
+import nz.co.gregs.properties.PropertyContainer;
+import nz.co.gregs.properties.PropertyContainerClass;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.PropertyDefinition;
+import nz.co.gregs.properties.adapt.AdaptableType;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import nz.co.gregs.properties.examples.PropertyContainerImpl;
+import static nz.co.gregs.properties.query.Order.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PredicatesTest {
+
+	private final List<Order> orders = Arrays.asList(
+			Order.of(1, 10, "OPEN", 5.5, new Date(1000)),
+			Order.of(2, 10, "HELD", 1500.0, new Date(2000)),
+			Order.of(3, 20, "CLOSED", 20.0, new Date(3000)),
+			Order.of(4, 30, null, null, null),
+			Order.of(5, 20, "OPEN", 2000.0, new Date(5000)));
+
+	private static final PropertyContainerClass LEDGER = new PropertyContainerWrapperFactory(new LedgerTypeHandler()).classWrapperFor(Ledger.class);
+
+	private static List<Long> ids(List<Order> matched) {
+		return matched.stream().map(order -> order.id.getValue()).collect(Collectors.toList());
+	}
+
+	private List<Long> matching(Predicate<PropertyContainer> predicate) {
+		return ids(Predicates.filter(orders, predicate));
+	}
+
+	@Test
+	public void comparesIntegralProperties() {
+		assertThat(matching(Predicates.on(CUSTOMER).eq(20)), contains(3L, 5L));
+		assertThat(matching(Predicates.on(CUSTOMER).ne(20L)), contains(1L, 2L, 4L));
+		assertThat(matching(Predicates.on(ID).lt(3)), contains(1L, 2L));
+		assertThat(matching(Predicates.on(ID).ge(4)), contains(4L, 5L));
+		assertThat(matching(Predicates.on(ID).between(2, 4)), contains(2L, 3L, 4L));
+		assertThat(matching(Predicates.on(ID).gt(2.5)), contains(3L, 4L, 5L));
+		assertThat(matching(Predicates.on(CUSTOMER).in(30, 10L)), contains(1L, 2L, 4L));
+	}
+
+	@Test
+	public void comparesOtherLiteralTypes() {
+		assertThat(matching(Predicates.on(AMOUNT).le(20)), contains(1L, 3L));
+		assertThat(matching(Predicates.on(AMOUNT).in(20.0, 2000)), contains(3L, 5L));
+		assertThat(matching(Predicates.on(PLACED).between(new Date(2000), new Date(3000))), contains(2L, 3L));
+		assertThat(matching(Predicates.on(PLACED).in(new Date(5000))), contains(5L));
+		assertThat(matching(Predicates.on(STATUS).eq("OPEN")), contains(1L, 5L));
+		assertThat(matching(Predicates.on(STATUS).gt("HELD")), contains(1L, 5L));
+		assertThat(matching(Predicates.on(STATUS).between("CLOSED", "HELD")), contains(2L, 3L));
+		assertThat(matching(Predicates.on(STATUS).in("HELD", "CLOSED")), contains(2L, 3L));
+	}
+
+	@Test
+	public void inMatchesDoublesLikeEq() {
+		List<Order> signed = Arrays.asList(
+				Order.of(1, 0, null, 0.0, null),
+				Order.of(2, 0, null, -0.0, null),
+				Order.of(3, 0, null, Double.NaN, null));
+		assertThat(Predicates.filter(signed, Predicates.on(AMOUNT).in(-0.0)).size(), is(2));
+		assertThat(Predicates.filter(signed, Predicates.on(AMOUNT).in(0.0)).size(), is(2));
+		assertThat(Predicates.filter(signed, Predicates.on(AMOUNT).eq(-0.0)).size(), is(2));
+		assertThat(Predicates.filter(signed, Predicates.on(AMOUNT).in(Double.NaN, 1.0)), is(empty()));
+		assertThat(Predicates.filter(signed, Predicates.on(AMOUNT).eq(Double.NaN)), is(empty()));
+	}
+
+	@Test
+	public void testingContainersAllocatesNothing() {
+		Order order = orders.get(1);
+		List<Predicate<PropertyContainer>> predicates = Arrays.asList(
+				Predicates.on(CUSTOMER).eq(20),
+				Predicates.on(AMOUNT).between(10, 2000),
+				Predicates.on(CUSTOMER).in(30, 10L),
+				Predicates.on(PLACED).lt(new Date(5000)),
+				Predicates.and(Predicates.on(STATUS).in("OPEN", "HELD"), Predicates.or(Predicates.on(AMOUNT).gt(1000), Predicates.on(ID).eq(1))));
+		for (Predicate<PropertyContainer> predicate : predicates) {
+			long perTest = Allocations.allocatedPerRun(100_000, () -> predicate.test(order));
+			assertThat("bytes allocated per test", perTest, is(lessThan(8L)));
+		}
+	}
+
+	@Test
+	public void onlyNullChecksMatchNullValues() {
+		assertThat(matching(Predicates.on(STATUS).isNull()), contains(4L));
+		assertThat(matching(Predicates.on(AMOUNT).isNotNull()), contains(1L, 2L, 3L, 5L));
+		assertThat(matching(Predicates.on(STATUS).ne("OPEN")), contains(2L, 3L));
+		assertThat(matching(Predicates.not(Predicates.on(STATUS).eq("OPEN"))), contains(2L, 3L, 4L));
+	}
+
+	@Test
+	public void combinesConditions() {
+		Predicate<PropertyContainer> large = Predicates.and(Predicates.on(STATUS).in("OPEN", "HELD"), Predicates.on(AMOUNT).gt(1000));
+		assertThat(matching(large), contains(2L, 5L));
+		assertThat(matching(Predicates.or(large, Predicates.on(ID).eq(1))), contains(1L, 2L, 5L));
+		assertThat(matching(Predicates.and()), hasSize(5));
+		assertThat(matching(Predicates.or()), is(empty()));
+	}
+
+	@Test
+	public void rejectsBoundsOfTheWrongType() {
+		try {
+			Predicates.on(PLACED).lt(5);
+			fail("compared a date with a number");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			Predicates.on(STATUS).eq(null);
+			fail("compared with null");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void rejectsBetweenBoundsThatCantBeOrdered() {
+		PropertyDefinition anything = LEDGER.getPropertyDefinitionByName("anything");
+		try {
+			Predicates.on(anything).between("a", new Object());
+			fail("ordered by an Object");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void comparesDecimalsWithoutRounding() {
+		PropertyDefinition total = LEDGER.getPropertyDefinitionByName("total");
+		Ledger ledger = new Ledger();
+		ledger.total.setValue(new BigDecimal("0.10000000000000000001"));
+		assertThat(Predicates.on(total).gt(new BigDecimal("0.1")).test(ledger), is(true));
+		assertThat(Predicates.on(total).between(new BigDecimal("0"), new BigDecimal("0.1")).test(ledger), is(false));
+	}
+
+	@Test
+	public void filtersInParallelKeepingOrder() {
+		List<Order> many = new ArrayList<>();
+		for (int i = 0; i < 20000; i++) {
+			many.add(Order.of(i, i % 100, i % 3 == 0 ? "OPEN" : "CLOSED", i * 1.5, new Date(i)));
+		}
+		Predicate<PropertyContainer> predicate = Predicates.and(Predicates.on(STATUS).eq("OPEN"), Predicates.on(CUSTOMER).between(10, 19));
+		List<Order> sequential = Predicates.filter(many, predicate);
+		assertThat(sequential.size(), is(many.size() / 30));
+		assertThat(Predicates.filter(many, predicate, true), is(sequential));
+	}
+
+	@Test
+	public void filtersTypeAdaptedPropertiesInParallel() {
+		List<Order> many = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			Order order = Order.of(i, 0, "OPEN", null, null);
+			order.setCode(i % 2);
+			many.add(order);
+		}
+		Predicate<PropertyContainer> odd = Predicates.on(CODE).eq("1");
+		for (int run = 0; run < 10; run++) {
+			List<Order> matched = Predicates.filter(many, odd, true);
+			assertThat(matched.size(), is(100_000));
+			for (Order order : matched) {
+				assertThat(order.getCode(), is(1));
+			}
+		}
+	}
+
+	public static class Ledger extends PropertyContainerImpl {
+
+		public DecimalProperty total = new DecimalProperty();
+		public AnythingProperty anything = new AnythingProperty();
+	}
+
+	public static class DecimalProperty extends AdaptableType<BigDecimal> {
+	}
+
+	public static class AnythingProperty extends AdaptableType<Object> {
+	}
+
+	public static class LedgerTypeHandler extends DBPropertyTypeHandler {
+
+		@Override
+		@SuppressWarnings("rawtypes")
+		public Class<?> literalTypeOf(Class<? extends AdaptableType> type) {
+			if (type.equals(DecimalProperty.class)) {
+				return BigDecimal.class;
+			} else if (type.equals(AnythingProperty.class)) {
+				return Object.class;
+			}
+			return super.literalTypeOf(type);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import nz.co.gregs.properties.PropertyContainerWrapperFactory;
+import nz.co.gregs.properties.examples.DBPropertyTypeHandler;
+import static nz.co.gregs.properties.query.Order.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PropertyComparatorTest {
+
+	private static List<Long> ids(List<Order> orders) {
+		return orders.stream().map(order -> order.id.getValue()).collect(Collectors.toList());
+	}
+
+	private final List<Order> orders = Arrays.asList(
+			Order.of(1, 20, "OPEN", 5.0, new Date(300)),
+			Order.of(2, 10, null, 7.5, new Date(100)),
+			Order.of(3, 20, "CLOSED", null, new Date(200)),
+			Order.of(4, 10, "OPEN", 7.5, null),
+			Order.of(5, 20, "HELD", 5.0, new Date(300)));
+
+	@Test
+	public void comparesByEachKeyInTurn() {
+		PropertyComparator<Order> comparator = CLASS.comparator(SortKey.ascending(CUSTOMER), SortKey.descending(AMOUNT).nullsLast(), SortKey.ascending(STATUS));
+		List<Order> sorted = new ArrayList<>(orders);
+		sorted.sort(comparator);
+		assertThat(ids(sorted), contains(2L, 4L, 5L, 1L, 3L));
+		List<Order> extracted = new ArrayList<>(orders);
+		comparator.sort(extracted);
+		assertThat(extracted, is(sorted));
+	}
+
+	@Test
+	public void placesNullsAsRequested() {
+		List<Order> sorted = new ArrayList<>(orders);
+		CLASS.<Order>comparator(SortKey.ascending(STATUS)).sort(sorted);
+		assertThat(ids(sorted), contains(2L, 3L, 5L, 1L, 4L));
+		CLASS.<Order>comparator(SortKey.descending(PLACED).nullsLast()).sort(sorted);
+		assertThat(ids(sorted), contains(5L, 1L, 3L, 2L, 4L));
+		CLASS.<Order>comparator(SortKey.descending(PLACED)).sort(sorted);
+		assertThat(ids(sorted), contains(4L, 5L, 1L, 3L, 2L));
+	}
+
+	@Test
+	public void parallelSortMatchesTheComparator() {
+		Random random = new Random(7);
+		Order[] many = new Order[50000];
+		for (int i = 0; i < many.length; i++) {
+			many[i] = Order.of(i, random.nextInt(50), random.nextInt(10) == 0 ? null : "S" + random.nextInt(5), random.nextInt(100) / 4.0, new Date(random.nextInt(1000)));
+		}
+		PropertyComparator<Order> comparator = CLASS.comparator(SortKey.ascending(STATUS).nullsLast(), SortKey.descending(AMOUNT), SortKey.ascending(PLACED));
+		List<Order> expected = new ArrayList<>(Arrays.asList(many));
+		Collections.sort(expected, comparator);
+		comparator.parallelSort(many);
+		assertThat(Arrays.asList(many), is(expected));
+	}
+
+	@Test
+	public void parallelSortReadsTypeAdaptedPropertiesSafely() {
+		List<Order> many = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			many.add(Order.of(i, 0, null, null, null));
+		}
+		Collections.shuffle(many, new Random(11));
+		PropertyComparator<Order> comparator = CLASS.comparator(SortKey.ascending(CODE), SortKey.ascending(ID));
+		List<Order> expected = new ArrayList<>(many);
+		expected.sort(Comparator.comparing((Order order) -> String.valueOf(order.getCode())).thenComparing(order -> order.id.getValue()));
+		for (int run = 0; run < 5; run++) {
+			List<Order> sorted = new ArrayList<>(many);
+			comparator.parallelSort(sorted);
+			assertThat(sorted, is(expected));
+		}
+	}
+
+	@Test
+	public void rejectsPropertiesOfOtherClasses() {
+		PropertyContainerWrapperFactory other = new PropertyContainerWrapperFactory(new DBPropertyTypeHandler());
+		try {
+			other.classWrapperFor(nz.co.gregs.properties.codec.SampleRow.class).comparator(SortKey.ascending(ID));
+			fail("accepted a property of another class");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+}
@@ -0,0 +1,70 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import static nz.co.gregs.properties.query.Order.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PropertyEquivalenceTest {
+
+	@Test
+	public void comparesSelectedProperties() {
+		PropertyEquivalence<Order> byCustomerAndStatus = CLASS.equivalence(CUSTOMER, STATUS);
+		Order first = Order.of(1, 10, "OPEN", 5.0, new Date(1));
+		Order second = Order.of(2, 10, "OPEN", 6.0, null);
+		Order third = Order.of(3, 10, null, 5.0, new Date(1));
+		assertThat(byCustomerAndStatus.equalsOn(first, second), is(true));
+		assertThat(byCustomerAndStatus.hashOf(first), is(byCustomerAndStatus.hashOf(second)));
+		assertThat(byCustomerAndStatus.equalsOn(first, third), is(false));
+		assertThat(byCustomerAndStatus.equalsOn(third, Order.of(4, 10, null, null, null)), is(true));
+	}
+
+	@Test
+	public void treatsNegativeZeroAsZero() {
+		PropertyEquivalence<Order> byAmount = CLASS.equivalence(AMOUNT);
+		Order zero = Order.of(1, 1, null, 0.0, null);
+		Order negativeZero = Order.of(2, 1, null, -0.0, null);
+		assertThat(byAmount.equalsOn(zero, negativeZero), is(true));
+		assertThat(byAmount.hashOf(zero), is(byAmount.hashOf(negativeZero)));
+	}
+
+	@Test
+	public void describesContainers() {
+		PropertyEquivalence<Order> all = CLASS.equivalence();
+		Order order = Order.of(7, 3, "OPEN", 2.5, new Date(0));
+		assertThat(all.toString(order), is("Order{id=7, customer=3, status=OPEN, amount=2.5, placed=1970-01-01T00:00:00Z, code=7}"));
+		assertThat(CLASS.<Order>equivalence(STATUS, AMOUNT).toString(new Order()), is("Order{status=null, amount=null}"));
+	}
+
+	@Test
+	public void keysRemoveDuplicates() {
+		PropertyEquivalence<Order> byCustomer = CLASS.equivalence(CUSTOMER);
+		Set<PropertyEquivalence.Key<Order>> distinct = new LinkedHashSet<>();
+		for (int i = 0; i < 1000; i++) {
+			distinct.add(byCustomer.keyOf(Order.of(i, i % 7, "OPEN", null, null)));
+		}
+		assertThat(distinct.size(), is(7));
+		assertThat(distinct.iterator().next().getRow().id.getValue(), is(0L));
+	}
+
+	@Test
+	public void hashesTypeAdaptedPropertiesInParallel() {
+		PropertyEquivalence<Order> byCode = CLASS.equivalence(CODE);
+		List<Order> many = new ArrayList<>();
+		for (int i = 0; i < 200_000; i++) {
+			many.add(Order.of(i, 0, null, null, null));
+		}
+		int[] expected = many.stream().mapToInt(byCode::hashOf).toArray();
+		for (int run = 0; run < 5; run++) {
+			assertThat(many.parallelStream().mapToInt(byCode::hashOf).toArray(), is(expected));
+			Set<PropertyEquivalence.Key<Order>> distinct = many.parallelStream().map(byCode::keyOf).collect(Collectors.toSet());
+			assertThat(distinct.size(), is(many.size()));
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package nz.co.gregs.properties.query;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import static nz.co.gregs.properties.query.Order.*;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+public class PropertyIndexTest {
+
+	private static List<Long> ids(List<Order> orders) {
+		return orders.stream().map(order -> order.id.getValue()).collect(Collectors.toList());
+	}
+
+	@Test
+	public void hashIndexFindsEqualValues() {
+		HashIndex<Order> byStatus = new HashIndex<>(STATUS);
+		HashIndex<Order> byCustomer = new HashIndex<>(CUSTOMER);
+		HashIndex<Order> byAmount = new HashIndex<>(AMOUNT);
+		Order first = Order.of(1, 10, "OPEN", 0.0, null);
+		Order second = Order.of(2, 20, "OPEN", -0.0, null);
+		Order third = Order.of(3, 10, null, 2.5, null);
+		for (Order order : new Order[]{first, second, third}) {
+			byStatus.add(order);
+			byCustomer.add(order);
+			byAmount.add(order);
+		}
+		assertThat(ids(byStatus.get("OPEN")), contains(1L, 2L));
+		assertThat(ids(byStatus.get(null)), contains(3L));
+		assertThat(ids(byCustomer.get(10)), contains(1L, 3L));
+		assertThat(ids(byCustomer.get(99L)), is(empty()));
+		assertThat(ids(byAmount.get(0)), contains(1L, 2L));
+		assertThat(byCustomer.keyCount(), is(2));
+	}
+
+	@Test
+	public void maintainsIndexesIncrementally() {
+		HashIndex<Order> byStatus = new HashIndex<>(STATUS);
+		SortedIndex<Order> byPlaced = new SortedIndex<>(PLACED);
+		Order order = Order.of(1, 10, "OPEN", 1.0, new Date(100));
+		byStatus.add(order);
+		byPlaced.add(order);
+		order.status.setValue("CLOSED");
+		order.placed.setValue(new Date(50));
+		assertThat(ids(byStatus.get("OPEN")), contains(1L));
+		byStatus.update(order);
+		byPlaced.update(order);
+		assertThat(byStatus.get("OPEN"), is(empty()));
+		assertThat(ids(byStatus.get("CLOSED")), contains(1L));
+		assertThat(ids(byPlaced.atMost(new Date(60))), contains(1L));
+		order.status.setValue(null);
+		byStatus.update(order);
+		assertThat(ids(byStatus.getNulls()), contains(1L));
+		assertThat(byStatus.remove(order), is(true));
+		assertThat(byStatus.remove(order), is(false));
+		assertThat(byStatus.getNulls(), is(empty()));
+		assertThat(byStatus.size(), is(0));
+	}
+
+	@Test
+	public void sortedIndexFindsRanges() {
+		SortedIndex<Order> byAmount = new SortedIndex<>(AMOUNT);
+		SortedIndex<Order> byStatus = new SortedIndex<>(STATUS);
+		for (int i = 10; i > 0; i--) {
+			Order order = Order.of(i, 0, "S" + (i % 3), i * 1.5, null);
+			byAmount.add(order);
+			byStatus.add(order);
+		}
+		assertThat(ids(byAmount.between(3, 7.5)), contains(2L, 3L, 4L, 5L));
+		assertThat(ids(byAmount.lessThan(3)), contains(1L));
+		assertThat(ids(byAmount.greaterThan(13.5)), contains(10L));
+		assertThat(ids(byAmount.range(3, false, 6, true)), contains(3L, 4L));
+		assertThat(byAmount.between(9, 2), is(empty()));
+		assertThat(ids(byStatus.atLeast("S2")), contains(8L, 5L, 2L));
+		try {
+			byAmount.between("a", "b");
+			fail("accepted String bounds for a number");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	@Test
+	public void sortedIndexAgreesWithAScanOfManyKeys() {
+		Random random = new Random(3);
+		List<Order> orders = new ArrayList<>();
+		SortedIndex<Order> byAmount = new SortedIndex<>(AMOUNT);
+		SortedIndex<Order> byCustomer = new SortedIndex<>(CUSTOMER);
+		for (int i = 0; i < 20_000; i++) {
+			double amount = random.nextInt(10) == 0 ? -0.0 : (random.nextInt(40_000) - 20_000) / 4.0;
+			Order order = Order.of(i, random.nextInt(50_000) - 25_000, null, amount, null);
+			orders.add(order);
+			byAmount.add(order);
+			byCustomer.add(order);
+		}
+		for (int i = 0; i < orders.size(); i += 3) {
+			byAmount.remove(orders.get(i));
+			byCustomer.remove(orders.get(i));
+		}
+		for (int i = 0; i < orders.size(); i += 3) {
+			orders.set(i, null);
+		}
+		orders.removeIf(order -> order == null);
+		for (int check = 0; check < 50; check++) {
+			double lower = (random.nextInt(44_000) - 22_000) / 4.0;
+			double upper = lower + random.nextInt(2_000) / 4.0;
+			boolean inclusive = random.nextBoolean();
+			List<Order> expected = orders.stream()
+					.filter(order -> inclusive ? order.amount.getValue() >= lower && order.amount.getValue() <= upper : order.amount.getValue() > lower && order.amount.getValue() < upper)
+					.sorted((a, b) -> Double.compare(a.amount.getValue() + 0.0, b.amount.getValue() + 0.0))
+					.collect(Collectors.toList());
+			assertThat(byAmount.range(lower, inclusive, upper, inclusive), is(expected));
+			long from = (long) lower;
+			List<Order> customers = orders.stream()
+					.filter(order -> order.customer.getValue() >= from)
+					.sorted((a, b) -> Long.compare(a.customer.getValue(), b.customer.getValue()))
+					.collect(Collectors.toList());
+			assertThat(byCustomer.atLeast(from), is(customers));
+		}
+		assertThat(byAmount.get(0.0).size(), is(byAmount.get(-0.0).size()));
+		assertThat(byAmount.lessThan(Double.NEGATIVE_INFINITY), is(empty()));
+	}
+
+	@Test
+	public void trackedContainersFollowTheirChanges() {
+		SortedIndex<Order> byCustomer = new SortedIndex<>(CUSTOMER);
+		Order tracked = Order.of(1, 10, null, null, null);
+		Order untracked = Order.of(2, 10, null, null, null);
+		byCustomer.track(tracked);
+		byCustomer.add(untracked);
+		tracked.customer.setValue(20);
+		untracked.customer.setValue(30);
+		assertThat(ids(byCustomer.get(20)), contains(1L));
+		assertThat(ids(byCustomer.get(10)), contains(2L));
+
+		byCustomer.remove(tracked);
+		tracked.customer.setValue(40);
+		assertThat(byCustomer.get(40), is(empty()));
+		assertThat(byCustomer.contains(tracked), is(false));
+	}
+
+	@Test
+	public void keepsTheOrderOfLargeBucketsAcrossRemovals() {
+		HashIndex<Order> byStatus = new HashIndex<>(STATUS);
+		SortedIndex<Order> byCustomer = new SortedIndex<>(CUSTOMER);
+		List<Order> orders = new ArrayList<>();
+		for (int i = 0; i < 100_000; i++) {
+			Order order = Order.of(i, 7, i % 2 == 0 ? "OPEN" : null, null, null);
+			orders.add(order);
+			byStatus.add(order);
+			byCustomer.add(order);
+		}
+		for (int i = 0; i < orders.size(); i++) {
+			if (i % 4 < 2) {
+				byStatus.remove(orders.get(i));
+				byCustomer.remove(orders.get(i));
+			}
+		}
+		List<Long> expectedOpen = new ArrayList<>();
+		List<Long> expectedNulls = new ArrayList<>();
+		for (long i = 2; i < orders.size(); i += 4) {
+			expectedOpen.add(i);
+			expectedNulls.add(i + 1);
+		}
+		assertThat(ids(byStatus.get("OPEN")), is(expectedOpen));
+		assertThat(ids(byStatus.getNulls()), is(expectedNulls));
+		assertThat(byCustomer.get(7).size(), is(orders.size() / 2));
+		assertThat(byCustomer.remove(orders.get(0)), is(false));
+	}
+
+	@Test
+	public void agreesWithAScanAfterRandomChanges() {
+		Random random = new Random(42);
+		List<Order> orders = new ArrayList<>();
+		HashIndex<Order> byCustomer = new HashIndex<>(CUSTOMER);
+		SortedIndex<Order> sorted = new SortedIndex<>(CUSTOMER);
+		for (int i = 0; i < 5000; i++) {
+			Order order = Order.of(i, random.nextInt(200), "OPEN", null, null);
+			orders.add(order);
+			byCustomer.add(order);
+			sorted.add(order);
+		}
+		for (int i = 0; i < 20000; i++) {
+			Order order = orders.get(random.nextInt(orders.size()));
+			if (random.nextInt(4) == 0) {
+				orders.remove(order);
+				byCustomer.remove(order);
+				sorted.remove(order);
+				Order replacement = Order.of(5000 + i, random.nextInt(200), "OPEN", null, null);
+				orders.add(replacement);
+				byCustomer.add(replacement);
+				sorted.add(replacement);
+			} else {
+				order.customer.setValue(random.nextInt(200));
+				byCustomer.update(order);
+				sorted.update(order);
+			}
+		}
+		assertThat(byCustomer.size(), is(orders.size()));
+		for (long customer = 0; customer < 200; customer++) {
+			final long expected = customer;
+			List<Order> scanned = orders.stream().filter(order -> order.customer.getValue() == expected).collect(Collectors.toList());
+			assertThat(byCustomer.get(customer), containsInAnyOrder(scanned.toArray()));
+		}
+		assertThat(sorted.between(50, 59).size(), is((int) orders.stream().filter(order -> order.customer.getValue() >= 50 && order.customer.getValue() <= 59).count()));
+	}
+}